@@ -0,0 +1,54 @@
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import util.Constants;
+import util.HashStreamDiff;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class CompareRuns {
+
+    public static void main(String[] args) {
+        ArgumentParser parser = createParser();
+        try {
+            Namespace ns = parser.parseArgs(args);
+            HashStreamDiff diff;
+            try (Reader expected = Files.newBufferedReader(
+                        Paths.get(ns.getString(Constants.ARG_COMPARE_EXPECTED)), StandardCharsets.UTF_8);
+                 Reader actual = Files.newBufferedReader(
+                         Paths.get(ns.getString(Constants.ARG_COMPARE_ACTUAL)), StandardCharsets.UTF_8)) {
+                diff = HashStreamDiff.compare(expected, actual);
+            }
+            System.out.println(diff.summary());
+            System.exit(diff.isIdentical() ? 0 : 1);
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(2);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    private static ArgumentParser createParser() {
+        ArgumentParser parser = ArgumentParsers.newFor("Sim-2APL Demonstration Run Comparison").build()
+                .defaultHelp(true)
+                .description("Compares the hash streams of two runs, written with --checksum-file, and reports the " +
+                        "first time step in which the state of the environment differs.\n" +
+                        "Exits with status 0 if the runs are identical, and 1 if they are not.");
+
+        parser.addArgument(Constants.ARG_COMPARE_EXPECTED)
+                .help("The hash stream of the reference run");
+
+        parser.addArgument(Constants.ARG_COMPARE_ACTUAL)
+                .help("The hash stream of the run to check");
+
+        return parser;
+    }
+
+}
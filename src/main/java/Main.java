@@ -1,17 +1,34 @@
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
 import simulation.Simulation;
+import simulation.kernel.KernelSimulation;
+import simulation.shard.ShardedSimulation;
 import util.Constants;
+import util.StartupClock;
 
 public class Main {
 
     public static void main(String[] args) {
+        StartupClock.mainStarted();
         ArgumentParser parser = createParser();
         try {
             Namespace ns = parser.parseArgs(args);
-            new Simulation(ns);
+            if (ns.getBoolean(Constants.ARG_KERNEL)) {
+                new KernelSimulation(ns).start();
+            } else if (ns.getInt(Constants.ARG_SHARDS) > 1 && ns.getString(Constants.ARG_COORDINATOR) == null) {
+                // This process coordinates the shards, which each run a Simulation of their own part of the grid
+                new ShardedSimulation(ns, args).start();
+            } else {
+                Simulation simulation = new Simulation(ns);
+                try {
+                    simulation.start();
+                } finally {
+                    simulation.shutdown();
+                }
+            }
         } catch (ArgumentParserException e) {
             System.exit(0);
         }
@@ -46,11 +63,173 @@ public class Main {
                 .help("The number of milliseconds to delay between each time step (to allow interpreting visualization")
                 .setDefault(1000);
 
+        parser.addArgument("-n", "--" + Constants.ARG_STEPS)
+                .type(Integer.class)
+                .help("The number of time steps to simulate. If 0, the simulation runs indefinitely")
+                .setDefault(0);
+
+        parser.addArgument("-t", "--" + Constants.ARG_THREADS)
+                .type(Integer.class)
+                .help("The number of threads the platform uses for concurrent execution of agents")
+                .setDefault(4);
+
+        parser.addArgument("--work-stealing")
+                .dest(Constants.ARG_WORK_STEALING)
+                .action(Arguments.storeTrue())
+                .help("Deliberate the agents in adaptive chunks on a work-stealing thread pool, instead of submitting " +
+                        "one task per agent to the default thread pool");
+
+        parser.addArgument("--" + Constants.ARG_HEADLESS)
+                .action(Arguments.storeTrue())
+                .help("Do not visualize the environment, and do not delay between time steps");
+
         parser.addArgument("-s", "--" + Constants.ARG_SEED)
                 .type(Integer.class)
                 .help("The seed to use for repeatable simulations. If left empty, simulation will progress " +
                         "stochastically.");
 
+        parser.addArgument("--" + Constants.ARG_ASYNC)
+                .action(Arguments.storeTrue())
+                .help("Let agents commit their moves to a thread-safe grid directly from their deliberation threads, " +
+                        "instead of materializing all moves after all agents have finished deliberating");
+
+        parser.addArgument("--" + Constants.ARG_SPARSE)
+                .action(Arguments.storeTrue())
+                .help("Only allocate memory for the regions of the grid that contain agents. Useful for very large, " +
+                        "lightly populated grids. Cannot be combined with --" + Constants.ARG_ASYNC);
+
+        parser.addArgument("--" + Constants.ARG_DETERMINISTIC)
+                .action(Arguments.storeTrue())
+                .help("Apply the actions of all agents in a fixed order, so that seeded simulations produce identical " +
+                        "results regardless of the number of threads. Requires --" + Constants.ARG_SEED);
+
+        parser.addArgument("--" + Constants.ARG_BACKOFF)
+                .action(Arguments.storeTrue())
+                .help("Let agents whose moves keep failing sleep for exponentially increasing numbers of time steps, " +
+                        "or until a cell next to them becomes free, so they are not deliberated while stuck");
+
+        parser.addArgument("--" + Constants.ARG_PIPELINED)
+                .action(Arguments.storeTrue())
+                .help("Process the deliberation results of agents as soon as they become available, while other " +
+                        "agents are still deliberating, and materialize all actions in a fixed order once all " +
+                        "results are in. Produces the same results as --" + Constants.ARG_DETERMINISTIC + ". " +
+                        "Requires --work-stealing");
+
+        parser.addArgument("--checksum-file")
+                .dest(Constants.ARG_CHECKSUM_FILE)
+                .help("If specified, a hash of the state of the environment is written to this file after each " +
+                        "time step. The hash streams of two runs can be compared with CompareRuns");
+
+        parser.addArgument("--" + Constants.ARG_REALTIME)
+                .action(Arguments.storeTrue())
+                .help("Use the delay as the target wall clock time of each time step, including the time taken by the " +
+                        "agents and the environment. Drawing is skipped for time steps that finish late. Also applies " +
+                        "when running --" + Constants.ARG_HEADLESS);
+
+        parser.addArgument("--" + Constants.ARG_CHURN)
+                .type(Double.class)
+                .help("The expected number of agents that leave the simulation after each time step, and are " +
+                        "replaced by new agents at random free cells")
+                .setDefault(0.0);
+
+        parser.addArgument("--analytics-file")
+                .dest(Constants.ARG_ANALYTICS_FILE)
+                .help("If specified, analytics of the time agents need to reach their destination, their failed " +
+                        "moves, and the congestion of the grid are periodically written to this file");
+
+        parser.addArgument("--analytics-interval")
+                .dest(Constants.ARG_ANALYTICS_INTERVAL)
+                .type(Integer.class)
+                .help("The number of time steps between writing analytics")
+                .setDefault(100);
+
+        parser.addArgument("--export-file")
+                .dest(Constants.ARG_EXPORT_FILE)
+                .help("If specified, the state of the environment is published to this memory-mapped file after " +
+                        "each time step, so it can be displayed by viewers in other processes");
+
+        parser.addArgument("--profile-file")
+                .dest(Constants.ARG_PROFILE_FILE)
+                .help("If specified, the time agents spend instantiating and executing each type of plan, and " +
+                        "checking each type of goal, is sampled, and a report is written to this file when the " +
+                        "simulation finishes");
+
+        parser.addArgument("--profile-sample-interval")
+                .dest(Constants.ARG_PROFILE_SAMPLE_INTERVAL)
+                .type(Integer.class)
+                .help("Time one in every this many plan instantiations, plan executions and goal checks, on average. " +
+                        "The operations to time are chosen at random")
+                .setDefault(100);
+
+        parser.addArgument("--" + Constants.ARG_SWAP)
+                .action(Arguments.storeTrue())
+                .help("Let agents that block each other agree, by sending each other messages, to swap cells. " +
+                        "Requires --" + Constants.ARG_DETERMINISTIC + " or --" + Constants.ARG_PIPELINED);
+
+        parser.addArgument("--mailbox-capacity")
+                .dest(Constants.ARG_MAILBOX_CAPACITY)
+                .type(Integer.class)
+                .help("The maximum number of messages waiting for delivery to a single agent. Further messages are " +
+                        "dropped. Rounded up to a power of two")
+                .setDefault(16);
+
+        parser.addArgument("--congestion-aware")
+                .dest(Constants.ARG_CONGESTION_AWARE)
+                .action(Arguments.storeTrue())
+                .help("Let agents sample their next destination among the free cells only, so destinations in " +
+                        "crowded parts of the grid are less likely. Cannot be combined with --" + Constants.ARG_ASYNC +
+                        ", --" + Constants.ARG_SPARSE + " or --" + Constants.ARG_SHARDS);
+
+        parser.addArgument("--fast-start")
+                .dest(Constants.ARG_FAST_START)
+                .action(Arguments.storeTrue())
+                .help("Start the first time step as soon as possible. Live telemetry is not exposed through JMX, " +
+                        "because starting the MBean server can take longer than a short run itself");
+
+        parser.addArgument("--report-startup")
+                .dest(Constants.ARG_REPORT_STARTUP)
+                .action(Arguments.storeTrue())
+                .help("Report the time from starting the JVM until the first time step started, when the " +
+                        "simulation finishes");
+
+        parser.addArgument("--" + Constants.ARG_SHARDS)
+                .type(Integer.class)
+                .help("Divide the rows of the grid over this many shards, each simulating its own part of the grid " +
+                        "on its own platform in its own JVM. Agents move between shards when they cross the border " +
+                        "of their shard. Requires --" + Constants.ARG_HEADLESS + " and a fixed number of time steps")
+                .setDefault(1);
+
+        parser.addArgument("--shard-port")
+                .dest(Constants.ARG_SHARD_PORT)
+                .type(Integer.class)
+                .help("The port on which the coordinator of a sharded simulation accepts the shards. If 0, any free " +
+                        "port is used")
+                .setDefault(0);
+
+        parser.addArgument("--external-shards")
+                .dest(Constants.ARG_EXTERNAL_SHARDS)
+                .action(Arguments.storeTrue())
+                .help("Do not launch the shards on this machine, but wait for them to be started by hand, e.g., on " +
+                        "other machines, with the same arguments plus --shard-index and --coordinator");
+
+        parser.addArgument("--shard-index")
+                .dest(Constants.ARG_SHARD_INDEX)
+                .type(Integer.class)
+                .help("Run only this shard of a sharded simulation. Set by the coordinator for the shards it " +
+                        "launches")
+                .setDefault(0);
+
+        parser.addArgument("--" + Constants.ARG_COORDINATOR)
+                .help("The host and port (host:port) of the coordinator of the sharded simulation this shard " +
+                        "belongs to. Set by the coordinator for the shards it launches");
+
+        parser.addArgument("--" + Constants.ARG_KERNEL)
+                .action(Arguments.storeTrue())
+                .help("Run the movement model on a plain array-based kernel instead of on Sim-2APL agents. Seeded " +
+                        "runs produce the same hash stream as with --" + Constants.ARG_DETERMINISTIC + ". Only the " +
+                        "grid size, agents, steps, threads, seed and checksum file options apply; options that change the " +
+                        "movement model, churn and sharding are rejected");
+
         return parser;
     }
 
@@ -0,0 +1,109 @@
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import simulation.EngineMode;
+import simulation.ScalingHarness;
+import util.Constants;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class Scaling {
+
+    public static void main(String[] args) {
+        ArgumentParser parser = createParser();
+        try {
+            Namespace ns = parser.parseArgs(args);
+            new ScalingHarness(
+                    ns.getList(Constants.ARG_SWEEP_MODES),
+                    ns.getList(Constants.ARG_N_AGENTS),
+                    ns.getList(Constants.ARG_SCALING_DENSITIES),
+                    ns.getList(Constants.ARG_THREADS),
+                    ns.getInt(Constants.ARG_STEPS),
+                    ns.getInt(Constants.ARG_SCALING_WARMUP),
+                    ns.getInt(Constants.ARG_SCALING_REPETITIONS),
+                    ns.getInt(Constants.ARG_SEED)
+            ).run(
+                    Paths.get(ns.getString(Constants.ARG_SWEEP_OUTPUT)),
+                    Paths.get(ns.getString(Constants.ARG_SCALING_SUMMARY))
+            );
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(1);
+        } catch (IllegalArgumentException | IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static ArgumentParser createParser() {
+        ArgumentParser parser = ArgumentParsers.newFor("Sim-2APL Demonstration Scaling Harness").build()
+                .defaultHelp(true)
+                .description("Runs the demonstration simulation headless for every combination of the given " +
+                        "engine modes, numbers of agents, densities and numbers of platform threads, one run at a " +
+                        "time.\n" +
+                        "The throughput, time per phase, peak heap usage and garbage collection time of each run " +
+                        "are written to the output file, and the parallel efficiency of each combination to the " +
+                        "summary file.");
+
+        parser.addArgument("-m", "--" + Constants.ARG_SWEEP_MODES)
+                .type(Arguments.caseInsensitiveEnumType(EngineMode.class))
+                .nargs("+")
+                .help("The engine modes to measure. Every mode is reported separately in the output and the summary")
+                .setDefault(Collections.singletonList(EngineMode.DETERMINISTIC));
+
+        parser.addArgument("-a", "--" + Constants.ARG_N_AGENTS)
+                .type(Integer.class)
+                .nargs("+")
+                .help("The numbers of agents to run the simulation with")
+                .setDefault(Arrays.asList(1000, 10000, 100000, 1000000));
+
+        parser.addArgument("--" + Constants.ARG_SCALING_DENSITIES)
+                .type(Double.class)
+                .nargs("+")
+                .help("The fractions of the cells of the grid occupied by agents. The grid is square, and sized to " +
+                        "the number of agents")
+                .setDefault(Collections.singletonList(0.1));
+
+        parser.addArgument("-t", "--" + Constants.ARG_THREADS)
+                .type(Integer.class)
+                .nargs("+")
+                .help("The numbers of platform threads. Parallel efficiency is relative to the smallest number")
+                .setDefault(Arrays.asList(1, 2, 4, 8));
+
+        parser.addArgument("-n", "--" + Constants.ARG_STEPS)
+                .type(Integer.class)
+                .help("The number of time steps of each run")
+                .setDefault(50);
+
+        parser.addArgument("-w", "--" + Constants.ARG_SCALING_WARMUP)
+                .type(Integer.class)
+                .help("The number of unmeasured runs of each combination, to warm up the JVM")
+                .setDefault(1);
+
+        parser.addArgument("-r", "--" + Constants.ARG_SCALING_REPETITIONS)
+                .type(Integer.class)
+                .help("The number of measured runs of each combination")
+                .setDefault(3);
+
+        parser.addArgument("-s", "--" + Constants.ARG_SEED)
+                .type(Integer.class)
+                .help("The seed of all runs")
+                .setDefault(42);
+
+        parser.addArgument("-o", "--" + Constants.ARG_SWEEP_OUTPUT)
+                .help("The CSV file to write the measurements of each run to")
+                .setDefault("scaling.csv");
+
+        parser.addArgument("--" + Constants.ARG_SCALING_SUMMARY)
+                .help("The CSV file to write the parallel efficiency of each combination to")
+                .setDefault("scaling-summary.csv");
+
+        return parser;
+    }
+
+}
@@ -0,0 +1,117 @@
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import simulation.EngineMode;
+import simulation.SweepRunner;
+import util.Constants;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+public class Sweep {
+
+    public static void main(String[] args) {
+        ArgumentParser parser = createParser();
+        try {
+            Namespace ns = parser.parseArgs(args);
+            int threads = ns.getInt(Constants.ARG_THREADS);
+            Integer parallelism = ns.getInt(Constants.ARG_SWEEP_PARALLEL);
+            if (parallelism == null) {
+                // Each run has its own pool of deliberation threads, so do not oversubscribe the cores by default
+                parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / threads);
+            }
+
+            List<Namespace> scenarios = SweepRunner.createScenarios(
+                    ns.getList(Constants.ARG_SWEEP_MODES),
+                    ns.getList(Constants.ARG_SWEEP_SEEDS),
+                    ns.getList(Constants.ARG_SWEEP_WIDTHS),
+                    ns.getList(Constants.ARG_SWEEP_HEIGHTS),
+                    ns.getList(Constants.ARG_N_AGENTS),
+                    ns.getList(Constants.ARG_STEPS),
+                    threads
+            );
+            new SweepRunner(
+                    scenarios,
+                    parallelism,
+                    Paths.get(ns.getString(Constants.ARG_SWEEP_OUTPUT))
+            ).run();
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(1);
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static ArgumentParser createParser() {
+        ArgumentParser parser = ArgumentParsers.newFor("Sim-2APL Demonstration Parameter Sweep").build()
+                .defaultHelp(true)
+                .description("Runs the demonstration simulation headless for every combination of the given " +
+                        "engine modes, seeds, grid sizes, numbers of agents and numbers of time steps.\n" +
+                        "All runs are executed concurrently inside one JVM, and a summary of each run is written to " +
+                        "the output file as soon as it finishes.\n" +
+                        "Each run creates its own platform with its own pool of --" + Constants.ARG_THREADS +
+                        " deliberation threads, so up to --" + Constants.ARG_SWEEP_PARALLEL + " times --" +
+                        Constants.ARG_THREADS + " threads deliberate at the same time.");
+
+        parser.addArgument("--" + Constants.ARG_SWEEP_MODES)
+                .type(Arguments.caseInsensitiveEnumType(EngineMode.class))
+                .nargs("+")
+                .help("The engine modes to run each configuration in. Only the deterministic and pipelined modes " +
+                        "reproduce seeded runs exactly")
+                .setDefault(Collections.singletonList(EngineMode.DETERMINISTIC));
+
+        parser.addArgument("--" + Constants.ARG_SWEEP_SEEDS)
+                .type(Integer.class)
+                .nargs("+")
+                .help("The seeds to run each configuration with")
+                .setDefault(Collections.singletonList(42));
+
+        parser.addArgument("--" + Constants.ARG_SWEEP_WIDTHS)
+                .type(Integer.class)
+                .nargs("+")
+                .help("The numbers of horizontal cells in the grid")
+                .setDefault(Collections.singletonList(10));
+
+        parser.addArgument("--" + Constants.ARG_SWEEP_HEIGHTS)
+                .type(Integer.class)
+                .nargs("+")
+                .help("The numbers of vertical cells in the grid")
+                .setDefault(Collections.singletonList(10));
+
+        parser.addArgument("--" + Constants.ARG_N_AGENTS)
+                .type(Integer.class)
+                .nargs("+")
+                .help("The numbers of agents to initiate the simulations with")
+                .setDefault(Collections.singletonList(4));
+
+        parser.addArgument("--" + Constants.ARG_STEPS)
+                .type(Integer.class)
+                .nargs("+")
+                .help("The numbers of time steps to simulate")
+                .setDefault(Collections.singletonList(100));
+
+        parser.addArgument("-t", "--" + Constants.ARG_THREADS)
+                .type(Integer.class)
+                .help("The number of platform threads each individual simulation uses")
+                .setDefault(1);
+
+        parser.addArgument("-p", "--" + Constants.ARG_SWEEP_PARALLEL)
+                .type(Integer.class)
+                .help("The maximum number of simulations to run at the same time. By default, the number of " +
+                        "available cores divided by the number of threads per simulation, so the deliberation " +
+                        "threads of all runs together do not exceed the number of cores");
+
+        parser.addArgument("-o", "--" + Constants.ARG_SWEEP_OUTPUT)
+                .help("The CSV file to write the summary of each run to")
+                .setDefault("sweep.csv");
+
+        return parser;
+    }
+
+}
@@ -0,0 +1,60 @@
+import environment.EnvironmentConsoleView;
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import simulation.export.SharedStateFrame;
+import simulation.export.SharedStateReader;
+import util.Constants;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+public class Viewer {
+
+    public static void main(String[] args) {
+        ArgumentParser parser = createParser();
+        try {
+            Namespace ns = parser.parseArgs(args);
+            int interval = ns.getInt(Constants.ARG_VIEWER_INTERVAL);
+            try (SharedStateReader reader = new SharedStateReader(Paths.get(ns.getString(Constants.ARG_VIEWER_FILE)))) {
+                SharedStateFrame frame = new SharedStateFrame();
+                EnvironmentConsoleView<String> view = new EnvironmentConsoleView<>(frame);
+
+                // Only the latest frame is drawn, so frames published in between two redraws are skipped
+                while (!Thread.currentThread().isInterrupted()) {
+                    if (reader.read(frame)) {
+                        view.draw(frame.getTimeStep(), Collections.emptyMap());
+                    }
+                    Thread.sleep(interval);
+                }
+            }
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(1);
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static ArgumentParser createParser() {
+        ArgumentParser parser = ArgumentParsers.newFor("Sim-2APL Demonstration Viewer").build()
+                .defaultHelp(true)
+                .description("Displays the state of a running simulation that publishes its state with " +
+                        "--export-file.\nThe simulation never waits for the viewer, and any number of viewers can " +
+                        "display the same simulation.");
+
+        parser.addArgument(Constants.ARG_VIEWER_FILE)
+                .help("The file the simulation publishes its state to");
+
+        parser.addArgument("-i", "--" + Constants.ARG_VIEWER_INTERVAL)
+                .type(Integer.class)
+                .help("The number of milliseconds between redraws")
+                .setDefault(100);
+
+        return parser;
+    }
+
+}
@@ -0,0 +1,270 @@
+package environment;
+
+import java.awt.*;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A thread-safe variant of the ToyGridWorld, which allows agents to commit their moves concurrently, e.g.,
+ * directly from their own deliberation threads instead of after all agents have finished deliberating.
+ *
+ * Each agent is assigned an integer handle when it is registered. The grid is stored as a flat array of cells,
+ * each containing the handle of the agent occupying it (or 0 if the cell is empty). An agent can only enter
+ * a cell by atomically claiming it with a compare-and-set, so no two agents can ever occupy the same cell,
+ * regardless of how many threads are moving agents at the same time.
+ *
+ * Note that a single agent should not be moved by multiple threads at the same time. Because the new cell
+ * is claimed before the old cell is released, an agent may briefly be visible in both cells to concurrent readers.
+ *
+ * @param <A>   The generic type with which the agents will be represented
+ */
+public class ConcurrentToyGridWorld<A> implements IToyGridWorld<A> {
+
+    private static final int EMPTY = 0;
+
+    /**
+     * Only used for sampling free points, which typically happens before the simulation starts.
+     * java.util.Random is thread-safe, so this does not break under concurrent use, but it is contended.
+     */
+    private final Random random;
+
+    private final int width;
+    private final int height;
+
+    // Row-major cells, i.e., the cell (x,y) is stored at index y * width + x
+    // The (0,0) coordinate is in the top left corner
+    private final AtomicIntegerArray cells;
+
+    // Both indexed by (handle - 1)
+    private final AtomicReferenceArray<A> agents;
+    private final AtomicIntegerArray agentCells;
+
+    private final ConcurrentMap<A, Integer> agentHandles = new ConcurrentHashMap<>();
+    private final AtomicInteger nextHandle = new AtomicInteger(1);
+
+    // Handles of removed agents, which are reused before new handles are created
+    private final Queue<Integer> freeHandles = new ConcurrentLinkedQueue<>();
+
+    // XOR is associative and commutative, so concurrent updates can be striped, like the counts of a LongAdder
+    private final LongAccumulator stateHash = new LongAccumulator((a, b) -> a ^ b, 0);
+
+    /**
+     * Instantiate a new ConcurrentToyGridWorld
+     *
+     * @param random    Random object for stochastic decisions
+     * @param width     Width of the grid world
+     * @param height    Height of the grid world
+     */
+    public ConcurrentToyGridWorld(Random random, int width, int height) {
+        this.random = random;
+        this.width = width;
+        this.height = height;
+        this.cells = new AtomicIntegerArray(width * height);
+
+        // There can never be more agents than cells
+        this.agents = new AtomicReferenceArray<>(width * height);
+        this.agentCells = new AtomicIntegerArray(width * height);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * An agent that is already registered is rejected. The same agent should not be registered by multiple
+     * threads at the same time. A rejected registration leaves no trace, i.e., its handle is returned immediately
+     */
+    @Override
+    public boolean registerAgent(A agent, Point position) {
+        int cell = toCell(position.x, position.y);
+        if (this.agentHandles.containsKey(agent) || this.cells.get(cell) != EMPTY) {
+            return false;
+        }
+
+        // Fill the slot before the cell is published, so getAgentAt never sees a claimed cell without its agent
+        int handle = createHandle();
+        this.agents.set(handle - 1, agent);
+        this.agentCells.set(handle - 1, cell);
+
+        if (!this.cells.compareAndSet(cell, EMPTY, handle)) {
+            // Another agent claimed the cell first
+            this.agents.set(handle - 1, null);
+            this.freeHandles.add(handle);
+            return false;
+        }
+
+        this.agentHandles.put(agent, handle);
+        this.stateHash.accumulate(StateHash.key(agent, position.x, position.y));
+        return true;
+    }
+
+    /**
+     * Creates a new unique handle for an agent
+     * @return  New handle, which is always larger than 0
+     */
+    private int createHandle() {
+        Integer free = this.freeHandles.poll();
+        if (free != null) {
+            return free;
+        }
+
+        int handle = this.nextHandle.getAndIncrement();
+        if (handle > this.agents.length()) {
+            throw new IllegalStateException("Cannot register more agents than there are cells in the grid");
+        }
+        return handle;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The agent should not be moved concurrently with its removal. Other agents can be moved concurrently
+     */
+    @Override
+    public boolean removeAgent(A agent) {
+        Integer handle = this.agentHandles.remove(agent);
+        if (handle == null) {
+            return false;
+        }
+
+        boolean located = this.agents.getAndSet(handle - 1, null) != null;
+        if (located) {
+            int cell = this.agentCells.get(handle - 1);
+            this.cells.compareAndSet(cell, handle, EMPTY);
+            this.stateHash.accumulate(StateHash.key(agent, cell % this.width, cell / this.width));
+        }
+        this.freeHandles.add(handle);
+        return located;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Point getPosition(A agent) {
+        Integer handle = this.agentHandles.get(agent);
+        if (handle == null || this.agents.get(handle - 1) == null) {
+            return null;
+        }
+        int cell = this.agentCells.get(handle - 1);
+        return new Point(cell % this.width, cell / this.width);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public A getAgentAt(Point position) {
+        int handle = this.cells.get(toCell(position.x, position.y));
+        return handle == EMPTY ? null : this.agents.get(handle - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This method can safely be called concurrently for different agents
+     */
+    @Override
+    public boolean move(A agent, Direction direction) {
+        int handle = this.agentHandles.get(agent);
+        int cell = this.agentCells.get(handle - 1);
+        int x = cell % this.width;
+        int y = cell / this.width;
+        switch (direction) {
+            case UP:
+                y--;
+                break;
+            case DOWN:
+                y++;
+                break;
+            case LEFT:
+                x--;
+                break;
+            case RIGHT:
+                x++;
+                break;
+        }
+
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            // Cannot cross grid boundaries
+            return false;
+        }
+
+        int newCell = toCell(x, y);
+        if (!this.cells.compareAndSet(newCell, EMPTY, handle)) {
+            // Cannot move to occupied cell (or another agent claimed it first)
+            return false;
+        }
+
+        this.agentCells.set(handle - 1, newCell);
+        this.cells.set(cell, EMPTY);
+        this.stateHash.accumulate(StateHash.key(agent, cell % this.width, cell / this.width)
+                ^ StateHash.key(agent, x, y));
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only consistent while no agents are placed, removed or moved concurrently
+     */
+    @Override
+    public long getStateHash() {
+        return this.stateHash.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Point getRandomFreePoint(boolean avoidEdges) {
+        int x, y;
+        do {
+            x = getIntInBounds(avoidEdges ? 1 : 0, width - (avoidEdges ? 1 : 0));
+            y = getIntInBounds(avoidEdges ? 1 : 0, height - (avoidEdges ? 1 : 0));
+        } while (this.cells.get(toCell(x, y)) != EMPTY);
+        return new Point(x, y);
+    }
+
+    /**
+     * Converts a coordinate to the index of the cell in the flat cell array
+     * @param x X-coordinate
+     * @param y Y-coordinate
+     * @return  Index of the cell
+     */
+    private int toCell(int x, int y) {
+        return y * this.width + x;
+    }
+
+    /**
+     * Sample a random point inside the given bounds
+     * @param min Lower bound (inclusive)
+     * @param max Upper bound (exclusive)
+     * @return Random point between min and max
+     */
+    private int getIntInBounds(int min, int max) {
+        return random.nextInt(max - min) + min;
+    }
+}
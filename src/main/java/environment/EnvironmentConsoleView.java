@@ -19,14 +19,22 @@ public class EnvironmentConsoleView<A> implements IEnvironmentView<A> {
 
     private final IToyGridWorld<A> toyGridWorld;
 
+    // Installing the ANSI console takes a noticeable part of the startup time of short runs, so it is postponed
+    // until the environment is first drawn
+    private boolean consoleInstalled = false;
+
     public EnvironmentConsoleView(IToyGridWorld<A> toyGridWorld) {
         this.toyGridWorld = toyGridWorld;
-        AnsiConsole.systemInstall();
-        System.setProperty("org.jline.terminal.dumb", "true");
     }
 
     @Override
     public void draw(long timeStep, Map<Point, List<A>> targets) {
+        if (!consoleInstalled) {
+            AnsiConsole.systemInstall();
+            System.setProperty("org.jline.terminal.dumb", "true");
+            consoleInstalled = true;
+        }
+
         System.out.println(ansi().eraseScreen());
         drawLine();
         for(int r = 0; r < toyGridWorld.getHeight(); r++) {
@@ -13,6 +13,14 @@ public interface IToyGridWorld<A> {
      */
     boolean registerAgent(A agent, Point position);
 
+    /**
+     * Remove an agent from the environment, freeing the cell it occupies
+     *
+     * @param agent     Agent identifier
+     * @return          True iff the agent was located in the environment
+     */
+    boolean removeAgent(A agent);
+
     /**
      * @return the width of the grid world
      */
@@ -54,4 +62,12 @@ public interface IToyGridWorld<A> {
      * @return Random point within the grid boundaries that is not yet occupied
      */
     Point getRandomFreePoint(boolean avoidEdges);
+
+    /**
+     * A hash of the positions of all agents, which is maintained incrementally, so it can be compared between runs
+     * after every time step. See StateHash
+     *
+     * @return  The XOR of the StateHash keys of all agents and the cells they occupy
+     */
+    long getStateHash();
 }
@@ -0,0 +1,145 @@
+package environment;
+
+/**
+ * A minimal open-addressing hash map with primitive long keys, using linear probing and backward-shift
+ * deletion, so no tombstones accumulate when entries are removed.
+ *
+ * Null values are not allowed, as a null value marks an empty slot.
+ *
+ * @param <V>   Type of the values in the map
+ */
+final class LongKeyMap<V> {
+
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    LongKeyMap() {
+        this.keys = new long[MINIMUM_CAPACITY];
+        this.values = new Object[MINIMUM_CAPACITY];
+        this.mask = MINIMUM_CAPACITY - 1;
+    }
+
+    /**
+     * @return  The number of entries in the map
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @param key   Key to look up
+     * @return      The value stored for the key, or null if the key is not present
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        for (int i = slot(key); this.values[i] != null; i = (i + 1) & this.mask) {
+            if (this.keys[i] == key) {
+                return (V) this.values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store a value for a key, replacing any existing value
+     *
+     * @param key   Key to store the value under
+     * @param value Value to store. Cannot be null
+     */
+    void put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("LongKeyMap does not support null values");
+        }
+
+        int i = slot(key);
+        for (; this.values[i] != null; i = (i + 1) & this.mask) {
+            if (this.keys[i] == key) {
+                this.values[i] = value;
+                return;
+            }
+        }
+
+        this.keys[i] = key;
+        this.values[i] = value;
+        // Keep the load factor at or below 0.5, so probe sequences stay short
+        if (++this.size * 2 > this.values.length) {
+            resize(this.values.length * 2);
+        }
+    }
+
+    /**
+     * Remove the entry for a key, if it is present
+     *
+     * @param key   Key to remove
+     * @return      The value that was removed, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int i = slot(key);
+        while (this.values[i] != null && this.keys[i] != key) {
+            i = (i + 1) & this.mask;
+        }
+        if (this.values[i] == null) {
+            return null;
+        }
+
+        V removed = (V) this.values[i];
+
+        // Shift back all subsequent entries in the same cluster that would no longer be reachable otherwise
+        int j = i;
+        while (true) {
+            j = (j + 1) & this.mask;
+            if (this.values[j] == null) {
+                break;
+            }
+            int home = slot(this.keys[j]);
+            boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!reachable) {
+                this.keys[i] = this.keys[j];
+                this.values[i] = this.values[j];
+                i = j;
+            }
+        }
+
+        this.values[i] = null;
+        this.size--;
+        return removed;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = slot(oldKeys[i]);
+                while (this.values[j] != null) {
+                    j = (j + 1) & this.mask;
+                }
+                this.keys[j] = oldKeys[i];
+                this.values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * @param key   Key to find the home slot of
+     * @return      Slot at which probing for the key starts
+     */
+    private int slot(long key) {
+        // Finalization step of MurmurHash3, so neighbouring keys are spread over the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & this.mask;
+    }
+}
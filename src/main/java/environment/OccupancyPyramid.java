@@ -0,0 +1,230 @@
+package environment;
+
+/**
+ * A pyramid of occupancy counts over a grid, from which a free cell can be sampled in logarithmic time.
+ *
+ * The lowest level holds one bit per cell. Every level above it divides the grid into square tiles twice as wide as
+ * those of the level below, and holds the number of occupied cells in each tile, so each tile sums the (at most) four
+ * tiles below it. The top level is a single tile covering the whole grid. Occupying or vacating a cell updates one
+ * count per level, and a move only updates the levels below the smallest tile containing both cells.
+ *
+ * To sample a free cell, the pyramid is descended from the top, choosing each next tile in proportion to the number
+ * of free cells in it. Every free cell is equally likely, which means that tiles with many free cells, i.e., with a
+ * low density of agents, are more likely to contain the sampled cell than crowded tiles.
+ *
+ * The pyramid takes one bit plus about 4/3 of a byte per cell. It is not thread-safe: it should only be updated
+ * while no one samples from it.
+ */
+public class OccupancyPyramid {
+
+    private final int width;
+    private final int height;
+
+    // Row-major bits of the cells
+    private final long[] cells;
+
+    // Level k (1 <= k <= top) divides the grid into tiles of 2^k x 2^k cells. Level 0 is stored in the cell bits
+    private final int top;
+    private final int[] tilesX;
+    private final int[] tilesY;
+    private final int[][] counts;
+
+    /**
+     * @param width     Width of the grid
+     * @param height    Height of the grid
+     */
+    public OccupancyPyramid(int width, int height) {
+        if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The occupancy pyramid supports grids of 1 to " + Integer.MAX_VALUE +
+                    " cells, got " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.cells = new long[(int) (((long) width * height + 63) >>> 6)];
+
+        this.top = 32 - Integer.numberOfLeadingZeros(Math.max(width, height) - 1);
+        this.tilesX = new int[this.top + 1];
+        this.tilesY = new int[this.top + 1];
+        this.counts = new int[this.top + 1][];
+        for (int level = 0; level <= this.top; level++) {
+            this.tilesX[level] = (int) ((width + (1L << level) - 1) >>> level);
+            this.tilesY[level] = (int) ((height + (1L << level) - 1) >>> level);
+            if (level > 0) {
+                this.counts[level] = new int[this.tilesX[level] * this.tilesY[level]];
+            }
+        }
+    }
+
+    /**
+     * Mark a cell as occupied
+     *
+     * @param x Column of the cell
+     * @param y Row of the cell
+     * @return  False if the cell was already occupied
+     */
+    public boolean occupy(int x, int y) {
+        if (isOccupied(x, y)) {
+            return false;
+        }
+        setBit(x, y);
+        update(x, y, this.top, 1);
+        return true;
+    }
+
+    /**
+     * Mark a cell as free
+     *
+     * @param x Column of the cell
+     * @param y Row of the cell
+     * @return  False if the cell was already free
+     */
+    public boolean vacate(int x, int y) {
+        if (!isOccupied(x, y)) {
+            return false;
+        }
+        clearBit(x, y);
+        update(x, y, this.top, -1);
+        return true;
+    }
+
+    /**
+     * Move the occupant of a cell to a free cell
+     *
+     * @param fromX Column of the occupied cell
+     * @param fromY Row of the occupied cell
+     * @param toX   Column of the free cell
+     * @param toY   Row of the free cell
+     */
+    public void move(int fromX, int fromY, int toX, int toY) {
+        if (!isOccupied(fromX, fromY) || isOccupied(toX, toY)) {
+            throw new IllegalStateException("Cannot move from (" + fromX + ", " + fromY + ") to (" + toX + ", " + toY +
+                    ")");
+        }
+        clearBit(fromX, fromY);
+        setBit(toX, toY);
+
+        // The tiles containing both cells keep their count
+        int level = 0;
+        while (level < this.top && ((fromX ^ toX) >>> level != 0 || (fromY ^ toY) >>> level != 0)) {
+            level++;
+        }
+        update(fromX, fromY, level - 1, -1);
+        update(toX, toY, level - 1, 1);
+    }
+
+    /**
+     * Add a difference to the counts of the tiles containing a cell, from level 1 up to the given level
+     */
+    private void update(int x, int y, int maxLevel, int difference) {
+        for (int level = 1; level <= maxLevel; level++) {
+            this.counts[level][(y >>> level) * this.tilesX[level] + (x >>> level)] += difference;
+        }
+    }
+
+    /**
+     * @param x Column of the cell
+     * @param y Row of the cell
+     * @return  True iff the cell is occupied
+     */
+    public boolean isOccupied(int x, int y) {
+        long index = (long) y * this.width + x;
+        return (this.cells[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    private void setBit(int x, int y) {
+        long index = (long) y * this.width + x;
+        this.cells[(int) (index >>> 6)] |= 1L << index;
+    }
+
+    private void clearBit(int x, int y) {
+        long index = (long) y * this.width + x;
+        this.cells[(int) (index >>> 6)] &= ~(1L << index);
+    }
+
+    /**
+     * @return  The number of free cells in the grid
+     */
+    public int getFreeCount() {
+        return this.width * this.height - getOccupied(this.top, 0, 0);
+    }
+
+    /**
+     * @param level Level of the tile, 0 for a single cell
+     * @param tileX Column of the tile within its level
+     * @param tileY Row of the tile within its level
+     * @return      The number of occupied cells in the tile
+     */
+    public int getOccupied(int level, int tileX, int tileY) {
+        if (level == 0) {
+            return isOccupied(tileX, tileY) ? 1 : 0;
+        }
+        return this.counts[level][tileY * this.tilesX[level] + tileX];
+    }
+
+    /**
+     * @param level Level of the tile, 0 for a single cell
+     * @param tileX Column of the tile within its level
+     * @param tileY Row of the tile within its level
+     * @return      The number of cells of the grid in the tile. Tiles at the right and bottom edge of the grid may be
+     *              cut off
+     */
+    public int getCapacity(int level, int tileX, int tileY) {
+        long columns = Math.min(this.width, (tileX + 1L) << level) - ((long) tileX << level);
+        long rows = Math.min(this.height, (tileY + 1L) << level) - ((long) tileY << level);
+        return (int) (columns * rows);
+    }
+
+    /**
+     * Find a free cell by its rank, in the order in which the pyramid is descended. If the rank is drawn uniformly
+     * between 0 and the number of free cells, every free cell is equally likely to be found
+     *
+     * @param rank  Number of free cells to skip, at least 0 and less than getFreeCount()
+     * @return      The index of the free cell, i.e., its row times the width of the grid plus its column
+     */
+    public int sampleFree(int rank) {
+        if (rank < 0 || rank >= getFreeCount()) {
+            throw new IllegalArgumentException("Rank " + rank + " is not the rank of one of the " + getFreeCount() +
+                    " free cells");
+        }
+
+        int tileX = 0;
+        int tileY = 0;
+        for (int level = this.top; level > 0; level--) {
+            // Choose the child tile containing the free cell with the remaining rank
+            int child = level - 1;
+            descend:
+            for (int dy = 0; dy < 2; dy++) {
+                for (int dx = 0; dx < 2; dx++) {
+                    int childX = 2 * tileX + dx;
+                    int childY = 2 * tileY + dy;
+                    if (childX >= this.tilesX[child] || childY >= this.tilesY[child]) {
+                        continue;
+                    }
+                    int free = getCapacity(child, childX, childY) - getOccupied(child, childX, childY);
+                    if (rank < free) {
+                        tileX = childX;
+                        tileY = childY;
+                        break descend;
+                    }
+                    rank -= free;
+                }
+            }
+        }
+        return tileY * this.width + tileX;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * @return  The number of levels above the cells
+     */
+    public int getLevels() {
+        return this.top;
+    }
+}
@@ -0,0 +1,349 @@
+package environment;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The part of a grid world owned by one shard of a sharded simulation.
+ *
+ * The shard owns a band of consecutive rows spanning the full width of the grid. Agents are only placed in those
+ * rows, but all coordinates are those of the full grid, so agents do not need to know about the shards. The rows
+ * directly above and below the band (the halo) are owned by the neighbouring shards. The shard only knows which cells
+ * of its halo were occupied at the end of the previous time step.
+ *
+ * A move into the halo is not carried out, because the cell belongs to another shard. If the cell was free at the end
+ * of the previous time step, the move is recorded as a crossing instead, for the shard that owns the cell to accept or
+ * reject. The move itself fails, so the agent stays in its cell until the crossing is accepted.
+ *
+ * @param <A>   The generic type with which the agents will be represented
+ */
+public class ShardGridWorld<A> implements IToyGridWorld<A> {
+
+    /**
+     * By using a random object, stochastic updates of the environment can be seeded
+     * for repeated deterministic execution.
+     * For stochastic execution, the random object can be initialized without a seed
+     */
+    private final Random random;
+
+    private final int width;
+    private final int height;
+    private final int top;
+    private final int bottom;
+
+    // Row-major cells of the owned rows, starting at the top row
+    private final Object[] cells;
+    private final Map<A, Point> agentLocations = new HashMap<>();
+
+    // Occupancy of the halo rows, one bit per column
+    private final long[] haloAbove;
+    private final long[] haloBelow;
+
+    // Moves into the halo during the current time step
+    private final List<Crossing<A>> crossings = new ArrayList<>();
+
+    // Updated whenever an agent is placed, removed or moved
+    private long stateHash = 0;
+
+    /**
+     * @param random    Random object for stochastic decisions
+     * @param width     Width of the full grid
+     * @param height    Height of the full grid
+     * @param top       First row owned by this shard
+     * @param bottom    Row after the last row owned by this shard
+     */
+    public ShardGridWorld(Random random, int width, int height, int top, int bottom) {
+        if (top < 0 || bottom > height || top >= bottom) {
+            throw new IllegalArgumentException("A shard should own at least one row of the grid, got rows " + top +
+                    " to " + bottom + " of " + height);
+        }
+        this.random = random;
+        this.width = width;
+        this.height = height;
+        this.top = top;
+        this.bottom = bottom;
+        this.cells = new Object[width * (bottom - top)];
+        this.haloAbove = new long[rowWords(width)];
+        this.haloBelow = new long[rowWords(width)];
+    }
+
+    /**
+     * @param width Width of the grid
+     * @return      The number of longs needed to store one bit for each cell of a row
+     */
+    public static int rowWords(int width) {
+        return (width + 63) >>> 6;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * @return  The first row owned by this shard
+     */
+    public int getTop() {
+        return this.top;
+    }
+
+    /**
+     * @return  The row after the last row owned by this shard
+     */
+    public int getBottom() {
+        return this.bottom;
+    }
+
+    /**
+     * @param position  A cell of the full grid
+     * @return          True iff the cell is owned by this shard
+     */
+    public boolean isOwned(Point position) {
+        return isOwned(position.x, position.y);
+    }
+
+    private boolean isOwned(int x, int y) {
+        return x >= 0 && x < this.width && y >= this.top && y < this.bottom;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Agents can only be placed in the rows owned by this shard
+     */
+    @Override
+    public boolean registerAgent(A agent, Point position) {
+        if (!isOwned(position) || getAgentAt(position) != null) {
+            return false;
+        }
+        this.cells[index(position.x, position.y)] = agent;
+        this.agentLocations.put(agent, position);
+        this.stateHash ^= StateHash.key(agent, position.x, position.y);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeAgent(A agent) {
+        Point position = this.agentLocations.remove(agent);
+        if (position == null) {
+            return false;
+        }
+        this.cells[index(position.x, position.y)] = null;
+        this.stateHash ^= StateHash.key(agent, position.x, position.y);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Point getPosition(A agent) {
+        return this.agentLocations.get(agent);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Agents in cells that are not owned by this shard are not known, so null is returned for those cells
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public A getAgentAt(Point position) {
+        return isOwned(position) ? (A) this.cells[index(position.x, position.y)] : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A move into a free cell of the halo is recorded as a crossing, but fails. See getCrossings()
+     */
+    @Override
+    public boolean move(A agent, Direction direction) {
+        Point agentPosition = getPosition(agent);
+        int x = agentPosition.x;
+        int y = agentPosition.y;
+        switch (direction) {
+            case UP:
+                y--;
+                break;
+            case DOWN:
+                y++;
+                break;
+            case LEFT:
+                x--;
+                break;
+            case RIGHT:
+                x++;
+                break;
+        }
+
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            // Cannot cross grid boundaries
+            return false;
+        }
+
+        if (y == this.top - 1 || y == this.bottom) {
+            // The cell belongs to a neighbouring shard, which decides once it has moved its own agents
+            if (!isHaloOccupied(x, y)) {
+                this.crossings.add(new Crossing<>(agent, x, y));
+            }
+            return false;
+        }
+
+        int newIndex = index(x, y);
+        if (this.cells[newIndex] != null) {
+            // Cannot move to occupied cell
+            return false;
+        }
+
+        this.cells[index(agentPosition.x, agentPosition.y)] = null;
+        this.cells[newIndex] = agent;
+        this.agentLocations.put(agent, new Point(x, y));
+        this.stateHash ^= StateHash.key(agent, agentPosition.x, agentPosition.y) ^ StateHash.key(agent, x, y);
+        return true;
+    }
+
+    /**
+     * @param x Column of a halo cell
+     * @param y Row of a halo cell
+     * @return  True iff the cell was occupied at the end of the previous time step, as far as this shard knows
+     */
+    public boolean isHaloOccupied(int x, int y) {
+        long[] halo = y < this.top ? this.haloAbove : this.haloBelow;
+        return (halo[x >>> 6] & (1L << x)) != 0;
+    }
+
+    /**
+     * Replace the occupancy of the halo rows by the occupancy of the border rows of the neighbouring shards
+     *
+     * @param above Occupancy of the last row of the shard above, one bit per column, or null if there is no such shard
+     * @param below Occupancy of the first row of the shard below, one bit per column, or null if there is no such shard
+     */
+    public void setHalo(long[] above, long[] below) {
+        copyHalo(above, this.haloAbove);
+        copyHalo(below, this.haloBelow);
+    }
+
+    private static void copyHalo(long[] source, long[] halo) {
+        if (source == null) {
+            Arrays.fill(halo, 0);
+        } else {
+            System.arraycopy(source, 0, halo, 0, halo.length);
+        }
+    }
+
+    /**
+     * @param y A row owned by this shard
+     * @return  Occupancy of the row, one bit per column
+     */
+    public long[] getRowOccupancy(int y) {
+        long[] row = new long[rowWords(this.width)];
+        int offset = index(0, y);
+        for (int x = 0; x < this.width; x++) {
+            if (this.cells[offset + x] != null) {
+                row[x >>> 6] |= 1L << x;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * @return  The moves into the halo recorded since the crossings were last cleared, in the order in which they were
+     *          attempted
+     */
+    public List<Crossing<A>> getCrossings() {
+        return this.crossings;
+    }
+
+    public void clearCrossings() {
+        this.crossings.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getStateHash() {
+        return this.stateHash;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The point is in one of the rows owned by this shard
+     */
+    @Override
+    public Point getRandomFreePoint(boolean avoidEdges) {
+        int minX = avoidEdges ? 1 : 0;
+        int minY = Math.max(this.top, avoidEdges ? 1 : 0);
+        int maxY = Math.min(this.bottom, this.height - (avoidEdges ? 1 : 0));
+        if (maxY <= minY || this.agentLocations.size() == this.cells.length) {
+            throw new IllegalStateException("There are no free cells in rows " + this.top + " to " + this.bottom);
+        }
+        while (true) {
+            int x = this.random.nextInt(this.width - 2 * minX) + minX;
+            int y = this.random.nextInt(maxY - minY) + minY;
+            if (this.cells[index(x, y)] == null) {
+                return new Point(x, y);
+            }
+        }
+    }
+
+    private int index(int x, int y) {
+        return (y - this.top) * this.width + x;
+    }
+
+    /**
+     * A move of an agent into a cell owned by a neighbouring shard
+     *
+     * @param <A>   The generic type with which the agents are represented
+     */
+    public static final class Crossing<A> {
+        private final A agent;
+        private final int x;
+        private final int y;
+
+        private Crossing(A agent, int x, int y) {
+            this.agent = agent;
+            this.x = x;
+            this.y = y;
+        }
+
+        public A getAgent() {
+            return agent;
+        }
+
+        /**
+         * @return  Column of the cell the agent tried to move into
+         */
+        public int getX() {
+            return x;
+        }
+
+        /**
+         * @return  Row of the cell the agent tried to move into
+         */
+        public int getY() {
+            return y;
+        }
+    }
+}
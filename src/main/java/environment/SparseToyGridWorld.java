@@ -0,0 +1,268 @@
+package environment;
+
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A variant of the ToyGridWorld for very large, lightly populated grids.
+ *
+ * Instead of allocating every cell of the grid up front, the grid is divided into square chunks, which are only
+ * allocated once an agent enters them, and released again once the last agent leaves them. The chunks are stored
+ * in a hash map with primitive long keys, so looking up a cell remains O(1), while memory use scales with the
+ * number of agents instead of the area of the grid.
+ *
+ * @param <A>   The generic type with which the agents will be represented
+ */
+public class SparseToyGridWorld<A> implements IToyGridWorld<A> {
+
+    /**
+     * Chunks are CHUNK_SIZE x CHUNK_SIZE cells. Chunks are kept small, because in a lightly populated grid,
+     * most agents will be the only agent in their chunk
+     */
+    private static final int CHUNK_BITS = 3;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * By using a random object, stochastic updates of the environment can be seeded
+     * for repeated deterministic execution.
+     * For stochastic execution, the random object can be initialized without a seed
+     */
+    private final Random random;
+
+    private final int width;
+    private final int height;
+
+    // Only chunks containing at least one agent are present
+    // The (0,0) coordinate is in the top left corner
+    private final LongKeyMap<Chunk<A>> chunks = new LongKeyMap<>();
+    private final Map<A, Point> agentLocations;
+
+    // Updated whenever an agent is placed, removed or moved
+    private long stateHash = 0;
+
+    /**
+     * Instantiate a new SparseToyGridWorld
+     *
+     * @param random    Random object for stochastic decisions
+     * @param width     Width of the grid world
+     * @param height    Height of the grid world
+     */
+    public SparseToyGridWorld(Random random, int width, int height) {
+        this.random = random;
+        this.width = width;
+        this.height = height;
+        this.agentLocations = new HashMap<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * @return  The number of chunks currently allocated
+     */
+    public int getAllocatedChunks() {
+        return this.chunks.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean registerAgent(A agent, Point position) {
+        if (getAgentAt(position) == null) {
+            setAgentAt(position.x, position.y, agent);
+            this.agentLocations.put(agent, position);
+            this.stateHash ^= StateHash.key(agent, position.x, position.y);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeAgent(A agent) {
+        Point position = this.agentLocations.remove(agent);
+        if (position == null) {
+            return false;
+        }
+        setAgentAt(position.x, position.y, null);
+        this.stateHash ^= StateHash.key(agent, position.x, position.y);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Point getPosition(A agent) {
+        return this.agentLocations.get(agent);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public A getAgentAt(Point position) {
+        Chunk<A> chunk = getChunk(position.x, position.y);
+        return chunk == null ? null : chunk.get(position.x, position.y);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean move(A agent, Direction direction) {
+        Point agentPosition = getPosition(agent);
+        Point newPosition = new Point(agentPosition);
+        switch (direction) {
+            case UP:
+                newPosition.y--;
+                break;
+            case DOWN:
+                newPosition.y++;
+                break;
+            case LEFT:
+                newPosition.x--;
+                break;
+            case RIGHT:
+                newPosition.x++;
+                break;
+        }
+
+        if (newPosition.x < 0 || newPosition.x >= width || newPosition.y < 0 || newPosition.y >= height) {
+            // Cannot cross grid boundaries
+            return false;
+        }
+
+        if (getAgentAt(newPosition) != null) {
+            // Cannot move to occupied cell
+            return false;
+        }
+
+        agentLocations.put(agent, newPosition);
+        // Place the agent before clearing the old cell, so a chunk is not released and reallocated
+        // if the agent moves within it
+        setAgentAt(newPosition.x, newPosition.y, agent);
+        setAgentAt(agentPosition.x, agentPosition.y, null);
+        stateHash ^= StateHash.key(agent, agentPosition.x, agentPosition.y)
+                ^ StateHash.key(agent, newPosition.x, newPosition.y);
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getStateHash() {
+        return this.stateHash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Point getRandomFreePoint(boolean avoidEdges) {
+        Point point = new Point();
+        do {
+            point.x = getIntInBounds(avoidEdges ? 1 : 0, width - (avoidEdges ? 1 : 0));
+            point.y = getIntInBounds(avoidEdges ? 1 : 0, height - (avoidEdges ? 1 : 0));
+        } while (getAgentAt(point) != null);
+        return point;
+    }
+
+    /**
+     * Places an agent in a cell, or clears the cell, allocating or releasing the chunk of the cell as required
+     *
+     * @param x     X-coordinate of the cell
+     * @param y     Y-coordinate of the cell
+     * @param agent Agent to place, or null to clear the cell
+     */
+    private void setAgentAt(int x, int y, A agent) {
+        long key = chunkKey(x, y);
+        Chunk<A> chunk = this.chunks.get(key);
+        if (chunk == null) {
+            if (agent == null) {
+                return;
+            }
+            chunk = new Chunk<>();
+            this.chunks.put(key, chunk);
+        }
+
+        chunk.set(x, y, agent);
+        if (chunk.isEmpty()) {
+            this.chunks.remove(key);
+        }
+    }
+
+    private Chunk<A> getChunk(int x, int y) {
+        return this.chunks.get(chunkKey(x, y));
+    }
+
+    /**
+     * @return  The key of the chunk containing the cell (x, y)
+     */
+    private static long chunkKey(int x, int y) {
+        return ((long) (x >>> CHUNK_BITS) << 32) | (y >>> CHUNK_BITS);
+    }
+
+    /**
+     * Sample a random point inside the given bounds
+     * @param min Lower bound (inclusive)
+     * @param max Upper bound (exclusive)
+     * @return Random point between min and max
+     */
+    private int getIntInBounds(int min, int max) {
+        return random.nextInt(max - min) + min;
+    }
+
+    /**
+     * A square block of cells of the grid, which keeps track of how many of its cells are occupied
+     */
+    private static final class Chunk<A> {
+        private final Object[] cells = new Object[CHUNK_SIZE * CHUNK_SIZE];
+        private int occupied;
+
+        @SuppressWarnings("unchecked")
+        A get(int x, int y) {
+            return (A) this.cells[index(x, y)];
+        }
+
+        void set(int x, int y, A agent) {
+            int index = index(x, y);
+            if (this.cells[index] == null && agent != null) {
+                this.occupied++;
+            } else if (this.cells[index] != null && agent == null) {
+                this.occupied--;
+            }
+            this.cells[index] = agent;
+        }
+
+        boolean isEmpty() {
+            return this.occupied == 0;
+        }
+
+        private static int index(int x, int y) {
+            return ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+        }
+    }
+}
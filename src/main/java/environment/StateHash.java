@@ -0,0 +1,51 @@
+package environment;
+
+/**
+ * Zobrist-style hashing of the state of a grid world.
+ *
+ * The state of a grid world is the set of (agent, cell) pairs of all agents in it. Each pair has a pseudo-random
+ * 64-bit key, and the hash of the state is the XOR of the keys of all pairs. Registering, removing or moving an agent
+ * therefore updates the hash in constant time, by XOR-ing the keys of the pairs that are added and removed. Because
+ * XOR is commutative, the hash does not depend on the order in which agents were placed or moved.
+ *
+ * The keys are computed from the hash code of the agent, instead of being drawn from a table, because a table of all
+ * (agent, cell) pairs would not fit in memory. Hashes of different runs can only be compared if the hash codes of the
+ * agents are the same in both runs, which is the case for agents represented by strings.
+ */
+public final class StateHash {
+
+    private StateHash() {
+    }
+
+    /**
+     * @param agent Identifier of the agent
+     * @param x     Column of the cell the agent occupies
+     * @param y     Row of the cell the agent occupies
+     * @return      The key of the agent occupying the cell
+     */
+    public static long key(Object agent, int x, int y) {
+        return key(agent.hashCode(), x, y);
+    }
+
+    /**
+     * @param agentHashCode The hash code of the identifier of the agent
+     * @param x             Column of the cell the agent occupies
+     * @param y             Row of the cell the agent occupies
+     * @return              The key of the agent occupying the cell
+     */
+    public static long key(int agentHashCode, int x, int y) {
+        return mix(mix(agentHashCode) ^ (((long) x << 32) | (y & 0xffffffffL)));
+    }
+
+    /**
+     * Finalization step of MurmurHash3, which spreads every input bit over the entire output
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
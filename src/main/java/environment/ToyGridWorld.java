@@ -25,6 +25,9 @@ public class ToyGridWorld<A> implements IToyGridWorld<A> {
     private final List<List<A>> grid;
     private final Map<A, Point> agentLocations;
 
+    // Updated whenever an agent is placed, removed or moved
+    private long stateHash = 0;
+
     /**
      * Instantiate a new ToyGridWorld
      *
@@ -79,12 +82,27 @@ public class ToyGridWorld<A> implements IToyGridWorld<A> {
         if (this.grid.get(position.y).get(position.x) == null) {
             this.grid.get(position.y).set(position.x, agent);
             this.agentLocations.put(agent, position);
+            this.stateHash ^= StateHash.key(agent, position.x, position.y);
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeAgent(A agent) {
+        Point position = this.agentLocations.remove(agent);
+        if (position == null) {
+            return false;
+        }
+        this.grid.get(position.y).set(position.x, null);
+        this.stateHash ^= StateHash.key(agent, position.x, position.y);
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -136,10 +154,20 @@ public class ToyGridWorld<A> implements IToyGridWorld<A> {
         agentLocations.put(agent, newPosition);
         grid.get(agentPosition.y).set(agentPosition.x, null);
         grid.get(newPosition.y).set(newPosition.x, agent);
+        stateHash ^= StateHash.key(agent, agentPosition.x, agentPosition.y)
+                ^ StateHash.key(agent, newPosition.x, newPosition.y);
 
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getStateHash() {
+        return this.stateHash;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,416 @@
+package simulation;
+
+import environment.Direction;
+import environment.OccupancyPyramid;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentArguments;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.step.EnvironmentInterface;
+import simulation.agent.AgentBeliefContext;
+import simulation.agent.BeliefStore;
+import simulation.agent.ExternalTriggerPlanScheme;
+import simulation.agent.GoalPlanScheme;
+import simulation.agent.KeepMovingGoal;
+import simulation.agent.MessagingContext;
+import simulation.agent.MoveTowardsGoal;
+import simulation.agent.OccupancyContext;
+import simulation.agent.ProfilingPlanScheme;
+import simulation.agent.SwapAgreements;
+import simulation.analytics.PlanProfiler;
+import simulation.messaging.BatchedMessenger;
+
+import java.awt.*;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Future;
+
+/**
+ * Manages the agents that take part in the simulation, and lets agents enter (spawn) and leave (despawn) the
+ * simulation while it runs.
+ *
+ * Sim-2APL agents cannot be removed from the platform, so agents that leave the simulation are parked instead: they
+ * are removed from the environment, and drop their goals in their next deliberation, after which the platform no
+ * longer schedules them. A parked agent is reused, together with its contexts, plan schemes and goal, when a new
+ * agent enters the simulation, so a constant rate of arriving and leaving agents does not create garbage.
+ *
+ * The population registers to the simulation engine as an environment interface, so it can replace a fixed number of
+ * agents after each time step, while no agents are deliberating.
+ */
+public class AgentPopulation implements EnvironmentInterface<Direction> {
+
+    private final Platform platform;
+    private final ToyGridWorldInterface environmentInterface;
+    private final BeliefStore beliefStore;
+    private final boolean asynchronous;
+    private final SplittableRandom seeds;
+
+    // Agents currently in the simulation, in no particular order, and indexed by name
+    private final List<PooledAgent> active = new ArrayList<>();
+    private final Map<String, PooledAgent> activeByName = new HashMap<>();
+
+    // Agents that left the simulation, in order of leaving
+    private final Deque<PooledAgent> parked = new ArrayDeque<>();
+
+    // Expected number of agents replaced after each time step, and the random object deciding which ones
+    private double churn = 0;
+    private Random churnRandom;
+
+    // Samples the deliberation of new agents, if profiling is enabled
+    private PlanProfiler profiler;
+
+    // Lets new agents send messages and agree to swap cells, if messaging is enabled
+    private BatchedMessenger messenger;
+    private SwapAgreements swapAgreements;
+
+    // Lets new agents sample their destinations among the free cells, if congestion-aware sampling is enabled
+    private OccupancyPyramid occupancy;
+
+    // Agents are named firstName, firstName + nameStride, firstName + 2 * nameStride, ...
+    private int firstName = 0;
+    private int nameStride = 1;
+    private int nNamed = 0;
+    private long currentStep = 0;
+
+    /**
+     * @param platform              The platform the agents are created on
+     * @param environmentInterface  The environment the agents are placed in
+     * @param beliefStore           The store for the beliefs of all agents
+     * @param asynchronous          If true, agents commit their moves to the environment themselves
+     * @param seeds                 Random stream from which the seeds of the random streams of new agents are drawn
+     */
+    public AgentPopulation(Platform platform, ToyGridWorldInterface environmentInterface, BeliefStore beliefStore,
+                           boolean asynchronous, SplittableRandom seeds) {
+        this.platform = platform;
+        this.environmentInterface = environmentInterface;
+        this.beliefStore = beliefStore;
+        this.asynchronous = asynchronous;
+        this.seeds = seeds;
+    }
+
+    /**
+     * Replace agents after each time step. The number of agents in the simulation stays the same, but the agents
+     * leaving the simulation are chosen at random
+     *
+     * @param churn     Expected number of agents that leave the simulation after each time step, and are replaced by
+     *                  new agents. The fractional part is the probability of replacing one more agent
+     * @param random    Random object deciding which and how many agents are replaced
+     */
+    public void setChurn(double churn, Random random) {
+        this.churn = churn;
+        this.churnRandom = random;
+    }
+
+    /**
+     * Profile the plans and goals of all agents created from now on. Should be set before any agents are created
+     *
+     * @param profiler  The profiler to sample the plan executions and goal checks of the agents with. Its samples
+     *                  are merged after each time step, and its report is written when the simulation finishes
+     */
+    public void setProfiler(PlanProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Let all agents created from now on send messages to each other, and agree to swap cells. Should be set before
+     * any agents are created, and to the same objects as the messaging of the environment interface
+     *
+     * @param messenger         The messenger the agents send their messages with
+     * @param swapAgreements    The swaps the agents agree to
+     */
+    public void setMessaging(BatchedMessenger messenger, SwapAgreements swapAgreements) {
+        this.messenger = messenger;
+        this.swapAgreements = swapAgreements;
+    }
+
+    /**
+     * Let all agents created from now on sample their destinations among the free cells of the grid. Should be set
+     * before any agents are created, and to the same pyramid as the occupancy of the environment interface
+     *
+     * @param occupancy The occupancy of the grid
+     */
+    public void setOccupancy(OccupancyPyramid occupancy) {
+        this.occupancy = occupancy;
+    }
+
+    /**
+     * Name the agents created from now on such that their names do not clash with the agents of other populations,
+     * e.g., those of the other shards of a sharded simulation. Should be set before any agents are created
+     *
+     * @param firstName     The name of the first agent
+     * @param nameStride    The difference between the names of consecutively created agents
+     */
+    public void setNaming(int firstName, int nameStride) {
+        this.firstName = firstName;
+        this.nameStride = nameStride;
+    }
+
+    /**
+     * Let a new agent enter the simulation on a random free cell. A parked agent is reused if one is available.
+     * Should not be called while agents are deliberating
+     *
+     * @return  Display name of the agent
+     * @throws URISyntaxException   Should not be thrown
+     */
+    public String spawn() throws URISyntaxException {
+        Point position = environmentInterface.getToyGridWorld().getRandomFreePoint(false);
+
+        PooledAgent pooled = takeParked();
+        if (pooled != null) {
+            if (pooled.name == null) {
+                // The agent left for another shard, where it is still known under its old name
+                pooled.name = nextName();
+            }
+            beliefStore.reactivate(pooled.context.getSlot(), position.x, position.y);
+        } else {
+            pooled = createAgent(nextName(), position, seeds.nextLong());
+        }
+
+        enter(pooled, position);
+        return pooled.name;
+    }
+
+    /**
+     * Let an agent that left another shard of a sharded simulation enter this one, with the beliefs it took along.
+     * A parked agent is reused if one is available. Should not be called while agents are deliberating
+     *
+     * @param name          Name of the agent, which it keeps in every shard
+     * @param position      The free cell the agent moves into
+     * @param destinationX  X-coordinate of the destination the agent is moving towards
+     * @param destinationY  Y-coordinate of the destination the agent is moving towards
+     * @param randomState   State of the random stream of the agent, which is continued
+     * @throws URISyntaxException   Should not be thrown
+     */
+    public void immigrate(String name, Point position, int destinationX, int destinationY, long randomState)
+            throws URISyntaxException {
+        PooledAgent pooled = takeParked();
+        if (pooled != null) {
+            pooled.name = name;
+            beliefStore.reactivate(pooled.context.getSlot(), position.x, position.y);
+        } else {
+            pooled = createAgent(name, position, randomState);
+        }
+        int slot = pooled.context.getSlot();
+        beliefStore.setRandomState(slot, randomState);
+        beliefStore.setDestination(slot, destinationX, destinationY);
+
+        enter(pooled, position);
+
+        // The agent keeps moving towards the destination it had in the other shard
+        if (destinationX != position.x || destinationY != position.y) {
+            if (pooled.migratedGoal == null) {
+                pooled.migratedGoal = new MoveTowardsGoal(destinationX, destinationY);
+            } else {
+                pooled.migratedGoal.setDestination(destinationX, destinationY);
+            }
+            pooled.agent.adoptGoal(pooled.migratedGoal);
+        }
+    }
+
+    /**
+     * Let an agent leave this shard of a sharded simulation for another shard. Unlike an agent that leaves the
+     * simulation, the agent is not reused under its old name. Should not be called while agents are deliberating
+     *
+     * @param name  Display name of the agent
+     * @return      True iff the agent was part of this shard
+     */
+    public boolean emigrate(String name) {
+        PooledAgent pooled = activeByName.get(name);
+        if (pooled == null || !despawn(name)) {
+            return false;
+        }
+        pooled.name = null;
+        return true;
+    }
+
+    /**
+     * @return  A parked agent that can be reused, or null if there is none
+     */
+    private PooledAgent takeParked() {
+        PooledAgent pooled = parked.peekFirst();
+        if (pooled != null && pooled.parkedAt < currentStep) {
+            // The agent has deliberated at least once since leaving, so it no longer pursues its old goals
+            return parked.removeFirst();
+        }
+        return null;
+    }
+
+    private String nextName() {
+        return Integer.toString(firstName + nameStride * nNamed++);
+    }
+
+    /**
+     * Place an agent whose beliefs have been (re)initialized in the environment, and let it pursue its goals
+     */
+    private void enter(PooledAgent pooled, Point position) {
+        pooled.index = active.size();
+        active.add(pooled);
+        activeByName.put(pooled.name, pooled);
+
+        environmentInterface.registerAgent(pooled.agent, pooled.name, position, pooled.context.getSlot());
+
+        // We just adopt this goal, and from now on, the agent will pick random destinations to move towards!
+        pooled.agent.adoptGoal(pooled.goal);
+    }
+
+    /**
+     * Let an agent leave the simulation. Should not be called while agents are deliberating
+     *
+     * @param name  Display name of the agent
+     * @return      True iff the agent was part of the simulation
+     */
+    public boolean despawn(String name) {
+        PooledAgent pooled = activeByName.remove(name);
+        if (pooled == null) {
+            return false;
+        }
+
+        // Swap the last agent into the place of the leaving agent, so removal takes constant time
+        PooledAgent last = active.remove(active.size() - 1);
+        if (last != pooled) {
+            last.index = pooled.index;
+            active.set(pooled.index, last);
+        }
+
+        environmentInterface.unregisterAgent(pooled.agent.getAID());
+        beliefStore.deactivate(pooled.context.getSlot());
+        pooled.parkedAt = currentStep;
+        parked.addLast(pooled);
+        return true;
+    }
+
+    /**
+     * @param name  Display name of an agent
+     * @return      The slot of the beliefs of the agent, or -1 if the agent is not part of the simulation
+     */
+    public int getSlot(String name) {
+        PooledAgent pooled = activeByName.get(name);
+        return pooled == null ? -1 : pooled.context.getSlot();
+    }
+
+    /**
+     * @return  The number of agents currently in the simulation
+     */
+    public int size() {
+        return active.size();
+    }
+
+    /**
+     * @return  The number of agents that left the simulation and are waiting to be reused
+     */
+    public int getParkedCount() {
+        return parked.size();
+    }
+
+    /**
+     * Create a single agent.
+     *
+     * An agent is constructed through its AgentArguments, to which all contexts (representing beliefs) and plan
+     * schemes are added.
+     *
+     * @param name          Display name of the agent for representation in the environment
+     * @param position      Initial position of the agent
+     * @param randomSeed    Seed of the random stream of the agent
+     * @return              The new agent, together with the objects kept for reuse
+     * @throws URISyntaxException   Should not be thrown
+     */
+    private PooledAgent createAgent(String name, Point position, long randomSeed) throws URISyntaxException {
+        AgentArguments<Direction> arguments = new AgentArguments<>();
+        if (profiler == null) {
+            arguments.addExternalTriggerPlanScheme(new ExternalTriggerPlanScheme());
+            arguments.addGoalPlanScheme(new GoalPlanScheme());
+        } else {
+            arguments.addExternalTriggerPlanScheme(new ProfilingPlanScheme<>(new ExternalTriggerPlanScheme(), profiler));
+            arguments.addGoalPlanScheme(new ProfilingPlanScheme<>(new GoalPlanScheme(), profiler));
+        }
+
+        AgentBeliefContext beliefContext = new AgentBeliefContext(
+                beliefStore,
+                beliefStore.allocate(position.x, position.y, randomSeed),
+                profiler
+        );
+
+        arguments.addContext(beliefContext);
+        if (asynchronous) {
+            arguments.addContext(environmentInterface.createDirectMoveContext(name));
+        }
+        if (messenger != null) {
+            // Agents are addressed by their handle, which is the slot of their beliefs
+            arguments.addContext(new MessagingContext(messenger, swapAgreements, beliefContext.getSlot()));
+        }
+        if (occupancy != null) {
+            arguments.addContext(new OccupancyContext(occupancy));
+        }
+
+        return new PooledAgent(new Agent<>(platform, arguments), name, beliefContext);
+    }
+
+    @Override
+    public void stepStarting(long timeStep) {
+        this.currentStep = timeStep;
+    }
+
+    @Override
+    public void stepFinished(long timeStep, int timeStepDuration, List<Future<DeliberationResult<Direction>>> list) {
+        if (profiler != null) {
+            profiler.stepFinished();
+        }
+
+        if (churn <= 0 || active.isEmpty()) {
+            return;
+        }
+
+        int n = (int) churn + (churnRandom.nextDouble() < churn - (int) churn ? 1 : 0);
+        n = Math.min(n, active.size());
+
+        // Spawning after despawning lets the new agents use the cells freed by the leaving agents. Agents that
+        // leave now cannot be reused before the next time step
+        for (int i = 0; i < n; i++) {
+            despawn(active.get(churnRandom.nextInt(active.size())).name);
+        }
+        for (int i = 0; i < n; i++) {
+            try {
+                spawn();
+            } catch (URISyntaxException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void simulationFinished(long l, int i) {
+        if (profiler != null) {
+            profiler.simulationFinished();
+        }
+    }
+
+    /**
+     * An agent together with the objects that are reused when the agent enters the simulation again
+     */
+    private static final class PooledAgent {
+        private final Agent<Direction> agent;
+        private final AgentBeliefContext context;
+        private final KeepMovingGoal goal = new KeepMovingGoal();
+
+        // Null while the agent is parked after leaving for another shard
+        private String name;
+
+        // Created when the agent first enters from another shard while moving towards a destination
+        private MoveTowardsGoal migratedGoal;
+        private int index;
+        private long parkedAt;
+
+        private PooledAgent(Agent<Direction> agent, String name, AgentBeliefContext context) {
+            this.agent = agent;
+            this.name = name;
+            this.context = context;
+        }
+    }
+}
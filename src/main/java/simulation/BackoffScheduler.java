@@ -0,0 +1,160 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * Decides when agents whose moves keep failing should back off, and when they should wake up again.
+ *
+ * An agent backs off once a number of its consecutive moves have failed. The number of time steps it sleeps doubles
+ * with every further failure, up to a maximum, and is reset once the agent moves successfully. Agents can be woken
+ * before their backoff period has passed, e.g., when a cell next to them becomes free.
+ *
+ * Agents are identified by their handle in the environment interface. Should only be used by the thread that
+ * finishes time steps.
+ */
+public class BackoffScheduler {
+
+    private final int failureThreshold;
+    private final int maxBackoff;
+
+    // Indexed by agent handle
+    private int[] consecutiveFailures = new int[0];
+    private boolean[] asleep = new boolean[0];
+    private long[] sleptAt = new long[0];
+    private long[] wakeStep = new long[0];
+    private int nAsleep = 0;
+
+    // Scheduled wake ups, encoded as (wake step << 32 | handle). Entries of agents that were woken up early, or that
+    // went to sleep again, are skipped when they are polled
+    private final PriorityQueue<Long> wakeUps = new PriorityQueue<>();
+
+    /**
+     * @param failureThreshold  The number of consecutive failed moves after which an agent backs off
+     * @param maxBackoff        The maximum number of time steps an agent sleeps
+     */
+    public BackoffScheduler(int failureThreshold, int maxBackoff) {
+        if (failureThreshold < 1 || maxBackoff < 1) {
+            throw new IllegalArgumentException("Failure threshold and maximum backoff should be at least 1");
+        }
+        this.failureThreshold = failureThreshold;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Start tracking an agent, forgetting everything about a previous agent with the same handle
+     *
+     * @param handle    Handle of the agent
+     */
+    public void registerAgent(int handle) {
+        if (handle >= this.asleep.length) {
+            int capacity = Math.max(handle + 1, this.asleep.length * 2);
+            this.consecutiveFailures = Arrays.copyOf(this.consecutiveFailures, capacity);
+            this.asleep = Arrays.copyOf(this.asleep, capacity);
+            this.sleptAt = Arrays.copyOf(this.sleptAt, capacity);
+            this.wakeStep = Arrays.copyOf(this.wakeStep, capacity);
+        }
+        removeAgent(handle);
+    }
+
+    /**
+     * Stop tracking an agent
+     *
+     * @param handle    Handle of the agent
+     */
+    public void removeAgent(int handle) {
+        if (this.asleep[handle]) {
+            this.asleep[handle] = false;
+            this.nAsleep--;
+        }
+        this.consecutiveFailures[handle] = 0;
+    }
+
+    /**
+     * Record a move that was materialized in the environment
+     *
+     * @param handle    Handle of the agent that moved
+     */
+    public void moveSucceeded(int handle) {
+        this.consecutiveFailures[handle] = 0;
+    }
+
+    /**
+     * Record a move that failed, and decide whether the agent should back off
+     *
+     * @param handle    Handle of the agent that failed to move
+     * @param timeStep  The current time step
+     * @return          True iff the agent should back off now
+     */
+    public boolean moveFailed(int handle, long timeStep) {
+        if (this.asleep[handle]) {
+            return false;
+        }
+
+        int failures = ++this.consecutiveFailures[handle];
+        if (failures < this.failureThreshold) {
+            return false;
+        }
+
+        // The agent handles the backoff in the next time step, and sleeps for the time steps after that
+        int exponent = Math.min(failures - this.failureThreshold, 30);
+        long sleep = Math.min(1L << exponent, this.maxBackoff);
+        this.asleep[handle] = true;
+        this.sleptAt[handle] = timeStep;
+        this.wakeStep[handle] = timeStep + 1 + sleep;
+        this.nAsleep++;
+        this.wakeUps.add((this.wakeStep[handle] << 32) | handle);
+        return true;
+    }
+
+    /**
+     * @param handle    Handle of the agent
+     * @return          True iff the agent backed off and has not been woken up yet
+     */
+    public boolean isAsleep(int handle) {
+        return this.asleep[handle];
+    }
+
+    /**
+     * @return  The number of agents that are currently asleep
+     */
+    public int getAsleepCount() {
+        return this.nAsleep;
+    }
+
+    /**
+     * Wake up an agent before its backoff period has passed. Agents that were put to sleep in the current time step
+     * are not woken up, because they have not handled their backoff yet
+     *
+     * @param handle    Handle of the agent
+     * @param timeStep  The current time step
+     * @return          True iff the agent was asleep, and is now awake
+     */
+    public boolean wakeEarly(int handle, long timeStep) {
+        if (!this.asleep[handle] || this.sleptAt[handle] >= timeStep) {
+            return false;
+        }
+        this.asleep[handle] = false;
+        this.nAsleep--;
+        return true;
+    }
+
+    /**
+     * Wake up all agents that should deliberate again in the given time step
+     *
+     * @param nextStep  The time step that starts next
+     * @param wakeUp    Called with the handle of each agent that should be woken up
+     */
+    public void wakeUpDue(long nextStep, IntConsumer wakeUp) {
+        while (!this.wakeUps.isEmpty() && (this.wakeUps.peek() >>> 32) <= nextStep) {
+            long entry = this.wakeUps.poll();
+            int handle = (int) entry;
+            if (this.asleep[handle] && this.wakeStep[handle] == entry >>> 32) {
+                this.asleep[handle] = false;
+                this.nAsleep--;
+                wakeUp.accept(handle);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package simulation;
+
+import util.Constants;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The ways in which a simulation can deliberate its agents and apply their actions, as far as they matter for the
+ * performance and reproducibility of a run. Each mode corresponds to a combination of command line flags.
+ */
+public enum EngineMode {
+    /**
+     * The default engine of Sim-2APL, which applies the actions of the agents in the order in which they finish
+     */
+    DEFAULT,
+
+    /**
+     * Apply the actions of all agents in a fixed order, so seeded runs are reproducible regardless of the number of
+     * threads
+     */
+    DETERMINISTIC(Constants.ARG_DETERMINISTIC),
+
+    /**
+     * Deliberate the agents in chunks on a work-stealing pool
+     */
+    WORK_STEALING(Constants.ARG_WORK_STEALING),
+
+    /**
+     * Deliberate on a work-stealing pool, and process the results of agents while others are still deliberating.
+     * Produces the same results as deterministic mode
+     */
+    PIPELINED(Constants.ARG_WORK_STEALING, Constants.ARG_PIPELINED),
+
+    /**
+     * Agents commit their moves to the environment directly from their deliberation threads
+     */
+    ASYNC(Constants.ARG_ASYNC);
+
+    private final String[] flags;
+
+    EngineMode(String... flags) {
+        this.flags = flags;
+    }
+
+    /**
+     * Enable the flags of this mode in the arguments of a simulation
+     *
+     * @param arguments Arguments of a simulation, in which the flags of all modes should already be set to false
+     */
+    public void apply(Map<String, Object> arguments) {
+        for (String flag : this.flags) {
+            arguments.put(flag, true);
+        }
+    }
+
+    /**
+     * @return  The name of this mode as it appears on the command line and in result files
+     */
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
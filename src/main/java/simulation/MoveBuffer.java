@@ -0,0 +1,120 @@
+package simulation;
+
+import environment.Direction;
+
+import java.util.Arrays;
+
+/**
+ * A buffer in which the moves requested by the agents during a time step are staged before they are materialized
+ * in the environment.
+ *
+ * Moves are applied in order of the handle of the agent that requested them (and in the order they were staged for
+ * moves of the same agent), so the outcome of a time step does not depend on the order in which the deliberation
+ * results of the agents became available.
+ */
+class MoveBuffer {
+
+    /**
+     * Receives the staged moves in order when the buffer is committed
+     */
+    interface MoveConsumer {
+        void apply(int handle, Direction direction);
+    }
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // Direction bits of a move that was cancelled before the buffer was committed
+    private static final long CANCELLED = 0xff;
+
+    // Each staged move is encoded as (handle << 32 | direction << 24 | sequence number), so sorting the primitive
+    // array orders moves by handle, and keeps the staging order for moves of the same agent. Only the lowest 24 bits
+    // of the sequence number are kept, so the latter holds as long as fewer than 2^24 moves are staged per time step
+    private long[] moves = new long[64];
+    private int size = 0;
+    private boolean sorted = true;
+
+    /**
+     * Stage a move
+     * @param handle    Handle of the agent requesting the move
+     * @param direction Requested direction
+     */
+    void stage(int handle, Direction direction) {
+        if (this.size == this.moves.length) {
+            this.moves = Arrays.copyOf(this.moves, this.moves.length * 2);
+        }
+        this.moves[this.size] = ((long) handle << 32) | ((long) direction.ordinal() << 24) | (this.size & 0xffffff);
+        this.size++;
+        this.sorted = false;
+    }
+
+    /**
+     * @param handle    Handle of an agent
+     * @return          The first move staged by the agent, or null if it has no staged moves that were not cancelled
+     */
+    Direction find(int handle) {
+        int index = indexOf(handle);
+        if (index < 0) {
+            return null;
+        }
+        long direction = (this.moves[index] >>> 24) & 0xff;
+        return direction == CANCELLED ? null : DIRECTIONS[(int) direction];
+    }
+
+    /**
+     * Cancel all moves staged by an agent, e.g., because the agent was moved in another way
+     *
+     * @param handle    Handle of the agent
+     */
+    void cancel(int handle) {
+        int index = indexOf(handle);
+        if (index < 0) {
+            return;
+        }
+        for (int i = index; i < this.size && (int) (this.moves[i] >>> 32) == handle; i++) {
+            this.moves[i] |= CANCELLED << 24;
+        }
+    }
+
+    /**
+     * @return  The index of the first staged move of the agent, or -1 if it has none
+     */
+    private int indexOf(int handle) {
+        sort();
+        long first = (long) handle << 32;
+        int index = Arrays.binarySearch(this.moves, 0, this.size, first);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < this.size && (int) (this.moves[index] >>> 32) == handle ? index : -1;
+    }
+
+    private void sort() {
+        if (!this.sorted) {
+            Arrays.sort(this.moves, 0, this.size);
+            this.sorted = true;
+        }
+    }
+
+    /**
+     * @return  The number of moves currently staged
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Pass all staged moves that were not cancelled to the consumer in order of agent handle, and clear the buffer
+     * @param consumer  Consumer that materializes the moves in the environment
+     */
+    void commit(MoveConsumer consumer) {
+        sort();
+        for (int i = 0; i < this.size; i++) {
+            long move = this.moves[i];
+            long direction = (move >>> 24) & 0xff;
+            if (direction != CANCELLED) {
+                consumer.apply((int) (move >>> 32), DIRECTIONS[(int) direction]);
+            }
+        }
+        this.size = 0;
+    }
+}
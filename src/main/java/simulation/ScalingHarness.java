@@ -0,0 +1,284 @@
+package simulation;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures how the throughput of the full simulation scales with the number of agents, their density, and the number
+ * of platform threads, in each of the given engine modes.
+ *
+ * Every combination is run headless, one run at a time, so the runs do not compete for cores and the heap and garbage
+ * collection statistics of the JVM can be attributed to a single run. Each combination is first run a number of times
+ * to warm up the JVM, after which the measured repetitions follow. The grid is square, and just large enough for the
+ * agents to occupy the given fraction of its cells.
+ *
+ * The memory allocated during a run is the sum of the bytes allocated by each thread, as counted by the JVM. Threads
+ * that terminate before the run has finished are not counted, but the platform threads live until the simulation is
+ * shut down, which happens after the allocation was measured. If the JVM does not count allocations per thread, the
+ * allocation is -1.
+ *
+ * Each measured run is written to the results file as soon as it has finished. Once all runs have finished, the
+ * parallel efficiency of each combination is written to the summary file (see ScalingSummary).
+ */
+public class ScalingHarness {
+
+    private static final String HEADER = "mode,agents,density,width,height,threads,repetition,steps,setup_ms," +
+            "duration_ms,steps_per_second,deliberation_ms,environment_ms,other_ms,peak_heap_mb,gc_count,gc_ms," +
+            "successful_moves,failed_moves,allocated_mb,bytes_per_agent_step";
+
+    private final List<EngineMode> modes;
+    private final List<Integer> agents;
+    private final List<Double> densities;
+    private final List<Integer> threads;
+    private final int steps;
+    private final int warmup;
+    private final int repetitions;
+    private final int seed;
+
+    private final ScalingSummary summary = new ScalingSummary();
+
+    /**
+     * @param modes         Engine modes
+     * @param agents        Numbers of agents
+     * @param densities     Fractions of the cells occupied by agents
+     * @param threads       Numbers of platform threads
+     * @param steps         Number of time steps of each run
+     * @param warmup        Number of unmeasured runs of each combination before the measured runs
+     * @param repetitions   Number of measured runs of each combination
+     * @param seed          Seed of all runs
+     */
+    public ScalingHarness(List<EngineMode> modes, List<Integer> agents, List<Double> densities, List<Integer> threads,
+                          int steps, int warmup, int repetitions, int seed) {
+        for (double density : densities) {
+            if (density <= 0 || density > 1) {
+                throw new IllegalArgumentException("Density should be larger than 0 and at most 1, got " + density);
+            }
+        }
+        if (steps < 1 || warmup < 0 || repetitions < 1) {
+            throw new IllegalArgumentException("Every run needs at least one time step, and every combination at " +
+                    "least one measured repetition");
+        }
+        this.modes = modes;
+        this.agents = agents;
+        this.densities = densities;
+        this.threads = threads;
+        this.steps = steps;
+        this.warmup = warmup;
+        this.repetitions = repetitions;
+        this.seed = seed;
+    }
+
+    /**
+     * @param agents    Number of agents
+     * @param density   Fraction of the cells occupied by agents
+     * @return          The side of the smallest square grid in which the agents occupy at most the given fraction of
+     *                  the cells
+     */
+    public static int gridSide(int agents, double density) {
+        return Math.max(1, (int) Math.ceil(Math.sqrt(agents / density)));
+    }
+
+    /**
+     * Run all combinations, one run at a time, and block until all runs have finished
+     *
+     * @param output        The CSV file to write the measurements of each run to
+     * @param summaryFile   The CSV file to write the parallel efficiency of each combination to
+     * @throws IOException  If the results cannot be written
+     */
+    public void run(Path output, Path summaryFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.flush();
+
+            for (EngineMode mode : this.modes) {
+                for (int nAgents : this.agents) {
+                    for (double density : this.densities) {
+                        for (int nThreads : this.threads) {
+                            runCombination(mode, nAgents, density, nThreads, writer);
+                        }
+                    }
+                }
+            }
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(summaryFile, StandardCharsets.UTF_8)) {
+            this.summary.write(writer);
+        }
+        StringWriter table = new StringWriter();
+        this.summary.write(table);
+        System.out.print(table);
+    }
+
+    private void runCombination(EngineMode mode, int nAgents, double density, int nThreads, BufferedWriter writer)
+            throws IOException {
+        int side = gridSide(nAgents, density);
+        Namespace scenario = SweepRunner.createScenario(mode, this.seed, side, side, nAgents, this.steps, nThreads);
+
+        for (int repetition = -this.warmup; repetition < this.repetitions; repetition++) {
+            try {
+                String row = runOnce(scenario, mode, nAgents, density, side, nThreads, repetition);
+                if (repetition >= 0) {
+                    writer.write(row);
+                    writer.newLine();
+                    writer.flush();
+                }
+            } catch (RuntimeException | OutOfMemoryError e) {
+                // A combination that does not fit in the heap, or fails otherwise, should not stop the other runs
+                System.err.println("Run in " + mode + " mode with " + nAgents + " agents, density " + density +
+                        " and " + nThreads + " threads failed");
+                e.printStackTrace();
+                return;
+            }
+        }
+    }
+
+    private String runOnce(Namespace scenario, EngineMode mode, int nAgents, double density, int side, int nThreads,
+                           int repetition) {
+        // Start every run from a collected heap, so its peak heap usage does not include garbage of earlier runs
+        System.gc();
+        resetPeakHeapUsage();
+        long gcCount = getGcCount();
+        long gcMillis = getGcMillis();
+
+        long setupStart = System.nanoTime();
+        Simulation simulation = new Simulation(scenario);
+        long setupMillis = (System.nanoTime() - setupStart) / 1_000_000;
+        Map<Long, Long> allocatedBefore = getAllocatedBytes();
+        long allocated;
+        try {
+            simulation.start();
+            allocated = allocatedBefore == null ? -1 : getAllocatedBytesSince(allocatedBefore);
+        } finally {
+            // Otherwise, the threads of every run would stay alive until the harness exits
+            simulation.shutdown();
+        }
+
+        ToyGridWorldInterface environmentInterface = simulation.getEnvironmentInterface();
+        long duration = simulation.getRunDuration();
+        double stepsPerSecond = duration > 0 ? this.steps * 1000d / duration : 0;
+        double deliberationMillis = environmentInterface.getDeliberationNanos() / 1e6;
+        double environmentMillis = environmentInterface.getEnvironmentNanos() / 1e6;
+
+        if (repetition >= 0) {
+            this.summary.add(mode, nAgents, density, nThreads, stepsPerSecond);
+        }
+
+        return String.format(Locale.ROOT,
+                "%s,%d,%s,%d,%d,%d,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.1f,%d,%d,%d,%d,%.1f,%.1f",
+                mode,
+                nAgents,
+                density,
+                side,
+                side,
+                nThreads,
+                repetition,
+                this.steps,
+                setupMillis,
+                duration,
+                stepsPerSecond,
+                deliberationMillis,
+                environmentMillis,
+                Math.max(0, duration - deliberationMillis - environmentMillis),
+                getPeakHeapUsage() / (1024.0 * 1024.0),
+                getGcCount() - gcCount,
+                getGcMillis() - gcMillis,
+                environmentInterface.getSuccessfulMoves(),
+                environmentInterface.getFailedMoves(),
+                allocated < 0 ? -1 : allocated / (1024.0 * 1024.0),
+                allocated < 0 ? -1 : allocated / ((double) nAgents * this.steps)
+        );
+    }
+
+    private static void resetPeakHeapUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return  The sum of the peak usage of all heap pools since they were last reset. The pools may have peaked at
+     *          different moments, so this is an upper bound of the peak heap usage
+     */
+    private static long getPeakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * @return  The number of bytes each live thread allocated so far, by thread ID, or null if the JVM does not count
+     *          allocations per thread
+     */
+    private static Map<Long, Long> getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = allocations.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            // Threads that terminated in the meantime are reported as -1
+            if (bytes[i] >= 0) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * @param before    The bytes allocated by each thread at the start of the measurement
+     * @return          The number of bytes the live threads allocated since. Threads that started since count fully
+     */
+    private static long getAllocatedBytesSince(Map<Long, Long> before) {
+        Map<Long, Long> after = getAllocatedBytes();
+        long allocated = 0;
+        for (Map.Entry<Long, Long> thread : after.entrySet()) {
+            allocated += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        return allocated;
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getGcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+}
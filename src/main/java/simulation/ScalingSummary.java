@@ -0,0 +1,152 @@
+package simulation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Summarizes how the throughput of the simulation scales with the number of platform threads.
+ *
+ * For every engine mode, number of agents and density, the mean throughput with each number of threads is compared
+ * to the mean throughput with the smallest number of threads measured. The parallel efficiency is the speedup
+ * divided by the relative increase in threads, so perfect scaling has an efficiency of 1.
+ */
+public class ScalingSummary {
+
+    public static final String HEADER = "mode,agents,density,threads,repetitions,mean_steps_per_second," +
+            "stddev_steps_per_second,speedup,parallel_efficiency";
+
+    // Throughput of each repetition, by configuration and number of threads, in the order the configurations were added
+    private final Map<Configuration, TreeMap<Integer, List<Double>>> samples = new LinkedHashMap<>();
+
+    /**
+     * Record the throughput of a single run
+     *
+     * @param mode              Engine mode of the run
+     * @param agents            Number of agents
+     * @param density           Fraction of the cells occupied by agents
+     * @param threads           Number of platform threads
+     * @param stepsPerSecond    Throughput of the run
+     */
+    public void add(EngineMode mode, int agents, double density, int threads, double stepsPerSecond) {
+        this.samples
+                .computeIfAbsent(new Configuration(mode, agents, density), key -> new TreeMap<>())
+                .computeIfAbsent(threads, key -> new ArrayList<>())
+                .add(stepsPerSecond);
+    }
+
+    /**
+     * @return  The mean throughput of all runs with the given parameters, or NaN if there were none
+     */
+    public double getMeanStepsPerSecond(EngineMode mode, int agents, double density, int threads) {
+        TreeMap<Integer, List<Double>> byThreads = this.samples.get(new Configuration(mode, agents, density));
+        return byThreads == null || !byThreads.containsKey(threads) ? Double.NaN : mean(byThreads.get(threads));
+    }
+
+    /**
+     * @return  The mean throughput with the given number of threads divided by that with the smallest number of
+     *          threads, or NaN if there were no runs with the given parameters
+     */
+    public double getSpeedup(EngineMode mode, int agents, double density, int threads) {
+        TreeMap<Integer, List<Double>> byThreads = this.samples.get(new Configuration(mode, agents, density));
+        if (byThreads == null || !byThreads.containsKey(threads)) {
+            return Double.NaN;
+        }
+        return mean(byThreads.get(threads)) / mean(byThreads.firstEntry().getValue());
+    }
+
+    /**
+     * @return  The speedup divided by the number of threads relative to the smallest number of threads, or NaN if
+     *          there were no runs with the given parameters
+     */
+    public double getParallelEfficiency(EngineMode mode, int agents, double density, int threads) {
+        TreeMap<Integer, List<Double>> byThreads = this.samples.get(new Configuration(mode, agents, density));
+        if (byThreads == null || !byThreads.containsKey(threads)) {
+            return Double.NaN;
+        }
+        return getSpeedup(mode, agents, density, threads) * byThreads.firstKey() / threads;
+    }
+
+    /**
+     * Write a CSV line per engine mode, number of agents, density and number of threads
+     *
+     * @param writer        The writer to write the summary to
+     * @throws IOException  If writing fails
+     */
+    public void write(Writer writer) throws IOException {
+        writer.write(HEADER + "\n");
+        for (Map.Entry<Configuration, TreeMap<Integer, List<Double>>> configuration : this.samples.entrySet()) {
+            EngineMode mode = configuration.getKey().mode;
+            int agents = configuration.getKey().agents;
+            double density = configuration.getKey().density;
+            for (Map.Entry<Integer, List<Double>> threads : configuration.getValue().entrySet()) {
+                List<Double> values = threads.getValue();
+                writer.write(String.format(Locale.ROOT, "%s,%d,%s,%d,%d,%.3f,%.3f,%.3f,%.3f\n",
+                        mode,
+                        agents,
+                        density,
+                        threads.getKey(),
+                        values.size(),
+                        mean(values),
+                        standardDeviation(values),
+                        getSpeedup(mode, agents, density, threads.getKey()),
+                        getParallelEfficiency(mode, agents, density, threads.getKey())
+                ));
+            }
+        }
+        writer.flush();
+    }
+
+    private static double mean(List<Double> values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.size();
+    }
+
+    private static double standardDeviation(List<Double> values) {
+        if (values.size() < 2) {
+            return 0;
+        }
+        double mean = mean(values);
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(sum / (values.size() - 1));
+    }
+
+    private static final class Configuration {
+        private final EngineMode mode;
+        private final int agents;
+        private final double density;
+
+        private Configuration(EngineMode mode, int agents, double density) {
+            this.mode = mode;
+            this.agents = agents;
+            this.density = density;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Configuration)) {
+                return false;
+            }
+            Configuration other = (Configuration) o;
+            return this.mode == other.mode && this.agents == other.agents &&
+                    Double.compare(this.density, other.density) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.mode, this.agents, this.density);
+        }
+    }
+}
@@ -1,25 +1,52 @@
 package simulation;
 
+import environment.ConcurrentToyGridWorld;
 import environment.Direction;
+import environment.IToyGridWorld;
+import environment.OccupancyPyramid;
+import environment.ShardGridWorld;
+import environment.SparseToyGridWorld;
+import environment.ToyGridWorld;
 import net.sourceforge.argparse4j.inf.Namespace;
-import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
-import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentArguments;
 import nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger.DefaultMessenger;
 import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
 import nl.uu.cs.iss.ga.sim2apl.core.step.DefaultSimulationEngine;
+import nl.uu.cs.iss.ga.sim2apl.core.step.EnvironmentInterface;
 import nl.uu.cs.iss.ga.sim2apl.core.step.SimulationEngine;
-import simulation.agent.AgentBeliefContext;
-import simulation.agent.ExternalTriggerPlanScheme;
-import simulation.agent.GoalPlanScheme;
-import simulation.agent.KeepMovingGoal;
+import simulation.agent.BeliefStore;
+import simulation.agent.SwapAgreements;
+import simulation.analytics.PlanProfiler;
+import simulation.analytics.SimulationAnalytics;
+import simulation.export.SharedStateExporter;
+import simulation.engine.ChunkedSimulationEngine;
+import simulation.engine.ChunkedStepExecutor;
+import simulation.messaging.BatchedMessenger;
+import simulation.shard.ShardLayout;
+import simulation.shard.ShardLink;
+import simulation.shard.ShardedSimulation;
 import util.Constants;
+import util.StartupClock;
 
-import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
 
 public class Simulation {
 
+    /**
+     * With backoff enabled, agents back off after this many consecutive failed moves, and sleep for at most
+     * MAX_BACKOFF time steps
+     */
+    private static final int BACKOFF_FAILURE_THRESHOLD = 3;
+    private static final int MAX_BACKOFF = 32;
+
     /**
      * The Platform is a 2APL class that organizes and executes all the agents.
      * Typically, each compute node is instantiated with one platform.
@@ -43,54 +70,414 @@ public class Simulation {
      */
     SimulationEngine<Direction> simulationEngine;
 
+    /**
+     * The step executor of the platform, if agents are deliberated on a work-stealing pool
+     */
+    private ChunkedStepExecutor<Direction> chunkedStepExecutor;
+
+    /**
+     * If true, agents commit their moves to the environment directly from their deliberation threads
+     */
+    private boolean asynchronous;
+
+    /**
+     * Columnar storage of the beliefs of all agents
+     */
+    private BeliefStore beliefStore;
+
+    /**
+     * The agents in the simulation, which can enter and leave the simulation while it runs
+     */
+    private AgentPopulation population;
+
+    /**
+     * In a sharded simulation, the division of the grid over the shards, the shard this simulation runs, and its
+     * connection to the coordinator. The layout is null if the simulation is not sharded
+     */
+    private ShardLayout shardLayout;
+    private int shardIndex;
+    private ShardLink shardLink;
+
+    /**
+     * Live statistics of the simulation, exposed through JMX while the simulation runs
+     */
+    private final SimulationTelemetry telemetry;
+
+    /**
+     * The number of time steps to run, or 0 to run indefinitely
+     */
+    private final int nSteps;
+
+    /**
+     * Wall clock time taken by the last call to start(), in milliseconds
+     */
+    private long runDuration;
+
+    /**
+     * In fast-start mode, the telemetry is not registered with the MBean server
+     */
+    private final boolean fastStart;
+    private final boolean reportStartup;
+
     public Simulation(Namespace ns) {
         // The platform serves as the container for all agents on this computer
-        platform = Platform.newPlatform(
-                4, // Use 4 threads for concurrent execution of agents
-                new DefaultMessenger<Direction>() // Required for platform creation, but not used here
-        );
+        if (ns.getBoolean(Constants.ARG_WORK_STEALING)) {
+            // Deliberate agents in adaptive chunks on a work-stealing pool, instead of one task per agent
+            chunkedStepExecutor = new ChunkedStepExecutor<>(ns.getInt(Constants.ARG_THREADS));
+            platform = Platform.newPlatform(chunkedStepExecutor, new DefaultMessenger<Direction>());
+        } else {
+            platform = Platform.newPlatform(
+                    ns.getInt(Constants.ARG_THREADS), // The number of threads for concurrent execution of agents
+                    new DefaultMessenger<Direction>() // Required for platform creation, but not used here
+            );
+        }
 
-        // Use a seed if specified, otherwise, create a new random object without a seed
+        // In a sharded simulation, this simulation only runs the rows of the grid owned by a single shard
+        String coordinator = ns.getString(Constants.ARG_COORDINATOR);
+        if (coordinator != null) {
+            ShardedSimulation.validate(ns);
+            shardLayout = new ShardLayout(ns.getInt(Constants.ARG_HEIGHT), ns.getInt(Constants.ARG_SHARDS));
+            shardIndex = ns.getInt(Constants.ARG_SHARD_INDEX);
+        }
+
+        // Use a seed if specified, otherwise, create a new random object without a seed. Every shard derives its
+        // own seed
         Integer randomSeed = ns.getInt(Constants.ARG_SEED);
+        Long seed = null;
+        if (randomSeed != null) {
+            seed = shardLayout == null ? randomSeed : ShardedSimulation.shardSeed(randomSeed, shardIndex);
+        }
         Random random;
-        if (randomSeed == null) {
+        if (seed == null) {
             random = new Random();
         } else {
-             random = new Random(randomSeed);
+             random = new Random(seed);
         }
 
+        asynchronous = ns.getBoolean(Constants.ARG_ASYNC);
+        boolean headless = ns.getBoolean(Constants.ARG_HEADLESS);
+        boolean realtime = ns.getBoolean(Constants.ARG_REALTIME);
+
         // The environment interface allows Sim-2APL to effect the agent's actions in the environment,
         // and pass information from the environment back to the agents.
         environmentInterface = new ToyGridWorldInterface(
-                new Random(random.nextLong()),
+                createToyGridWorld(ns, new Random(random.nextLong())),
                 platform,
-                ns.getInt(Constants.ARG_WIDTH),
-                ns.getInt(Constants.ARG_HEIGHT),
-                ns.getInt(Constants.ARG_BETWEEN_STEP_DELAY)
+                !headless,
+                headless ? 0 : ns.getInt(Constants.ARG_BETWEEN_STEP_DELAY)
         );
 
+        // In real-time mode, the delay is the target period of a time step, including all computation
+        if (realtime) {
+            environmentInterface.setPacer(new StepPacer(ns.getInt(Constants.ARG_BETWEEN_STEP_DELAY)));
+        }
+
+        // Deterministic mode makes seeded runs reproducible regardless of the number of threads
+        if (ns.getBoolean(Constants.ARG_DETERMINISTIC)) {
+            if (seed == null || asynchronous) {
+                throw new IllegalArgumentException("Deterministic mode requires a seed, and cannot be combined with " +
+                        "asynchronous mode");
+            }
+            environmentInterface.setDeterministic(true);
+        }
+
+        if (ns.getBoolean(Constants.ARG_BACKOFF)) {
+            if (asynchronous) {
+                throw new IllegalArgumentException("In asynchronous mode, agents materialize their own actions, so " +
+                        "the environment cannot tell when they are stuck");
+            }
+            environmentInterface.setBackoff(new BackoffScheduler(BACKOFF_FAILURE_THRESHOLD, MAX_BACKOFF));
+        }
+
+        if (ns.getBoolean(Constants.ARG_PIPELINED)) {
+            if (asynchronous) {
+                throw new IllegalArgumentException("In asynchronous mode, agents materialize their own actions, so " +
+                        "there are no actions to pipeline");
+            }
+            if (chunkedStepExecutor == null) {
+                throw new IllegalArgumentException("Only the work-stealing executor hands out deliberation results " +
+                        "while the time step runs, so --" + Constants.ARG_PIPELINED + " requires --work-stealing");
+            }
+            environmentInterface.setPipelined(true);
+        }
+
+        // In a sharded simulation, the hash of the full grid is written by the coordinator
+        String checksumFile = ns.getString(Constants.ARG_CHECKSUM_FILE);
+        if (checksumFile != null && shardLayout == null) {
+            try {
+                environmentInterface.setChecksumWriter(
+                        Files.newBufferedWriter(Paths.get(checksumFile), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Expose live statistics of the simulation as an MBean, unless the first time step should start as soon as
+        // possible
+        fastStart = ns.getBoolean(Constants.ARG_FAST_START);
+        reportStartup = ns.getBoolean(Constants.ARG_REPORT_STARTUP);
+        telemetry = new SimulationTelemetry(environmentInterface::getAgentCount);
+        environmentInterface.setTelemetry(telemetry);
+
+        // Each agent gets its own random stream, seeded from a single (optionally seeded) root stream
+        SplittableRandom agentRandom = seed == null ? new SplittableRandom() : new SplittableRandom(seed);
+
+        // The beliefs of all agents are stored together, padded against false sharing if agents deliberate on
+        // multiple threads
+        beliefStore = new BeliefStore(
+                environmentInterface.getToyGridWorld().getWidth(),
+                environmentInterface.getToyGridWorld().getHeight(),
+                ns.getInt(Constants.ARG_N_AGENTS),
+                ns.getInt(Constants.ARG_THREADS) > 1
+        );
+
+        population = new AgentPopulation(platform, environmentInterface, beliefStore, asynchronous, agentRandom);
+        if (shardLayout != null) {
+            // Agents keep their name when they move to another shard, so the shards name their agents differently
+            population.setNaming(shardIndex, shardLayout.getShardCount());
+            try {
+                shardLink = new ShardLink(coordinator, (ShardGridWorld<String>) environmentInterface.getToyGridWorld(),
+                        population, beliefStore, shardIndex, shardLayout.getShardCount());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        double churn = ns.getDouble(Constants.ARG_CHURN);
+        if (churn > 0) {
+            population.setChurn(churn, new Random(random.nextLong()));
+        }
+
+        // Agents only negotiate swaps on request
+        if (ns.getBoolean(Constants.ARG_SWAP)) {
+            if (!ns.getBoolean(Constants.ARG_DETERMINISTIC) && !ns.getBoolean(Constants.ARG_PIPELINED)) {
+                throw new IllegalArgumentException("Swaps are carried out before the staged moves of the agents are " +
+                        "applied, so they require --" + Constants.ARG_DETERMINISTIC + " or --" +
+                        Constants.ARG_PIPELINED);
+            }
+            BatchedMessenger messenger = new BatchedMessenger(ns.getInt(Constants.ARG_MAILBOX_CAPACITY));
+            SwapAgreements swapAgreements = new SwapAgreements();
+            environmentInterface.setMessaging(messenger, swapAgreements);
+            population.setMessaging(messenger, swapAgreements);
+        }
+
+        // Agents only avoid crowded destinations on request
+        if (ns.getBoolean(Constants.ARG_CONGESTION_AWARE)) {
+            if (asynchronous || ns.getBoolean(Constants.ARG_SPARSE) || shardLayout != null) {
+                throw new IllegalArgumentException("The occupancy of the grid is counted for every cell of the full " +
+                        "grid, and only updated between time steps, so --" + Constants.ARG_CONGESTION_AWARE +
+                        " cannot be combined with --" + Constants.ARG_ASYNC + ", --" + Constants.ARG_SPARSE +
+                        " or --" + Constants.ARG_SHARDS);
+            }
+            OccupancyPyramid occupancy = new OccupancyPyramid(ns.getInt(Constants.ARG_WIDTH),
+                    ns.getInt(Constants.ARG_HEIGHT));
+            environmentInterface.setOccupancy(occupancy);
+            population.setOccupancy(occupancy);
+        }
+
+        // The deliberation of the agents is only profiled on request
+        String profileFile = ns.getString(Constants.ARG_PROFILE_FILE);
+        if (profileFile != null) {
+            try {
+                population.setProfiler(new PlanProfiler(
+                        ns.getInt(Constants.ARG_PROFILE_SAMPLE_INTERVAL),
+                        Files.newBufferedWriter(Paths.get(profileFile), StandardCharsets.UTF_8)
+                ));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         // We can pass this (and any other) environment interface implementation to the constructor of the
         // simulation engine to automatically register it as a subscriber
         // The simulation engine is what makes sure all the steps are run
-        simulationEngine = new DefaultSimulationEngine<>(platform, environmentInterface);
+        // The shard link is notified last, so the agents crossing into other shards have already tried to move
+        List<EnvironmentInterface<Direction>> environmentList = new ArrayList<>();
+        environmentList.add(environmentInterface);
+        environmentList.add(population);
+        if (shardLink != null) {
+            environmentList.add(shardLink);
+        }
+        EnvironmentInterface<Direction>[] environments = toArray(environmentList);
+        nSteps = ns.getInt(Constants.ARG_STEPS);
+        if (chunkedStepExecutor != null) {
+            ChunkedSimulationEngine<Direction> chunkedEngine =
+                    new ChunkedSimulationEngine<>(platform, chunkedStepExecutor, nSteps, environments);
+            if (ns.getBoolean(Constants.ARG_PIPELINED)) {
+                chunkedEngine.setCompletionListener(environmentInterface::deliberationCompleted);
+            }
+            simulationEngine = chunkedEngine;
+        } else if (nSteps > 0) {
+            simulationEngine = new DefaultSimulationEngine<>(platform, nSteps, environments);
+        } else {
+            simulationEngine = new DefaultSimulationEngine<>(platform, environments);
+        }
 
-        // Create some agents for this demonstration
-        tryCreateAgents(ns.getInt(Constants.ARG_N_AGENTS), random);
+        // Analytics of the agents' behaviour are only kept on request
+        String analyticsFile = ns.getString(Constants.ARG_ANALYTICS_FILE);
+        if (analyticsFile != null) {
+            if (asynchronous) {
+                throw new IllegalArgumentException("Analytics are collected from the moves materialized after each " +
+                        "time step, so they cannot be combined with asynchronous mode");
+            }
+            try {
+                environmentInterface.setAnalytics(new SimulationAnalytics(
+                        beliefStore.getEnvironmentWidth(),
+                        beliefStore.getEnvironmentHeight(),
+                        beliefStore,
+                        Files.newBufferedWriter(Paths.get(analyticsFile), StandardCharsets.UTF_8),
+                        ns.getInt(Constants.ARG_ANALYTICS_INTERVAL)
+                ));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
-        // We start the simulation once all agents are ready
-        simulationEngine.start();
+        // The state of the environment is only published for out-of-process viewers on request
+        String exportFile = ns.getString(Constants.ARG_EXPORT_FILE);
+        if (exportFile != null) {
+            try {
+                environmentInterface.setStateExporter(new SharedStateExporter(
+                        Paths.get(exportFile),
+                        beliefStore.getEnvironmentWidth(),
+                        beliefStore.getEnvironmentHeight(),
+                        ns.getInt(Constants.ARG_N_AGENTS)
+                ));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Create some agents for this demonstration. Each shard creates the agents in its own part of the grid
+        int nAgents = ns.getInt(Constants.ARG_N_AGENTS);
+        tryCreateAgents(shardLayout == null ? nAgents : shardLayout.getAgents(shardIndex, nAgents));
+    }
+
+    /**
+     * Start the simulation once all agents are ready. Blocks until the simulation has finished
+     */
+    public void start() {
+        if (!fastStart) {
+            telemetry.register();
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            simulationEngine.start();
+        } finally {
+            runDuration = System.currentTimeMillis() - startTime;
+            telemetry.unregister();
+        }
+
+        if (reportStartup) {
+            // The first time step starts as soon as the engine is started
+            System.out.println(StartupClock.report(startTime));
+        }
+    }
+
+    /**
+     * Stop the threads of the simulation and close its connection to the coordinator, so a process can run many
+     * simulations one after another. The statistics of the last run remain available. Should only be called once the
+     * simulation has finished
+     */
+    public void shutdown() {
+        platform.getStepExecutor().shutdown();
+        if (chunkedStepExecutor != null) {
+            chunkedStepExecutor.shutdown();
+        }
+        if (shardLink != null) {
+            shardLink.close();
+        }
+    }
+
+    /**
+     * @return  The number of time steps the simulation runs for, or 0 if it runs indefinitely
+     */
+    public int getSteps() {
+        return nSteps;
+    }
+
+    /**
+     * @return  Wall clock time taken by the last run of the simulation, in milliseconds
+     */
+    public long getRunDuration() {
+        return runDuration;
+    }
+
+    /**
+     * @return  The live statistics of this simulation
+     */
+    public SimulationTelemetry getTelemetry() {
+        return telemetry;
+    }
+
+    /**
+     * @return  The agents in this simulation
+     */
+    public AgentPopulation getPopulation() {
+        return population;
+    }
+
+    /**
+     * @return  The beliefs of the agents in this simulation
+     */
+    public BeliefStore getBeliefStore() {
+        return beliefStore;
+    }
+
+    /**
+     * @return  The interface to the environment of this simulation
+     */
+    public ToyGridWorldInterface getEnvironmentInterface() {
+        return environmentInterface;
+    }
+
+    /**
+     * The simulation engines take their environment interfaces as an array, which cannot be created for a generic type
+     *
+     * @param environments  Environment interfaces, in the order in which they should be notified
+     * @return              The same environment interfaces in an array
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> EnvironmentInterface<T>[] toArray(List<EnvironmentInterface<T>> environments) {
+        return (EnvironmentInterface<T>[]) environments.toArray(new EnvironmentInterface<?>[0]);
+    }
+
+    /**
+     * Creates the grid world implementation that fits the requested mode of the simulation
+     * @param ns        Parsed command line arguments
+     * @param random    Random object for stochastic updates of the environment
+     * @return          Grid world environment
+     */
+    private IToyGridWorld<String> createToyGridWorld(Namespace ns, Random random) {
+        int width = ns.getInt(Constants.ARG_WIDTH);
+        int height = ns.getInt(Constants.ARG_HEIGHT);
+        boolean sparse = ns.getBoolean(Constants.ARG_SPARSE);
+
+        if (shardLayout != null) {
+            return new ShardGridWorld<>(random, width, height, shardLayout.getTop(shardIndex),
+                    shardLayout.getBottom(shardIndex));
+        }
+        if (asynchronous && sparse) {
+            throw new IllegalArgumentException("The sparse grid world is not thread-safe, so it cannot be used " +
+                    "in asynchronous mode");
+        } else if (asynchronous) {
+            // In asynchronous mode, agents move themselves during deliberation, so the grid has to be thread-safe
+            return new ConcurrentToyGridWorld<>(random, width, height);
+        } else if (sparse) {
+            return new SparseToyGridWorld<>(random, width, height);
+        } else {
+            return new ToyGridWorld<>(random, width, height);
+        }
     }
 
     /**
      * Creates some agents
      * @param nAgents   Number of agents to instantiate
-     * @param random    (optionally seeded) random object for stochastic agent decision-making
      */
-    private void tryCreateAgents(int nAgents, Random random) {
+    private void tryCreateAgents(int nAgents) {
         int i = 0;
         while (i < nAgents) {
             try {
-                createAgent(Integer.toString(i), random.nextInt());
+                population.spawn();
                 i++;
             } catch (URISyntaxException e) {
                 e.printStackTrace();
@@ -98,39 +485,4 @@ public class Simulation {
         }
     }
 
-    /**
-     * Create a single agent.
-     *
-     * An agent is constructed through its AgentArguments, to which all contexts (representing beliefs) and plan
-     * schemes are added.
-     *
-     * After the agent has been created (and automatically registered to the platform), we can add its initial goals,
-     * and place it in the environment
-     *
-     * @param name  Display name of the agent for representation in the environment
-     * @param seed  The random seed for stochastic decision-making that the agent will use
-     * @throws URISyntaxException   Should not be thrown
-     */
-    private void createAgent(String name, int seed) throws URISyntaxException {
-        AgentArguments<Direction> arguments = new AgentArguments<>();
-        arguments.addExternalTriggerPlanScheme(new ExternalTriggerPlanScheme());
-        arguments.addGoalPlanScheme(new GoalPlanScheme());
-
-        Point initialPosition = environmentInterface.getToyGridWorld().getRandomFreePoint(false);
-        AgentBeliefContext beliefContext = new AgentBeliefContext(
-                new Random(seed),
-                initialPosition,
-                environmentInterface.getToyGridWorld().getWidth(),
-                environmentInterface.getToyGridWorld().getHeight()
-        );
-
-        arguments.addContext(beliefContext);
-        Agent<Direction> agent = new Agent<>(platform, arguments);
-
-        // We just adopt this goal, and from now on, the agent will pick random destinations to move towards!
-        agent.adoptGoal(new KeepMovingGoal());
-
-        environmentInterface.registerAgent(agent, name, initialPosition);
-    }
-
 }
@@ -0,0 +1,162 @@
+package simulation;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Collects the statistics exposed by the SimulationTelemetryMBean.
+ *
+ * All statistics are written by the single thread that finishes time steps, and read by JMX threads. Single-writer
+ * volatile fields are sufficient for that, so recording a time step takes no locks and no atomic read-modify-write
+ * operations.
+ */
+public class SimulationTelemetry implements SimulationTelemetryMBean {
+
+    /**
+     * The JMX domain under which all instances are registered
+     */
+    public static final String DOMAIN = "simulation";
+
+    private static final double ROLLING_WEIGHT = 0.1;
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    private final IntSupplier agentCount;
+    private ObjectName objectName;
+
+    private volatile long currentStep = -1;
+    private volatile long stepsRecorded = 0;
+    private volatile long totalStepDuration = 0;
+    private volatile double rollingStepDuration = 0;
+    private volatile double rollingStepInterval = 0;
+    private volatile double rollingFailedMoveRate = 0;
+    private volatile int deliberatedAgents = 0;
+
+    // Only accessed by the writer
+    private long lastStepNanos = 0;
+
+    /**
+     * @param agentCount    Supplies the current number of agents on request
+     */
+    public SimulationTelemetry(IntSupplier agentCount) {
+        this.agentCount = agentCount;
+    }
+
+    /**
+     * Register this instance with the platform MBean server, under a name unique to this JVM
+     */
+    public void register() {
+        try {
+            this.objectName = new ObjectName(
+                    DOMAIN + ":type=Simulation,name=simulation-" + instances.getAndIncrement());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.objectName);
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException |
+                NotCompliantMBeanException e) {
+            // Telemetry is optional, so the simulation can continue without it
+            System.err.println("Simulation telemetry is not available: " + e);
+        }
+    }
+
+    /**
+     * @return  The name under which this instance is registered with the platform MBean server, or null if it was
+     *          never registered
+     */
+    public ObjectName getObjectName() {
+        return this.objectName;
+    }
+
+    /**
+     * Remove this instance from the platform MBean server, if it was registered
+     */
+    public void unregister() {
+        if (this.objectName == null) {
+            // Never registered, so there is no need to start the MBean server
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(this.objectName)) {
+            try {
+                server.unregisterMBean(this.objectName);
+            } catch (InstanceNotFoundException | MBeanRegistrationException e) {
+                // Unregistered concurrently, or the MBean server failed; either way nothing is left to clean up
+                System.err.println("Could not unregister simulation telemetry " + this.objectName + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Record the statistics of a finished time step. Should only be called from one thread at a time
+     *
+     * @param timeStep          The time step that finished
+     * @param timeStepDuration  Computation time of the time step as reported by the simulation engine (milliseconds)
+     * @param deliberations     The number of agent deliberations in the time step
+     * @param moves             The number of move actions attempted in the time step
+     * @param failedMoves       The number of move actions that failed in the time step
+     */
+    public void recordStep(long timeStep, int timeStepDuration, int deliberations, long moves, long failedMoves) {
+        long now = System.nanoTime();
+        boolean first = this.stepsRecorded == 0;
+
+        this.currentStep = timeStep;
+        this.totalStepDuration += timeStepDuration;
+        this.deliberatedAgents = deliberations;
+        this.rollingStepDuration = roll(this.rollingStepDuration, timeStepDuration, first);
+        if (moves > 0) {
+            this.rollingFailedMoveRate = roll(this.rollingFailedMoveRate, failedMoves / (double) moves, first);
+        }
+        if (!first) {
+            this.rollingStepInterval = roll(this.rollingStepInterval, now - this.lastStepNanos, this.stepsRecorded == 1);
+        }
+
+        this.lastStepNanos = now;
+        this.stepsRecorded++;
+    }
+
+    private static double roll(double rolling, double value, boolean first) {
+        return first ? value : rolling + ROLLING_WEIGHT * (value - rolling);
+    }
+
+    @Override
+    public long getCurrentStep() {
+        return this.currentStep;
+    }
+
+    @Override
+    public double getStepsPerSecond() {
+        double interval = this.rollingStepInterval;
+        return interval > 0 ? 1e9 / interval : 0;
+    }
+
+    @Override
+    public int getAgentCount() {
+        return this.agentCount.getAsInt();
+    }
+
+    @Override
+    public double getFailedMoveRate() {
+        return this.rollingFailedMoveRate;
+    }
+
+    @Override
+    public double getMeanStepDuration() {
+        long steps = this.stepsRecorded;
+        return steps > 0 ? this.totalStepDuration / (double) steps : 0;
+    }
+
+    @Override
+    public double getRollingStepDuration() {
+        return this.rollingStepDuration;
+    }
+
+    @Override
+    public int getDeliberatedAgents() {
+        return this.deliberatedAgents;
+    }
+}
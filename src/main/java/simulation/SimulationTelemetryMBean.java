@@ -0,0 +1,48 @@
+package simulation;
+
+/**
+ * Live statistics of a running simulation, exposed through JMX so they can be inspected with standard JVM tooling
+ * (e.g., JConsole or VisualVM) without interrupting the simulation.
+ *
+ * Rolling values are exponentially weighted moving averages, in which the last time step has a weight of 10%.
+ */
+public interface SimulationTelemetryMBean {
+
+    /**
+     * @return  The last time step that finished
+     */
+    long getCurrentStep();
+
+    /**
+     * @return  Rolling number of time steps finished per second of wall clock time
+     */
+    double getStepsPerSecond();
+
+    /**
+     * @return  The number of agents in the simulation
+     */
+    int getAgentCount();
+
+    /**
+     * @return  Rolling fraction of move actions that failed
+     */
+    double getFailedMoveRate();
+
+    /**
+     * @return  Mean computation time of all time steps so far, as reported by the simulation engine, in milliseconds
+     */
+    double getMeanStepDuration();
+
+    /**
+     * @return  Rolling computation time per time step, as reported by the simulation engine, in milliseconds
+     */
+    double getRollingStepDuration();
+
+    /**
+     * Sim-2APL does not expose the queue of its thread pool, so the backlog of the pool cannot be measured. Agents that
+     * are asleep are not deliberated, so this is lower than the agent count when agents back off or have no goals
+     *
+     * @return  The number of agents deliberated in the last time step
+     */
+    int getDeliberatedAgents();
+}
@@ -0,0 +1,142 @@
+package simulation;
+
+import simulation.analytics.LogHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Paces the simulation to a fixed wall clock period per time step.
+ *
+ * Time step k is due at a fixed point in time, one period after time step k - 1 was due. After each time step,
+ * the pacer only sleeps until that point, so the time spent deliberating, materializing actions and rendering is
+ * subtracted from the delay instead of added to it.
+ *
+ * If a time step finishes after it was due, rendering the environment is skipped, so the simulation can catch up
+ * instead of slowing down further. If the simulation falls behind by more than a full period, it does not try to
+ * catch up with a burst of time steps, but continues at the normal period from the current time.
+ *
+ * Should only be used by the thread that finishes time steps.
+ */
+public class StepPacer {
+
+    /**
+     * Render at least every so many time steps, so the visualization does not freeze when the simulation cannot
+     * keep up with the requested period
+     */
+    private static final int MAX_CONSECUTIVE_SKIPPED_FRAMES = 10;
+
+    private final long periodNanos;
+    private final LongSupplier nanoTime;
+    private final LongConsumer sleeper;
+
+    // The point in time the current time step is due, as given by the clock of the pacer
+    private boolean started = false;
+    private long due = 0;
+    private long lateness = 0;
+    private int consecutiveSkippedFrames = 0;
+
+    private long steps = 0;
+    private long lateSteps = 0;
+    private long skippedFrames = 0;
+    private long rescheduled = 0;
+    private final LogHistogram latenessMicros = new LogHistogram();
+
+    /**
+     * @param periodMillis  Target wall clock time per time step, in milliseconds
+     */
+    public StepPacer(int periodMillis) {
+        this(periodMillis, System::nanoTime, StepPacer::sleep);
+    }
+
+    /**
+     * @param periodMillis  Target wall clock time per time step, in milliseconds
+     * @param nanoTime      Clock of the pacer, in nanoseconds, e.g., System::nanoTime
+     * @param sleeper       Sleeps for the given number of nanoseconds
+     */
+    public StepPacer(int periodMillis, LongSupplier nanoTime, LongConsumer sleeper) {
+        if (periodMillis < 1) {
+            throw new IllegalArgumentException("The step period should be at least 1 ms, got " + periodMillis);
+        }
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        this.nanoTime = nanoTime;
+        this.sleeper = sleeper;
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Called when a time step has finished, before rendering
+     *
+     * @return  True if the environment should be rendered, false if the frame is skipped to catch up
+     */
+    public boolean stepFinished() {
+        long now = nanoTime.getAsLong();
+        if (!started) {
+            // The first time step is on schedule by definition
+            started = true;
+            due = now;
+        }
+
+        steps++;
+        lateness = Math.max(0, now - due);
+        latenessMicros.record(TimeUnit.NANOSECONDS.toMicros(lateness));
+
+        if (lateness > 0) {
+            lateSteps++;
+            if (consecutiveSkippedFrames < MAX_CONSECUTIVE_SKIPPED_FRAMES) {
+                consecutiveSkippedFrames++;
+                skippedFrames++;
+                return false;
+            }
+        }
+
+        consecutiveSkippedFrames = 0;
+        return true;
+    }
+
+    /**
+     * Sleep until the current time step is due, and schedule the next time step
+     */
+    public void awaitNextStep() {
+        long remaining = due - nanoTime.getAsLong();
+        if (remaining > 0) {
+            sleeper.accept(remaining);
+        }
+
+        if (lateness > periodNanos) {
+            // Too far behind to catch up, so continue at the normal period from now on
+            due = nanoTime.getAsLong() + periodNanos;
+            rescheduled++;
+        } else {
+            due += periodNanos;
+        }
+    }
+
+    public long getLateSteps() {
+        return lateSteps;
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    public long getRescheduled() {
+        return rescheduled;
+    }
+
+    /**
+     * @return  A single line summarizing how well the simulation kept up with the requested period
+     */
+    public String summary() {
+        return String.format("Pacing: %d steps, %d late, %d frames skipped, %d times rescheduled, lateness (us) %s",
+                steps, lateSteps, skippedFrames, rescheduled, latenessMicros.summary());
+    }
+}
@@ -0,0 +1,209 @@
+package simulation;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import util.Constants;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a parameter sweep of headless simulations concurrently inside a single JVM.
+ *
+ * Each combination of engine mode, seed, grid size, number of agents and number of steps is one run. Runs are
+ * executed on a shared executor with a bounded number of threads, so the throughput of the sweep scales with the
+ * number of available cores instead of with the number of JVM processes that are launched.
+ *
+ * Each run still creates its own platform, with its own pool of deliberation threads. Up to parallelism times the
+ * number of threads per run deliberation threads can therefore be busy at the same time.
+ *
+ * A summary row is written to the results file as soon as a run has finished.
+ */
+public class SweepRunner {
+
+    private static final String HEADER =
+            "mode,seed,width,height,agents,steps,threads,duration_ms,steps_per_second,successful_moves,failed_moves";
+
+    private final List<Namespace> scenarios;
+    private final int parallelism;
+    private final Path output;
+
+    /**
+     * @param scenarios     The parsed arguments of each simulation run
+     * @param parallelism   The maximum number of simulations to run at the same time
+     * @param output        The CSV file to write the run summaries to
+     */
+    public SweepRunner(List<Namespace> scenarios, int parallelism, Path output) {
+        this.scenarios = scenarios;
+        this.parallelism = parallelism;
+        this.output = output;
+    }
+
+    /**
+     * Creates one scenario for each combination of the given parameters
+     *
+     * @param modes     Engine modes
+     * @param seeds     Random seeds
+     * @param widths    Grid widths
+     * @param heights   Grid heights
+     * @param agents    Numbers of agents
+     * @param steps     Numbers of time steps
+     * @param threads   Number of platform threads each individual simulation uses
+     * @return          The arguments for each simulation run
+     */
+    public static List<Namespace> createScenarios(
+            List<EngineMode> modes,
+            List<Integer> seeds,
+            List<Integer> widths,
+            List<Integer> heights,
+            List<Integer> agents,
+            List<Integer> steps,
+            int threads
+    ) {
+        List<Namespace> scenarios = new ArrayList<>();
+        for (EngineMode mode : modes) {
+            for (int seed : seeds) {
+                for (int width : widths) {
+                    for (int height : heights) {
+                        for (int nAgents : agents) {
+                            for (int nSteps : steps) {
+                                scenarios.add(createScenario(mode, seed, width, height, nAgents, nSteps, threads));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return scenarios;
+    }
+
+    /**
+     * Creates the arguments of a single headless simulation run without delays
+     *
+     * @param mode      Engine mode of the run
+     * @param seed      Random seed
+     * @param width     Grid width
+     * @param height    Grid height
+     * @param nAgents   Number of agents
+     * @param nSteps    Number of time steps
+     * @param threads   Number of platform threads the simulation uses
+     * @return          The arguments of the simulation run
+     */
+    public static Namespace createScenario(
+            EngineMode mode,
+            int seed,
+            int width,
+            int height,
+            int nAgents,
+            int nSteps,
+            int threads
+    ) {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put(Constants.ARG_SWEEP_MODES, mode);
+        arguments.put(Constants.ARG_SEED, seed);
+        arguments.put(Constants.ARG_WIDTH, width);
+        arguments.put(Constants.ARG_HEIGHT, height);
+        arguments.put(Constants.ARG_N_AGENTS, nAgents);
+        arguments.put(Constants.ARG_STEPS, nSteps);
+        arguments.put(Constants.ARG_THREADS, threads);
+        arguments.put(Constants.ARG_BETWEEN_STEP_DELAY, 0);
+        arguments.put(Constants.ARG_HEADLESS, true);
+        arguments.put(Constants.ARG_ASYNC, false);
+        arguments.put(Constants.ARG_SPARSE, false);
+        arguments.put(Constants.ARG_DETERMINISTIC, false);
+        arguments.put(Constants.ARG_CHURN, 0.0);
+        arguments.put(Constants.ARG_REALTIME, false);
+        arguments.put(Constants.ARG_WORK_STEALING, false);
+        arguments.put(Constants.ARG_PIPELINED, false);
+        arguments.put(Constants.ARG_BACKOFF, false);
+        arguments.put(Constants.ARG_SWAP, false);
+        arguments.put(Constants.ARG_CONGESTION_AWARE, false);
+        arguments.put(Constants.ARG_FAST_START, false);
+        arguments.put(Constants.ARG_REPORT_STARTUP, false);
+        mode.apply(arguments);
+        return new Namespace(arguments);
+    }
+
+    /**
+     * Run all scenarios, and block until all runs have finished
+     *
+     * @throws IOException          If the results file cannot be written
+     * @throws InterruptedException If interrupted while waiting for the runs to finish
+     */
+    public void run() throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(this.output, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.flush();
+
+            for (Namespace scenario : this.scenarios) {
+                executor.submit(() -> runScenario(scenario, writer));
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run a single simulation, and stream its summary to the results file
+     *
+     * @param scenario  Arguments of the simulation
+     * @param writer    Writer of the results file
+     */
+    private void runScenario(Namespace scenario, BufferedWriter writer) {
+        try {
+            Simulation simulation = new Simulation(scenario);
+            try {
+                simulation.start();
+            } finally {
+                simulation.shutdown();
+            }
+            writeSummary(scenario, simulation, writer);
+        } catch (RuntimeException | IOException e) {
+            // A failing run should not stop the rest of the sweep
+            System.err.println("Run " + scenario + " failed");
+            e.printStackTrace();
+        }
+    }
+
+    private void writeSummary(Namespace scenario, Simulation simulation, BufferedWriter writer) throws IOException {
+        ToyGridWorldInterface environmentInterface = simulation.getEnvironmentInterface();
+        long duration = simulation.getRunDuration();
+        double stepsPerSecond = duration > 0 ? simulation.getSteps() * 1000d / duration : 0;
+
+        String row = String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%d,%d,%.3f,%d,%d",
+                scenario.<EngineMode>get(Constants.ARG_SWEEP_MODES),
+                scenario.getInt(Constants.ARG_SEED),
+                scenario.getInt(Constants.ARG_WIDTH),
+                scenario.getInt(Constants.ARG_HEIGHT),
+                scenario.getInt(Constants.ARG_N_AGENTS),
+                scenario.getInt(Constants.ARG_STEPS),
+                scenario.getInt(Constants.ARG_THREADS),
+                duration,
+                stepsPerSecond,
+                environmentInterface.getSuccessfulMoves(),
+                environmentInterface.getFailedMoves()
+        );
+
+        synchronized (writer) {
+            writer.write(row);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+}
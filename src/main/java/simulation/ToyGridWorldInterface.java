@@ -6,15 +6,25 @@ import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
 import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
 import nl.uu.cs.iss.ga.sim2apl.core.step.EnvironmentInterface;
+import simulation.agent.BackoffTrigger;
+import simulation.agent.DirectMoveContext;
 import simulation.agent.MoveFailedTrigger;
 import simulation.agent.MoveTowardsGoal;
+import simulation.agent.SwapAgreements;
+import simulation.agent.WakeUpTrigger;
+import simulation.analytics.SimulationAnalytics;
+import simulation.export.SharedStateExporter;
+import simulation.messaging.BatchedMessenger;
 
 import java.awt.*;
+import java.io.IOException;
+import java.io.Writer;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The ToyGridWorldInterface interfaces Sim-2APL with the ToyGridWorld environment.
@@ -37,15 +47,97 @@ public class ToyGridWorldInterface implements EnvironmentInterface<Direction> {
     private final Map<AgentID, String> agentIdToNameMap = new HashMap<>();
     private final int delay;
 
+    // Each agent is assigned a handle, which indexes these lists. Handles of agents that left the simulation
+    // refer to null until they are reused
+    private final Map<AgentID, Integer> agentIdToHandleMap = new HashMap<>();
+    private final Map<String, Integer> agentNameToHandleMap = new HashMap<>();
+    private final List<String> agentNames = new ArrayList<>();
+    private final List<Agent<Direction>> agents = new ArrayList<>();
+
+    // Each agent reuses its own MoveFailedTrigger, created when its first move fails
+    private final List<MoveFailedTrigger> moveFailedTriggers = new ArrayList<>();
+
+    // In deterministic mode, moves are staged and applied in order of agent handle at the end of the time step
+    private boolean deterministic = false;
+
+    // In pipelined mode, deliberation results are staged in the move buffer in the order in which they complete,
+    // while other agents are still deliberating
+    private boolean pipelined = false;
+    private int completedResults = 0;
+    private final Map<Point, List<String>> agentDestinations = new HashMap<>();
+    private final MoveBuffer moveBuffer = new MoveBuffer();
+    private Writer checksumWriter;
+
+    // Receives the statistics of each time step, if live telemetry is enabled
+    private SimulationTelemetry telemetry;
+
+    // Puts agents whose moves keep failing to sleep, if enabled
+    private BackoffScheduler backoff;
+    private final Point neighbour = new Point();
+
+    // The cell an agent leaves when it moves, reused for every move
+    private final Point origin = new Point();
+    private long currentTimeStep = 0;
+
+    // Replaces the fixed delay after each time step in real-time mode
+    private StepPacer pacer;
+
+    // Receives the materialized moves of each time step, if analytics are enabled
+    private SimulationAnalytics analytics;
+
+    // Publishes the state of the environment for out-of-process viewers, if enabled
+    private SharedStateExporter stateExporter;
+
+    // Delivers the messages of the agents between time steps, and collects the swaps they agree to, if enabled
+    private BatchedMessenger messenger;
+    private SwapAgreements swapAgreements;
+    private long swaps = 0;
+
+    // Counts the occupied cells of the grid, so agents can sample free destinations, if enabled
+    private OccupancyPyramid occupancy;
+
+    // Only updated from stepFinished, which is never called concurrently
+    private long successfulMoves = 0;
+    private long failedMoves = 0;
+
+    // In asynchronous mode, agents move themselves from their deliberation threads, so they count their own moves
+    private final LongAdder directMoves = new LongAdder();
+    private final LongAdder failedDirectMoves = new LongAdder();
+
+    // Wall clock time spent from the start of each time step until its results are handed to the environment, and
+    // handling those results, excluding drawing and delays
+    private long stepStartedNanos;
+    private long deliberationNanos = 0;
+    private long environmentNanos = 0;
+
     public ToyGridWorldInterface(Random random, Platform platform, int width, int height, int delay) {
-        this.toyGridWorld = new ToyGridWorld<>(random, width, height);
+        this(new ToyGridWorld<>(random, width, height), platform, true, delay);
+    }
+
+    /**
+     * Create an interface for an existing grid world, e.g., one that can safely be updated concurrently
+     *
+     * @param toyGridWorld  The environment to interface with
+     * @param platform      The platform on which the agents are registered
+     * @param visualize     If false, the simulation runs headless, and the environment is never drawn
+     * @param delay         Number of milliseconds to sleep after each time step
+     */
+    public ToyGridWorldInterface(IToyGridWorld<String> toyGridWorld, Platform platform, boolean visualize, int delay) {
+        this.toyGridWorld = toyGridWorld;
         this.platform = platform;
-        this.environmentView = new EnvironmentConsoleView<>(toyGridWorld);
+        this.environmentView = visualize ? new EnvironmentConsoleView<>(toyGridWorld) : null;
         this.delay = delay;
     }
 
     @Override
     public void stepStarting(long l) {
+        stepStartedNanos = System.nanoTime();
+        completedResults = 0;
+        agentDestinations.clear();
+        if (analytics != null) {
+            analytics.stepStarting(l);
+        }
+
         // Because this demo is relatively simple, we do not have to update the agents before a new time step
         // starts.
         // This method is useful if actions are processed in bulk by the environment, and the environment sends
@@ -71,44 +163,329 @@ public class ToyGridWorldInterface implements EnvironmentInterface<Direction> {
      */
     @Override
     public void stepFinished(long timeStep, int timeStepDuration, List<Future<DeliberationResult<Direction>>> agentActions) {
-        Map<Point, List<String>> agentDestinations = new HashMap<>();
+        long stepFinishedNanos = System.nanoTime();
+        deliberationNanos += stepFinishedNanos - stepStartedNanos;
+        long movesBefore = successfulMoves + failedMoves;
+        long failedMovesBefore = failedMoves;
+        currentTimeStep = timeStep;
 
-        for(Future<DeliberationResult<Direction>> deliberationResultFuture : agentActions) {
-            try {
-                // The deliberation result is a tuple containing the agent ID
-                // and an (ordered) list of actions produced by the corresponding agents in the last time step
-                DeliberationResult<Direction> deliberationResult = deliberationResultFuture.get();
+        // In pipelined mode, the results were handed to deliberationCompleted during the time step already
+        if (completedResults == 0) {
+            for(Future<DeliberationResult<Direction>> deliberationResultFuture : agentActions) {
+                processCompletedFuture(deliberationResultFuture);
+            }
+        } else if (completedResults != agentActions.size()) {
+            throw new IllegalStateException("Received " + completedResults + " deliberation results during time step " +
+                    timeStep + ", but " + agentActions.size() + " agents deliberated");
+        }
 
-                // Iterate over all actions and materialize them in the environment
-                for(Direction direction : deliberationResult.getActions()) {
+        // All agents finished deliberating, so no agent moves itself until the next time step
+        long direct = directMoves.sumThenReset();
+        long failedDirect = failedDirectMoves.sumThenReset();
+        successfulMoves += direct - failedDirect;
+        failedMoves += failedDirect;
 
-                    // We map the AgentID (long uri) to a string for more compact displaying in the environment
-                    String agentName = this.agentIdToNameMap.get(deliberationResult.getAgentID());
+        if (deterministic || pipelined) {
+            if (swapAgreements != null) {
+                applySwaps();
+            }
+            moveBuffer.commit(this::applyMove);
+        }
 
-                    // We get access to this agent's internals, so we can check what goals it is currently pursuing
-                    // This allows us to visualize the agents' goals in the environment too
-                    Agent agent = platform.getLocalAgent(deliberationResult.getAgentID());
-                    addAgentDestination(agentDestinations, agentName, agent);
+        if (backoff != null) {
+            backoff.wakeUpDue(timeStep + 1, handle -> agents.get(handle).addExternalTrigger(WakeUpTrigger.INSTANCE));
+        }
 
-                    // Actions may fail. If that is the case, the agent should be notified
-                    if(!toyGridWorld.move(agentName, direction)) {
-                        handleFailure(agent, agentName, direction);
-                    }
-                }
+        // Messages sent during this time step are handled by the agents in the next time step. Agents that are asleep
+        // are not deliberated, so they would only handle their messages once they are outdated
+        if (messenger != null) {
+            messenger.deliver(
+                    handle -> backoff == null || !backoff.isAsleep(handle),
+                    (handle, batch) -> agents.get(handle).addExternalTrigger(batch)
+            );
+        }
 
-            } catch (InterruptedException | ExecutionException | URISyntaxException e) {
-                e.printStackTrace();
-            }
+        if (checksumWriter != null) {
+            writeChecksum(timeStep);
+        }
+
+        if (analytics != null) {
+            analytics.stepFinished(timeStep);
+        }
+
+        if (stateExporter != null) {
+            exportState(timeStep);
+        }
+
+        if (telemetry != null) {
+            telemetry.recordStep(timeStep, timeStepDuration, agentActions.size(),
+                    successfulMoves + failedMoves - movesBefore, failedMoves - failedMovesBefore);
         }
 
+        environmentNanos += System.nanoTime() - stepFinishedNanos;
+
+        // In real-time mode, we skip drawing if this time step finished later than it was due
+        boolean render = pacer == null || pacer.stepFinished();
+
         // Visualize new state of the environment
-        environmentView.draw(timeStep, agentDestinations);
+        if (environmentView != null && render) {
+            environmentView.draw(timeStep, agentDestinations);
+        }
 
         // We sleep for a bit, because the terminal can't keep up with redrawing the state of the environment
         // every time step otherwise
+        if (pacer != null) {
+            pacer.awaitNextStep();
+        } else if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stage the actions of an agent as soon as it finished deliberating, while other agents may still be deliberating.
+     * The actions are materialized in order of agent registration once the time step finishes, so the outcome is
+     * identical to deterministic mode. Should be called from the thread that finishes time steps, e.g., as the
+     * completion listener of a ChunkedSimulationEngine, and only in pipelined mode
+     *
+     * @param future    The completed future with the deliberation result of the agent
+     */
+    public void deliberationCompleted(Future<DeliberationResult<Direction>> future) {
+        completedResults++;
+        processCompletedFuture(future);
+    }
+
+    private void processCompletedFuture(Future<DeliberationResult<Direction>> future) {
+        try {
+            processDeliberationResult(future.get());
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Materialize (or stage) the actions of a single agent, and record its destination for visualization
+     *
+     * @param deliberationResult    The deliberation result of the agent
+     */
+    private void processDeliberationResult(DeliberationResult<Direction> deliberationResult) {
+        // The deliberation result is a tuple containing the agent ID
+        // and an (ordered) list of actions produced by the corresponding agents in the last time step
+
+        // Agents that have left the simulation may still deliberate once before they drop their goals.
+        // Their actions are ignored
+        Integer handle = this.agentIdToHandleMap.get(deliberationResult.getAgentID());
+        if (handle == null) {
+            return;
+        }
+
+        // We map the AgentID (long uri) to a string for more compact displaying in the environment
+        String agentName = this.agentIdToNameMap.get(deliberationResult.getAgentID());
+
+        // We get access to this agent's internals, so we can check what goals it is currently pursuing
+        // This allows us to visualize the agents' goals in the environment too
+        // Note that in asynchronous mode, agents have already moved themselves and return no actions
+        if (environmentView != null) {
+            try {
+                addAgentDestination(agentDestinations, agentName, platform.getLocalAgent(deliberationResult.getAgentID()));
+            } catch (URISyntaxException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // Agents that backed off may still produce actions in the time step in which they are notified.
+        // Those actions would most likely fail again, so they are ignored
+        if (backoff != null && backoff.isAsleep(handle)) {
+            return;
+        }
+
+        // Iterate over all actions and materialize them in the environment
+        for(Direction direction : deliberationResult.getActions()) {
+            if (deterministic || pipelined) {
+                // The order of the deliberation results can differ between runs, so we postpone
+                // materializing the action until we can apply all actions in a fixed order
+                moveBuffer.stage(handle, direction);
+            } else {
+                applyMove(handle, direction);
+            }
+        }
+    }
+
+    /**
+     * Materialize a single move in the environment
+     *
+     * @param handle    Handle of the agent that requested the move
+     * @param direction Direction of the move
+     */
+    private void applyMove(int handle, Direction direction) {
+        String agentName = agentNames.get(handle);
+
+        // Look up the cell the agent is about to leave only once, and only if it is needed after the move. If agents
+        // are asleep, one of them may be waiting for that cell
+        boolean wakeNeighbours = backoff != null && backoff.getAsleepCount() > 0;
+        boolean needsOrigin = occupancy != null || analytics != null || wakeNeighbours;
+        if (needsOrigin) {
+            origin.setLocation(toyGridWorld.getPosition(agentName));
+        }
+
+        // Actions may fail. If that is the case, the agent should be notified
+        if(toyGridWorld.move(agentName, direction)) {
+            successfulMoves++;
+            if (needsOrigin) {
+                // A successful move takes the agent to the neighbouring cell in its direction
+                setNeighbour(origin, direction);
+                int toX = neighbour.x;
+                int toY = neighbour.y;
+                if (occupancy != null) {
+                    occupancy.move(origin.x, origin.y, toX, toY);
+                }
+                if (analytics != null) {
+                    analytics.moveSucceeded(handle, toX, toY);
+                }
+            }
+            if (backoff != null) {
+                backoff.moveSucceeded(handle);
+                if (wakeNeighbours) {
+                    wakeNeighbours(origin);
+                }
+            }
+        } else {
+            failedMoves++;
+            handleFailure(handle, agentName, direction);
+            if (analytics != null) {
+                analytics.moveFailed(handle);
+            }
+            if (backoff != null && backoff.moveFailed(handle, currentTimeStep)) {
+                // Stop scheduling the agent for deliberation while its moves would fail anyway
+                agents.get(handle).addExternalTrigger(BackoffTrigger.INSTANCE);
+            }
+        }
+    }
+
+    /**
+     * Swap the agents that agreed to swap cells during this time step, if they both try to move into each other's
+     * cell. Their staged moves are cancelled. Agreements are carried out in order of the handle of the agent that
+     * agreed, so the outcome does not depend on the order in which the agents deliberated
+     */
+    private void applySwaps() {
+        for (int handle = 0; handle < swapAgreements.size(); handle++) {
+            int partner = swapAgreements.take(handle);
+            if (partner < 0 || partner >= agentNames.size() ||
+                    agentNames.get(handle) == null || agentNames.get(partner) == null) {
+                continue;
+            }
+
+            // Moves of agents that were already swapped are cancelled, so they cannot be swapped again
+            Direction move = moveBuffer.find(handle);
+            Direction partnerMove = moveBuffer.find(partner);
+            if (move == null || partnerMove == null) {
+                continue;
+            }
+
+            String name = agentNames.get(handle);
+            String partnerName = agentNames.get(partner);
+            Point position = new Point(toyGridWorld.getPosition(name));
+            Point partnerPosition = new Point(toyGridWorld.getPosition(partnerName));
+            if (!setNeighbour(position, move) || !neighbour.equals(partnerPosition) ||
+                    !setNeighbour(partnerPosition, partnerMove) || !neighbour.equals(position)) {
+                continue;
+            }
+
+            toyGridWorld.removeAgent(name);
+            toyGridWorld.removeAgent(partnerName);
+            toyGridWorld.registerAgent(name, partnerPosition);
+            toyGridWorld.registerAgent(partnerName, position);
+            moveBuffer.cancel(handle);
+            moveBuffer.cancel(partner);
+
+            swaps++;
+            successfulMoves += 2;
+            if (analytics != null) {
+                analytics.moveSucceeded(handle, partnerPosition.x, partnerPosition.y);
+                analytics.moveSucceeded(partner, position.x, position.y);
+            }
+            if (backoff != null) {
+                backoff.moveSucceeded(handle);
+                backoff.moveSucceeded(partner);
+            }
+        }
+    }
+
+    /**
+     * Wake up the agents that are asleep in the cells next to a cell that has become free
+     *
+     * @param cell  The cell that has become free
+     */
+    private void wakeNeighbours(Point cell) {
+        for (Direction direction : Direction.values()) {
+            if (!setNeighbour(cell, direction)) {
+                continue;
+            }
+
+            String name = toyGridWorld.getAgentAt(neighbour);
+            Integer handle = name == null ? null : agentNameToHandleMap.get(name);
+            if (handle != null && backoff.wakeEarly(handle, currentTimeStep)) {
+                agents.get(handle).addExternalTrigger(WakeUpTrigger.INSTANCE);
+            }
+        }
+    }
+
+    /**
+     * Point the neighbour field to the cell next to a cell
+     *
+     * @param cell      The cell
+     * @param direction The side of the cell the neighbour is on
+     * @return          False if the neighbour is outside the grid
+     */
+    private boolean setNeighbour(Point cell, Direction direction) {
+        neighbour.setLocation(cell);
+        switch (direction) {
+            case UP:
+                neighbour.y--;
+                break;
+            case DOWN:
+                neighbour.y++;
+                break;
+            case LEFT:
+                neighbour.x--;
+                break;
+            case RIGHT:
+                neighbour.x++;
+                break;
+        }
+        return neighbour.x >= 0 && neighbour.x < toyGridWorld.getWidth() &&
+                neighbour.y >= 0 && neighbour.y < toyGridWorld.getHeight();
+    }
+
+    /**
+     * Write the hash of the positions of all agents, so runs can be compared step by step. The hash is maintained
+     * incrementally by the environment, so this takes constant time
+     *
+     * @param timeStep  The time step that just finished
+     */
+    private void writeChecksum(long timeStep) {
+        try {
+            checksumWriter.write(timeStep + "," + Long.toHexString(toyGridWorld.getStateHash()) + "\n");
+            checksumWriter.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Publish the positions of all agents to the out-of-process viewers. Agents that left the simulation are
+     * published without a position
+     *
+     * @param timeStep  The time step that just finished
+     */
+    private void exportState(long timeStep) {
         try {
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
+            stateExporter.publish(timeStep, agentNames.size(), handle ->
+                    agentNames.get(handle) == null ? null : toyGridWorld.getPosition(agentNames.get(handle)));
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
@@ -138,20 +515,65 @@ public class ToyGridWorldInterface implements EnvironmentInterface<Direction> {
      * Notifies the agent a MOVE action has failed through an external trigger. This allows the agent to update
      * their beliefs about their current position
      *
-     * @param agent         Internals of the agent for which a move has failed
+     * @param handle        Handle of the agent for which a move has failed
      * @param agentName     String representation of the agent for which a move has failed
      * @param direction     Direction of the move that has failed
      */
-    private void handleFailure(Agent agent, String agentName, Direction direction) {
-        agent.addExternalTrigger(new MoveFailedTrigger(
-                toyGridWorld.getPosition(agentName),
-                direction
-        ));
+    private void handleFailure(int handle, String agentName, Direction direction) {
+        Point position = toyGridWorld.getPosition(agentName);
+
+        // With messaging enabled, the agent can ask the agent that blocked it to swap cells
+        int blocker = -1;
+        if (messenger != null && setNeighbour(position, direction)) {
+            String blockerName = toyGridWorld.getAgentAt(neighbour);
+            Integer blockerHandle = blockerName == null ? null : agentNameToHandleMap.get(blockerName);
+            blocker = blockerHandle == null ? -1 : blockerHandle;
+        }
+
+        MoveFailedTrigger trigger = moveFailedTriggers.get(handle);
+        if (trigger == null) {
+            trigger = new MoveFailedTrigger(position, direction, blocker);
+            moveFailedTriggers.set(handle, trigger);
+        } else {
+            trigger.set(position, direction, blocker);
+        }
+        agents.get(handle).addExternalTrigger(trigger);
     }
 
     @Override
     public void simulationFinished(long l, int i) {
-        System.out.println("Done");
+        if (checksumWriter != null) {
+            try {
+                checksumWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (analytics != null) {
+            analytics.simulationFinished(l);
+        }
+
+        if (stateExporter != null) {
+            try {
+                stateExporter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (pacer != null) {
+            System.out.println(pacer.summary());
+        }
+
+        if (messenger != null) {
+            System.out.printf("Delivered %d of %d messages (%d dropped), %d swaps%n", messenger.getDeliveredCount(),
+                    messenger.getSentCount(), messenger.getDroppedCount(), swaps);
+        }
+
+        if (environmentView != null) {
+            System.out.println("Done");
+        }
     }
 
     /**
@@ -161,8 +583,82 @@ public class ToyGridWorldInterface implements EnvironmentInterface<Direction> {
      * @param initialPosition   Coordinates of the grid location where the agent starts
      */
     public void registerAgent(Agent<Direction> agent, String name, Point initialPosition) {
+        registerAgent(agent, name, initialPosition, this.agentNames.size());
+    }
+
+    /**
+     * Register an agent to the environment under a specific handle, e.g., to let an agent that left the simulation
+     * enter it again under its old handle. Should not be called while agents are deliberating
+     *
+     * @param agent             Agent to register
+     * @param name              Display name of the agent
+     * @param initialPosition   Coordinates of the grid location where the agent starts
+     * @param handle            Handle of the agent, which should not be in use by another agent
+     */
+    public void registerAgent(Agent<Direction> agent, String name, Point initialPosition, int handle) {
+        while (this.agentNames.size() <= handle) {
+            this.agentNames.add(null);
+            this.agents.add(null);
+            this.moveFailedTriggers.add(null);
+        }
+        if (this.agentNames.get(handle) != null) {
+            throw new IllegalArgumentException("Handle " + handle + " is already in use by agent " +
+                    this.agentNames.get(handle));
+        }
+
         this.agentIdToNameMap.put(agent.getAID(), name);
-        this.getToyGridWorld().registerAgent(name, initialPosition);
+        this.agentIdToHandleMap.put(agent.getAID(), handle);
+        this.agentNameToHandleMap.put(name, handle);
+        this.agentNames.set(handle, name);
+        this.agents.set(handle, agent);
+        if (this.getToyGridWorld().registerAgent(name, initialPosition) && this.occupancy != null) {
+            this.occupancy.occupy(initialPosition.x, initialPosition.y);
+        }
+        if (this.analytics != null) {
+            this.analytics.registerAgent(handle, initialPosition.x, initialPosition.y);
+        }
+        if (this.backoff != null) {
+            this.backoff.registerAgent(handle);
+        }
+        if (this.messenger != null) {
+            this.messenger.registerAgent(handle);
+            this.swapAgreements.registerAgent(handle);
+        }
+    }
+
+    /**
+     * Remove an agent from the environment. Actions the agent still produces are ignored from now on. Should not be
+     * called while agents are deliberating
+     *
+     * @param agentID   ID of the agent to remove
+     * @return          True iff the agent was registered to the environment
+     */
+    public boolean unregisterAgent(AgentID agentID) {
+        Integer handle = this.agentIdToHandleMap.remove(agentID);
+        if (handle == null) {
+            return false;
+        }
+
+        String name = this.agentIdToNameMap.remove(agentID);
+        this.agentNameToHandleMap.remove(name);
+        Point position = this.getToyGridWorld().getPosition(name);
+        if (this.getToyGridWorld().removeAgent(name) && this.occupancy != null) {
+            this.occupancy.vacate(position.x, position.y);
+        }
+        this.agentNames.set(handle, null);
+        this.agents.set(handle, null);
+        // The agent may not have handled its last trigger yet, so the next agent with this handle gets a new one
+        this.moveFailedTriggers.set(handle, null);
+        if (this.analytics != null) {
+            this.analytics.unregisterAgent(handle);
+        }
+        if (this.backoff != null) {
+            this.backoff.removeAgent(handle);
+        }
+        if (this.messenger != null) {
+            this.messenger.removeAgent(handle);
+        }
+        return true;
     }
 
     /**
@@ -175,4 +671,171 @@ public class ToyGridWorldInterface implements EnvironmentInterface<Direction> {
     public IToyGridWorld<String> getToyGridWorld() {
         return toyGridWorld;
     }
+
+    /**
+     * In deterministic mode, the actions of all agents are applied in order of agent registration, instead of in
+     * the order in which their deliberation results became available. Together with seeded random streams for each
+     * agent, this makes the simulation reproducible regardless of the number of threads used.
+     *
+     * @param deterministic True to enable deterministic mode
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * In pipelined mode, deliberation results are processed as soon as they are available, while other agents are
+     * still deliberating. The simulation engine should hand each result to deliberationCompleted as it becomes
+     * available. Actions are still materialized in order of agent registration, after all results have been
+     * processed, so the outcome is identical to deterministic mode.
+     *
+     * @param pipelined True to enable pipelined mode
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Write a checksum of the state of the environment after each time step, so runs can be proven identical
+     *
+     * @param checksumWriter    Writer to write a line with the time step and the checksum to after each time step.
+     *                          Closed when the simulation finishes
+     */
+    public void setChecksumWriter(Writer checksumWriter) {
+        this.checksumWriter = checksumWriter;
+    }
+
+    /**
+     * Report the statistics of each finished time step to a telemetry collector
+     *
+     * @param telemetry The collector of live statistics of this simulation
+     */
+    public void setTelemetry(SimulationTelemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Let agents whose moves keep failing back off, so they are not scheduled for deliberation while they are stuck.
+     * Should be set before any agents are registered
+     *
+     * @param backoff   Decides when agents back off and wake up again
+     */
+    public void setBackoff(BackoffScheduler backoff) {
+        this.backoff = backoff;
+    }
+
+    /**
+     * Pace the simulation to a fixed period per time step, instead of sleeping a fixed delay after each time step
+     *
+     * @param pacer The pacer deciding how long to sleep and whether to render after each time step
+     */
+    public void setPacer(StepPacer pacer) {
+        this.pacer = pacer;
+    }
+
+    /**
+     * Keep analytics of the moves materialized in the environment. Should be set before any agents are registered
+     *
+     * @param analytics The analytics to update after each time step
+     */
+    public void setAnalytics(SimulationAnalytics analytics) {
+        this.analytics = analytics;
+    }
+
+    /**
+     * Publish the state of the environment after each time step, so viewers in other processes can display it.
+     * Closed when the simulation finishes
+     *
+     * @param stateExporter The exporter to publish the state with
+     */
+    public void setStateExporter(SharedStateExporter stateExporter) {
+        this.stateExporter = stateExporter;
+    }
+
+    /**
+     * Deliver the messages of the agents between time steps, and swap agents that agreed to swap cells. Swaps are
+     * carried out before the staged moves are applied, so this requires deterministic or pipelined mode. Should be
+     * set before any agents are registered
+     *
+     * @param messenger         The messenger the agents send their messages with
+     * @param swapAgreements    The swaps the agents agree to
+     */
+    public void setMessaging(BatchedMessenger messenger, SwapAgreements swapAgreements) {
+        this.messenger = messenger;
+        this.swapAgreements = swapAgreements;
+    }
+
+    /**
+     * Keep the occupancy of every cell in a pyramid, from which agents can sample free destinations. Should be set
+     * before any agents are registered, and cannot be combined with asynchronous mode, in which agents move while
+     * others sample
+     *
+     * @param occupancy An empty pyramid over the grid
+     */
+    public void setOccupancy(OccupancyPyramid occupancy) {
+        this.occupancy = occupancy;
+    }
+
+    /**
+     * @return  The occupancy of every cell, or null if it is not kept
+     */
+    public OccupancyPyramid getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * @return  The number of times two agents swapped cells so far
+     */
+    public long getSwapCount() {
+        return swaps;
+    }
+
+    /**
+     * @return  Total wall clock time from the start of each time step until the environment received the results of
+     *          the agents, in nanoseconds. In pipelined mode, part of the deliberation overlaps with the environment
+     */
+    public long getDeliberationNanos() {
+        return deliberationNanos;
+    }
+
+    /**
+     * @return  Total wall clock time the environment spent handling the results of the agents, excluding drawing
+     *          and delays, in nanoseconds
+     */
+    public long getEnvironmentNanos() {
+        return environmentNanos;
+    }
+
+    /**
+     * @return  The number of agents registered to the environment
+     */
+    public int getAgentCount() {
+        return agentIdToHandleMap.size();
+    }
+
+    /**
+     * Create a context with which an agent commits its moves to the environment directly, from its deliberation
+     * thread. The environment must be thread-safe. The moves are included in the statistics of the time step in
+     * which the agent deliberated
+     *
+     * @param agentName Name of the agent in the environment
+     * @return          A context for the agent to move itself with
+     */
+    public DirectMoveContext createDirectMoveContext(String agentName) {
+        return new DirectMoveContext(toyGridWorld, agentName, directMoves, failedDirectMoves);
+    }
+
+    /**
+     * @return  The number of move actions that were materialized in the environment so far
+     */
+    public long getSuccessfulMoves() {
+        return successfulMoves;
+    }
+
+    /**
+     * @return  The number of move actions that failed so far
+     */
+    public long getFailedMoves() {
+        return failedMoves;
+    }
 }
@@ -2,57 +2,148 @@ package simulation.agent;
 
 
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Context;
+import simulation.analytics.PlanProfiler;
 
 import java.awt.*;
-import java.util.Random;
 
+/**
+ * The beliefs of a single agent.
+ *
+ * The beliefs themselves are stored in a BeliefStore shared by all agents, so this context only refers to the
+ * slot of the agent in that store.
+ */
 public class AgentBeliefContext implements Context {
 
+    private final BeliefStore store;
+    private final int slot;
+    private final PlanProfiler profiler;
+
+    /**
+     * @param store The store containing the beliefs of all agents
+     * @param slot  The slot of this agent in the store
+     */
+    public AgentBeliefContext(BeliefStore store, int slot) {
+        this(store, slot, null);
+    }
+
+    /**
+     * @param store     The store containing the beliefs of all agents
+     * @param slot      The slot of this agent in the store
+     * @param profiler  The profiler sampling the goal checks of this agent, or null if the agent is not profiled
+     */
+    public AgentBeliefContext(BeliefStore store, int slot, PlanProfiler profiler) {
+        this.store = store;
+        this.slot = slot;
+        this.profiler = profiler;
+    }
+
     /**
-     * By assigning each agent a random object, stochastic decisions of the agent can be seeded
+     * @return  The profiler sampling the goal checks of this agent, or null if the agent is not profiled
+     */
+    public PlanProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * By assigning each agent its own random stream, stochastic decisions of the agent can be seeded
      * for repeated deterministic execution.
-     * For stochastic execution, the random object can be initialized without a seed
+     *
+     * @param bound Upper bound (exclusive)
+     * @return      Random integer between 0 (inclusive) and bound (exclusive)
      */
-    private final Random random;
+    public int nextInt(int bound) {
+        return store.nextInt(slot, bound);
+    }
 
     /**
      * The agent maintains its position in its own belief base.
      * Alternatively, the context could contain a reference to the environment,
      * and the agent can request their current position from the environment whenever
      * necessary
+     *
+     * @return  The believed x-coordinate of the agent
      */
-    private Point position;
+    public int getX() {
+        return store.getX(slot);
+    }
 
     /**
-     * The agents has some beliefs about the size of the environment.
+     * @return  The believed y-coordinate of the agent
      */
-    private final int environmentWidth;
-    private final int environmentHeight;
-
-    public AgentBeliefContext(Random random, Point position, int environmentWidth, int environmentHeight) {
-        this.random = random;
-        this.position = position;
-        this.environmentWidth = environmentWidth;
-        this.environmentHeight = environmentHeight;
+    public int getY() {
+        return store.getY(slot);
     }
 
-    public Random getRandom() {
-        return random;
+    /**
+     * @return  A new point representing the believed position of the agent
+     */
+    public Point getPosition() {
+        return new Point(getX(), getY());
     }
 
-    public Point getPosition() {
-        return position;
+    public void setPosition(int x, int y) {
+        store.setPosition(slot, x, y);
     }
 
     public void setPosition(Point position) {
-        this.position = position;
+        setPosition(position.x, position.y);
+    }
+
+    /**
+     * Remember the destination the agent is currently moving towards
+     *
+     * @param x X-coordinate of the destination
+     * @param y Y-coordinate of the destination
+     */
+    public void setDestination(int x, int y) {
+        store.setDestination(slot, x, y);
+    }
+
+    public int getDestinationX() {
+        return store.getDestinationX(slot);
+    }
+
+    public int getDestinationY() {
+        return store.getDestinationY(slot);
+    }
+
+    /**
+     * @return  False if the agent has left the simulation, in which case it should stop pursuing its goals
+     */
+    public boolean isActive() {
+        return store.isActive(slot);
+    }
+
+    /**
+     * @return  True if the agent backed off because its moves kept failing
+     */
+    public boolean isAsleep() {
+        return store.isAsleep(slot);
+    }
+
+    public void setAsleep(boolean asleep) {
+        store.setAsleep(slot, asleep);
+    }
+
+    /**
+     * @return  True if the agent currently pursues its goals, i.e., it is part of the simulation and not asleep
+     */
+    public boolean isPursuingGoals() {
+        return store.isActive(slot) && !store.isAsleep(slot);
+    }
+
+    /**
+     * @return  The slot of this agent in the belief store
+     */
+    public int getSlot() {
+        return slot;
     }
 
     public int getEnvironmentWidth() {
-        return environmentWidth;
+        return store.getEnvironmentWidth();
     }
 
     public int getEnvironmentHeight() {
-        return environmentHeight;
+        return store.getEnvironmentHeight();
     }
 }
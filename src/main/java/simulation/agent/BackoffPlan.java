@@ -0,0 +1,19 @@
+package simulation.agent;
+
+import environment.Direction;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.builtin.RunOncePlan;
+
+/**
+ * Puts the agent to sleep. While asleep, the agent considers its goals achieved, so it drops them and is no longer
+ * scheduled for deliberation. Its destination is kept in its beliefs, so it can resume moving towards it
+ */
+public class BackoffPlan extends RunOncePlan<Direction> {
+
+    @Override
+    public Direction executeOnce(PlanToAgentInterface<Direction> planToAgentInterface) throws PlanExecutionError {
+        planToAgentInterface.getContext(AgentBeliefContext.class).setAsleep(true);
+        return null;
+    }
+}
@@ -0,0 +1,19 @@
+package simulation.agent;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+
+/**
+ * An external trigger that can be sent to the agent by the environment if its moves keep failing, e.g., because
+ * it is stuck in a crowd. The agent should stop pursuing its goals until it receives a WakeUpTrigger, so it is not
+ * scheduled for deliberation while its moves would fail anyway
+ */
+public class BackoffTrigger implements Trigger {
+
+    /**
+     * The trigger carries no information, so a single instance can be sent to all agents
+     */
+    public static final BackoffTrigger INSTANCE = new BackoffTrigger();
+
+    private BackoffTrigger() {
+    }
+}
@@ -0,0 +1,36 @@
+package simulation.agent;
+
+import environment.Direction;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Goal;
+import simulation.analytics.PlanProfiler;
+
+/**
+ * A goal that is achieved depending on the beliefs of the agent.
+ *
+ * The agent checks whether its goals are achieved in every deliberation cycle. If the agent is profiled, these checks
+ * are sampled as well.
+ */
+public abstract class BeliefGoal extends Goal<Direction> {
+
+    @Override
+    public final boolean isAchieved(AgentContextInterface<Direction> agentContextInterface) {
+        AgentBeliefContext context = agentContextInterface.getContext(AgentBeliefContext.class);
+        PlanProfiler profiler = context.getProfiler();
+        PlanProfiler.Recorder recorder = profiler == null ? null : profiler.sample();
+        if (recorder == null) {
+            return isAchieved(context);
+        }
+
+        long start = System.nanoTime();
+        boolean achieved = isAchieved(context);
+        recorder.record(getClass(), PlanProfiler.Operation.GOAL_CHECK, System.nanoTime() - start);
+        return achieved;
+    }
+
+    /**
+     * @param context   The beliefs of the agent
+     * @return          True iff the goal is achieved
+     */
+    protected abstract boolean isAchieved(AgentBeliefContext context);
+}
@@ -0,0 +1,231 @@
+package simulation.agent;
+
+import util.SplitMix64;
+
+import java.util.Arrays;
+
+/**
+ * Compact storage of the beliefs of all agents.
+ *
+ * Instead of every agent holding its own position object and random object, the beliefs of all agents are stored in
+ * a single primitive array, indexed by the slot of the agent. Each agent only holds a small AgentBeliefContext that
+ * refers to its slot. This avoids an object header and a pointer dereference per belief, and keeps the beliefs of
+ * agents that are deliberated after each other close together in memory.
+ *
+ * The beliefs of an agent form a record of 4 longs: the position and the destination (each packing two ints), the
+ * random state, and the flags. All beliefs an agent writes while deliberating are in its own record, so each slot is
+ * only written by the agent that owns it, and agents can deliberate concurrently. Slots should only be allocated,
+ * deactivated and reactivated while no agents are deliberating.
+ *
+ * Unpadded records share cache lines with the records of neighbouring slots. When neighbouring agents are
+ * deliberated on different threads, their writes would invalidate each other's cache lines (false sharing), and the
+ * step executors do not deliberate agents in order of slot. A padded store therefore follows every record by a full
+ * cache line of unused longs, so no cache line ever holds the beliefs of two agents, wherever the array starts.
+ * Padding triples the size of the records, so it should only be used when agents deliberate on multiple threads.
+ *
+ * Measured with jcmd GC.class_histogram on 10^6 agents (JDK 17, compressed oops), the beliefs take 56 bytes per
+ * agent unpadded and 120 bytes padded, including the 24 byte context, against 104 bytes for the object-based
+ * beliefs (a context, a Point and a SplittableRandom).
+ *
+ * When an agent leaves the simulation, its slot is deactivated rather than freed, because the agent itself is kept
+ * for reuse. The slot is reactivated when the agent enters the simulation again.
+ */
+public class BeliefStore {
+
+    private static final int POSITION = 0;
+    private static final int DESTINATION = 1;
+    private static final int RANDOM_STATE = 2;
+    private static final int FLAGS = 3;
+    private static final int RECORD_SIZE = 4;
+
+    // A cache line is 64 bytes on common hardware, i.e., 8 longs
+    private static final int PADDING = 8;
+
+    private static final long ACTIVE = 1;
+    private static final long ASLEEP = 2;
+
+    /**
+     * The agents have some beliefs about the size of the environment, which are the same for all agents
+     */
+    private final int environmentWidth;
+    private final int environmentHeight;
+
+    // The number of longs from the record of one slot to the record of the next
+    private final int stride;
+
+    private long[] records;
+    private int size = 0;
+
+    /**
+     * Create an unpadded store, for agents that deliberate on a single thread
+     *
+     * @param environmentWidth  Believed width of the environment
+     * @param environmentHeight Believed height of the environment
+     * @param initialCapacity   Expected number of agents. The store grows if more agents are allocated
+     */
+    public BeliefStore(int environmentWidth, int environmentHeight, int initialCapacity) {
+        this(environmentWidth, environmentHeight, initialCapacity, false);
+    }
+
+    /**
+     * @param environmentWidth  Believed width of the environment
+     * @param environmentHeight Believed height of the environment
+     * @param initialCapacity   Expected number of agents. The store grows if more agents are allocated
+     * @param padded            If true, the records of neighbouring slots never share a cache line, which avoids
+     *                          false sharing when agents deliberate on multiple threads
+     */
+    public BeliefStore(int environmentWidth, int environmentHeight, int initialCapacity, boolean padded) {
+        this.environmentWidth = environmentWidth;
+        this.environmentHeight = environmentHeight;
+        this.stride = padded ? RECORD_SIZE + PADDING : RECORD_SIZE;
+        this.records = new long[Math.max(1, initialCapacity) * this.stride];
+    }
+
+    /**
+     * Allocate a slot for a new agent
+     *
+     * @param x             Initial believed x-coordinate of the agent
+     * @param y             Initial believed y-coordinate of the agent
+     * @param randomSeed    Seed of the random stream of the agent
+     * @return              Slot of the new agent
+     */
+    public int allocate(int x, int y, long randomSeed) {
+        if ((this.size + 1) * this.stride > this.records.length) {
+            this.records = Arrays.copyOf(this.records, this.records.length * 2);
+        }
+
+        int slot = this.size++;
+        int record = slot * this.stride;
+        this.records[record + POSITION] = pack(x, y);
+        this.records[record + DESTINATION] = pack(x, y);
+        this.records[record + RANDOM_STATE] = randomSeed;
+        this.records[record + FLAGS] = ACTIVE;
+        return slot;
+    }
+
+    /**
+     * Mark the agent of a slot as having left the simulation. The agent drops its goals in its next deliberation
+     *
+     * @param slot  Slot of the agent
+     */
+    public void deactivate(int slot) {
+        this.records[slot * this.stride + FLAGS] &= ~ACTIVE;
+    }
+
+    /**
+     * Mark the agent of a deactivated slot as having entered the simulation again. The random stream of the agent
+     * is continued
+     *
+     * @param slot  Slot of the agent
+     * @param x     New believed x-coordinate of the agent
+     * @param y     New believed y-coordinate of the agent
+     */
+    public void reactivate(int slot, int x, int y) {
+        int record = slot * this.stride;
+        this.records[record + POSITION] = pack(x, y);
+        this.records[record + DESTINATION] = pack(x, y);
+        this.records[record + FLAGS] = ACTIVE;
+    }
+
+    /**
+     * @param slot  Slot of the agent
+     * @return      True iff the agent is currently part of the simulation
+     */
+    public boolean isActive(int slot) {
+        return (this.records[slot * this.stride + FLAGS] & ACTIVE) != 0;
+    }
+
+    /**
+     * @param slot  Slot of the agent
+     * @return      True iff the agent backed off, and does not pursue its goals until it is woken up
+     */
+    public boolean isAsleep(int slot) {
+        return (this.records[slot * this.stride + FLAGS] & ASLEEP) != 0;
+    }
+
+    public void setAsleep(int slot, boolean asleep) {
+        int flags = slot * this.stride + FLAGS;
+        this.records[flags] = asleep ? this.records[flags] | ASLEEP : this.records[flags] & ~ASLEEP;
+    }
+
+    /**
+     * @return  True iff the records of neighbouring slots never share a cache line
+     */
+    public boolean isPadded() {
+        return this.stride > RECORD_SIZE;
+    }
+
+    /**
+     * @return  The number of allocated slots
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public int getX(int slot) {
+        return unpackX(this.records[slot * this.stride + POSITION]);
+    }
+
+    public int getY(int slot) {
+        return unpackY(this.records[slot * this.stride + POSITION]);
+    }
+
+    public void setPosition(int slot, int x, int y) {
+        this.records[slot * this.stride + POSITION] = pack(x, y);
+    }
+
+    public int getDestinationX(int slot) {
+        return unpackX(this.records[slot * this.stride + DESTINATION]);
+    }
+
+    public int getDestinationY(int slot) {
+        return unpackY(this.records[slot * this.stride + DESTINATION]);
+    }
+
+    public void setDestination(int slot, int x, int y) {
+        this.records[slot * this.stride + DESTINATION] = pack(x, y);
+    }
+
+    /**
+     * Draw from the random stream of an agent
+     *
+     * @param slot  Slot of the agent
+     * @param bound Upper bound (exclusive)
+     * @return      Random integer between 0 (inclusive) and bound (exclusive)
+     */
+    public int nextInt(int slot, int bound) {
+        return SplitMix64.nextInt(this.records, slot * this.stride + RANDOM_STATE, bound);
+    }
+
+    /**
+     * @param slot  Slot of the agent
+     * @return      The state of the random stream of the agent, e.g., to continue the stream in another store
+     */
+    public long getRandomState(int slot) {
+        return this.records[slot * this.stride + RANDOM_STATE];
+    }
+
+    public void setRandomState(int slot, long randomState) {
+        this.records[slot * this.stride + RANDOM_STATE] = randomState;
+    }
+
+    private static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private static int unpackX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    private static int unpackY(long packed) {
+        return (int) packed;
+    }
+
+    public int getEnvironmentWidth() {
+        return this.environmentWidth;
+    }
+
+    public int getEnvironmentHeight() {
+        return this.environmentHeight;
+    }
+}
@@ -0,0 +1,59 @@
+package simulation.agent;
+
+import environment.Direction;
+import environment.IToyGridWorld;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Context;
+
+import java.awt.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A context that allows an agent to commit its moves to the environment directly from its deliberation thread,
+ * instead of returning them as actions that are materialized after all agents have finished deliberating.
+ *
+ * This only works if the environment is thread-safe (see ConcurrentToyGridWorld), and is only added to agents
+ * if the simulation runs in asynchronous mode. The moves are counted in adders shared by all agents, because the
+ * environment interface never sees them as actions.
+ */
+public class DirectMoveContext implements Context {
+
+    private final IToyGridWorld<String> toyGridWorld;
+    private final String agentName;
+    private final LongAdder moves;
+    private final LongAdder failedMoves;
+
+    /**
+     * @param toyGridWorld  The thread-safe environment to move the agent in
+     * @param agentName     The name of the agent in the environment
+     * @param moves         Counts the moves attempted by all agents
+     * @param failedMoves   Counts the moves of all agents that failed
+     */
+    public DirectMoveContext(IToyGridWorld<String> toyGridWorld, String agentName, LongAdder moves,
+                             LongAdder failedMoves) {
+        this.toyGridWorld = toyGridWorld;
+        this.agentName = agentName;
+        this.moves = moves;
+        this.failedMoves = failedMoves;
+    }
+
+    /**
+     * Immediately move the agent in the environment
+     * @param direction Direction to move towards
+     * @return          True iff the move succeeded
+     */
+    public boolean move(Direction direction) {
+        boolean moved = this.toyGridWorld.move(this.agentName, direction);
+        this.moves.increment();
+        if (!moved) {
+            this.failedMoves.increment();
+        }
+        return moved;
+    }
+
+    /**
+     * @return  The actual position of the agent in the environment
+     */
+    public Point getPosition() {
+        return this.toyGridWorld.getPosition(this.agentName);
+    }
+}
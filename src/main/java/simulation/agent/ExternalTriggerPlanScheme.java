@@ -5,14 +5,44 @@ import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
+import simulation.messaging.MessageBatch;
 
+/**
+ * Instantiates the plans for the external triggers sent to a single agent by the environment. The plans are reused
+ * once they have finished, so handling a trigger does not allocate a new plan.
+ */
 public class ExternalTriggerPlanScheme implements PlanScheme<Direction> {
 
+    private UpdatePositionPlan updatePositionPlan;
+    private BackoffPlan backoffPlan;
+    private WakeUpPlan wakeUpPlan;
+    private SwapNegotiationPlan swapNegotiationPlan;
+
     @Override
     public Plan<Direction> instantiate(Trigger trigger, AgentContextInterface<Direction> agentContextInterface) {
 
         if (trigger instanceof MoveFailedTrigger) {
-            return new UpdatePositionPlan((MoveFailedTrigger) trigger);
+            if (!ReusablePlans.reset(updatePositionPlan)) {
+                updatePositionPlan = new UpdatePositionPlan((MoveFailedTrigger) trigger);
+            }
+            updatePositionPlan.setTrigger((MoveFailedTrigger) trigger);
+            return updatePositionPlan;
+        } else if (trigger instanceof BackoffTrigger) {
+            if (!ReusablePlans.reset(backoffPlan)) {
+                backoffPlan = new BackoffPlan();
+            }
+            return backoffPlan;
+        } else if (trigger instanceof WakeUpTrigger) {
+            if (!ReusablePlans.reset(wakeUpPlan)) {
+                wakeUpPlan = new WakeUpPlan();
+            }
+            return wakeUpPlan;
+        } else if (trigger instanceof MessageBatch) {
+            if (!ReusablePlans.reset(swapNegotiationPlan)) {
+                swapNegotiationPlan = new SwapNegotiationPlan((MessageBatch) trigger);
+            }
+            swapNegotiationPlan.setBatch((MessageBatch) trigger);
+            return swapNegotiationPlan;
         }
 
         return null;
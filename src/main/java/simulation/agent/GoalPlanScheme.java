@@ -6,15 +6,31 @@ import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
 
+/**
+ * Instantiates the plans for the goals of a single agent.
+ *
+ * A MoveTowardsPlan runs once, so a plan is instantiated for the MoveTowardsGoal in every deliberation cycle. The
+ * plans are reused once they have finished, so this does not allocate a new plan.
+ */
 public class GoalPlanScheme implements PlanScheme<Direction> {
 
+    private MoveTowardsPlan moveTowardsPlan;
+    private KeepMovingPlan keepMovingPlan;
+
     @Override
     public Plan<Direction> instantiate(Trigger trigger, AgentContextInterface<Direction> agentContextInterface) {
 
         if (trigger instanceof MoveTowardsGoal) {
-            return new MoveTowardsPlan((MoveTowardsGoal) trigger);
+            if (!ReusablePlans.reset(moveTowardsPlan)) {
+                moveTowardsPlan = new MoveTowardsPlan((MoveTowardsGoal) trigger);
+            }
+            moveTowardsPlan.setGoal((MoveTowardsGoal) trigger);
+            return moveTowardsPlan;
         } else if (trigger instanceof KeepMovingGoal) {
-            return new KeepMovingPlan();
+            if (!ReusablePlans.reset(keepMovingPlan)) {
+                keepMovingPlan = new KeepMovingPlan();
+            }
+            return keepMovingPlan;
         }
 
         return null;
@@ -1,15 +1,11 @@
 package simulation.agent;
 
-import environment.Direction;
-import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
-import nl.uu.cs.iss.ga.sim2apl.core.agent.Goal;
-
-public class KeepMovingGoal extends Goal<Direction> {
+public class KeepMovingGoal extends BeliefGoal {
 
     @Override
-    public boolean isAchieved(AgentContextInterface<Direction> agentContextInterface) {
-        // We always return false here, because, as this is a maintenance goal, we
-        // want to always keep pursuing it
-        return false;
+    protected boolean isAchieved(AgentBeliefContext context) {
+        // As this is a maintenance goal, we want to always keep pursuing it, until the
+        // agent leaves the simulation or backs off
+        return !context.isPursuingGoals();
     }
 }
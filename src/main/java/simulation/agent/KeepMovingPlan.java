@@ -5,21 +5,26 @@ import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
 
-import java.awt.*;
-
 public class KeepMovingPlan extends Plan<Direction> {
 
+    // Reused for every new destination, because the agent only pursues one MoveTowardsGoal at a time
+    private MoveTowardsGoal goal;
+
     @Override
     public Direction execute(PlanToAgentInterface<Direction> planToAgentInterface) throws PlanExecutionError {
 
+        // Once the agent has left the simulation or backed off, this plan is no longer needed. If the agent enters
+        // the simulation again or wakes up, it adopts a new KeepMovingGoal, for which this plan is instantiated again
+        if (!planToAgentInterface.getContext(AgentBeliefContext.class).isPursuingGoals()) {
+            setFinished(true);
+            return null;
+        }
+
         // Check no other MoveTowardsGoal is currently being pursued
         if (!planToAgentInterface.hasGoal(MoveTowardsGoal.class)) {
 
-            // Pick a new destination
-            Point newDestination = sampleNewPoint(planToAgentInterface);
-
-            // Create a goal to move to that destination
-            MoveTowardsGoal newGoal = new MoveTowardsGoal(newDestination);
+            // Pick a new destination, and create a goal to move to that destination
+            MoveTowardsGoal newGoal = sampleNewGoal(planToAgentInterface);
 
             // Adopt the new goal, so the agent starts pursuing it
             planToAgentInterface.adoptGoal(newGoal);
@@ -30,14 +35,33 @@ public class KeepMovingPlan extends Plan<Direction> {
     }
 
     /**
-     * Lets the agent determine a new random destination within the environment grid
+     * Lets the agent determine a new random destination within the environment grid. The previous goal has been
+     * achieved and dropped, so it is reused for the new destination. In congestion-aware mode, the destination is
+     * sampled among the free cells only
      * @param planToAgentInterface planToAgentInterface
-     * @return Random point in the grid environment
+     * @return Goal to move to a random point in the grid environment
      */
-    private Point sampleNewPoint(PlanToAgentInterface<Direction> planToAgentInterface) {
+    private MoveTowardsGoal sampleNewGoal(PlanToAgentInterface<Direction> planToAgentInterface) {
         AgentBeliefContext context = planToAgentInterface.getContext(AgentBeliefContext.class);
-        int newDestinationX = context.getRandom().nextInt(context.getEnvironmentWidth());
-        int newDestinationY = context.getRandom().nextInt(context.getEnvironmentHeight());
-        return new Point(newDestinationX, newDestinationY);
+        int newDestinationX;
+        int newDestinationY;
+
+        // If the occupancy of the grid is known, avoid destinations that are already taken
+        OccupancyContext occupancy = planToAgentInterface.getContext(OccupancyContext.class);
+        int cell = occupancy != null ? occupancy.sampleFreeCell(context) : -1;
+        if (cell >= 0) {
+            newDestinationX = cell % occupancy.getWidth();
+            newDestinationY = cell / occupancy.getWidth();
+        } else {
+            newDestinationX = context.nextInt(context.getEnvironmentWidth());
+            newDestinationY = context.nextInt(context.getEnvironmentHeight());
+        }
+        context.setDestination(newDestinationX, newDestinationY);
+        if (goal == null) {
+            goal = new MoveTowardsGoal(newDestinationX, newDestinationY);
+        } else {
+            goal.setDestination(newDestinationX, newDestinationY);
+        }
+        return goal;
     }
 }
@@ -0,0 +1,53 @@
+package simulation.agent;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Context;
+import simulation.messaging.BatchedMessenger;
+
+/**
+ * A context that allows an agent to send messages to other agents, and to agree to swap cells with them.
+ *
+ * Only added to agents if messaging is enabled. Messages are delivered between time steps, as a MessageBatch
+ * trigger.
+ */
+public class MessagingContext implements Context {
+
+    private final BatchedMessenger messenger;
+    private final SwapAgreements agreements;
+    private final int handle;
+
+    /**
+     * @param messenger     The messenger delivering the messages of all agents
+     * @param agreements    The swaps agreed to by all agents
+     * @param handle        The handle of this agent in the environment interface
+     */
+    public MessagingContext(BatchedMessenger messenger, SwapAgreements agreements, int handle) {
+        this.messenger = messenger;
+        this.agreements = agreements;
+        this.handle = handle;
+    }
+
+    /**
+     * @param receiver  Handle of the receiving agent
+     * @param message   The message, encoded by the protocol it belongs to
+     * @return          True iff the message will be delivered at the end of the time step
+     */
+    public boolean send(int receiver, long message) {
+        return messenger.send(receiver, message);
+    }
+
+    /**
+     * Agree to swap cells with another agent in this time step
+     *
+     * @param partner   Handle of the agent that requested the swap
+     */
+    public void agreeToSwap(int partner) {
+        agreements.agree(handle, partner);
+    }
+
+    /**
+     * @return  The handle of this agent in the environment interface, by which other agents address it
+     */
+    public int getHandle() {
+        return handle;
+    }
+}
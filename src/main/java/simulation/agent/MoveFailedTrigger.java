@@ -7,23 +7,79 @@ import java.awt.*;
 
 /**
  * An external trigger that can be sent to the agent by the environment if a MOVE action failed.
- * The agent should update their beliefs based on this information
+ * The agent should update their beliefs based on this information.
+ *
+ * The environment reuses a single trigger per agent. An agent fails at most one move per time step, and handles the
+ * trigger in its next deliberation cycle, before it can fail again.
  */
 public class MoveFailedTrigger implements Trigger {
 
-    private final Point currentPosition;
-    private final Direction failedMove;
+    private int x;
+    private int y;
+    private Direction failedMove;
+    private int blocker;
 
     public MoveFailedTrigger(Point currentPosition, Direction failedMove) {
-        this.currentPosition = currentPosition;
+        this(currentPosition, failedMove, -1);
+    }
+
+    /**
+     * @param currentPosition   The position of the agent after the move failed
+     * @param failedMove        The direction of the move that failed
+     * @param blocker           Handle of the agent occupying the cell the agent tried to move to, or -1 if unknown
+     */
+    public MoveFailedTrigger(Point currentPosition, Direction failedMove, int blocker) {
+        set(currentPosition, failedMove, blocker);
+    }
+
+    /**
+     * Reuse this trigger for a new failed move
+     *
+     * @param currentPosition   The position of the agent after the move failed
+     * @param failedMove        The direction of the move that failed
+     */
+    public void set(Point currentPosition, Direction failedMove) {
+        set(currentPosition, failedMove, -1);
+    }
+
+    /**
+     * Reuse this trigger for a new failed move
+     *
+     * @param currentPosition   The position of the agent after the move failed
+     * @param failedMove        The direction of the move that failed
+     * @param blocker           Handle of the agent occupying the cell the agent tried to move to, or -1 if unknown
+     */
+    public void set(Point currentPosition, Direction failedMove, int blocker) {
+        this.x = currentPosition.x;
+        this.y = currentPosition.y;
         this.failedMove = failedMove;
+        this.blocker = blocker;
     }
 
+    /**
+     * @return  A new point representing the position of the agent after the move failed
+     */
     public Point getCurrentPosition() {
-        return currentPosition;
+        return new Point(x, y);
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
     }
 
     public Direction getFailedMove() {
         return failedMove;
     }
+
+    /**
+     * @return  Handle of the agent occupying the cell the agent tried to move to, or -1 if the cell was outside the
+     *          grid, or the environment does not report blockers
+     */
+    public int getBlocker() {
+        return blocker;
+    }
 }
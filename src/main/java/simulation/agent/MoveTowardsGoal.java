@@ -1,27 +1,51 @@
 package simulation.agent;
 
-import environment.Direction;
-import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
-import nl.uu.cs.iss.ga.sim2apl.core.agent.Goal;
-
 import java.awt.*;
 
-public class MoveTowardsGoal extends Goal<Direction> {
+public class MoveTowardsGoal extends BeliefGoal {
+
+    private int destinationX;
+    private int destinationY;
 
-    private final Point destination;
+    public MoveTowardsGoal(int destinationX, int destinationY) {
+        this.destinationX = destinationX;
+        this.destinationY = destinationY;
+    }
 
     public MoveTowardsGoal(Point destination) {
-        this.destination = destination;
+        this(destination.x, destination.y);
+    }
+
+    /**
+     * Reuse this goal for a new destination. Should only be called while the goal is not adopted by the agent
+     *
+     * @param destinationX  X-coordinate of the new destination
+     * @param destinationY  Y-coordinate of the new destination
+     */
+    public void setDestination(int destinationX, int destinationY) {
+        this.destinationX = destinationX;
+        this.destinationY = destinationY;
     }
 
+    /**
+     * @return  A new point representing the destination
+     */
     public Point getDestination() {
-        return destination;
+        return new Point(destinationX, destinationY);
+    }
+
+    public int getDestinationX() {
+        return destinationX;
+    }
+
+    public int getDestinationY() {
+        return destinationY;
     }
 
     @Override
-    public boolean isAchieved(AgentContextInterface<Direction> agentContextInterface) {
-        AgentBeliefContext context = agentContextInterface.getContext(AgentBeliefContext.class);
-        // The goal is achieved if the agent beliefs their current position is the goal position
-        return this.destination.equals(context.getPosition());
+    protected boolean isAchieved(AgentBeliefContext context) {
+        // The goal is achieved if the agent beliefs their current position is the goal position.
+        // Agents that left the simulation or backed off no longer pursue their goal, so we consider it achieved as well
+        return !context.isPursuingGoals() || (this.destinationX == context.getX() && this.destinationY == context.getY());
     }
 }
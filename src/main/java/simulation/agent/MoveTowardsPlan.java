@@ -5,8 +5,6 @@ import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.builtin.RunOncePlan;
 
-import java.awt.*;
-
 /**
  * A simple plan to demonstrate how plans work in Sim-2APL.
  *
@@ -15,37 +13,65 @@ import java.awt.*;
  */
 public class MoveTowardsPlan extends RunOncePlan<Direction> {
 
-    private final MoveTowardsGoal goal;
+    private MoveTowardsGoal goal;
 
     public MoveTowardsPlan(MoveTowardsGoal goal) {
         this.goal = goal;
     }
 
+    /**
+     * Point a reused plan to the goal it is instantiated for
+     *
+     * @param goal  The goal to move towards
+     */
+    public void setGoal(MoveTowardsGoal goal) {
+        this.goal = goal;
+    }
+
     @Override
     public Direction executeOnce(PlanToAgentInterface<Direction> planToAgentInterface) throws PlanExecutionError {
         AgentBeliefContext context = planToAgentInterface.getContext(AgentBeliefContext.class);
-        Point currentPosition = new Point(context.getPosition());
+        if (!context.isPursuingGoals()) {
+            // The agent has left the simulation, or has backed off, so it should not move
+            return null;
+        }
+
+        int x = context.getX();
+        int y = context.getY();
 
         Direction move = null;
 
-        if (currentPosition.x == goal.getDestination().x) {
-            if (currentPosition.y < goal.getDestination().y) {
-                currentPosition.y++;
+        if (x == goal.getDestinationX()) {
+            if (y < goal.getDestinationY()) {
+                y++;
                 move = Direction.DOWN;
-            } else if (currentPosition.y > goal.getDestination().y) {
-                currentPosition.y--;
+            } else if (y > goal.getDestinationY()) {
+                y--;
                 move = Direction.UP;
             }
-        } else if (currentPosition.x < goal.getDestination().x) {
-            currentPosition.x++;
+        } else if (x < goal.getDestinationX()) {
+            x++;
             move = Direction.RIGHT;
         } else {
-            currentPosition.x--;
+            x--;
             move = Direction.LEFT;
         }
 
+        // In asynchronous mode, agents commit their move to the environment themselves. The context
+        // is only present in that mode
+        DirectMoveContext directMoveContext = planToAgentInterface.getContext(DirectMoveContext.class);
+        if (directMoveContext != null && move != null) {
+            if (directMoveContext.move(move)) {
+                context.setPosition(x, y);
+            } else {
+                // We know immediately the move has failed, so no need to wait for a MoveFailedTrigger
+                context.setPosition(directMoveContext.getPosition());
+            }
+            return null;
+        }
+
         // Update our belief about our current position based on the move we expect to make
-        context.setPosition(currentPosition);
+        context.setPosition(x, y);
 
         // This is collected by Sim-2APL, which sends it to the environment after all agents have
         // decided their move
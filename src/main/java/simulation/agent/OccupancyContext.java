@@ -0,0 +1,43 @@
+package simulation.agent;
+
+import environment.OccupancyPyramid;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Context;
+
+/**
+ * A context that allows an agent to sample its next destination among the free cells of the environment, instead of
+ * among all cells. Destinations in crowded parts of the grid are then less likely, so agents spend fewer moves
+ * queueing behind each other.
+ *
+ * The pyramid is only updated by the environment interface while no agent deliberates, so this context is only added
+ * to agents if the simulation does not run in asynchronous mode.
+ */
+public class OccupancyContext implements Context {
+
+    private final OccupancyPyramid occupancy;
+
+    public OccupancyContext(OccupancyPyramid occupancy) {
+        this.occupancy = occupancy;
+    }
+
+    /**
+     * Sample a free cell uniformly, using the random stream of the agent
+     *
+     * @param beliefs   The beliefs of the agent, which hold its random stream
+     * @return          The index of the cell, i.e., its row times the width of the grid plus its column, or -1 if
+     *                  no cell is free
+     */
+    public int sampleFreeCell(AgentBeliefContext beliefs) {
+        int free = this.occupancy.getFreeCount();
+        if (free == 0) {
+            return -1;
+        }
+        return this.occupancy.sampleFree(beliefs.nextInt(free));
+    }
+
+    /**
+     * @return  The width of the grid over which the occupancy is counted
+     */
+    public int getWidth() {
+        return this.occupancy.getWidth();
+    }
+}
@@ -0,0 +1,67 @@
+package simulation.agent;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
+import simulation.analytics.PlanProfiler;
+
+/**
+ * Wraps a plan instantiated by a ProfilingPlanScheme, to sample how long its executions take. The state of the plan
+ * is kept by the wrapped plan, so once it has finished, the wrapper can be reused for another plan
+ *
+ * @param <T>   The type of actions the plan produces
+ */
+class ProfiledPlan<T> extends Plan<T> {
+
+    private Plan<T> plan;
+    private final PlanProfiler profiler;
+
+    ProfiledPlan(Plan<T> plan, PlanProfiler profiler) {
+        this.plan = plan;
+        this.profiler = profiler;
+    }
+
+    Plan<T> getPlan() {
+        return plan;
+    }
+
+    void setPlan(Plan<T> plan) {
+        this.plan = plan;
+    }
+
+    @Override
+    public T execute(PlanToAgentInterface<T> planToAgentInterface) throws PlanExecutionError {
+        PlanProfiler.Recorder recorder = profiler.sample();
+        if (recorder == null) {
+            return plan.execute(planToAgentInterface);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return plan.execute(planToAgentInterface);
+        } finally {
+            recorder.record(plan.getClass(), PlanProfiler.Operation.EXECUTE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return plan.isFinished();
+    }
+
+    @Override
+    public void setFinished(boolean finished) {
+        plan.setFinished(finished);
+    }
+
+    @Override
+    public Trigger getPlanGoal() {
+        return plan.getPlanGoal();
+    }
+
+    @Override
+    public void setPlanGoal(Trigger planGoal) {
+        plan.setPlanGoal(planGoal);
+    }
+}
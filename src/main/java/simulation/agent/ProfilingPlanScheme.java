@@ -0,0 +1,80 @@
+package simulation.agent;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
+import simulation.analytics.PlanProfiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decorates a plan scheme, to profile how long it takes to instantiate each type of plan, and how long the
+ * instantiated plans take to execute.
+ *
+ * Plans instantiated by the decorated scheme are wrapped, so their executions can be sampled as well. Like the plans
+ * themselves, the wrappers are reused once their plans have finished, so profiling does not allocate a wrapper per
+ * instantiation. Only used when profiling is enabled, so agents that are not profiled do not pay for the wrapping.
+ *
+ * @param <T>   The type of actions the plans produce
+ */
+public class ProfilingPlanScheme<T> implements PlanScheme<T> {
+
+    private final PlanScheme<T> planScheme;
+    private final PlanProfiler profiler;
+
+    // Never more wrappers than plans of this scheme that an agent had at the same time
+    private final List<ProfiledPlan<T>> wrappers = new ArrayList<>();
+
+    /**
+     * @param planScheme    The plan scheme to profile
+     * @param profiler      The profiler to record samples with
+     */
+    public ProfilingPlanScheme(PlanScheme<T> planScheme, PlanProfiler profiler) {
+        this.planScheme = planScheme;
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Plan<T> instantiate(Trigger trigger, AgentContextInterface<T> agentContextInterface) {
+        PlanProfiler.Recorder recorder = profiler.sample();
+        Plan<T> plan;
+        if (recorder == null) {
+            plan = planScheme.instantiate(trigger, agentContextInterface);
+        } else {
+            long start = System.nanoTime();
+            plan = planScheme.instantiate(trigger, agentContextInterface);
+            long duration = System.nanoTime() - start;
+
+            // Schemes that do not apply to the trigger are not interesting, because agents try all their schemes
+            if (plan != null) {
+                recorder.record(plan.getClass(), PlanProfiler.Operation.INSTANTIATE, duration);
+            }
+        }
+
+        return plan == null ? null : wrap(plan);
+    }
+
+    /**
+     * @return  A wrapper for the plan that the agent is not using. The wrapper that wrapped the plan before is
+     *          preferred, because a plan is only reused once it has finished, so that wrapper is not in use either
+     */
+    private ProfiledPlan<T> wrap(Plan<T> plan) {
+        ProfiledPlan<T> finished = null;
+        for (ProfiledPlan<T> wrapper : wrappers) {
+            if (wrapper.getPlan() == plan) {
+                return wrapper;
+            } else if (finished == null && wrapper.isFinished()) {
+                finished = wrapper;
+            }
+        }
+
+        if (finished == null) {
+            finished = new ProfiledPlan<>(plan, profiler);
+            wrappers.add(finished);
+        }
+        finished.setPlan(plan);
+        return finished;
+    }
+}
@@ -0,0 +1,29 @@
+package simulation.agent;
+
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+
+/**
+ * Helps plan schemes reuse the plans of a single agent, instead of instantiating a new plan for every trigger.
+ *
+ * Once a plan has finished, the agent no longer refers to it, so it can be instantiated again for the next trigger.
+ * A plan that has not finished yet is still in use, and should not be handed out again.
+ */
+final class ReusablePlans {
+
+    private ReusablePlans() {
+    }
+
+    /**
+     * Prepare a plan to be executed again, if it is no longer in use
+     *
+     * @param plan  A plan previously instantiated by the plan scheme, or null
+     * @return      True iff the plan has finished, and is now reset so it can be handed out again
+     */
+    static boolean reset(Plan<?> plan) {
+        if (plan == null || !plan.isFinished()) {
+            return false;
+        }
+        plan.setFinished(false);
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+package simulation.agent;
+
+import java.util.Arrays;
+
+/**
+ * The swaps agents agreed to during a time step, for the environment to carry out before it applies the moves of
+ * the agents.
+ *
+ * Each agent only records its own agreement, in its own slot, so agents can agree while they deliberate concurrently.
+ * Agents are identified by their handle in the environment interface.
+ */
+public class SwapAgreements {
+
+    // Indexed by agent handle. The handle of the agent to swap with, or -1
+    private int[] partners = new int[0];
+
+    /**
+     * Start tracking an agent, forgetting any agreement of a previous agent with the same handle. Should not be called
+     * while agents are deliberating
+     *
+     * @param handle    Handle of the agent
+     */
+    public void registerAgent(int handle) {
+        if (handle >= this.partners.length) {
+            int length = Math.max(handle + 1, this.partners.length * 2);
+            int oldLength = this.partners.length;
+            this.partners = Arrays.copyOf(this.partners, length);
+            Arrays.fill(this.partners, oldLength, length, -1);
+        }
+        this.partners[handle] = -1;
+    }
+
+    /**
+     * Record that an agent agreed to swap cells with another agent. Should only be called by the agent itself
+     *
+     * @param handle    Handle of the agent that agreed
+     * @param partner   Handle of the agent that requested the swap
+     */
+    public void agree(int handle, int partner) {
+        this.partners[handle] = partner;
+    }
+
+    /**
+     * Take the agreement of an agent, so it is only carried out in the time step in which it was made
+     *
+     * @param handle    Handle of the agent
+     * @return          The handle of the agent it agreed to swap with, or -1 if it made no agreement
+     */
+    public int take(int handle) {
+        int partner = this.partners[handle];
+        this.partners[handle] = -1;
+        return partner;
+    }
+
+    /**
+     * @return  The number of handles that are tracked, which is more than the highest handle of any agent that was
+     *          ever registered. Handles of agents that were never registered have no agreement
+     */
+    public int size() {
+        return this.partners.length;
+    }
+}
@@ -0,0 +1,84 @@
+package simulation.agent;
+
+import environment.Direction;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.builtin.RunOncePlan;
+import simulation.messaging.MessageBatch;
+
+/**
+ * Answers the swap requests of agents that are blocked by this agent. See SwapRequest for the protocol.
+ */
+public class SwapNegotiationPlan extends RunOncePlan<Direction> {
+
+    private MessageBatch batch;
+
+    public SwapNegotiationPlan(MessageBatch batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Point a reused plan to the batch it is instantiated for
+     *
+     * @param batch The messages received by the agent
+     */
+    public void setBatch(MessageBatch batch) {
+        this.batch = batch;
+    }
+
+    @Override
+    public Direction executeOnce(PlanToAgentInterface<Direction> planToAgentInterface) throws PlanExecutionError {
+        AgentBeliefContext context = planToAgentInterface.getContext(AgentBeliefContext.class);
+        MessagingContext messaging = planToAgentInterface.getContext(MessagingContext.class);
+
+        int partner = -1;
+        if (messaging != null && context.isPursuingGoals() && planToAgentInterface.hasGoal(MoveTowardsGoal.class)) {
+            for (int i = 0; i < batch.size(); i++) {
+                long message = batch.get(i);
+                if (!SwapRequest.isSwapRequest(message) || !movesTowards(context, SwapRequest.getFailedMove(message))) {
+                    continue;
+                }
+                // Requests arrive in any order, so the lowest handle is chosen to keep seeded runs reproducible
+                int sender = SwapRequest.getSender(message);
+                if (partner < 0 || sender < partner) {
+                    partner = sender;
+                }
+            }
+        }
+
+        // The environment only swaps the agents if both actually move into each other's cell, so an agreement based
+        // on an outdated belief or destination does no harm
+        if (partner >= 0) {
+            messaging.agreeToSwap(partner);
+        }
+
+        batch.handled();
+        return null;
+    }
+
+    /**
+     * @param context       The beliefs of this agent
+     * @param failedMove    The move of the requesting agent that this agent blocked
+     * @return              True iff the next move of this agent, as made by MoveTowardsPlan, is into the cell of
+     *                      the requesting agent, i.e., opposite to the failed move
+     */
+    private boolean movesTowards(AgentBeliefContext context, Direction failedMove) {
+        int x = context.getX();
+        int y = context.getY();
+        int destinationX = context.getDestinationX();
+        int destinationY = context.getDestinationY();
+
+        switch (failedMove) {
+            case LEFT:
+                return x < destinationX;
+            case RIGHT:
+                return x > destinationX;
+            case UP:
+                return x == destinationX && y < destinationY;
+            case DOWN:
+                return x == destinationX && y > destinationY;
+            default:
+                return false;
+        }
+    }
+}
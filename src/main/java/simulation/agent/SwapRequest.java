@@ -0,0 +1,42 @@
+package simulation.agent;
+
+import environment.Direction;
+
+/**
+ * Encodes the messages of the swap protocol, with which agents that block each other agree to swap cells.
+ *
+ * An agent whose move failed because another agent occupies the cell it tried to move to, asks that agent to swap
+ * cells. The other agent agrees if its own next move is into the cell of the requesting agent. The environment swaps
+ * the agents if both still try to move into each other's cell in the time step in which the agreement was made.
+ *
+ * A request is encoded as (type << 56 | direction of the failed move << 32 | handle of the sender).
+ */
+public final class SwapRequest {
+
+    private static final long TYPE = 1;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private SwapRequest() {
+    }
+
+    /**
+     * @param sender        Handle of the agent whose move failed
+     * @param failedMove    Direction of the move that failed
+     * @return              The request, to send to the agent occupying the cell the sender tried to move to
+     */
+    public static long encode(int sender, Direction failedMove) {
+        return (TYPE << 56) | ((long) failedMove.ordinal() << 32) | (sender & 0xffffffffL);
+    }
+
+    public static boolean isSwapRequest(long message) {
+        return message >>> 56 == TYPE;
+    }
+
+    public static int getSender(long message) {
+        return (int) message;
+    }
+
+    public static Direction getFailedMove(long message) {
+        return DIRECTIONS[(int) (message >>> 32) & 0xff];
+    }
+}
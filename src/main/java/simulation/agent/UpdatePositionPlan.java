@@ -7,16 +7,31 @@ import nl.uu.cs.iss.ga.sim2apl.core.plan.builtin.RunOncePlan;
 
 public class UpdatePositionPlan extends RunOncePlan<Direction> {
 
-    private final MoveFailedTrigger trigger;
+    private MoveFailedTrigger trigger;
 
     public UpdatePositionPlan(MoveFailedTrigger trigger) {
         this.trigger = trigger;
     }
 
+    /**
+     * Point a reused plan to the trigger it is instantiated for
+     *
+     * @param trigger   The trigger notifying the agent of its failed move
+     */
+    public void setTrigger(MoveFailedTrigger trigger) {
+        this.trigger = trigger;
+    }
+
     @Override
     public Direction executeOnce(PlanToAgentInterface<Direction> planToAgentInterface) throws PlanExecutionError {
         AgentBeliefContext context = planToAgentInterface.getContext(AgentBeliefContext.class);
-        context.setPosition(trigger.getCurrentPosition());
+        context.setPosition(trigger.getX(), trigger.getY());
+
+        // If messaging is enabled, ask the agent that blocked us to swap cells
+        MessagingContext messaging = planToAgentInterface.getContext(MessagingContext.class);
+        if (messaging != null && trigger.getBlocker() >= 0 && context.isPursuingGoals()) {
+            messaging.send(trigger.getBlocker(), SwapRequest.encode(messaging.getHandle(), trigger.getFailedMove()));
+        }
         return null;
     }
 }
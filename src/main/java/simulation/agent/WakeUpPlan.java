@@ -0,0 +1,45 @@
+package simulation.agent;
+
+import environment.Direction;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.builtin.RunOncePlan;
+
+/**
+ * Wakes the agent up after it backed off, and lets it resume moving towards the destination it had before.
+ *
+ * The plan is reused for every wake-up of the same agent (see ExternalTriggerPlanScheme), and so are the goals it
+ * adopts. Goals are only adopted while the agent has no goal of the same type, so they are never adopted twice.
+ */
+public class WakeUpPlan extends RunOncePlan<Direction> {
+
+    private KeepMovingGoal keepMovingGoal;
+    private MoveTowardsGoal moveTowardsGoal;
+
+    @Override
+    public Direction executeOnce(PlanToAgentInterface<Direction> planToAgentInterface) throws PlanExecutionError {
+        AgentBeliefContext context = planToAgentInterface.getContext(AgentBeliefContext.class);
+        if (!context.isAsleep()) {
+            return null;
+        }
+        context.setAsleep(false);
+
+        // If the agent was woken up before it dropped its goals, they are no longer achieved, and it simply
+        // continues pursuing them
+        if (!planToAgentInterface.hasGoal(KeepMovingGoal.class)) {
+            if (keepMovingGoal == null) {
+                keepMovingGoal = new KeepMovingGoal();
+            }
+            planToAgentInterface.adoptGoal(keepMovingGoal);
+        }
+        if (!planToAgentInterface.hasGoal(MoveTowardsGoal.class)) {
+            if (moveTowardsGoal == null) {
+                moveTowardsGoal = new MoveTowardsGoal(context.getDestinationX(), context.getDestinationY());
+            } else {
+                moveTowardsGoal.setDestination(context.getDestinationX(), context.getDestinationY());
+            }
+            planToAgentInterface.adoptGoal(moveTowardsGoal);
+        }
+        return null;
+    }
+}
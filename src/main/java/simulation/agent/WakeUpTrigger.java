@@ -0,0 +1,18 @@
+package simulation.agent;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+
+/**
+ * An external trigger that can be sent to an agent that backed off, once its backoff period has passed or the
+ * environment around it has changed. The agent should resume pursuing its goals
+ */
+public class WakeUpTrigger implements Trigger {
+
+    /**
+     * The trigger carries no information, so a single instance can be sent to all agents
+     */
+    public static final WakeUpTrigger INSTANCE = new WakeUpTrigger();
+
+    private WakeUpTrigger() {
+    }
+}
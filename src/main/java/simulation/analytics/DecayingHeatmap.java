@@ -0,0 +1,164 @@
+package simulation.analytics;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Occupancy of the grid over time, in which the occupancy of past time steps slowly fades out.
+ *
+ * The grid is divided into square tiles, such that the heatmap never has more than MAX_RESOLUTION tiles in either
+ * direction, regardless of the size of the grid.
+ *
+ * Instead of multiplying every tile with the decay factor after each time step, the weight of new observations is
+ * divided by the decay factor. Tiles are only rescaled when that weight becomes very large, so advancing a time step
+ * takes constant time.
+ *
+ * Agents that occupy a cell over multiple time steps are counted in each of them, without visiting the agents. The
+ * heatmap keeps the number of agents currently in each tile, and the sum of the weights of all time steps so far.
+ * When the number of agents in a tile changes, the tile is credited with that number times the sum of the weights
+ * since its last change, so a time step only takes time for the agents that moved to another tile.
+ */
+public class DecayingHeatmap {
+
+    public static final int MAX_RESOLUTION = 64;
+    private static final double RESCALE_THRESHOLD = 1e100;
+
+    private final int tileSize;
+    private final int tilesX;
+    private final int tilesY;
+    private final double decay;
+    private final double[] tiles;
+    private final int[] occupants;
+    private final double[] creditedWeight;
+    private double weight = 1;
+    private double totalWeight = 0;
+
+    /**
+     * @param width     Width of the grid
+     * @param height    Height of the grid
+     * @param decay     Factor by which the occupancy of past time steps is multiplied after each time step,
+     *                  between 0 (exclusive) and 1 (inclusive)
+     */
+    public DecayingHeatmap(int width, int height, double decay) {
+        if (decay <= 0 || decay > 1) {
+            throw new IllegalArgumentException("Decay factor should be in (0, 1], got " + decay);
+        }
+        this.tileSize = Math.max(1, (Math.max(width, height) + MAX_RESOLUTION - 1) / MAX_RESOLUTION);
+        this.tilesX = (width + tileSize - 1) / tileSize;
+        this.tilesY = (height + tileSize - 1) / tileSize;
+        this.decay = decay;
+        this.tiles = new double[tilesX * tilesY];
+        this.occupants = new int[tilesX * tilesY];
+        this.creditedWeight = new double[tilesX * tilesY];
+    }
+
+    /**
+     * Count an agent occupying a cell in the current time step only
+     */
+    public void add(int x, int y) {
+        tiles[tile(x, y)] += weight;
+    }
+
+    /**
+     * Count an agent occupying a cell in every time step that finishes, until it is vacated or moved
+     */
+    public void occupy(int x, int y) {
+        int tile = tile(x, y);
+        credit(tile);
+        occupants[tile]++;
+    }
+
+    /**
+     * Stop counting an agent that occupied a cell
+     */
+    public void vacate(int x, int y) {
+        int tile = tile(x, y);
+        credit(tile);
+        occupants[tile]--;
+    }
+
+    /**
+     * Move an occupying agent to another cell. Only takes time if the cells are in different tiles
+     */
+    public void move(int fromX, int fromY, int toX, int toY) {
+        int from = tile(fromX, fromY);
+        int to = tile(toX, toY);
+        if (from != to) {
+            credit(from);
+            credit(to);
+            occupants[from]--;
+            occupants[to]++;
+        }
+    }
+
+    /**
+     * Decay all occupancy observed so far, and count the current occupants of all tiles in the time step that
+     * finished, so occupancy observed after this call weighs more
+     */
+    public void advance() {
+        weight /= decay;
+        totalWeight += weight;
+        if (weight > RESCALE_THRESHOLD) {
+            for (int i = 0; i < tiles.length; i++) {
+                tiles[i] /= weight;
+                creditedWeight[i] /= weight;
+            }
+            totalWeight /= weight;
+            weight = 1;
+        }
+    }
+
+    /**
+     * @param tileX Horizontal index of the tile
+     * @param tileY Vertical index of the tile
+     * @return      Decayed number of agents observed in the tile
+     */
+    public double get(int tileX, int tileY) {
+        int tile = tileY * tilesX + tileX;
+        return (tiles[tile] + occupants[tile] * (totalWeight - creditedWeight[tile])) / weight;
+    }
+
+    private int tile(int x, int y) {
+        return (y / tileSize) * tilesX + x / tileSize;
+    }
+
+    /**
+     * Add the occupancy of a tile in the time steps since its number of occupants last changed
+     */
+    private void credit(int tile) {
+        tiles[tile] += occupants[tile] * (totalWeight - creditedWeight[tile]);
+        creditedWeight[tile] = totalWeight;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getTilesX() {
+        return tilesX;
+    }
+
+    public int getTilesY() {
+        return tilesY;
+    }
+
+    /**
+     * Write the heatmap as rows of comma separated values, one row per row of tiles
+     *
+     * @param writer        Writer to write the heatmap to
+     * @throws IOException  If writing fails
+     */
+    public void write(Writer writer) throws IOException {
+        StringBuilder row = new StringBuilder();
+        for (int tileY = 0; tileY < tilesY; tileY++) {
+            row.setLength(0);
+            for (int tileX = 0; tileX < tilesX; tileX++) {
+                if (tileX > 0) {
+                    row.append(',');
+                }
+                row.append(String.format("%.2f", get(tileX, tileY)));
+            }
+            writer.write(row.append('\n').toString());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package simulation.analytics;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative long values in constant memory, with buckets in the style of HdrHistogram.
+ *
+ * Values below 2^SUB_BUCKET_BITS are counted exactly. Larger values are counted in buckets that cover a range
+ * proportional to the value, so the relative error of any reported value is below 2^-(SUB_BUCKET_BITS - 1) (about
+ * 1.6%), while the entire range of long values fits in a few thousand buckets.
+ *
+ * Not thread-safe. Histograms recorded by different threads can be combined with add().
+ */
+public class LogHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int N_BUCKETS = (64 - SUB_BUCKET_BITS + 2) * SUB_BUCKET_HALF;
+
+    private final long[] counts = new long[N_BUCKETS];
+    private long totalCount = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    /**
+     * Record a single occurrence of a value
+     *
+     * @param value Non-negative value to record
+     */
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    /**
+     * Record multiple occurrences of a value
+     *
+     * @param value Non-negative value to record
+     * @param count Number of occurrences of the value
+     */
+    public void record(long value, long count) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Only non-negative values can be recorded, got " + value);
+        }
+        counts[indexOf(value)] += count;
+        totalCount += count;
+        sum += value * count;
+        max = Math.max(max, value);
+    }
+
+    static int indexOf(long value) {
+        if (value < (1 << SUB_BUCKET_BITS)) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * @param index Index of a bucket
+     * @return      Highest value counted in the bucket
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_HALF) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long top = index - (long) shift * SUB_BUCKET_HALF;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Add all values recorded in another histogram to this histogram
+     *
+     * @param other Histogram to add
+     */
+    public void add(LogHistogram other) {
+        for (int i = 0; i < N_BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Remove all recorded values
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * @param percentile    Percentile between 0 and 100
+     * @return              The value below or equal to which the given percentage of recorded values falls, up to the
+     *                      precision of the histogram, or 0 if no values have been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < N_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return  The exact mean of all recorded values, or 0 if no values have been recorded
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / (double) totalCount;
+    }
+
+    /**
+     * @return  A single line summarizing the distribution of the recorded values
+     */
+    public String summary() {
+        return String.format("count=%d mean=%.2f p50=%d p90=%d p99=%d max=%d",
+                totalCount, getMean(), getValueAtPercentile(50), getValueAtPercentile(90),
+                getValueAtPercentile(99), max);
+    }
+}
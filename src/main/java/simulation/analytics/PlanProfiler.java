@@ -0,0 +1,215 @@
+package simulation.analytics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples how long agents spend instantiating and executing each type of plan, and checking each type of goal.
+ *
+ * On average, one in every sampleInterval operations of each thread is timed, so the overhead per operation is a
+ * thread-local counter. The number of operations between samples is drawn from a geometric distribution, so every
+ * operation has the same chance of being timed. With a fixed interval, operations that recur with a period that
+ * divides the interval would always or never be timed, which would bias the estimated total time. Each thread records
+ * its samples in its own histograms, which are merged into the totals at the end of each time step, when no agents
+ * deliberate. The report lists the behaviour that took the most estimated time first.
+ *
+ * Latencies are recorded in nanoseconds.
+ */
+public class PlanProfiler {
+
+    /**
+     * The operations that are profiled
+     */
+    public enum Operation {
+        INSTANTIATE,
+        EXECUTE,
+        GOAL_CHECK
+    }
+
+    private final int sampleInterval;
+
+    // Logarithm of the probability that an operation is not timed, to draw the number of operations between samples
+    private final double logSkipProbability;
+    private final Writer writer;
+
+    private final Map<Class<?>, Map<Operation, LogHistogram>> totals = new HashMap<>();
+
+    // Every thread that ever recorded a sample, so their histograms can be merged
+    private final ConcurrentLinkedQueue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(this::newRecorder);
+
+    /**
+     * @param sampleInterval    Time one in every this many operations of each thread, on average
+     * @param writer            Writer to write the report to when the simulation finishes. Closed afterwards
+     */
+    public PlanProfiler(int sampleInterval, Writer writer) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Sample interval should be at least 1, got " + sampleInterval);
+        }
+        this.sampleInterval = sampleInterval;
+        this.logSkipProbability = Math.log1p(-1.0 / sampleInterval);
+        this.writer = writer;
+    }
+
+    private Recorder newRecorder() {
+        Recorder recorder = new Recorder(Thread.currentThread(), nextSampleDistance());
+        this.recorders.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * @return  The number of operations until the next operation that is timed, including that operation, drawn
+     *          from a geometric distribution with a mean of sampleInterval
+     */
+    private int nextSampleDistance() {
+        if (this.sampleInterval == 1) {
+            return 1;
+        }
+        // Inverse transform sampling. The uniform value is in (0, 1], so its logarithm is finite
+        double uniform = 1 - ThreadLocalRandom.current().nextDouble();
+        return 1 + (int) Math.min(Integer.MAX_VALUE - 1, Math.log(uniform) / this.logSkipProbability);
+    }
+
+    /**
+     * Decide whether the next operation of the current thread should be timed
+     *
+     * @return  The recorder to record the latency of the operation with, or null if the operation should not be timed
+     */
+    public Recorder sample() {
+        Recorder recorder = this.recorder.get();
+        if (--recorder.untilNextSample > 0) {
+            return null;
+        }
+        recorder.untilNextSample = nextSampleDistance();
+        return recorder;
+    }
+
+    /**
+     * Merge the samples of all threads into the totals. Should be called from the thread that finishes time steps,
+     * while no agents are deliberating
+     */
+    public void stepFinished() {
+        Iterator<Recorder> iterator = this.recorders.iterator();
+        while (iterator.hasNext()) {
+            Recorder recorder = iterator.next();
+            for (Map.Entry<Class<?>, Map<Operation, LogHistogram>> type : recorder.histograms.entrySet()) {
+                Map<Operation, LogHistogram> total = this.totals.computeIfAbsent(
+                        type.getKey(), key -> new EnumMap<>(Operation.class));
+                for (Map.Entry<Operation, LogHistogram> operation : type.getValue().entrySet()) {
+                    total.computeIfAbsent(operation.getKey(), key -> new LogHistogram()).add(operation.getValue());
+                    operation.getValue().reset();
+                }
+            }
+
+            // Threads that stopped will not record any more samples
+            if (!recorder.thread.isAlive()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @param type      Class of the plan or goal
+     * @param operation The profiled operation
+     * @return          All merged samples of the operation, or null if none were recorded
+     */
+    public LogHistogram getHistogram(Class<?> type, Operation operation) {
+        Map<Operation, LogHistogram> histograms = this.totals.get(type);
+        return histograms == null ? null : histograms.get(operation);
+    }
+
+    /**
+     * Merge the samples of the last time step, and write the report
+     */
+    public void simulationFinished() {
+        stepFinished();
+        try {
+            write(this.writer);
+            this.writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Write a CSV line per type of plan or goal and operation, with the operations that took the most estimated
+     * total time first. The estimated total time extrapolates the sampled time to all operations, by multiplying it
+     * with the mean sample interval
+     *
+     * @param writer        The writer to write the report to
+     * @throws IOException  If writing fails
+     */
+    public void write(Writer writer) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        for (Map.Entry<Class<?>, Map<Operation, LogHistogram>> type : this.totals.entrySet()) {
+            for (Map.Entry<Operation, LogHistogram> operation : type.getValue().entrySet()) {
+                rows.add(new Row(type.getKey(), operation.getKey(), operation.getValue()));
+            }
+        }
+        rows.sort(Comparator.comparingDouble((Row row) -> row.estimatedTotalMs).reversed());
+
+        writer.write("type,operation,samples,estimated_total_ms,mean_us,p50_us,p99_us,max_us\n");
+        for (Row row : rows) {
+            writer.write(String.format("%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+                    row.type.getSimpleName(),
+                    row.operation.name().toLowerCase(),
+                    row.histogram.getTotalCount(),
+                    row.estimatedTotalMs,
+                    row.histogram.getMean() / 1e3,
+                    row.histogram.getValueAtPercentile(50) / 1e3,
+                    row.histogram.getValueAtPercentile(99) / 1e3,
+                    row.histogram.getMax() / 1e3
+            ));
+        }
+        writer.flush();
+    }
+
+    private final class Row {
+        private final Class<?> type;
+        private final Operation operation;
+        private final LogHistogram histogram;
+        private final double estimatedTotalMs;
+
+        private Row(Class<?> type, Operation operation, LogHistogram histogram) {
+            this.type = type;
+            this.operation = operation;
+            this.histogram = histogram;
+            this.estimatedTotalMs = histogram.getMean() * histogram.getTotalCount() * sampleInterval / 1e6;
+        }
+    }
+
+    /**
+     * The histograms of a single thread
+     */
+    public static final class Recorder {
+        private final Thread thread;
+        private final Map<Class<?>, Map<Operation, LogHistogram>> histograms = new HashMap<>();
+        private int untilNextSample;
+
+        private Recorder(Thread thread, int untilNextSample) {
+            this.thread = thread;
+            this.untilNextSample = untilNextSample;
+        }
+
+        /**
+         * @param type      Class of the plan or goal
+         * @param operation The profiled operation
+         * @param nanos     The latency of the operation in nanoseconds
+         */
+        public void record(Class<?> type, Operation operation, long nanos) {
+            this.histograms
+                    .computeIfAbsent(type, key -> new EnumMap<>(Operation.class))
+                    .computeIfAbsent(operation, key -> new LogHistogram())
+                    .record(Math.max(0, nanos));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package simulation.analytics;
+
+import simulation.agent.BeliefStore;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Incremental analytics of the agents' behaviour in the grid world.
+ *
+ * The analytics are updated from the moves materialized in each time step, and keep:
+ * 1) A histogram of the number of time steps agents needed to reach the destination of a MoveTowardsGoal
+ * 2) The number of failed moves of each agent, which is summarized as a histogram when dumped
+ * 3) A decaying heatmap of the occupancy of the grid, which shows where congestion happens
+ *
+ * Apart from a few values per agent, the memory used does not depend on the size of the grid or the length of the
+ * simulation. The analytics are dumped to a writer after a fixed number of time steps, and when the simulation
+ * finishes.
+ *
+ * All methods should be called from the thread that finishes time steps, while no agents are deliberating.
+ */
+public class SimulationAnalytics {
+
+    /**
+     * Factor by which the occupancy of past time steps is multiplied each time step. The occupancy of a time step
+     * has faded to about a third after 100 time steps
+     */
+    private static final double HEATMAP_DECAY = 0.99;
+
+    private final BeliefStore beliefStore;
+    private final Writer writer;
+    private final int interval;
+
+    private final LogHistogram stepsToGoal = new LogHistogram();
+    private final DecayingHeatmap heatmap;
+
+    // Indexed by agent handle, which equals the slot of the agent in the belief store. The x-coordinate of agents
+    // that left the simulation is -1
+    private int[] x = new int[0];
+    private int[] y = new int[0];
+    private int[] goalX = new int[0];
+    private int[] goalY = new int[0];
+    private long[] goalStartStep = new long[0];
+    private int[] failures = new int[0];
+    private int nAgents = 0;
+
+    private long currentStep = 0;
+
+    /**
+     * @param width         Width of the grid
+     * @param height        Height of the grid
+     * @param beliefStore   Beliefs of the agents, from which the destinations of the agents are read
+     * @param writer        Writer to dump the analytics to. Closed when the simulation finishes
+     * @param interval      Number of time steps between dumps
+     */
+    public SimulationAnalytics(int width, int height, BeliefStore beliefStore, Writer writer, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Analytics interval should be at least 1, got " + interval);
+        }
+        this.beliefStore = beliefStore;
+        this.writer = writer;
+        this.interval = interval;
+        this.heatmap = new DecayingHeatmap(width, height, HEATMAP_DECAY);
+    }
+
+    /**
+     * Start tracking a new agent
+     *
+     * @param handle    Handle of the agent, which should be the slot of the agent in the belief store
+     * @param x         Initial x-coordinate of the agent
+     * @param y         Initial y-coordinate of the agent
+     */
+    public void registerAgent(int handle, int x, int y) {
+        if (handle >= this.x.length) {
+            int capacity = Math.max(handle + 1, this.x.length * 2);
+            int oldCapacity = this.x.length;
+            this.x = Arrays.copyOf(this.x, capacity);
+            Arrays.fill(this.x, oldCapacity, capacity, -1);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.goalX = Arrays.copyOf(this.goalX, capacity);
+            this.goalY = Arrays.copyOf(this.goalY, capacity);
+            this.goalStartStep = Arrays.copyOf(this.goalStartStep, capacity);
+            this.failures = Arrays.copyOf(this.failures, capacity);
+        }
+
+        if (this.x[handle] >= 0) {
+            heatmap.vacate(this.x[handle], this.y[handle]);
+        }
+        heatmap.occupy(x, y);
+        this.x[handle] = x;
+        this.y[handle] = y;
+        this.goalX[handle] = x;
+        this.goalY[handle] = y;
+        this.goalStartStep[handle] = -1;
+        this.failures[handle] = 0;
+        this.nAgents = Math.max(this.nAgents, handle + 1);
+    }
+
+    /**
+     * Stop tracking an agent that left the simulation. Its failed moves no longer count towards the distribution
+     *
+     * @param handle    Handle of the agent
+     */
+    public void unregisterAgent(int handle) {
+        if (this.x[handle] >= 0) {
+            heatmap.vacate(this.x[handle], this.y[handle]);
+        }
+        this.x[handle] = -1;
+        this.goalStartStep[handle] = -1;
+    }
+
+    /**
+     * @param timeStep  The time step that is about to start
+     */
+    public void stepStarting(long timeStep) {
+        this.currentStep = timeStep;
+    }
+
+    /**
+     * Record a move that was materialized in the environment
+     *
+     * @param handle    Handle of the agent that moved
+     * @param x         New x-coordinate of the agent
+     * @param y         New y-coordinate of the agent
+     */
+    public void moveSucceeded(int handle, int x, int y) {
+        heatmap.move(this.x[handle], this.y[handle], x, y);
+        this.x[handle] = x;
+        this.y[handle] = y;
+        updateGoal(handle);
+
+        if (x == goalX[handle] && y == goalY[handle] && goalStartStep[handle] >= 0) {
+            // Count both the time step in which the goal was adopted and the one in which it was reached
+            stepsToGoal.record(currentStep - goalStartStep[handle] + 1);
+            goalStartStep[handle] = -1;
+        }
+    }
+
+    /**
+     * Record a move that could not be materialized in the environment
+     *
+     * @param handle    Handle of the agent that failed to move
+     */
+    public void moveFailed(int handle) {
+        failures[handle]++;
+        updateGoal(handle);
+    }
+
+    /**
+     * An agent adopts a new destination in the same deliberation in which it makes its first move towards it, so
+     * a destination that differs from the last one we know of means the agent started pursuing a new goal
+     */
+    private void updateGoal(int handle) {
+        int destinationX = beliefStore.getDestinationX(handle);
+        int destinationY = beliefStore.getDestinationY(handle);
+        if (destinationX != goalX[handle] || destinationY != goalY[handle]) {
+            goalX[handle] = destinationX;
+            goalY[handle] = destinationY;
+            goalStartStep[handle] = currentStep;
+        }
+    }
+
+    /**
+     * Count the current positions of all agents in the heatmap, and dump the analytics if the interval has passed.
+     * The heatmap follows the agents through their moves, so this does not visit the agents
+     *
+     * @param timeStep  The time step that finished
+     */
+    public void stepFinished(long timeStep) {
+        heatmap.advance();
+
+        if ((timeStep + 1) % interval == 0) {
+            dump(timeStep);
+        }
+    }
+
+    /**
+     * Write the current state of all analytics
+     *
+     * @param timeStep  The last time step that finished
+     */
+    public void dump(long timeStep) {
+        LogHistogram failuresPerAgent = new LogHistogram();
+        for (int handle = 0; handle < nAgents; handle++) {
+            if (x[handle] >= 0) {
+                failuresPerAgent.record(failures[handle]);
+            }
+        }
+
+        try {
+            writer.write("step " + timeStep + "\n");
+            writer.write("steps_to_goal " + stepsToGoal.summary() + "\n");
+            writer.write("failures_per_agent " + failuresPerAgent.summary() + "\n");
+            writer.write(String.format("occupancy_heatmap tile_size=%d tiles_x=%d tiles_y=%d%n",
+                    heatmap.getTileSize(), heatmap.getTilesX(), heatmap.getTilesY()));
+            heatmap.write(writer);
+            writer.write("\n");
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Dump the final state of all analytics, and close the writer
+     *
+     * @param timeStep  The last time step that finished
+     */
+    public void simulationFinished(long timeStep) {
+        dump(timeStep);
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public LogHistogram getStepsToGoal() {
+        return stepsToGoal;
+    }
+
+    public DecayingHeatmap getHeatmap() {
+        return heatmap;
+    }
+}
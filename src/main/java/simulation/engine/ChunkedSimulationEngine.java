@@ -0,0 +1,77 @@
+package simulation.engine;
+
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.step.EnvironmentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.step.SimulationEngine;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * A simulation engine that drives a platform created with a ChunkedStepExecutor.
+ *
+ * Like the default simulation engine, it iterates over the specified number of time steps, or iterates indefinitely
+ * if no number of time steps is specified, and notifies all environment interfaces before and after each time step.
+ * If a completion listener is set, it receives the deliberation result of each agent as soon as it is available, so
+ * handling the results can overlap with the deliberation of the other agents.
+ *
+ * @param <T>   The type of actions the agents produce
+ */
+public class ChunkedSimulationEngine<T> extends SimulationEngine<T> {
+
+    private final ChunkedStepExecutor<T> executor;
+    private Consumer<? super Future<DeliberationResult<T>>> completionListener;
+
+    /**
+     * @param platform      Platform created with the given executor
+     * @param executor      The executor of the platform
+     * @param nIterations   The number of time steps to simulate
+     * @param environments  Environment interfaces to notify of the progression of the simulation, in order
+     */
+    public ChunkedSimulationEngine(Platform platform, ChunkedStepExecutor<T> executor, int nIterations,
+                                   EnvironmentInterface<T>[] environments) {
+        super(platform, nIterations, environments);
+        this.executor = executor;
+    }
+
+    /**
+     * Create an engine that simulates indefinitely
+     *
+     * @param platform      Platform created with the given executor
+     * @param executor      The executor of the platform
+     * @param environments  Environment interfaces to notify of the progression of the simulation, in order
+     */
+    public ChunkedSimulationEngine(Platform platform, ChunkedStepExecutor<T> executor,
+                                   EnvironmentInterface<T>[] environments) {
+        super(platform, environments);
+        this.executor = executor;
+    }
+
+    /**
+     * @param completionListener    Receives the future of each agent during the time step, in the order in which the
+     *                              agents finished deliberating, on the thread that runs the simulation. Environment
+     *                              interfaces are still notified of all results when the time step finishes
+     */
+    public void setCompletionListener(Consumer<? super Future<DeliberationResult<T>>> completionListener) {
+        this.completionListener = completionListener;
+    }
+
+    @Override
+    public boolean start() {
+        long timeStep = 0;
+        while (this.nIterations <= 0 || timeStep < this.nIterations) {
+            processStepStarting(timeStep);
+            List<Future<DeliberationResult<T>>> results = this.completionListener == null
+                    ? this.executor.doTimeStep()
+                    : this.executor.doTimeStep(this.completionListener);
+            processStepFinished(timeStep, this.executor.getLastTimeStepDuration(), results);
+            timeStep++;
+        }
+
+        processSimulationFinishedHook(timeStep, this.executor.getLastTimeStepDuration());
+        this.executor.shutdown();
+        return true;
+    }
+}
@@ -0,0 +1,57 @@
+package simulation.engine;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A future that is always done by the time it is handed out, and that can be reused for a new value.
+ *
+ * Unlike CompletableFuture, completing it does not allocate, and it can be completed again, which allows the
+ * ChunkedStepExecutor to hand out the same futures every time step.
+ *
+ * @param <V>   The type of the value
+ */
+final class CompletedFuture<V> implements Future<V> {
+
+    private V value;
+    private Throwable failure;
+
+    void complete(V value) {
+        this.value = value;
+        this.failure = null;
+    }
+
+    void fail(Throwable failure) {
+        this.value = null;
+        this.failure = failure;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return true;
+    }
+
+    @Override
+    public V get() throws ExecutionException {
+        if (this.failure != null) {
+            throw new ExecutionException(this.failure);
+        }
+        return this.value;
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws ExecutionException {
+        return get();
+    }
+}
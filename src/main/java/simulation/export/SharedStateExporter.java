@@ -0,0 +1,177 @@
+package simulation.export;
+
+import java.awt.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+
+/**
+ * Publishes the state of the grid world after every time step into a memory-mapped file, so that viewers in other
+ * processes can read it at their own pace, without the simulation ever waiting for them.
+ *
+ * The file starts with a header, followed by an occupancy bitmap of the grid (one bit per cell, row-major), and the
+ * positions of all agents as pairs of ints (x, y) in order of agent handle. Agents that are not in the environment
+ * have the position (-1, -1). All values are little-endian.
+ *
+ * Consistency is guaranteed with a sequence lock: the sequence number in the header is odd while a frame is being
+ * written, and even once it is complete. A reader copies a frame, and only accepts the copy if the sequence number
+ * was even and unchanged before and after copying. See SharedStateReader.
+ *
+ * The occupancy bitmap is left out for grids of more than MAX_OCCUPANCY_CELLS cells.
+ */
+public class SharedStateExporter implements Closeable {
+
+    static final int MAGIC = 0x53324150;
+    static final int VERSION = 1;
+
+    static final int OFFSET_MAGIC = 0;
+    static final int OFFSET_VERSION = 4;
+    static final int OFFSET_SEQUENCE = 8;
+    static final int OFFSET_TIME_STEP = 16;
+    static final int OFFSET_WIDTH = 24;
+    static final int OFFSET_HEIGHT = 28;
+    static final int OFFSET_AGENT_CAPACITY = 32;
+    static final int OFFSET_AGENT_COUNT = 36;
+    static final int OFFSET_OCCUPANCY_BYTES = 40;
+    static final int HEADER_BYTES = 64;
+
+    static final long MAX_OCCUPANCY_CELLS = 1L << 26;
+
+    /**
+     * Gives volatile access to the sequence number, which orders it with the plain writes of the frame
+     */
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int occupancyBytes;
+    private MappedByteBuffer buffer;
+    private int agentCapacity;
+    private int agentCount = 0;
+    private long sequence = 0;
+
+    /**
+     * Create (or overwrite) the file the state is published in
+     *
+     * @param file              The file to publish the state in
+     * @param width             Width of the grid
+     * @param height            Height of the grid
+     * @param initialCapacity   Expected number of agents. The file grows if there are more agents
+     * @throws IOException      If the file cannot be created or mapped
+     */
+    public SharedStateExporter(Path file, int width, int height, int initialCapacity) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.width = width;
+        this.height = height;
+        long cells = (long) width * height;
+        this.occupancyBytes = cells <= MAX_OCCUPANCY_CELLS ? (int) ((cells + 7) / 8) : 0;
+
+        map(Math.max(1, initialCapacity));
+        this.buffer.putInt(OFFSET_MAGIC, MAGIC);
+        this.buffer.putInt(OFFSET_VERSION, VERSION);
+        this.buffer.putInt(OFFSET_WIDTH, width);
+        this.buffer.putInt(OFFSET_HEIGHT, height);
+        this.buffer.putInt(OFFSET_OCCUPANCY_BYTES, this.occupancyBytes);
+        this.buffer.putInt(OFFSET_AGENT_CAPACITY, this.agentCapacity);
+        LONGS.setVolatile(this.buffer, OFFSET_SEQUENCE, this.sequence);
+    }
+
+    /**
+     * Map the file with room for the given number of agents, which grows the file if needed
+     */
+    private void map(int agentCapacity) throws IOException {
+        long size = fileSize(this.occupancyBytes, agentCapacity);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.agentCapacity = agentCapacity;
+    }
+
+    static long fileSize(int occupancyBytes, int agentCapacity) {
+        return positionsOffset(occupancyBytes) + 8L * agentCapacity;
+    }
+
+    static int positionsOffset(int occupancyBytes) {
+        // Keep the positions aligned to 8 bytes
+        return HEADER_BYTES + ((occupancyBytes + 7) & ~7);
+    }
+
+    /**
+     * Publish the state of the grid world after a time step. Never waits for readers
+     *
+     * @param timeStep      The time step that finished
+     * @param nHandles      The number of agent handles in use
+     * @param positions     Gives the position of the agent with a handle, or null if the handle is not in use
+     * @throws IOException  If the file has to grow, but cannot be mapped
+     */
+    public void publish(long timeStep, int nHandles, IntFunction<Point> positions) throws IOException {
+        if (nHandles > this.agentCapacity) {
+            // Grow the file before announcing the new capacity, so readers never see a capacity the file cannot hold
+            map(Math.max(nHandles, this.agentCapacity * 2));
+        }
+
+        int positionsOffset = positionsOffset(this.occupancyBytes);
+        LONGS.setVolatile(this.buffer, OFFSET_SEQUENCE, ++this.sequence);
+
+        // A volatile write only keeps earlier writes before it, so without this fence the writes of the frame below
+        // could become visible before the odd sequence, and a reader could accept a torn frame
+        VarHandle.storeStoreFence();
+
+        // Clear the cells of the previous frame first, so an agent moving into a cell that another agent just left
+        // is not erased
+        if (this.occupancyBytes > 0) {
+            for (int handle = 0; handle < this.agentCount; handle++) {
+                int x = this.buffer.getInt(positionsOffset + 8 * handle);
+                if (x >= 0) {
+                    setOccupied(x, this.buffer.getInt(positionsOffset + 8 * handle + 4), false);
+                }
+            }
+        }
+
+        for (int handle = 0; handle < nHandles; handle++) {
+            Point position = positions.apply(handle);
+            int x = position == null ? -1 : position.x;
+            int y = position == null ? -1 : position.y;
+            this.buffer.putInt(positionsOffset + 8 * handle, x);
+            this.buffer.putInt(positionsOffset + 8 * handle + 4, y);
+            if (x >= 0 && this.occupancyBytes > 0) {
+                setOccupied(x, y, true);
+            }
+        }
+
+        this.agentCount = nHandles;
+        this.buffer.putLong(OFFSET_TIME_STEP, timeStep);
+        this.buffer.putInt(OFFSET_AGENT_CAPACITY, this.agentCapacity);
+        this.buffer.putInt(OFFSET_AGENT_COUNT, nHandles);
+        LONGS.setVolatile(this.buffer, OFFSET_SEQUENCE, ++this.sequence);
+    }
+
+    private void setOccupied(int x, int y, boolean occupied) {
+        long cell = (long) y * this.width + x;
+        int index = HEADER_BYTES + (int) (cell >>> 3);
+        int bit = 1 << (cell & 7);
+        byte value = this.buffer.get(index);
+        this.buffer.put(index, (byte) (occupied ? value | bit : value & ~bit));
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,175 @@
+package simulation.export;
+
+import environment.Direction;
+import environment.IToyGridWorld;
+import environment.StateHash;
+
+import java.awt.*;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A consistent copy of the state of the grid world, as published by a SharedStateExporter.
+ *
+ * The frame is a read-only grid world, so it can be drawn by the existing environment views. Agents are identified
+ * by their handle, as a string, because the exporter only publishes positions by handle. In a simulation, the handle
+ * of an agent is the slot of its beliefs, and the agent is named after that slot, also when it is reused after
+ * churn. In a shard of a sharded simulation, names are interleaved between the shards and agents keep their name
+ * when they migrate, so there the identifiers in the frame differ from the names of the agents.
+ *
+ * A SharedStateReader overwrites the frame every time it reads a new state, so a single frame can be reused for the
+ * lifetime of a viewer.
+ */
+public class SharedStateFrame implements IToyGridWorld<String> {
+
+    private long sequence = -1;
+    private long timeStep;
+    private int width;
+    private int height;
+    private int agentCount;
+    private int[] positions = new int[0];
+    private byte[] occupancy = new byte[0];
+    private int occupancyBytes;
+
+    private final Map<Point, String> agentsAt = new HashMap<>();
+
+    /**
+     * Copy a frame from the mapped file. The copy may be torn; the reader only accepts it if the sequence number did
+     * not change while copying
+     */
+    void copyFrom(ByteBuffer buffer, int width, int height, int agentCount, int occupancyBytes) {
+        this.timeStep = buffer.getLong(SharedStateExporter.OFFSET_TIME_STEP);
+        this.width = width;
+        this.height = height;
+        this.agentCount = agentCount;
+        this.occupancyBytes = occupancyBytes;
+
+        if (this.positions.length < 2 * agentCount) {
+            this.positions = new int[Math.max(2 * agentCount, 2 * this.positions.length)];
+        }
+        int offset = SharedStateExporter.positionsOffset(occupancyBytes);
+        for (int i = 0; i < 2 * agentCount; i++) {
+            this.positions[i] = buffer.getInt(offset + 4 * i);
+        }
+
+        if (this.occupancy.length < occupancyBytes) {
+            this.occupancy = new byte[occupancyBytes];
+        }
+        for (int i = 0; i < occupancyBytes; i++) {
+            this.occupancy[i] = buffer.get(SharedStateExporter.HEADER_BYTES + i);
+        }
+    }
+
+    /**
+     * Accept the copy once it is known to be consistent, and index the agents by position
+     */
+    void accept(long sequence) {
+        this.sequence = sequence;
+        this.agentsAt.clear();
+        for (int handle = 0; handle < this.agentCount; handle++) {
+            int x = this.positions[2 * handle];
+            if (x >= 0) {
+                this.agentsAt.put(new Point(x, this.positions[2 * handle + 1]), Integer.toString(handle));
+            }
+        }
+    }
+
+    /**
+     * @return  The sequence number of the frame in the file, or -1 if no frame was read yet
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * @return  The time step after which the frame was published
+     */
+    public long getTimeStep() {
+        return this.timeStep;
+    }
+
+    /**
+     * @return  The number of agent handles in the frame, including handles of agents that are not in the environment
+     */
+    public int getAgentCount() {
+        return this.agentCount;
+    }
+
+    /**
+     * @param x     Column of the cell
+     * @param y     Row of the cell
+     * @return      True iff the cell is occupied, according to the occupancy bitmap. Falls back to the positions of
+     *              the agents if the exporter left out the bitmap
+     */
+    public boolean isOccupied(int x, int y) {
+        if (this.occupancyBytes == 0) {
+            return this.agentsAt.containsKey(new Point(x, y));
+        }
+        long cell = (long) y * this.width + x;
+        return (this.occupancy[(int) (cell >>> 3)] & (1 << (cell & 7))) != 0;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public Point getPosition(String agent) {
+        int handle = Integer.parseInt(agent);
+        if (handle < 0 || handle >= this.agentCount || this.positions[2 * handle] < 0) {
+            return null;
+        }
+        return new Point(this.positions[2 * handle], this.positions[2 * handle + 1]);
+    }
+
+    @Override
+    public String getAgentAt(Point position) {
+        return this.agentsAt.get(position);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Computed from the positions in the frame, using the handle of each agent (as a string) as its identifier.
+     * This equals the hash of the published grid world only if every agent is named after its handle. That holds for
+     * a single simulation, but not for a shard of a sharded simulation (see the class comment)
+     */
+    @Override
+    public long getStateHash() {
+        long hash = 0;
+        for (int handle = 0; handle < this.agentCount; handle++) {
+            if (this.positions[2 * handle] >= 0) {
+                hash ^= StateHash.key(
+                        Integer.toString(handle), this.positions[2 * handle], this.positions[2 * handle + 1]);
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean registerAgent(String agent, Point position) {
+        throw new UnsupportedOperationException("A shared state frame is read-only");
+    }
+
+    @Override
+    public boolean removeAgent(String agent) {
+        throw new UnsupportedOperationException("A shared state frame is read-only");
+    }
+
+    @Override
+    public boolean move(String agent, Direction direction) {
+        throw new UnsupportedOperationException("A shared state frame is read-only");
+    }
+
+    @Override
+    public Point getRandomFreePoint(boolean avoidEdges) {
+        throw new UnsupportedOperationException("A shared state frame is read-only");
+    }
+}
@@ -0,0 +1,106 @@
+package simulation.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the state of the grid world published by a SharedStateExporter, possibly in another process.
+ *
+ * The reader never blocks the simulation: it copies a frame out of the mapped file, and retries if the exporter
+ * started publishing a new frame in the meantime. Any number of readers can attach to the same file.
+ */
+public class SharedStateReader implements Closeable {
+
+    private static final int MAX_ATTEMPTS = 1000;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * @param file          A file created by a SharedStateExporter
+     * @throws IOException  If the file cannot be mapped, or was not created by a SharedStateExporter
+     */
+    public SharedStateReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        map();
+        if (this.buffer.getInt(SharedStateExporter.OFFSET_MAGIC) != SharedStateExporter.MAGIC) {
+            this.channel.close();
+            throw new IOException("Not a shared state file: " + file);
+        }
+        int version = this.buffer.getInt(SharedStateExporter.OFFSET_VERSION);
+        if (version != SharedStateExporter.VERSION) {
+            this.channel.close();
+            throw new IOException("Unsupported shared state version " + version + " in " + file);
+        }
+    }
+
+    private void map() throws IOException {
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return  The sequence number of the latest published frame. Cheap enough to poll, to find out if a new frame
+     *          is available
+     */
+    public long getSequence() {
+        return (long) SharedStateExporter.LONGS.getVolatile(this.buffer, SharedStateExporter.OFFSET_SEQUENCE);
+    }
+
+    /**
+     * Copy the latest published frame into the given frame, if it is newer than the frame
+     *
+     * @param frame         The frame to overwrite
+     * @return              True iff the frame was overwritten with a newer frame
+     * @throws IOException  If the file grew, but cannot be mapped again
+     */
+    public boolean read(SharedStateFrame frame) throws IOException {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long before = getSequence();
+            if (before == 0 || before == frame.getSequence()) {
+                // Nothing was published yet, or the frame is already up to date
+                return false;
+            }
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            int width = this.buffer.getInt(SharedStateExporter.OFFSET_WIDTH);
+            int height = this.buffer.getInt(SharedStateExporter.OFFSET_HEIGHT);
+            int capacity = this.buffer.getInt(SharedStateExporter.OFFSET_AGENT_CAPACITY);
+            int agentCount = this.buffer.getInt(SharedStateExporter.OFFSET_AGENT_COUNT);
+            int occupancyBytes = this.buffer.getInt(SharedStateExporter.OFFSET_OCCUPANCY_BYTES);
+
+            if (SharedStateExporter.fileSize(occupancyBytes, capacity) > this.buffer.capacity()) {
+                // The exporter grew the file after we mapped it
+                map();
+                continue;
+            }
+            if (agentCount < 0 || agentCount > capacity) {
+                continue;
+            }
+
+            frame.copyFrom(this.buffer, width, height, agentCount, occupancyBytes);
+
+            // Keep the copy from being reordered after the second read of the sequence number
+            VarHandle.acquireFence();
+            if (getSequence() == before) {
+                frame.accept(before);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
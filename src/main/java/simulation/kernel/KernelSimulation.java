@@ -0,0 +1,166 @@
+package simulation.kernel;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import util.Constants;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Runs the movement model on the MovementKernel instead of on Sim-2APL agents.
+ *
+ * Seeded runs produce the same hash stream as a seeded run of the Simulation in deterministic mode, so the kernel
+ * serves as a reference for the agent version, and as an upper bound on the speed at which the movement model can be
+ * simulated. The kernel has no visualization, churn or backoff, and cannot be sharded. Options that change the
+ * movement model are rejected.
+ */
+public class KernelSimulation {
+
+    private final MovementKernel kernel;
+
+    /**
+     * The number of time steps to run, or 0 to run indefinitely
+     */
+    private final int nSteps;
+
+    private Writer checksumWriter;
+
+    /**
+     * Wall clock time taken by the last call to start(), in milliseconds
+     */
+    private long runDuration;
+
+    public KernelSimulation(Namespace ns) {
+        rejectUnsupportedOptions(ns);
+
+        // Derive the random streams in the same way as the Simulation does
+        Integer randomSeed = ns.getInt(Constants.ARG_SEED);
+        Random random = randomSeed == null ? new Random() : new Random(randomSeed);
+        SplittableRandom agentRandom = randomSeed == null ? new SplittableRandom() : new SplittableRandom(randomSeed);
+
+        kernel = new MovementKernel(
+                ns.getInt(Constants.ARG_WIDTH),
+                ns.getInt(Constants.ARG_HEIGHT),
+                ns.getInt(Constants.ARG_N_AGENTS),
+                new Random(random.nextLong()),
+                agentRandom,
+                ns.getInt(Constants.ARG_THREADS)
+        );
+        nSteps = ns.getInt(Constants.ARG_STEPS);
+
+        String checksumFile = ns.getString(Constants.ARG_CHECKSUM_FILE);
+        if (checksumFile != null) {
+            try {
+                checksumWriter = Files.newBufferedWriter(Paths.get(checksumFile), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The kernel only implements the plain movement model, so options that change the behaviour of the agents, or
+     * that distribute them, would silently be ignored
+     */
+    private static void rejectUnsupportedOptions(Namespace ns) {
+        for (String option : new String[] { Constants.ARG_ASYNC, Constants.ARG_SWAP, Constants.ARG_CONGESTION_AWARE,
+                Constants.ARG_BACKOFF }) {
+            if (Boolean.TRUE.equals(ns.getBoolean(option))) {
+                throw new IllegalArgumentException("--" + option.replace('_', '-') + " is not supported by the " +
+                        "kernel, so it cannot be combined with --" + Constants.ARG_KERNEL);
+            }
+        }
+
+        Integer shards = ns.getInt(Constants.ARG_SHARDS);
+        if (shards != null && shards > 1) {
+            throw new IllegalArgumentException("The kernel cannot be sharded, so --" + Constants.ARG_SHARDS +
+                    " cannot be combined with --" + Constants.ARG_KERNEL);
+        }
+        Double churn = ns.getDouble(Constants.ARG_CHURN);
+        if (churn != null && churn > 0) {
+            throw new IllegalArgumentException("The kernel has no churn, so --" + Constants.ARG_CHURN +
+                    " cannot be combined with --" + Constants.ARG_KERNEL);
+        }
+    }
+
+    /**
+     * Write a checksum of the state of the kernel after each time step, in the format of the checksum file of the
+     * Simulation. Replaces the writer of the checksum file, if one was given
+     *
+     * @param checksumWriter    Writer to write a line with the time step and the checksum to after each time step.
+     *                          Closed when the kernel has finished
+     */
+    public void setChecksumWriter(Writer checksumWriter) {
+        closeChecksumWriter();
+        this.checksumWriter = checksumWriter;
+    }
+
+    /**
+     * Run the kernel for the configured number of time steps, and print its throughput. Blocks until the kernel has
+     * finished
+     */
+    public void start() {
+        long startTime = System.currentTimeMillis();
+        try {
+            while (nSteps == 0 || kernel.getTimeStep() < nSteps) {
+                long timeStep = kernel.getTimeStep();
+                kernel.step();
+                if (checksumWriter != null) {
+                    writeChecksum(timeStep);
+                }
+            }
+        } finally {
+            runDuration = System.currentTimeMillis() - startTime;
+            kernel.shutdown();
+            closeChecksumWriter();
+        }
+
+        double seconds = Math.max(runDuration, 1) / 1000.0;
+        System.out.printf("Simulated %d agents for %d time steps in %d ms: %.1f steps/s, %.3g agent-steps/s, " +
+                        "%d successful and %d failed moves%n",
+                kernel.getAgentCount(), kernel.getTimeStep(), runDuration,
+                kernel.getTimeStep() / seconds, kernel.getAgentCount() * kernel.getTimeStep() / seconds,
+                kernel.getSuccessfulMoves(), kernel.getFailedMoves());
+    }
+
+    /**
+     * Write the time step and the state hash, in the format of the checksum file of the Simulation
+     */
+    private void writeChecksum(long timeStep) {
+        try {
+            checksumWriter.write(timeStep + "," + Long.toHexString(kernel.getStateHash()) + "\n");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void closeChecksumWriter() {
+        if (checksumWriter != null) {
+            try {
+                checksumWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return  The kernel this simulation runs
+     */
+    public MovementKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * @return  Wall clock time taken by the last run of the kernel, in milliseconds
+     */
+    public long getRunDuration() {
+        return runDuration;
+    }
+}
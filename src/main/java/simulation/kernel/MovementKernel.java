@@ -0,0 +1,300 @@
+package simulation.kernel;
+
+import environment.StateHash;
+import util.SplitMix64;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The movement model of the demonstration agents, without the BDI machinery of Sim-2APL.
+ *
+ * The state of all agents is stored in primitive arrays indexed by agent, and each time step runs two passes over
+ * these arrays. The first pass deliberates all agents, which is independent per agent, and can be split over multiple
+ * threads. The second pass applies the moves to the occupancy grid in order of agent, because moves into the same
+ * cell conflict.
+ *
+ * The kernel reproduces the deliberation cycle of the agents in deterministic mode, so a seeded run produces the same
+ * trajectories, and the same hash stream, as the agents do:
+ * 1) The MoveTowardsGoal is dropped if the agent believes it is at its destination. After a failed move, the belief
+ *    of the agent has not been corrected yet at this point
+ * 2) The KeepMovingPlan samples a new destination (x, then y) from the random stream of the agent, if it has no
+ *    MoveTowardsGoal. The new goal is only planned for in the next time step
+ * 3) The UpdatePositionPlan corrects the belief of the agent after a failed move
+ * 4) The MoveTowardsPlan, if the goal was not dropped, steps towards the destination, first along the x-axis and then
+ *    along the y-axis, and optimistically updates the belief of the agent
+ *
+ * Agents are named after their index, like the agents of the simulation, and placed on the grid in the same way.
+ */
+public class MovementKernel {
+
+    private static final int NO_MOVE = -1;
+    private static final int OUT_OF_BOUNDS = -2;
+
+    /**
+     * Agents deliberated by a single task. Deliberating an agent takes a few nanoseconds, so smaller chunks would be
+     * dominated by the overhead of scheduling them
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    private final int width;
+    private final int height;
+    private final int nAgents;
+
+    // Row-major cells, containing the index of the occupying agent plus one, or 0 if the cell is empty
+    private final int[] cells;
+
+    // Indexed by agent
+    private final int[] x;
+    private final int[] y;
+    private final int[] beliefX;
+    private final int[] beliefY;
+    private final int[] destinationX;
+    private final int[] destinationY;
+    private final boolean[] hasGoal;
+    private final boolean[] failed;
+    private final long[] randomState;
+    private final int[] nameHash;
+
+    // The cell each agent moves to in the current time step, or NO_MOVE or OUT_OF_BOUNDS
+    private final int[] target;
+
+    private final ForkJoinPool pool;
+
+    private long timeStep = 0;
+    private long stateHash = 0;
+    private long successfulMoves = 0;
+    private long failedMoves = 0;
+
+    /**
+     * Place the agents at random free cells
+     *
+     * @param width         Width of the grid
+     * @param height        Height of the grid
+     * @param nAgents       Number of agents
+     * @param gridRandom    Random object the free cells are sampled with, as by the grid world
+     * @param seeds         Random stream from which the seeds of the random streams of the agents are drawn
+     * @param nThreads      Number of threads that deliberate agents
+     */
+    public MovementKernel(int width, int height, int nAgents, Random gridRandom, SplittableRandom seeds, int nThreads) {
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The kernel stores the grid densely, so it supports at most " +
+                    Integer.MAX_VALUE + " cells");
+        }
+        if (nAgents > width * height) {
+            throw new IllegalArgumentException("Cannot place more agents than there are cells in the grid");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.nAgents = nAgents;
+        this.cells = new int[width * height];
+        this.x = new int[nAgents];
+        this.y = new int[nAgents];
+        this.beliefX = new int[nAgents];
+        this.beliefY = new int[nAgents];
+        this.destinationX = new int[nAgents];
+        this.destinationY = new int[nAgents];
+        this.hasGoal = new boolean[nAgents];
+        this.failed = new boolean[nAgents];
+        this.randomState = new long[nAgents];
+        this.nameHash = new int[nAgents];
+        this.target = new int[nAgents];
+        this.pool = nThreads > 1 ? new ForkJoinPool(nThreads) : null;
+
+        for (int i = 0; i < nAgents; i++) {
+            // Sample a free cell like the grid world does
+            int cellX;
+            int cellY;
+            do {
+                cellX = gridRandom.nextInt(width);
+                cellY = gridRandom.nextInt(height);
+            } while (this.cells[cellY * width + cellX] != 0);
+
+            this.cells[cellY * width + cellX] = i + 1;
+            this.x[i] = this.beliefX[i] = cellX;
+            this.y[i] = this.beliefY[i] = cellY;
+            this.randomState[i] = seeds.nextLong();
+            this.nameHash[i] = Integer.toString(i).hashCode();
+            this.stateHash ^= StateHash.key(this.nameHash[i], cellX, cellY);
+        }
+    }
+
+    /**
+     * Simulate a single time step
+     */
+    public void step() {
+        if (this.pool == null || this.nAgents <= CHUNK_SIZE) {
+            deliberate(0, this.nAgents);
+        } else {
+            this.pool.invoke(new DeliberationChunk(0, this.nAgents));
+        }
+        commit();
+        this.timeStep++;
+    }
+
+    /**
+     * Deliberate a range of agents, and compute the cell each agent tries to move to
+     */
+    private void deliberate(int from, int to) {
+        for (int i = from; i < to; i++) {
+            // The goal is checked before the belief of the agent is corrected after a failed move
+            boolean moveTowards = hasGoal[i] && (beliefX[i] != destinationX[i] || beliefY[i] != destinationY[i]);
+
+            // KeepMovingPlan
+            if (!moveTowards) {
+                destinationX[i] = SplitMix64.nextInt(randomState, i, width);
+                destinationY[i] = SplitMix64.nextInt(randomState, i, height);
+            }
+            hasGoal[i] = true;
+
+            // UpdatePositionPlan
+            if (failed[i]) {
+                beliefX[i] = x[i];
+                beliefY[i] = y[i];
+                failed[i] = false;
+            }
+
+            // MoveTowardsPlan
+            target[i] = NO_MOVE;
+            if (moveTowards) {
+                int newX = beliefX[i];
+                int newY = beliefY[i];
+                if (newX == destinationX[i]) {
+                    if (newY < destinationY[i]) {
+                        newY++;
+                    } else if (newY > destinationY[i]) {
+                        newY--;
+                    }
+                } else if (newX < destinationX[i]) {
+                    newX++;
+                } else {
+                    newX--;
+                }
+
+                if (newX != beliefX[i] || newY != beliefY[i]) {
+                    // The agent moves in the direction of its believed step, from its actual position
+                    int targetX = x[i] + newX - beliefX[i];
+                    int targetY = y[i] + newY - beliefY[i];
+                    boolean inBounds = targetX >= 0 && targetX < width && targetY >= 0 && targetY < height;
+                    target[i] = inBounds ? targetY * width + targetX : OUT_OF_BOUNDS;
+                    beliefX[i] = newX;
+                    beliefY[i] = newY;
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply the moves of all agents in order of agent, like the environment does in deterministic mode
+     */
+    private void commit() {
+        for (int i = 0; i < nAgents; i++) {
+            int cell = target[i];
+            if (cell == NO_MOVE) {
+                continue;
+            }
+            if (cell == OUT_OF_BOUNDS || cells[cell] != 0) {
+                failed[i] = true;
+                failedMoves++;
+                continue;
+            }
+
+            int newX = cell % width;
+            int newY = cell / width;
+            cells[y[i] * width + x[i]] = 0;
+            cells[cell] = i + 1;
+            stateHash ^= StateHash.key(nameHash[i], x[i], y[i]) ^ StateHash.key(nameHash[i], newX, newY);
+            x[i] = newX;
+            y[i] = newY;
+            successfulMoves++;
+        }
+    }
+
+    /**
+     * @return  The number of time steps simulated so far
+     */
+    public long getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * @return  The hash of the positions of all agents, as computed by the grid worlds. See StateHash
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * @param agent Index of the agent
+     * @return      The x-coordinate of the agent in the grid
+     */
+    public int getX(int agent) {
+        return x[agent];
+    }
+
+    /**
+     * @param agent Index of the agent
+     * @return      The y-coordinate of the agent in the grid
+     */
+    public int getY(int agent) {
+        return y[agent];
+    }
+
+    /**
+     * @param cellX Column of the cell
+     * @param cellY Row of the cell
+     * @return      Index of the agent occupying the cell, or -1 if the cell is empty
+     */
+    public int getAgentAt(int cellX, int cellY) {
+        return cells[cellY * width + cellX] - 1;
+    }
+
+    public int getAgentCount() {
+        return nAgents;
+    }
+
+    public long getSuccessfulMoves() {
+        return successfulMoves;
+    }
+
+    public long getFailedMoves() {
+        return failedMoves;
+    }
+
+    /**
+     * Stop the threads deliberating agents
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Deliberates a range of agents, splitting it in halves down to CHUNK_SIZE agents
+     */
+    private final class DeliberationChunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        private DeliberationChunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                deliberate(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DeliberationChunk(from, middle), new DeliberationChunk(middle, to));
+            }
+        }
+    }
+}
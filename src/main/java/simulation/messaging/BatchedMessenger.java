@@ -0,0 +1,162 @@
+package simulation.messaging;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+/**
+ * Lets agents send each other messages while they deliberate, and delivers the messages in batches between time
+ * steps.
+ *
+ * Every agent has its own bounded mailbox, so memory use does not depend on how many messages are sent, and senders
+ * only contend with other senders to the same agent. Messages sent to a full mailbox, to an agent that is not
+ * registered, or to an agent that cannot receive them when they are delivered, are dropped and counted.
+ *
+ * Messages are encoded in a long by the protocol that uses them. Agents are identified by their handle in the
+ * environment interface. Agents are registered and messages are delivered by the thread that finishes time steps,
+ * while no agents are deliberating.
+ */
+public class BatchedMessenger {
+
+    /**
+     * Receives the batches of messages delivered between time steps
+     */
+    public interface BatchConsumer {
+        void accept(int handle, MessageBatch batch);
+    }
+
+    private final int capacity;
+
+    // Indexed by agent handle. Only replaced between time steps, so senders see a stable array
+    private Mailbox[] mailboxes = new Mailbox[0];
+    private MessageBatch[] batches = new MessageBatch[0];
+    private boolean[] registered = new boolean[0];
+
+    // Messages removed from mailboxes without being delivered
+    private final long[] discarded;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private long delivered = 0;
+
+    /**
+     * @param capacity  The maximum number of messages waiting for delivery to a single agent. Rounded up to a power
+     *                  of two
+     */
+    public BatchedMessenger(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Mailbox capacity should be at least 1, got " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.discarded = new long[this.capacity];
+    }
+
+    /**
+     * Give an agent an empty mailbox. Messages sent to a previous agent with the same handle are discarded
+     *
+     * @param handle    Handle of the agent
+     */
+    public void registerAgent(int handle) {
+        if (handle >= this.mailboxes.length) {
+            int length = Math.max(handle + 1, this.mailboxes.length * 2);
+            this.mailboxes = Arrays.copyOf(this.mailboxes, length);
+            this.batches = Arrays.copyOf(this.batches, length);
+            this.registered = Arrays.copyOf(this.registered, length);
+        }
+        if (this.mailboxes[handle] == null) {
+            this.mailboxes[handle] = new Mailbox(this.capacity);
+            this.batches[handle] = new MessageBatch(this.capacity);
+        } else {
+            discard(handle);
+            this.batches[handle].handled();
+        }
+        this.registered[handle] = true;
+    }
+
+    /**
+     * Stop accepting messages for an agent
+     *
+     * @param handle    Handle of the agent
+     */
+    public void removeAgent(int handle) {
+        if (handle < this.registered.length && this.registered[handle]) {
+            this.registered[handle] = false;
+            discard(handle);
+        }
+    }
+
+    /**
+     * Send a message. Safe to call from any number of deliberating agents at the same time
+     *
+     * @param receiver  Handle of the receiving agent
+     * @param message   The message
+     * @return          True iff the message was accepted for delivery at the end of the time step
+     */
+    public boolean send(int receiver, long message) {
+        this.sent.increment();
+        if (receiver < 0 || receiver >= this.mailboxes.length || !this.registered[receiver] ||
+                !this.mailboxes[receiver].offer(message)) {
+            this.dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deliver the messages sent during the last time step. Each agent that received messages gets all of them in a
+     * single batch
+     *
+     * @param canReceive    Decides if an agent can receive messages now. Messages to agents that cannot, e.g., because
+     *                      they are not deliberating, are dropped
+     * @param consumer      Passes the batches to the agents
+     */
+    public void deliver(IntPredicate canReceive, BatchConsumer consumer) {
+        for (int handle = 0; handle < this.mailboxes.length; handle++) {
+            Mailbox mailbox = this.mailboxes[handle];
+            if (mailbox == null || mailbox.isEmpty()) {
+                continue;
+            }
+
+            MessageBatch batch = this.batches[handle];
+            if (!this.registered[handle] || batch.isPending() || !canReceive.test(handle)) {
+                discard(handle);
+            } else if (batch.fill(mailbox)) {
+                this.delivered += batch.size();
+                consumer.accept(handle, batch);
+            }
+        }
+    }
+
+    private void discard(int handle) {
+        int n = this.mailboxes[handle].drainTo(this.discarded);
+        this.dropped.add(n);
+    }
+
+    /**
+     * @return  The number of messages sent so far, including dropped messages
+     */
+    public long getSentCount() {
+        return this.sent.sum();
+    }
+
+    /**
+     * @return  The number of messages delivered so far
+     */
+    public long getDeliveredCount() {
+        return this.delivered;
+    }
+
+    /**
+     * @return  The number of messages dropped so far
+     */
+    public long getDroppedCount() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * @return  The maximum number of messages waiting for delivery to a single agent
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+}
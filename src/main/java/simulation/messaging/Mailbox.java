@@ -0,0 +1,114 @@
+package simulation.messaging;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A bounded ring buffer of messages for a single receiver, to which any number of threads can send concurrently.
+ *
+ * Each slot carries a sequence number that tells senders whether the slot is free, and the receiver whether the
+ * message in it has been published. Senders only contend on the tail of the mailbox they send to, and never block:
+ * a message sent to a full mailbox is rejected. Messages are encoded in a long, so sending allocates nothing.
+ *
+ * Only a single thread may drain the mailbox, and not while messages are being sent to it.
+ */
+final class Mailbox {
+
+    private static final VarHandle TAIL;
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    static {
+        try {
+            TAIL = MethodHandles.lookup().findVarHandle(Mailbox.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long[] messages;
+    private final long[] sequences;
+    private final int mask;
+
+    // Position of the next slot a sender claims. Only accessed through TAIL
+    @SuppressWarnings("unused")
+    private volatile long tail = 0;
+
+    // Position of the next slot the receiver reads. Only accessed by the receiver
+    private long head = 0;
+
+    /**
+     * @param capacity  Maximum number of messages in the mailbox. Must be a power of two
+     */
+    Mailbox(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity should be a power of two, got " + capacity);
+        }
+        this.messages = new long[capacity];
+        this.sequences = new long[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            this.sequences[i] = i;
+        }
+    }
+
+    /**
+     * Send a message to the receiver. Safe to call from multiple threads at the same time
+     *
+     * @param message   The message
+     * @return          False if the mailbox is full, in which case the message is not delivered
+     */
+    boolean offer(long message) {
+        while (true) {
+            long position = (long) TAIL.getVolatile(this);
+            int slot = (int) (position & this.mask);
+            long sequence = (long) SEQUENCES.getAcquire(this.sequences, slot);
+
+            if (sequence < position) {
+                // The slot still holds a message from the previous round, which has not been received yet
+                return false;
+            }
+            if (sequence == position && TAIL.compareAndSet(this, position, position + 1)) {
+                this.messages[slot] = message;
+                // Publish the message to the receiver
+                SEQUENCES.setRelease(this.sequences, slot, position + 1);
+                return true;
+            }
+            // Another sender claimed the slot first
+        }
+    }
+
+    /**
+     * Move all published messages into an array
+     *
+     * @param target    Array to copy the messages to, starting at index 0. Should be at least as long as the capacity
+     * @return          The number of messages received
+     */
+    int drainTo(long[] target) {
+        int n = 0;
+        while (true) {
+            int slot = (int) (this.head & this.mask);
+            if ((long) SEQUENCES.getAcquire(this.sequences, slot) != this.head + 1) {
+                return n;
+            }
+            target[n++] = this.messages[slot];
+            // Free the slot for the sender that wraps around to it
+            SEQUENCES.setRelease(this.sequences, slot, this.head + this.messages.length);
+            this.head++;
+        }
+    }
+
+    /**
+     * @return  True if no messages were sent since the mailbox was last drained. Only reliable while no messages are
+     *          being sent
+     */
+    boolean isEmpty() {
+        return (long) TAIL.getVolatile(this) == this.head;
+    }
+
+    /**
+     * @return  The maximum number of messages in the mailbox
+     */
+    int capacity() {
+        return this.messages.length;
+    }
+}
@@ -0,0 +1,65 @@
+package simulation.messaging;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+
+/**
+ * The messages received by a single agent during a time step, delivered to the agent as one external trigger.
+ *
+ * The messenger reuses a single batch per agent. A batch is pending from the moment it is delivered until the agent
+ * has handled it, and the messenger does not deliver to an agent whose batch is still pending.
+ */
+public class MessageBatch implements Trigger {
+
+    private final long[] messages;
+    private int size = 0;
+    private volatile boolean pending = false;
+
+    MessageBatch(int capacity) {
+        this.messages = new long[capacity];
+    }
+
+    /**
+     * Fill the batch from a mailbox, and mark it pending if any messages were received
+     *
+     * @return  True iff the batch received any messages
+     */
+    boolean fill(Mailbox mailbox) {
+        this.size = mailbox.drainTo(this.messages);
+        this.pending = this.size > 0;
+        return this.pending;
+    }
+
+    /**
+     * @return  The number of messages in the batch
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param index Index of the message, in the order in which the messages arrived
+     * @return      The message
+     */
+    public long get(int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for batch of " + this.size);
+        }
+        return this.messages[index];
+    }
+
+    /**
+     * @return  True if the batch was delivered, but not yet handled by the agent
+     */
+    public boolean isPending() {
+        return this.pending;
+    }
+
+    /**
+     * Mark the batch as handled, so the messenger can deliver the next batch. Should be called by the agent once it
+     * has read all messages
+     */
+    public void handled() {
+        this.size = 0;
+        this.pending = false;
+    }
+}
@@ -0,0 +1,76 @@
+package simulation.shard;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * An agent crossing from one shard into another, together with the beliefs it takes along.
+ *
+ * Only the beliefs that are kept in the BeliefStore travel: the position the agent moves to, the destination it is
+ * moving towards, and the state of its random stream. The agent continues in the other shard under the same name, so
+ * the hash of the full grid does not change when an agent changes shards.
+ */
+public final class Migrant {
+
+    private final String name;
+    private final int x;
+    private final int y;
+    private final int destinationX;
+    private final int destinationY;
+    private final long randomState;
+
+    /**
+     * @param name          Name of the agent
+     * @param x             Column of the cell the agent moves into
+     * @param y             Row of the cell the agent moves into
+     * @param destinationX  X-coordinate of the destination the agent is moving towards
+     * @param destinationY  Y-coordinate of the destination the agent is moving towards
+     * @param randomState   State of the random stream of the agent
+     */
+    public Migrant(String name, int x, int y, int destinationX, int destinationY, long randomState) {
+        this.name = name;
+        this.x = x;
+        this.y = y;
+        this.destinationX = destinationX;
+        this.destinationY = destinationY;
+        this.randomState = randomState;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(this.name);
+        out.writeInt(this.x);
+        out.writeInt(this.y);
+        out.writeInt(this.destinationX);
+        out.writeInt(this.destinationY);
+        out.writeLong(this.randomState);
+    }
+
+    public static Migrant read(DataInput in) throws IOException {
+        return new Migrant(in.readUTF(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readLong());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getDestinationX() {
+        return destinationX;
+    }
+
+    public int getDestinationY() {
+        return destinationY;
+    }
+
+    public long getRandomState() {
+        return randomState;
+    }
+}
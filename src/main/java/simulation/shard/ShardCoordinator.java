@@ -0,0 +1,234 @@
+package simulation.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coordinates the shards of a sharded simulation.
+ *
+ * The coordinator does not simulate any agents itself. After every time step, it collects the report of every shard,
+ * passes the border rows of every shard to its neighbours as their halo, routes the crossing agents to the shards
+ * owning the cells they move into, and routes the answers back (see ShardProtocol). Because a shard waits for the
+ * answers before it starts its next time step, and the coordinator only sends them once it has heard from all shards,
+ * this is also the barrier between time steps.
+ *
+ * The coordinator optionally writes the hash of the full grid after every time step, as the XOR of the hashes of the
+ * shards, in the format of the checksum file of the Simulation. The shards report their hashes before the crossing
+ * agents are routed, so the hash of a time step includes the crossings of the time step before it.
+ */
+public class ShardCoordinator {
+
+    private final ShardLayout layout;
+    private final int width;
+    private final int nSteps;
+
+    private Writer checksumWriter;
+
+    private long stateHash;
+    private int agentCount;
+    private long crossings = 0;
+    private long rejected = 0;
+
+    /**
+     * @param layout    The division of the rows of the grid over the shards
+     * @param width     Width of the grid
+     * @param nSteps    The number of time steps the shards run
+     */
+    public ShardCoordinator(ShardLayout layout, int width, int nSteps) {
+        this.layout = layout;
+        this.width = width;
+        this.nSteps = nSteps;
+    }
+
+    /**
+     * Write the hash of the full grid to this writer after each time step. The writer is closed once all time steps
+     * have finished
+     *
+     * @param checksumWriter    Writer to write the hashes to
+     */
+    public void setChecksumWriter(Writer checksumWriter) {
+        this.checksumWriter = checksumWriter;
+    }
+
+    /**
+     * Wait for all shards to connect, and coordinate them until they have finished all time steps
+     *
+     * @param server        The socket the shards connect to
+     * @throws IOException  If a shard cannot be reached, or does not follow the protocol
+     */
+    public void serve(ServerSocket server) throws IOException {
+        int nShards = this.layout.getShardCount();
+        Socket[] sockets = new Socket[nShards];
+        DataInputStream[] in = new DataInputStream[nShards];
+        DataOutputStream[] out = new DataOutputStream[nShards];
+
+        try {
+            for (int i = 0; i < nShards; i++) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                int shard = checkHello(ShardProtocol.readHello(input));
+                if (sockets[shard] != null) {
+                    socket.close();
+                    throw new IOException("Shard " + shard + " connected twice");
+                }
+                sockets[shard] = socket;
+                in[shard] = input;
+                out[shard] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            }
+
+            for (long timeStep = 0; timeStep < this.nSteps; timeStep++) {
+                coordinateStep(timeStep, in, out);
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+            if (this.checksumWriter != null) {
+                this.checksumWriter.close();
+            }
+        }
+    }
+
+    /**
+     * @return  The index of the shard that sent the hello message
+     */
+    private int checkHello(int[] hello) throws IOException {
+        int shard = hello[0];
+        if (shard < 0 || shard >= this.layout.getShardCount() || hello[1] != this.layout.getShardCount() ||
+                hello[2] != this.width || hello[3] != this.layout.getHeight()) {
+            throw new IOException("Shard " + shard + " of " + hello[1] + " on a " + hello[2] + "x" + hello[3] +
+                    " grid does not belong to this simulation");
+        }
+        return shard;
+    }
+
+    private void coordinateStep(long timeStep, DataInputStream[] in, DataOutputStream[] out) throws IOException {
+        int nShards = this.layout.getShardCount();
+        StepReport[] reports = new StepReport[nShards];
+        long hash = 0;
+        int agents = 0;
+        for (int shard = 0; shard < nShards; shard++) {
+            reports[shard] = StepReport.read(in[shard]);
+            if (reports[shard].getTimeStep() != timeStep) {
+                throw new IOException("Shard " + shard + " reported time step " + reports[shard].getTimeStep() +
+                        " instead of " + timeStep);
+            }
+            hash ^= reports[shard].getStateHash();
+            agents += reports[shard].getAgentCount();
+        }
+        this.stateHash = hash;
+        this.agentCount = agents;
+
+        // First round: every shard gets the border rows of its neighbours, and the agents crossing into it, first
+        // from the shard above and then from the shard below. For each agent, remember where it came from
+        long[][] origins = new long[nShards][];
+        for (int shard = 0; shard < nShards; shard++) {
+            List<Migrant> immigrants = new ArrayList<>();
+            List<Long> origin = new ArrayList<>();
+            if (shard > 0) {
+                collectCrossings(reports, shard - 1, shard, immigrants, origin);
+            }
+            if (shard < nShards - 1) {
+                collectCrossings(reports, shard + 1, shard, immigrants, origin);
+            }
+            origins[shard] = origin.stream().mapToLong(Long::longValue).toArray();
+
+            ShardProtocol.writeRow(out[shard], shard > 0 ? reports[shard - 1].getLastRow() : null);
+            ShardProtocol.writeRow(out[shard], shard < nShards - 1 ? reports[shard + 1].getFirstRow() : null);
+            ShardProtocol.writeMigrants(out[shard], immigrants);
+            out[shard].flush();
+        }
+
+        // Second round: pass the answer for every crossing agent back to the shard it came from
+        boolean[][] answers = new boolean[nShards][];
+        for (int shard = 0; shard < nShards; shard++) {
+            answers[shard] = new boolean[reports[shard].getMigrants().size()];
+        }
+        for (int shard = 0; shard < nShards; shard++) {
+            boolean[] accepted = ShardProtocol.readAnswers(in[shard]);
+            if (accepted.length != origins[shard].length) {
+                throw new IOException("Shard " + shard + " answered for " + accepted.length + " of " +
+                        origins[shard].length + " crossing agents");
+            }
+            for (int i = 0; i < accepted.length; i++) {
+                int source = (int) (origins[shard][i] >>> 32);
+                int index = (int) origins[shard][i];
+                answers[source][index] = accepted[i];
+                this.crossings++;
+                if (!accepted[i]) {
+                    this.rejected++;
+                }
+            }
+        }
+        for (int shard = 0; shard < nShards; shard++) {
+            ShardProtocol.writeAnswers(out[shard], answers[shard]);
+            out[shard].flush();
+        }
+
+        if (this.checksumWriter != null) {
+            this.checksumWriter.write(timeStep + "," + Long.toHexString(hash) + "\n");
+            this.checksumWriter.flush();
+        }
+    }
+
+    /**
+     * Collect the agents of one shard that cross into a neighbouring shard
+     *
+     * @param reports       The reports of all shards
+     * @param source        The shard the agents cross out of
+     * @param target        The shard the agents cross into
+     * @param immigrants    The list to add the crossing agents to
+     * @param origin        The list to add the shard and the index in its report of every crossing agent to
+     */
+    private void collectCrossings(StepReport[] reports, int source, int target, List<Migrant> immigrants,
+                                  List<Long> origin) {
+        List<Migrant> migrants = reports[source].getMigrants();
+        for (int i = 0; i < migrants.size(); i++) {
+            Migrant migrant = migrants.get(i);
+            if (migrant.getY() >= 0 && migrant.getY() < this.layout.getHeight() &&
+                    this.layout.getOwner(migrant.getY()) == target) {
+                immigrants.add(migrant);
+                origin.add((long) source << 32 | i);
+            }
+        }
+    }
+
+    /**
+     * @return  The hash of the full grid after the last time step, see StateHash
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * @return  The number of agents in all shards after the last time step
+     */
+    public int getAgentCount() {
+        return agentCount;
+    }
+
+    /**
+     * @return  The number of agents that tried to cross into another shard
+     */
+    public long getCrossingCount() {
+        return crossings;
+    }
+
+    /**
+     * @return  The number of agents that could not cross into another shard, because their cell was taken
+     */
+    public long getRejectedCount() {
+        return rejected;
+    }
+}
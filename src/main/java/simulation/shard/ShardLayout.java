@@ -0,0 +1,74 @@
+package simulation.shard;
+
+/**
+ * Divides the rows of the grid over the shards of a sharded simulation.
+ *
+ * Every shard owns a band of consecutive rows spanning the full width of the grid, so each shard borders at most two
+ * other shards: the one owning the rows above it, and the one owning the rows below it. Rows that cannot be divided
+ * evenly go to the first shards. The initial agents are divided over the shards in proportion to the number of rows
+ * they own.
+ */
+public class ShardLayout {
+
+    private final int height;
+    private final int nShards;
+
+    /**
+     * @param height    Height of the grid
+     * @param nShards   Number of shards
+     */
+    public ShardLayout(int height, int nShards) {
+        if (nShards < 1 || nShards > height) {
+            throw new IllegalArgumentException("Every shard should own at least one row, so the number of shards " +
+                    "should be between 1 and " + height + ", got " + nShards);
+        }
+        this.height = height;
+        this.nShards = nShards;
+    }
+
+    /**
+     * @param shard Index of the shard
+     * @return      The first row owned by the shard
+     */
+    public int getTop(int shard) {
+        int rows = this.height / this.nShards;
+        return shard * rows + Math.min(shard, this.height % this.nShards);
+    }
+
+    /**
+     * @param shard Index of the shard
+     * @return      The row after the last row owned by the shard
+     */
+    public int getBottom(int shard) {
+        return getTop(shard + 1);
+    }
+
+    /**
+     * @param y A row of the grid
+     * @return  Index of the shard owning the row
+     */
+    public int getOwner(int y) {
+        int rows = this.height / this.nShards;
+        int remainder = this.height % this.nShards;
+        // The first shards own one row more than the others
+        int split = remainder * (rows + 1);
+        return y < split ? y / (rows + 1) : remainder + (y - split) / rows;
+    }
+
+    /**
+     * @param shard     Index of the shard
+     * @param nAgents   Number of agents in the whole grid
+     * @return          The number of agents the shard starts with
+     */
+    public int getAgents(int shard, int nAgents) {
+        return (int) ((long) nAgents * getBottom(shard) / this.height - (long) nAgents * getTop(shard) / this.height);
+    }
+
+    public int getShardCount() {
+        return this.nShards;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+}
@@ -0,0 +1,202 @@
+package simulation.shard;
+
+import environment.Direction;
+import environment.ShardGridWorld;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.step.EnvironmentInterface;
+import simulation.AgentPopulation;
+import simulation.agent.BeliefStore;
+
+import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Connects one shard of a sharded simulation to the coordinator.
+ *
+ * The link registers to the simulation engine after the environment interface and the population, so after every
+ * time step, the agents of the shard have moved, and the agents that leave the simulation have been replaced. The link
+ * then exchanges the border rows and the crossing agents of the shard with the coordinator (see ShardProtocol), and
+ * only returns once the coordinator has heard from all shards, so the shards proceed through the time steps together.
+ *
+ * Agents crossing into this shard are accepted if the cell they move into is still free once the agents of this
+ * shard have moved. They enter the simulation here with the beliefs they took along. Agents crossing out of this
+ * shard leave the simulation here once they have been accepted by the other shard. Until then, they stay in their
+ * cell, and like any agent whose move failed, they are notified of their actual position.
+ */
+public class ShardLink implements EnvironmentInterface<Direction> {
+
+    private final ShardGridWorld<String> grid;
+    private final AgentPopulation population;
+    private final BeliefStore beliefStore;
+    private final int shard;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    // Agents of this shard crossing into a neighbouring shard in the current time step
+    private final List<Migrant> emigrants = new ArrayList<>();
+
+    private long emigrated = 0;
+    private long immigrated = 0;
+    private long rejected = 0;
+
+    /**
+     * Connect to the coordinator
+     *
+     * @param coordinator   Host and port of the coordinator, separated by a colon
+     * @param grid          The rows of the grid owned by this shard
+     * @param population    The agents of this shard
+     * @param beliefStore   The beliefs of the agents of this shard
+     * @param shard         Index of this shard
+     * @param nShards       Number of shards
+     * @throws IOException  If the coordinator cannot be reached
+     */
+    public ShardLink(String coordinator, ShardGridWorld<String> grid, AgentPopulation population,
+                     BeliefStore beliefStore, int shard, int nShards) throws IOException {
+        int separator = coordinator.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("The coordinator should be given as host:port, got " + coordinator);
+        }
+        this.grid = grid;
+        this.population = population;
+        this.beliefStore = beliefStore;
+        this.shard = shard;
+
+        this.socket = new Socket(coordinator.substring(0, separator),
+                Integer.parseInt(coordinator.substring(separator + 1)));
+        // Every round is a few small messages, which should not wait for more data to fill a packet
+        this.socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+
+        ShardProtocol.writeHello(this.out, shard, nShards, grid.getWidth(), grid.getHeight());
+        this.out.flush();
+    }
+
+    @Override
+    public void stepStarting(long timeStep) {
+        // Nothing to exchange before the agents deliberate
+    }
+
+    @Override
+    public void stepFinished(long timeStep, int timeStepDuration, List<Future<DeliberationResult<Direction>>> list) {
+        try {
+            exchange(timeStep);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lost the connection to the coordinator of the sharded simulation", e);
+        } catch (URISyntaxException e) {
+            // Agents get local IDs, so this is not expected
+            throw new IllegalStateException("Could not create an agent crossing into shard " + this.shard, e);
+        }
+    }
+
+    private void exchange(long timeStep) throws IOException, URISyntaxException {
+        collectEmigrants();
+        new StepReport(
+                timeStep,
+                this.grid.getStateHash(),
+                this.population.size(),
+                this.grid.getRowOccupancy(this.grid.getTop()),
+                this.grid.getRowOccupancy(this.grid.getBottom() - 1),
+                this.emigrants
+        ).write(this.out);
+        this.out.flush();
+
+        // First round: the halo, and the agents crossing into this shard
+        long[] above = ShardProtocol.readRow(this.in);
+        long[] below = ShardProtocol.readRow(this.in);
+        List<Migrant> immigrants = ShardProtocol.readMigrants(this.in);
+        this.grid.setHalo(above, below);
+
+        boolean[] accepted = new boolean[immigrants.size()];
+        for (int i = 0; i < accepted.length; i++) {
+            Migrant migrant = immigrants.get(i);
+            Point cell = new Point(migrant.getX(), migrant.getY());
+            if (this.grid.isOwned(cell) && this.grid.getAgentAt(cell) == null) {
+                this.population.immigrate(migrant.getName(), cell, migrant.getDestinationX(),
+                        migrant.getDestinationY(), migrant.getRandomState());
+                accepted[i] = true;
+                this.immigrated++;
+            }
+        }
+        ShardProtocol.writeAnswers(this.out, accepted);
+        this.out.flush();
+
+        // Second round: which of the agents crossing out of this shard were accepted
+        boolean[] answers = ShardProtocol.readAnswers(this.in);
+        for (int i = 0; i < answers.length; i++) {
+            if (answers[i]) {
+                this.population.emigrate(this.emigrants.get(i).getName());
+                this.emigrated++;
+            } else {
+                this.rejected++;
+            }
+        }
+    }
+
+    /**
+     * Collect the agents that tried to move into the halo, with the beliefs they take along
+     */
+    private void collectEmigrants() {
+        this.emigrants.clear();
+        for (ShardGridWorld.Crossing<String> crossing : this.grid.getCrossings()) {
+            // The agent may have left the simulation after it moved
+            int slot = this.population.getSlot(crossing.getAgent());
+            if (slot >= 0) {
+                this.emigrants.add(new Migrant(
+                        crossing.getAgent(),
+                        crossing.getX(),
+                        crossing.getY(),
+                        this.beliefStore.getDestinationX(slot),
+                        this.beliefStore.getDestinationY(slot),
+                        this.beliefStore.getRandomState(slot)
+                ));
+            }
+        }
+        this.grid.clearCrossings();
+    }
+
+    @Override
+    public void simulationFinished(long timeStep, int timeStepDuration) {
+        System.out.printf("Shard %d (rows %d to %d): %d agents, %d agents left, %d agents entered, " +
+                        "%d crossings rejected%n", this.shard, this.grid.getTop(), this.grid.getBottom() - 1,
+                this.population.size(), this.emigrated, this.immigrated, this.rejected);
+        close();
+    }
+
+    /**
+     * Close the connection to the coordinator. Has no effect if it was already closed
+     */
+    public void close() {
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return  The number of agents that left this shard for another shard
+     */
+    public long getEmigratedCount() {
+        return emigrated;
+    }
+
+    /**
+     * @return  The number of agents that entered this shard from another shard
+     */
+    public long getImmigratedCount() {
+        return immigrated;
+    }
+}
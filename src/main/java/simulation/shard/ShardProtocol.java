@@ -0,0 +1,110 @@
+package simulation.shard;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages exchanged between the shards of a sharded simulation and their coordinator.
+ *
+ * After connecting, a shard introduces itself with a hello message. After every time step, the shards and the
+ * coordinator exchange two rounds of messages, which together form the barrier between time steps:
+ * 1) Every shard sends a StepReport with the occupancy of its border rows and the agents crossing into its
+ *    neighbours. The coordinator sends every shard a delivery with the occupancy of the border rows of its neighbours
+ *    (its halo), and the agents crossing into it, first those from the shard above, then those from the shard below
+ * 2) Every shard sends, for each agent crossing into it, whether it accepted the agent. The coordinator sends every
+ *    shard, for each of its own crossing agents, whether it was accepted
+ *
+ * A shard only starts its next time step once it has received the answers of the second round, which the
+ * coordinator only sends once all shards have finished the first round.
+ */
+public final class ShardProtocol {
+
+    static final int MAGIC = 0x53324150;
+
+    private ShardProtocol() {
+    }
+
+    /**
+     * Introduce a shard to the coordinator. The coordinator checks that all shards divide the same grid
+     */
+    public static void writeHello(DataOutput out, int shard, int nShards, int width, int height) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(shard);
+        out.writeInt(nShards);
+        out.writeInt(width);
+        out.writeInt(height);
+    }
+
+    /**
+     * @return  The shard index, number of shards, width and height sent by a shard
+     */
+    public static int[] readHello(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a shard of a sharded simulation");
+        }
+        return new int[] { in.readInt(), in.readInt(), in.readInt(), in.readInt() };
+    }
+
+    /**
+     * Write the occupancy of a row, or of a missing neighbour
+     *
+     * @param row   Occupancy of the row, one bit per column, or null if the row does not exist
+     */
+    public static void writeRow(DataOutput out, long[] row) throws IOException {
+        out.writeBoolean(row != null);
+        if (row != null) {
+            out.writeInt(row.length);
+            for (long word : row) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    public static long[] readRow(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long[] row = new long[in.readInt()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = in.readLong();
+        }
+        return row;
+    }
+
+    public static void writeMigrants(DataOutput out, List<Migrant> migrants) throws IOException {
+        out.writeInt(migrants.size());
+        for (Migrant migrant : migrants) {
+            migrant.write(out);
+        }
+    }
+
+    public static List<Migrant> readMigrants(DataInput in) throws IOException {
+        int n = in.readInt();
+        List<Migrant> migrants = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            migrants.add(Migrant.read(in));
+        }
+        return migrants;
+    }
+
+    /**
+     * Write whether each crossing agent was accepted, in the order in which the agents were sent
+     */
+    public static void writeAnswers(DataOutput out, boolean[] accepted) throws IOException {
+        out.writeInt(accepted.length);
+        for (boolean answer : accepted) {
+            out.writeBoolean(answer);
+        }
+    }
+
+    public static boolean[] readAnswers(DataInput in) throws IOException {
+        boolean[] accepted = new boolean[in.readInt()];
+        for (int i = 0; i < accepted.length; i++) {
+            accepted[i] = in.readBoolean();
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,197 @@
+package simulation.shard;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import util.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a simulation divided over multiple shards, each with its own platform and its own part of the grid, in its
+ * own JVM.
+ *
+ * This process runs the ShardCoordinator. By default, it launches the shards as child processes on this machine,
+ * with the same JVM options and command line arguments as this process. With external shards, the coordinator
+ * instead waits for the shards to be started by hand, e.g., on other machines, with the same command line arguments
+ * plus the address of the coordinator and the index of the shard.
+ */
+public class ShardedSimulation {
+
+    /**
+     * The time to wait for a shard launched on this machine to connect, before assuming it failed to start
+     */
+    private static final int LAUNCH_TIMEOUT_MILLIS = 120_000;
+
+    private final ShardLayout layout;
+    private final ShardCoordinator coordinator;
+    private final String[] args;
+    private final int port;
+    private final boolean externalShards;
+    private final int nSteps;
+
+    /**
+     * Wall clock time taken by the last call to start(), in milliseconds
+     */
+    private long runDuration;
+
+    /**
+     * @param ns    Parsed command line arguments
+     * @param args  The command line arguments, which are passed on to the shards launched on this machine
+     */
+    public ShardedSimulation(Namespace ns, String[] args) {
+        validate(ns);
+        this.layout = new ShardLayout(ns.getInt(Constants.ARG_HEIGHT), ns.getInt(Constants.ARG_SHARDS));
+        this.nSteps = ns.getInt(Constants.ARG_STEPS);
+        this.coordinator = new ShardCoordinator(this.layout, ns.getInt(Constants.ARG_WIDTH), this.nSteps);
+        this.args = args;
+        this.port = ns.getInt(Constants.ARG_SHARD_PORT);
+        this.externalShards = ns.getBoolean(Constants.ARG_EXTERNAL_SHARDS);
+
+        // The shards only know their own part of the grid, so the hash of the full grid is written here
+        String checksumFile = ns.getString(Constants.ARG_CHECKSUM_FILE);
+        if (checksumFile != null) {
+            try {
+                this.coordinator.setChecksumWriter(
+                        Files.newBufferedWriter(Paths.get(checksumFile), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Check that the arguments describe a simulation that can be sharded. Called by the coordinator and by every shard
+     *
+     * @param ns    Parsed command line arguments
+     */
+    public static void validate(Namespace ns) {
+        if (ns.getInt(Constants.ARG_STEPS) <= 0) {
+            throw new IllegalArgumentException("All shards should stop after the same time step, so a sharded " +
+                    "simulation needs a fixed number of time steps");
+        }
+        if (!ns.getBoolean(Constants.ARG_HEADLESS)) {
+            throw new IllegalArgumentException("No shard has the full grid to draw, so a sharded simulation should " +
+                    "run --" + Constants.ARG_HEADLESS);
+        }
+        if (ns.getBoolean(Constants.ARG_ASYNC) || ns.getBoolean(Constants.ARG_SPARSE) ||
+                ns.getBoolean(Constants.ARG_SWAP) || ns.getBoolean(Constants.ARG_CONGESTION_AWARE)) {
+            throw new IllegalArgumentException("A sharded simulation cannot be combined with --" +
+                    Constants.ARG_ASYNC + ", --" + Constants.ARG_SPARSE + ", --" + Constants.ARG_SWAP + " or --" +
+                    Constants.ARG_CONGESTION_AWARE);
+        }
+        if (ns.getString(Constants.ARG_ANALYTICS_FILE) != null || ns.getString(Constants.ARG_EXPORT_FILE) != null ||
+                ns.getString(Constants.ARG_PROFILE_FILE) != null) {
+            throw new IllegalArgumentException("The shards would all write to the same analytics, export or profile " +
+                    "file, so these cannot be used in a sharded simulation");
+        }
+    }
+
+    /**
+     * Derive the seed of a shard, so the shards do not all place their agents in the same columns
+     *
+     * @param seed  The seed of the simulation
+     * @param shard Index of the shard
+     * @return      The seed of the random streams of the shard
+     */
+    public static long shardSeed(int seed, int shard) {
+        return seed + shard * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Launch or wait for the shards, and coordinate them until they have finished. Blocks until the simulation has
+     * finished
+     */
+    public void start() {
+        List<Process> shards = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
+        try (ServerSocket server = this.externalShards
+                ? new ServerSocket(this.port)
+                : new ServerSocket(this.port, this.layout.getShardCount(), InetAddress.getLoopbackAddress())) {
+            if (this.externalShards) {
+                System.out.printf("Waiting for %d shards to connect on port %d%n", this.layout.getShardCount(),
+                        server.getLocalPort());
+            } else {
+                server.setSoTimeout(LAUNCH_TIMEOUT_MILLIS);
+                for (int shard = 0; shard < this.layout.getShardCount(); shard++) {
+                    shards.add(launchShard(shard, "localhost:" + server.getLocalPort()));
+                }
+            }
+            this.coordinator.serve(server);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            awaitShards(shards);
+            this.runDuration = System.currentTimeMillis() - startTime;
+        }
+
+        double seconds = Math.max(this.runDuration, 1) / 1000.0;
+        System.out.printf("Simulated %d shards with %d agents for %d time steps in %d ms: %.1f steps/s, " +
+                        "%d agents crossed between shards, %d crossings rejected%n",
+                this.layout.getShardCount(), this.coordinator.getAgentCount(), this.nSteps, this.runDuration,
+                this.nSteps / seconds, this.coordinator.getCrossingCount() - this.coordinator.getRejectedCount(),
+                this.coordinator.getRejectedCount());
+    }
+
+    /**
+     * Start a shard in a new JVM with the options and arguments of this one
+     */
+    private Process launchShard(int shard, String coordinatorAddress) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("Main");
+        command.addAll(Arrays.asList(this.args));
+        command.add("--shard-index");
+        command.add(Integer.toString(shard));
+        command.add("--coordinator");
+        command.add(coordinatorAddress);
+
+        return new ProcessBuilder(command)
+                .directory(new File(System.getProperty("user.dir")))
+                .inheritIO()
+                .start();
+    }
+
+    /**
+     * Wait for the launched shards to exit, and stop those that are still running if the simulation failed
+     */
+    private static void awaitShards(List<Process> shards) {
+        for (Process shard : shards) {
+            try {
+                if (shard.isAlive() && !shard.waitFor(10, TimeUnit.SECONDS)) {
+                    shard.destroy();
+                }
+            } catch (InterruptedException e) {
+                shard.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return  The coordinator of the shards
+     */
+    public ShardCoordinator getCoordinator() {
+        return coordinator;
+    }
+
+    /**
+     * @return  Wall clock time taken by the last run of the simulation, in milliseconds
+     */
+    public long getRunDuration() {
+        return runDuration;
+    }
+}
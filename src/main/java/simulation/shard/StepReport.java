@@ -0,0 +1,76 @@
+package simulation.shard;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * What a shard tells the coordinator after a time step: the state of its rows, and the agents that want to cross
+ * into a neighbouring shard
+ */
+public final class StepReport {
+
+    private final long timeStep;
+    private final long stateHash;
+    private final int agentCount;
+    private final long[] firstRow;
+    private final long[] lastRow;
+    private final List<Migrant> migrants;
+
+    /**
+     * @param timeStep      The time step that just finished
+     * @param stateHash     Hash of the positions of the agents in the shard, see StateHash
+     * @param agentCount    Number of agents in the shard
+     * @param firstRow      Occupancy of the first row of the shard, one bit per column
+     * @param lastRow       Occupancy of the last row of the shard, one bit per column
+     * @param migrants      Agents that want to cross into a neighbouring shard
+     */
+    public StepReport(long timeStep, long stateHash, int agentCount, long[] firstRow, long[] lastRow,
+                      List<Migrant> migrants) {
+        this.timeStep = timeStep;
+        this.stateHash = stateHash;
+        this.agentCount = agentCount;
+        this.firstRow = firstRow;
+        this.lastRow = lastRow;
+        this.migrants = migrants;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(this.timeStep);
+        out.writeLong(this.stateHash);
+        out.writeInt(this.agentCount);
+        ShardProtocol.writeRow(out, this.firstRow);
+        ShardProtocol.writeRow(out, this.lastRow);
+        ShardProtocol.writeMigrants(out, this.migrants);
+    }
+
+    public static StepReport read(DataInput in) throws IOException {
+        return new StepReport(in.readLong(), in.readLong(), in.readInt(), ShardProtocol.readRow(in),
+                ShardProtocol.readRow(in), ShardProtocol.readMigrants(in));
+    }
+
+    public long getTimeStep() {
+        return timeStep;
+    }
+
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    public int getAgentCount() {
+        return agentCount;
+    }
+
+    public long[] getFirstRow() {
+        return firstRow;
+    }
+
+    public long[] getLastRow() {
+        return lastRow;
+    }
+
+    public List<Migrant> getMigrants() {
+        return migrants;
+    }
+}
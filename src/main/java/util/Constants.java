@@ -6,4 +6,50 @@ public class Constants {
     public static final String ARG_N_AGENTS = "agents";
     public static final String ARG_SEED = "seed";
     public static final String ARG_BETWEEN_STEP_DELAY = "delay";
+    public static final String ARG_ASYNC = "async";
+    public static final String ARG_SPARSE = "sparse";
+    public static final String ARG_STEPS = "steps";
+    public static final String ARG_THREADS = "threads";
+    public static final String ARG_HEADLESS = "headless";
+    public static final String ARG_DETERMINISTIC = "deterministic";
+    public static final String ARG_CHECKSUM_FILE = "checksum_file";
+    public static final String ARG_ANALYTICS_FILE = "analytics_file";
+    public static final String ARG_ANALYTICS_INTERVAL = "analytics_interval";
+    public static final String ARG_EXPORT_FILE = "export_file";
+    public static final String ARG_PROFILE_FILE = "profile_file";
+    public static final String ARG_PROFILE_SAMPLE_INTERVAL = "profile_sample_interval";
+    public static final String ARG_CHURN = "churn";
+    public static final String ARG_REALTIME = "realtime";
+    public static final String ARG_WORK_STEALING = "work_stealing";
+    public static final String ARG_PIPELINED = "pipelined";
+    public static final String ARG_BACKOFF = "backoff";
+    public static final String ARG_KERNEL = "kernel";
+    public static final String ARG_SWAP = "swap";
+    public static final String ARG_MAILBOX_CAPACITY = "mailbox_capacity";
+    public static final String ARG_FAST_START = "fast_start";
+    public static final String ARG_REPORT_STARTUP = "report_startup";
+    public static final String ARG_SHARDS = "shards";
+    public static final String ARG_SHARD_INDEX = "shard_index";
+    public static final String ARG_COORDINATOR = "coordinator";
+    public static final String ARG_SHARD_PORT = "shard_port";
+    public static final String ARG_EXTERNAL_SHARDS = "external_shards";
+    public static final String ARG_CONGESTION_AWARE = "congestion_aware";
+
+    public static final String ARG_SWEEP_SEEDS = "seeds";
+    public static final String ARG_SWEEP_WIDTHS = "widths";
+    public static final String ARG_SWEEP_HEIGHTS = "heights";
+    public static final String ARG_SWEEP_PARALLEL = "parallel";
+    public static final String ARG_SWEEP_OUTPUT = "output";
+    public static final String ARG_SWEEP_MODES = "modes";
+
+    public static final String ARG_SCALING_DENSITIES = "densities";
+    public static final String ARG_SCALING_WARMUP = "warmup";
+    public static final String ARG_SCALING_REPETITIONS = "repetitions";
+    public static final String ARG_SCALING_SUMMARY = "summary";
+
+    public static final String ARG_VIEWER_FILE = "file";
+    public static final String ARG_VIEWER_INTERVAL = "interval";
+
+    public static final String ARG_COMPARE_EXPECTED = "expected";
+    public static final String ARG_COMPARE_ACTUAL = "actual";
 }
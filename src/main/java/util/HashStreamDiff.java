@@ -0,0 +1,117 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Compares the hash streams of two runs, as written with --checksum-file, to find the first time step in which the
+ * state of the environment differs.
+ *
+ * Each line of a hash stream contains a time step and the hash of the state of the environment after that time step,
+ * separated by a comma.
+ */
+public final class HashStreamDiff {
+
+    private final long comparedSteps;
+    private final long firstDivergentStep;
+    private final String expectedHash;
+    private final String actualHash;
+    private final boolean lengthsDiffer;
+
+    private HashStreamDiff(long comparedSteps, long firstDivergentStep, String expectedHash, String actualHash,
+                           boolean lengthsDiffer) {
+        this.comparedSteps = comparedSteps;
+        this.firstDivergentStep = firstDivergentStep;
+        this.expectedHash = expectedHash;
+        this.actualHash = actualHash;
+        this.lengthsDiffer = lengthsDiffer;
+    }
+
+    /**
+     * Compare two hash streams line by line, until the first difference
+     *
+     * @param expected      Hash stream of the reference run
+     * @param actual        Hash stream of the run to check
+     * @return              The result of the comparison
+     * @throws IOException  If a stream cannot be read, or contains a malformed line
+     */
+    public static HashStreamDiff compare(Reader expected, Reader actual) throws IOException {
+        BufferedReader expectedLines = new BufferedReader(expected);
+        BufferedReader actualLines = new BufferedReader(actual);
+        long compared = 0;
+
+        while (true) {
+            String expectedLine = expectedLines.readLine();
+            String actualLine = actualLines.readLine();
+            if (expectedLine == null || actualLine == null) {
+                // The lengths differ iff only one of the streams has ended
+                return new HashStreamDiff(compared, -1, null, null, (expectedLine == null) != (actualLine == null));
+            }
+
+            String[] expectedFields = split(expectedLine);
+            String[] actualFields = split(actualLine);
+            if (!expectedFields[0].equals(actualFields[0])) {
+                throw new IOException("Hash streams are not aligned: time step " + expectedFields[0] +
+                        " is compared to time step " + actualFields[0]);
+            }
+            if (!expectedFields[1].equals(actualFields[1])) {
+                return new HashStreamDiff(compared, Long.parseLong(expectedFields[0]), expectedFields[1],
+                        actualFields[1], false);
+            }
+            compared++;
+        }
+    }
+
+    private static String[] split(String line) throws IOException {
+        String[] fields = line.trim().split(",");
+        if (fields.length != 2) {
+            throw new IOException("Malformed line in hash stream: " + line);
+        }
+        return fields;
+    }
+
+    /**
+     * @return  True iff both streams have the same length, and the same hash in every time step
+     */
+    public boolean isIdentical() {
+        return this.firstDivergentStep < 0 && !this.lengthsDiffer;
+    }
+
+    /**
+     * @return  The first time step in which the hashes differ, or -1 if the hashes are the same in all time steps
+     *          present in both streams
+     */
+    public long getFirstDivergentStep() {
+        return this.firstDivergentStep;
+    }
+
+    /**
+     * @return  The number of time steps with identical hashes before the first difference
+     */
+    public long getComparedSteps() {
+        return this.comparedSteps;
+    }
+
+    /**
+     * @return  True iff one stream ended before the other, without the hashes differing before that
+     */
+    public boolean lengthsDiffer() {
+        return this.lengthsDiffer;
+    }
+
+    /**
+     * @return  A single line describing the result of the comparison
+     */
+    public String summary() {
+        if (this.firstDivergentStep >= 0) {
+            return String.format("Runs diverge in time step %d (expected %s, got %s), after %d identical time steps",
+                    this.firstDivergentStep, this.expectedHash, this.actualHash, this.comparedSteps);
+        } else if (this.lengthsDiffer) {
+            return String.format("Runs are identical for %d time steps, but one run has more time steps",
+                    this.comparedSteps);
+        } else {
+            return String.format("Runs are identical for all %d time steps", this.comparedSteps);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package util;
+
+/**
+ * Random number generation on plain long states, so the random streams of many agents can be stored in a single
+ * primitive array instead of one random object per agent.
+ *
+ * A state seeded with s produces exactly the same sequence as new java.util.SplittableRandom(s).
+ */
+public final class SplitMix64 {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private SplitMix64() {
+    }
+
+    /**
+     * Draw a uniformly distributed integer, and advance the state at the given index
+     *
+     * @param states    Array containing the states of multiple random streams
+     * @param index     Index of the stream to draw from
+     * @param bound     Upper bound (exclusive). Must be positive
+     * @return          Random integer between 0 (inclusive) and bound (exclusive)
+     */
+    public static int nextInt(long[] states, int index, int bound) {
+        int r = mix32(states[index] += GOLDEN_GAMMA);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            // Bound is a power of 2
+            r &= m;
+        } else {
+            // Reject samples from the incomplete last interval, to avoid bias
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(states[index] += GOLDEN_GAMMA) >>> 1) {
+                // Keep sampling
+            }
+        }
+        return r;
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+}
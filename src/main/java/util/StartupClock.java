@@ -0,0 +1,40 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Records when the application entered its main method, to report how long it takes until the first time step of
+ * the simulation starts, and which part of that is spent starting the JVM.
+ */
+public final class StartupClock {
+
+    private static volatile long mainStartedMillis = -1;
+
+    private StartupClock() {
+    }
+
+    /**
+     * Should be called first thing in the main method
+     */
+    public static void mainStarted() {
+        mainStartedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Describe the time to the first time step. Should only be called once the time-critical part of the run is
+     * over, because looking up the start time of the JVM loads the management classes
+     *
+     * @param firstStepMillis   Wall clock time at which the first time step started, in milliseconds since the epoch
+     * @return                  A single line with the time to the first step, split in JVM startup and setup if
+     *                          mainStarted was called
+     */
+    public static String report(long firstStepMillis) {
+        long jvmStartedMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long mainStarted = mainStartedMillis;
+        if (mainStarted < 0) {
+            return String.format("Time to first step: %d ms", firstStepMillis - jvmStartedMillis);
+        }
+        return String.format("Time to first step: %d ms (JVM startup: %d ms, setup: %d ms)",
+                firstStepMillis - jvmStartedMillis, mainStarted - jvmStartedMillis, firstStepMillis - mainStarted);
+    }
+}
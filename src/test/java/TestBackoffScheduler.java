@@ -0,0 +1,93 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import simulation.BackoffScheduler;
+
+public class TestBackoffScheduler {
+
+    private final int threshold = 3;
+    private final int maxBackoff = 8;
+
+    @DisplayName("Agent backs off after consecutive failures, with exponentially increasing sleep")
+    @Test
+    void testExponentialBackoff() {
+        BackoffScheduler scheduler = createScheduler(1);
+        long step = 0;
+
+        for (int i = 1; i < threshold; i++) {
+            Assertions.assertFalse(scheduler.moveFailed(0, step++));
+        }
+
+        long expectedSleep = 1;
+        for (int round = 0; round < 6; round++) {
+            long sleptAt = step;
+            Assertions.assertTrue(scheduler.moveFailed(0, step));
+            Assertions.assertTrue(scheduler.isAsleep(0));
+
+            // Failures while asleep do not extend the backoff
+            Assertions.assertFalse(scheduler.moveFailed(0, step));
+
+            long wokeAt = runUntilWakeUp(scheduler, 0, step);
+            Assertions.assertEquals(sleptAt + 1 + expectedSleep, wokeAt);
+            Assertions.assertFalse(scheduler.isAsleep(0));
+
+            step = wokeAt;
+            expectedSleep = Math.min(expectedSleep * 2, maxBackoff);
+        }
+    }
+
+    @DisplayName("A successful move resets the number of consecutive failures")
+    @Test
+    void testSuccessResets() {
+        BackoffScheduler scheduler = createScheduler(1);
+        for (int i = 1; i < threshold; i++) {
+            Assertions.assertFalse(scheduler.moveFailed(0, i));
+        }
+        scheduler.moveSucceeded(0);
+        for (int i = 1; i < threshold; i++) {
+            Assertions.assertFalse(scheduler.moveFailed(0, i));
+        }
+        Assertions.assertTrue(scheduler.moveFailed(0, threshold));
+    }
+
+    @DisplayName("Agents can be woken early, but not in the time step in which they backed off")
+    @Test
+    void testWakeEarly() {
+        BackoffScheduler scheduler = createScheduler(2);
+        for (int i = 0; i < threshold; i++) {
+            scheduler.moveFailed(1, 10);
+        }
+        Assertions.assertEquals(1, scheduler.getAsleepCount());
+        Assertions.assertFalse(scheduler.wakeEarly(0, 11));
+        Assertions.assertFalse(scheduler.wakeEarly(1, 10));
+        Assertions.assertTrue(scheduler.wakeEarly(1, 11));
+        Assertions.assertEquals(0, scheduler.getAsleepCount());
+
+        // The scheduled wake up of the agent no longer applies
+        List<Integer> woken = new ArrayList<>();
+        scheduler.wakeUpDue(100, woken::add);
+        Assertions.assertTrue(woken.isEmpty());
+    }
+
+    private long runUntilWakeUp(BackoffScheduler scheduler, int handle, long step) {
+        List<Integer> woken = new ArrayList<>();
+        while (woken.isEmpty()) {
+            scheduler.wakeUpDue(step + 1, woken::add);
+            step++;
+        }
+        Assertions.assertEquals(List.of(handle), woken);
+        return step;
+    }
+
+    private BackoffScheduler createScheduler(int nAgents) {
+        BackoffScheduler scheduler = new BackoffScheduler(threshold, maxBackoff);
+        for (int i = 0; i < nAgents; i++) {
+            scheduler.registerAgent(i);
+        }
+        return scheduler;
+    }
+}
@@ -0,0 +1,242 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import environment.Direction;
+import environment.ToyGridWorld;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentArguments;
+import nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger.DefaultMessenger;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import simulation.ToyGridWorldInterface;
+import simulation.agent.SwapAgreements;
+import simulation.agent.SwapRequest;
+import simulation.messaging.BatchedMessenger;
+import simulation.messaging.MessageBatch;
+
+public class TestBatchedMessenger {
+
+    @DisplayName("Messages are delivered in a single batch per agent, in the order they were sent by one thread")
+    @Test
+    void testDelivery() {
+        BatchedMessenger messenger = new BatchedMessenger(8);
+        messenger.registerAgent(0);
+        messenger.registerAgent(1);
+        messenger.registerAgent(2);
+
+        for (long message = 0; message < 5; message++) {
+            Assertions.assertTrue(messenger.send(1, message));
+        }
+        Assertions.assertTrue(messenger.send(2, 42));
+
+        Map<Integer, List<Long>> received = deliver(messenger, true);
+        Assertions.assertEquals(2, received.size());
+        Assertions.assertEquals(List.of(0L, 1L, 2L, 3L, 4L), received.get(1));
+        Assertions.assertEquals(List.of(42L), received.get(2));
+        Assertions.assertEquals(6, messenger.getDeliveredCount());
+        Assertions.assertEquals(0, messenger.getDroppedCount());
+
+        // Nothing is delivered twice
+        Assertions.assertTrue(deliver(messenger, true).isEmpty());
+    }
+
+    @DisplayName("Messages to full mailboxes, unregistered agents and agents that cannot receive are dropped")
+    @Test
+    void testDropped() {
+        BatchedMessenger messenger = new BatchedMessenger(3);
+        Assertions.assertEquals(4, messenger.getCapacity());
+        messenger.registerAgent(0);
+        messenger.registerAgent(1);
+
+        for (int i = 0; i < 6; i++) {
+            messenger.send(0, i);
+        }
+        Assertions.assertFalse(messenger.send(5, 0));
+        messenger.removeAgent(1);
+        Assertions.assertFalse(messenger.send(1, 0));
+        Assertions.assertEquals(4, deliver(messenger, true).get(0).size());
+        Assertions.assertEquals(4, messenger.getDroppedCount());
+
+        messenger.send(0, 7);
+        Assertions.assertTrue(deliver(messenger, false).isEmpty());
+        Assertions.assertEquals(5, messenger.getDroppedCount());
+        Assertions.assertEquals(9, messenger.getSentCount());
+    }
+
+    @DisplayName("No batch is delivered to an agent that has not handled its previous batch")
+    @Test
+    void testPending() {
+        BatchedMessenger messenger = new BatchedMessenger(4);
+        messenger.registerAgent(0);
+
+        messenger.send(0, 1);
+        List<MessageBatch> batches = new ArrayList<>();
+        messenger.deliver(handle -> true, (handle, batch) -> batches.add(batch));
+        Assertions.assertTrue(batches.get(0).isPending());
+
+        messenger.send(0, 2);
+        messenger.deliver(handle -> true, (handle, batch) -> batches.add(batch));
+        Assertions.assertEquals(1, batches.size());
+        Assertions.assertEquals(1, messenger.getDroppedCount());
+
+        batches.get(0).handled();
+        messenger.send(0, 3);
+        messenger.deliver(handle -> true, (handle, batch) -> batches.add(batch));
+        Assertions.assertEquals(2, batches.size());
+        Assertions.assertEquals(3, batches.get(1).get(0));
+    }
+
+    @DisplayName("Messages sent concurrently by many threads are delivered exactly once")
+    @RepeatedTest(10)
+    void testConcurrentSenders() throws InterruptedException {
+        int nThreads = 8;
+        int nReceivers = 16;
+        int perThread = 64;
+        BatchedMessenger messenger = new BatchedMessenger(nThreads * perThread);
+        for (int handle = 0; handle < nReceivers; handle++) {
+            messenger.registerAgent(handle);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < nThreads; t++) {
+            int sender = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    for (int receiver = 0; receiver < nReceivers; receiver++) {
+                        messenger.send(receiver, (long) sender << 32 | i);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Map<Integer, List<Long>> received = deliver(messenger, true);
+        Assertions.assertEquals(0, messenger.getDroppedCount());
+        for (int receiver = 0; receiver < nReceivers; receiver++) {
+            List<Long> messages = received.get(receiver);
+            Assertions.assertEquals(nThreads * perThread, messages.size());
+            Assertions.assertEquals(nThreads * perThread, messages.stream().distinct().count());
+
+            // Messages of a single sender keep their order
+            int[] next = new int[nThreads];
+            for (long message : messages) {
+                Assertions.assertEquals(next[(int) (message >>> 32)]++, (int) message);
+            }
+        }
+    }
+
+    @DisplayName("Swap requests can be decoded after delivery")
+    @Test
+    void testSwapRequest() {
+        BatchedMessenger messenger = new BatchedMessenger(4);
+        messenger.registerAgent(3);
+        for (Direction direction : Direction.values()) {
+            messenger.send(3, SwapRequest.encode(12345 + direction.ordinal(), direction));
+        }
+
+        List<Long> messages = deliver(messenger, true).get(3);
+        for (Direction direction : Direction.values()) {
+            long message = messages.get(direction.ordinal());
+            Assertions.assertTrue(SwapRequest.isSwapRequest(message));
+            Assertions.assertEquals(12345 + direction.ordinal(), SwapRequest.getSender(message));
+            Assertions.assertEquals(direction, SwapRequest.getFailedMove(message));
+        }
+        Assertions.assertFalse(SwapRequest.isSwapRequest(42));
+    }
+
+    @DisplayName("Two agents that block each other swap cells once one of them agreed, and only in that time step")
+    @Test
+    void testAgentsSwapCells() throws URISyntaxException {
+        Platform platform = Platform.newPlatform(1, new DefaultMessenger<Direction>());
+        try {
+            ToyGridWorld<String> gridWorld = new ToyGridWorld<>(new Random(), 2, 1);
+            ToyGridWorldInterface environmentInterface = new ToyGridWorldInterface(gridWorld, platform, false, 0);
+            environmentInterface.setDeterministic(true);
+            SwapAgreements swapAgreements = new SwapAgreements();
+            environmentInterface.setMessaging(new BatchedMessenger(4), swapAgreements);
+            StringWriter checksums = new StringWriter();
+            environmentInterface.setChecksumWriter(checksums);
+
+            Agent<Direction> left = new Agent<>(platform, new AgentArguments<>());
+            Agent<Direction> right = new Agent<>(platform, new AgentArguments<>());
+            environmentInterface.registerAgent(left, "left", new Point(0, 0));
+            environmentInterface.registerAgent(right, "right", new Point(1, 0));
+            long initialHash = gridWorld.getStateHash();
+
+            ToyGridWorld<String> swapped = new ToyGridWorld<>(new Random(), 2, 1);
+            swapped.registerAgent("left", new Point(1, 0));
+            swapped.registerAgent("right", new Point(0, 0));
+
+            // The right agent agreed to the request of the left agent, which is handle 0
+            environmentInterface.stepStarting(0);
+            swapAgreements.agree(1, 0);
+            environmentInterface.stepFinished(0, 1, List.of(move(left, Direction.RIGHT), move(right, Direction.LEFT)));
+
+            Assertions.assertEquals(new Point(1, 0), gridWorld.getPosition("left"));
+            Assertions.assertEquals(new Point(0, 0), gridWorld.getPosition("right"));
+            Assertions.assertEquals("right", gridWorld.getAgentAt(new Point(0, 0)));
+            Assertions.assertEquals("left", gridWorld.getAgentAt(new Point(1, 0)));
+            Assertions.assertNotEquals(initialHash, gridWorld.getStateHash());
+            Assertions.assertEquals(swapped.getStateHash(), gridWorld.getStateHash());
+            Assertions.assertEquals("0," + Long.toHexString(swapped.getStateHash()) + "\n", checksums.toString());
+            Assertions.assertEquals(1, environmentInterface.getSwapCount());
+            Assertions.assertEquals(2, environmentInterface.getSuccessfulMoves());
+            Assertions.assertEquals(0, environmentInterface.getFailedMoves());
+
+            // Without a new agreement, the agents block each other again
+            environmentInterface.stepStarting(1);
+            environmentInterface.stepFinished(1, 1, List.of(move(left, Direction.LEFT), move(right, Direction.RIGHT)));
+            Assertions.assertEquals(new Point(1, 0), gridWorld.getPosition("left"));
+            Assertions.assertEquals(swapped.getStateHash(), gridWorld.getStateHash());
+            Assertions.assertEquals(1, environmentInterface.getSwapCount());
+            Assertions.assertEquals(2, environmentInterface.getFailedMoves());
+        } finally {
+            platform.getStepExecutor().shutdown();
+        }
+    }
+
+    private static Future<DeliberationResult<Direction>> move(Agent<Direction> agent, Direction direction) {
+        return CompletableFuture.completedFuture(new DeliberationResult<>(agent.getAID(), List.of(direction)));
+    }
+
+    /**
+     * Deliver all messages, copy them, and mark the batches handled
+     */
+    private Map<Integer, List<Long>> deliver(BatchedMessenger messenger, boolean canReceive) {
+        Map<Integer, List<Long>> received = new HashMap<>();
+        messenger.deliver(handle -> canReceive, (handle, batch) -> {
+            List<Long> messages = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                messages.add(batch.get(i));
+            }
+            received.put(handle, messages);
+            batch.handled();
+        });
+        return received;
+    }
+}
@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import simulation.agent.BeliefStore;
+
+public class TestBeliefStore {
+
+    private final Random random = new Random();
+
+    @DisplayName("Beliefs of each slot are kept apart, also when the store grows")
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testSlotsAreIndependent(boolean padded) {
+        int nAgents = 100;
+        BeliefStore store = new BeliefStore(50, 50, 1, padded);
+        Assertions.assertEquals(padded, store.isPadded());
+
+        int[] xs = new int[nAgents];
+        int[] ys = new int[nAgents];
+        for (int i = 0; i < nAgents; i++) {
+            // Negative coordinates must survive packing as well
+            xs[i] = random.nextInt(200) - 100;
+            ys[i] = random.nextInt(200) - 100;
+            Assertions.assertEquals(i, store.allocate(xs[i], ys[i], i));
+        }
+        Assertions.assertEquals(nAgents, store.size());
+
+        for (int i = 0; i < nAgents; i += 2) {
+            store.setDestination(i, ys[i], xs[i]);
+            store.setAsleep(i, true);
+            store.deactivate(i);
+        }
+
+        for (int i = 0; i < nAgents; i++) {
+            Assertions.assertEquals(xs[i], store.getX(i));
+            Assertions.assertEquals(ys[i], store.getY(i));
+            Assertions.assertEquals(i % 2 == 0 ? ys[i] : xs[i], store.getDestinationX(i));
+            Assertions.assertEquals(i % 2 == 0 ? xs[i] : ys[i], store.getDestinationY(i));
+            Assertions.assertEquals(i % 2 == 0, store.isAsleep(i));
+            Assertions.assertEquals(i % 2 != 0, store.isActive(i));
+            Assertions.assertEquals(i, store.getRandomState(i));
+        }
+    }
+
+    @DisplayName("Reactivating a slot wakes the agent up and continues its random stream")
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testReactivate(boolean padded) {
+        long seed = random.nextLong();
+        SplittableRandom reference = new SplittableRandom(seed);
+        BeliefStore store = new BeliefStore(50, 50, 2, padded);
+        int slot = store.allocate(1, 2, seed);
+        int other = store.allocate(3, 4, seed);
+
+        Assertions.assertEquals(reference.nextInt(50), store.nextInt(slot, 50));
+        store.setAsleep(slot, true);
+        store.deactivate(slot);
+        store.reactivate(slot, 5, 6);
+
+        Assertions.assertTrue(store.isActive(slot));
+        Assertions.assertFalse(store.isAsleep(slot));
+        Assertions.assertEquals(5, store.getX(slot));
+        Assertions.assertEquals(6, store.getDestinationY(slot));
+        Assertions.assertEquals(reference.nextInt(50), store.nextInt(slot, 50));
+
+        // The random stream of the other slot has not been advanced
+        Assertions.assertEquals(seed, store.getRandomState(other));
+    }
+}
@@ -0,0 +1,204 @@
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import simulation.engine.ChunkedStepExecutor;
+
+public class TestChunkedStepExecutor {
+
+    private final Random random = new Random();
+
+    @DisplayName("Each scheduled deliberation is called exactly once per time step, while the arrays grow and shrink")
+    @RepeatedTest(20)
+    void testDeliberatedOncePerStep() {
+        ChunkedStepExecutor<Integer> executor = new ChunkedStepExecutor<>(4);
+        try {
+            int nAgents = 5000;
+            AtomicIntegerArray calls = new AtomicIntegerArray(nAgents);
+            Deliberation[] deliberations = new Deliberation[nAgents];
+            for (int i = 0; i < nAgents; i++) {
+                deliberations[i] = new Deliberation(i, calls, null);
+            }
+
+            // Start with fewer agents than the initial capacity, and vary the number of agents every time step
+            int[] sizes = {3, 16, 17, 1000, 20, nAgents, 0, 100, nAgents};
+            for (int size : sizes) {
+                boolean[] scheduled = new boolean[nAgents];
+                int nScheduled = 0;
+                for (int i = 0; i < size; i++) {
+                    int agent = size == nAgents ? i : random.nextInt(nAgents);
+                    if (executor.schedule(deliberations[agent])) {
+                        scheduled[agent] = true;
+                        nScheduled++;
+                    }
+                    // Scheduling twice in a time step has no effect
+                    Assertions.assertFalse(executor.schedule(deliberations[agent]));
+                }
+
+                for (int i = 0; i < nAgents; i++) {
+                    calls.set(i, 0);
+                }
+                List<Future<DeliberationResult<Integer>>> results = executor.doTimeStep();
+
+                Assertions.assertEquals(nScheduled, results.size());
+                Assertions.assertEquals(nScheduled, executor.getLastResultCount());
+                boolean[] returned = new boolean[nAgents];
+                for (Future<DeliberationResult<Integer>> future : results) {
+                    Assertions.assertTrue(future.isDone());
+                    int agent = getAgent(future);
+                    Assertions.assertTrue(scheduled[agent]);
+                    Assertions.assertFalse(returned[agent]);
+                    returned[agent] = true;
+                }
+                for (int i = 0; i < nAgents; i++) {
+                    Assertions.assertEquals(scheduled[i] ? 1 : 0, calls.get(i));
+                }
+                Assertions.assertTrue(executor.getCurrentlyScheduledAgents().isEmpty());
+            }
+            Assertions.assertEquals(sizes.length, executor.getCurrentTimeStep());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @DisplayName("An exception of one agent fails its future only, and is not carried over to the next time step")
+    @Test
+    void testDeliberationFails() throws InterruptedException {
+        ChunkedStepExecutor<Integer> executor = new ChunkedStepExecutor<>(4);
+        try {
+            int nAgents = 100;
+            AtomicIntegerArray calls = new AtomicIntegerArray(nAgents);
+            IllegalStateException failure = new IllegalStateException("Deliberation failed");
+            Deliberation[] deliberations = new Deliberation[nAgents];
+            for (int i = 0; i < nAgents; i++) {
+                deliberations[i] = new Deliberation(i, calls, i % 3 == 0 ? failure : null);
+                executor.schedule(deliberations[i]);
+            }
+
+            List<Future<DeliberationResult<Integer>>> results = executor.doTimeStep();
+            Assertions.assertEquals(nAgents, results.size());
+            int failed = 0;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    int agent = results.get(i).get().getActions().get(0);
+                    Assertions.assertNotEquals(0, agent % 3);
+                } catch (ExecutionException e) {
+                    Assertions.assertSame(failure, e.getCause());
+                    failed++;
+                }
+            }
+            Assertions.assertEquals(34, failed);
+            for (int i = 0; i < nAgents; i++) {
+                Assertions.assertEquals(1, calls.get(i));
+            }
+
+            // The same futures are reused, so a future that failed before must hold the new result
+            for (Deliberation deliberation : deliberations) {
+                deliberation.failure = null;
+                executor.schedule(deliberation);
+            }
+            for (Future<DeliberationResult<Integer>> future : executor.doTimeStep()) {
+                getAgent(future);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @DisplayName("Results are handed to the listener while other agents are still deliberating")
+    @RepeatedTest(20)
+    void testCompletionListenerOverlaps() {
+        ChunkedStepExecutor<Integer> executor = new ChunkedStepExecutor<>(4);
+        try {
+            int nAgents = 200;
+            AtomicIntegerArray calls = new AtomicIntegerArray(nAgents);
+            CountDownLatch otherHandled = new CountDownLatch(1);
+            for (int i = 1; i < nAgents; i++) {
+                executor.schedule(new Deliberation(i, calls, i % 7 == 0 ? new IllegalStateException() : null));
+            }
+
+            // This agent only finishes once the result of another agent was handed to the listener. Agents in the
+            // same chunk wait for it, but the chunks of the other threads do not
+            executor.schedule(() -> {
+                calls.incrementAndGet(0);
+                Assertions.assertTrue(otherHandled.await(10, TimeUnit.SECONDS));
+                return new DeliberationResult<>(null, Collections.singletonList(0));
+            });
+
+            Thread thread = Thread.currentThread();
+            List<Future<DeliberationResult<Integer>>> handled = new ArrayList<>();
+            List<Future<DeliberationResult<Integer>>> results = executor.doTimeStep(future -> {
+                Assertions.assertSame(thread, Thread.currentThread());
+                Assertions.assertTrue(future.isDone());
+                handled.add(future);
+                otherHandled.countDown();
+            });
+
+            Assertions.assertEquals(nAgents, results.size());
+            Assertions.assertEquals(nAgents, handled.size());
+            boolean[] returned = new boolean[nAgents];
+            for (int k = 0; k < nAgents; k++) {
+                Future<DeliberationResult<Integer>> future = handled.get(k);
+                Assertions.assertTrue(results.contains(future));
+                try {
+                    int agent = future.get().getActions().get(0);
+                    Assertions.assertTrue(agent != 0 || k > 0);
+                    returned[agent] = true;
+                } catch (ExecutionException | InterruptedException e) {
+                    Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+                }
+            }
+            for (int i = 0; i < nAgents; i++) {
+                Assertions.assertEquals(1, calls.get(i));
+                Assertions.assertEquals(i % 7 != 0 || i == 0, returned[i]);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static int getAgent(Future<DeliberationResult<Integer>> future) {
+        try {
+            return future.get().getActions().get(0);
+        } catch (InterruptedException | ExecutionException e) {
+            return Assertions.fail(e);
+        }
+    }
+
+    /**
+     * Counts its calls, and produces the index of the agent as its only action
+     */
+    private static final class Deliberation implements Callable<DeliberationResult<Integer>> {
+        private final int agent;
+        private final AtomicIntegerArray calls;
+        private RuntimeException failure;
+
+        private Deliberation(int agent, AtomicIntegerArray calls, RuntimeException failure) {
+            this.agent = agent;
+            this.calls = calls;
+            this.failure = failure;
+        }
+
+        @Override
+        public DeliberationResult<Integer> call() {
+            calls.incrementAndGet(agent);
+            if (failure != null) {
+                throw failure;
+            }
+            return new DeliberationResult<>(null, Collections.singletonList(agent));
+        }
+    }
+}
@@ -0,0 +1,271 @@
+import environment.ConcurrentToyGridWorld;
+import environment.Direction;
+import environment.IToyGridWorld;
+import environment.StateHash;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestConcurrentToyGridWorld {
+
+    private final Random random = new Random();
+    private final int width = 50;
+    private final int height = 50;
+    private final int nThreads = 8;
+
+    private final String theAgent = "theAgent";
+    private final String otherAgent = "otherAgent";
+
+    @DisplayName("Agent starts at registered position")
+    @RepeatedTest(100)
+    void testRegisterAgentIsAtPosition() {
+        IToyGridWorld<String> gridWorld = createGridWorld(this.width, this.height);
+        Point position = gridWorld.getRandomFreePoint(false);
+        Assertions.assertTrue(gridWorld.registerAgent(theAgent, position));
+        Assertions.assertEquals(position, gridWorld.getPosition(theAgent));
+        Assertions.assertEquals(theAgent, gridWorld.getAgentAt(position));
+    }
+
+    @DisplayName("Agent cannot be placed on occupied square")
+    @RepeatedTest(100)
+    void testRejectRegisterAgentAtPosition() {
+        IToyGridWorld<String> gridWorld = createGridWorld(this.width, this.height);
+        Point position = gridWorld.getRandomFreePoint(false);
+        Assertions.assertTrue(gridWorld.registerAgent(theAgent, position));
+        Assertions.assertFalse(gridWorld.registerAgent(otherAgent, position));
+        Assertions.assertEquals(theAgent, gridWorld.getAgentAt(position));
+        Assertions.assertNull(gridWorld.getPosition(otherAgent));
+    }
+
+    @DisplayName("A failed registration leaves no trace")
+    @RepeatedTest(10)
+    void testFailedRegistrationLeavesNoTrace() {
+        IToyGridWorld<String> gridWorld = createGridWorld(2, 1);
+        Point occupied = new Point(0, 0);
+        Assertions.assertTrue(gridWorld.registerAgent(theAgent, occupied));
+        long hash = gridWorld.getStateHash();
+
+        for (int i = 0; i < 100; i++) {
+            String rejected = "rejected" + i;
+            Assertions.assertFalse(gridWorld.registerAgent(rejected, occupied));
+            Assertions.assertNull(gridWorld.getPosition(rejected));
+            Assertions.assertFalse(gridWorld.removeAgent(rejected));
+        }
+        Assertions.assertEquals(theAgent, gridWorld.getAgentAt(occupied));
+        Assertions.assertEquals(hash, gridWorld.getStateHash());
+
+        // Every cell can still be filled, so no handle has leaked
+        Point free = new Point(1, 0);
+        Assertions.assertTrue(gridWorld.registerAgent(otherAgent, free));
+        assertOccupancyInvariants(gridWorld, new String[]{theAgent, otherAgent});
+    }
+
+    @DisplayName("An agent cannot be registered twice")
+    @RepeatedTest(10)
+    void testRejectRegisterAgentTwice() {
+        IToyGridWorld<String> gridWorld = createGridWorld(2, 1);
+        Assertions.assertTrue(gridWorld.registerAgent(theAgent, new Point(0, 0)));
+        Assertions.assertFalse(gridWorld.registerAgent(theAgent, new Point(1, 0)));
+        Assertions.assertNull(gridWorld.getAgentAt(new Point(1, 0)));
+        assertOccupancyInvariants(gridWorld, new String[]{theAgent});
+    }
+
+    @DisplayName("Only one of many agents registering at the same cell is placed, and the cell always has an agent")
+    @RepeatedTest(50)
+    void testContendedRegistration() throws InterruptedException {
+        IToyGridWorld<String> gridWorld = createGridWorld(1, 1);
+        Point cell = new Point(0, 0);
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger missingAgents = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < nThreads; t++) {
+            String agent = "agent" + t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (gridWorld.registerAgent(agent, cell)) {
+                    successes.incrementAndGet();
+                }
+                // Either way the cell has been claimed, so it must resolve to an agent
+                if (gridWorld.getAgentAt(cell) == null) {
+                    missingAgents.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(1, successes.get());
+        Assertions.assertEquals(0, missingAgents.get());
+        String winner = gridWorld.getAgentAt(cell);
+        Assertions.assertNotNull(winner);
+        assertOccupancyInvariants(gridWorld, new String[]{winner});
+    }
+
+    @DisplayName("Test agent moves in all directions")
+    @RepeatedTest(100)
+    void testMove() {
+        IToyGridWorld<String> gridWorld = createGridWorld(this.width, this.height);
+        Point position = gridWorld.getRandomFreePoint(true);
+        Assertions.assertTrue(gridWorld.registerAgent(theAgent, position));
+
+        Direction direction = Direction.values()[random.nextInt(Direction.values().length)];
+        Assertions.assertTrue(gridWorld.move(theAgent, direction));
+        Point newPosition = gridWorld.getPosition(theAgent);
+        Assertions.assertEquals(1, Math.abs(newPosition.x - position.x) + Math.abs(newPosition.y - position.y));
+        Assertions.assertNull(gridWorld.getAgentAt(position));
+        Assertions.assertEquals(theAgent, gridWorld.getAgentAt(newPosition));
+    }
+
+    @DisplayName("Test agent cannot cross the edges")
+    @RepeatedTest(100)
+    void testCannotCrossEdge() {
+        IToyGridWorld<String> gridWorld = createGridWorld(this.width, this.height);
+        Point position = new Point(0, height - 1);
+        Assertions.assertTrue(gridWorld.registerAgent(theAgent, position));
+        Assertions.assertFalse(gridWorld.move(theAgent, Direction.LEFT));
+        Assertions.assertFalse(gridWorld.move(theAgent, Direction.DOWN));
+        Assertions.assertEquals(position, gridWorld.getPosition(theAgent));
+        Assertions.assertEquals(theAgent, gridWorld.getAgentAt(position));
+    }
+
+    @DisplayName("Only one of many agents competing for the same cell can enter it")
+    @RepeatedTest(100)
+    void testContendedCellIsClaimedOnce() throws InterruptedException {
+        IToyGridWorld<String> gridWorld = createGridWorld(3, 3);
+        Point target = new Point(1, 1);
+        gridWorld.registerAgent("up", new Point(1, 0));
+        gridWorld.registerAgent("down", new Point(1, 2));
+        gridWorld.registerAgent("left", new Point(0, 1));
+        gridWorld.registerAgent("right", new Point(2, 1));
+
+        AtomicInteger successes = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        threads.add(moveWhenStarted(gridWorld, start, successes, "up", Direction.DOWN));
+        threads.add(moveWhenStarted(gridWorld, start, successes, "down", Direction.UP));
+        threads.add(moveWhenStarted(gridWorld, start, successes, "left", Direction.RIGHT));
+        threads.add(moveWhenStarted(gridWorld, start, successes, "right", Direction.LEFT));
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(1, successes.get());
+        String winner = gridWorld.getAgentAt(target);
+        Assertions.assertNotNull(winner);
+        Assertions.assertEquals(target, gridWorld.getPosition(winner));
+        assertOccupancyInvariants(gridWorld, new String[]{"up", "down", "left", "right"});
+    }
+
+    private Thread moveWhenStarted(
+            IToyGridWorld<String> gridWorld,
+            CountDownLatch start,
+            AtomicInteger successes,
+            String agent,
+            Direction direction
+    ) {
+        Thread thread = new Thread(() -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (gridWorld.move(agent, direction)) {
+                successes.incrementAndGet();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @DisplayName("Occupancy invariants hold when many threads move agents concurrently in a dense grid")
+    @RepeatedTest(20)
+    void testConcurrentRandomMovesKeepInvariants() throws InterruptedException, ExecutionException {
+        int gridSize = 20;
+        int nAgents = gridSize * gridSize / 2;
+        int movesPerAgent = 200;
+
+        IToyGridWorld<String> gridWorld = createGridWorld(gridSize, gridSize);
+        String[] agents = new String[nAgents];
+        for (int i = 0; i < nAgents; i++) {
+            agents[i] = Integer.toString(i);
+            Assertions.assertTrue(gridWorld.registerAgent(agents[i], gridWorld.getRandomFreePoint(false)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < nThreads; t++) {
+                int firstAgent = t;
+                long seed = random.nextLong();
+                futures.add(executor.submit(() -> {
+                    // Each thread owns a disjoint subset of agents, so no agent is moved by two threads
+                    Random threadRandom = new Random(seed);
+                    for (int m = 0; m < movesPerAgent; m++) {
+                        for (int i = firstAgent; i < nAgents; i += nThreads) {
+                            Point before = gridWorld.getPosition(agents[i]);
+                            Direction direction = Direction.values()[threadRandom.nextInt(Direction.values().length)];
+                            if (!gridWorld.move(agents[i], direction)) {
+                                Assertions.assertEquals(before, gridWorld.getPosition(agents[i]));
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertOccupancyInvariants(gridWorld, agents);
+    }
+
+    /**
+     * Verifies every agent occupies exactly the cell it is registered at, and no other cells are occupied
+     */
+    private void assertOccupancyInvariants(IToyGridWorld<String> gridWorld, String[] agents) {
+        Set<Point> positions = new HashSet<>();
+        long hash = 0;
+        for (String agent : agents) {
+            Point position = gridWorld.getPosition(agent);
+            Assertions.assertTrue(positions.add(position), "Two agents share position " + position);
+            Assertions.assertEquals(agent, gridWorld.getAgentAt(position));
+            hash ^= StateHash.key(agent, position.x, position.y);
+        }
+        Assertions.assertEquals(hash, gridWorld.getStateHash());
+
+        int occupied = 0;
+        for (int y = 0; y < gridWorld.getHeight(); y++) {
+            for (int x = 0; x < gridWorld.getWidth(); x++) {
+                if (gridWorld.getAgentAt(new Point(x, y)) != null) {
+                    occupied++;
+                }
+            }
+        }
+        Assertions.assertEquals(agents.length, occupied);
+    }
+
+    private IToyGridWorld<String> createGridWorld(int width, int height) {
+        return new ConcurrentToyGridWorld<>(new Random(), width, height);
+    }
+}
@@ -0,0 +1,55 @@
+import environment.ConcurrentToyGridWorld;
+import environment.IToyGridWorld;
+import environment.SparseToyGridWorld;
+import environment.ToyGridWorld;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.awt.*;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Behaviour that all implementations of IToyGridWorld share
+ */
+public class TestGridWorldImplementations {
+
+    private static final int width = 50;
+    private static final int height = 50;
+
+    private final String theAgent = "theAgent";
+    private final String otherAgent = "otherAgent";
+
+    static Stream<Supplier<IToyGridWorld<String>>> gridWorlds() {
+        return Stream.of(
+                () -> new ToyGridWorld<>(new Random(), width, height),
+                () -> new SparseToyGridWorld<>(new Random(), width, height),
+                () -> new ConcurrentToyGridWorld<>(new Random(), width, height)
+        );
+    }
+
+    @DisplayName("Removed agent frees its square")
+    @ParameterizedTest
+    @MethodSource("gridWorlds")
+    void testRemoveAgentFreesPosition(Supplier<IToyGridWorld<String>> gridWorlds) {
+        for (int i = 0; i < 100; i++) {
+            IToyGridWorld<String> gridWorld = gridWorlds.get();
+            Point position = gridWorld.getRandomFreePoint(false);
+            Assertions.assertTrue(gridWorld.registerAgent(theAgent, position));
+            Assertions.assertTrue(gridWorld.removeAgent(theAgent));
+            Assertions.assertNull(gridWorld.getAgentAt(position));
+            Assertions.assertNull(gridWorld.getPosition(theAgent));
+            Assertions.assertFalse(gridWorld.removeAgent(theAgent));
+
+            // The square and the agent can both be reused
+            Assertions.assertTrue(gridWorld.registerAgent(otherAgent, position));
+            Point newPosition = gridWorld.getRandomFreePoint(false);
+            Assertions.assertTrue(gridWorld.registerAgent(theAgent, newPosition));
+            Assertions.assertEquals(newPosition, gridWorld.getPosition(theAgent));
+            Assertions.assertEquals(otherAgent, gridWorld.getAgentAt(position));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import util.HashStreamDiff;
+
+public class TestHashStreamDiff {
+
+    @DisplayName("Identical hash streams are reported as identical")
+    @Test
+    void testIdentical() throws IOException {
+        String stream = "0,1a\n1,2b\n2,3c\n";
+        HashStreamDiff diff = HashStreamDiff.compare(new StringReader(stream), new StringReader(stream));
+        Assertions.assertTrue(diff.isIdentical());
+        Assertions.assertEquals(3, diff.getComparedSteps());
+        Assertions.assertEquals(-1, diff.getFirstDivergentStep());
+    }
+
+    @DisplayName("The first time step with a different hash is reported")
+    @Test
+    void testFirstDivergentStep() throws IOException {
+        HashStreamDiff diff = HashStreamDiff.compare(
+                new StringReader("0,1a\n1,2b\n2,3c\n3,4d\n"),
+                new StringReader("0,1a\n1,2b\n2,ff\n3,ee\n"));
+        Assertions.assertFalse(diff.isIdentical());
+        Assertions.assertEquals(2, diff.getFirstDivergentStep());
+        Assertions.assertEquals(2, diff.getComparedSteps());
+        Assertions.assertTrue(diff.summary().contains("time step 2"));
+    }
+
+    @DisplayName("A run that stops early is not identical, but does not diverge")
+    @Test
+    void testDifferentLengths() throws IOException {
+        HashStreamDiff diff = HashStreamDiff.compare(new StringReader("0,1a\n1,2b\n"), new StringReader("0,1a\n"));
+        Assertions.assertFalse(diff.isIdentical());
+        Assertions.assertTrue(diff.lengthsDiffer());
+        Assertions.assertEquals(-1, diff.getFirstDivergentStep());
+    }
+
+    @DisplayName("Streams of different time steps cannot be compared")
+    @Test
+    void testMisaligned() {
+        Assertions.assertThrows(IOException.class, () ->
+                HashStreamDiff.compare(new StringReader("0,1a\n"), new StringReader("1,1a\n")));
+    }
+}
@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import simulation.analytics.LogHistogram;
+
+public class TestLogHistogram {
+
+    private final Random random = new Random();
+
+    @DisplayName("Small values are counted exactly")
+    @Test
+    void testSmallValuesExact() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        Assertions.assertEquals(100, histogram.getTotalCount());
+        Assertions.assertEquals(50, histogram.getValueAtPercentile(50));
+        Assertions.assertEquals(90, histogram.getValueAtPercentile(90));
+        Assertions.assertEquals(100, histogram.getValueAtPercentile(100));
+        Assertions.assertEquals(50.5, histogram.getMean(), 1e-9);
+    }
+
+    @DisplayName("Percentiles of large values are within the precision of the histogram")
+    @RepeatedTest(100)
+    void testPercentilePrecision() {
+        LogHistogram histogram = new LogHistogram();
+        long[] values = new long[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 40);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{1, 50, 90, 99, 100}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            Assertions.assertTrue(actual >= expected, "Reported value may not be below the exact value");
+            Assertions.assertTrue(actual <= expected + expected / 64, "Reported value is too imprecise");
+        }
+        Assertions.assertEquals(values[values.length - 1], histogram.getMax());
+    }
+
+    @DisplayName("Adding histograms is equivalent to recording all values in one histogram")
+    @RepeatedTest(20)
+    void testAdd() {
+        LogHistogram a = new LogHistogram();
+        LogHistogram b = new LogHistogram();
+        LogHistogram all = new LogHistogram();
+        for (int i = 0; i < 1000; i++) {
+            long value = random.nextInt(Integer.MAX_VALUE);
+            (i % 2 == 0 ? a : b).record(value);
+            all.record(value);
+        }
+        a.add(b);
+
+        Assertions.assertEquals(all.summary(), a.summary());
+    }
+}
@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import environment.StateHash;
+import environment.ToyGridWorld;
+import simulation.kernel.MovementKernel;
+
+public class TestMovementKernel {
+
+    @DisplayName("Agents are placed at the same cells as in the grid world")
+    @RepeatedTest(10)
+    void testPlacement() {
+        long seed = new Random().nextLong();
+        int width = 30;
+        int height = 20;
+        int nAgents = 300;
+        MovementKernel kernel = new MovementKernel(
+                width, height, nAgents, new Random(seed), new SplittableRandom(seed), 1);
+        ToyGridWorld<String> world = new ToyGridWorld<>(new Random(seed), width, height);
+
+        for (int i = 0; i < nAgents; i++) {
+            Point position = world.getRandomFreePoint(false);
+            world.registerAgent(Integer.toString(i), position);
+            Assertions.assertEquals(position.x, kernel.getX(i));
+            Assertions.assertEquals(position.y, kernel.getY(i));
+        }
+        Assertions.assertEquals(world.getStateHash(), kernel.getStateHash());
+    }
+
+    @DisplayName("A single agent samples its destinations from its own stream, and moves along x first, then y")
+    @RepeatedTest(10)
+    void testSingleAgent() {
+        long seed = new Random().nextLong();
+        int width = 15;
+        int height = 25;
+        MovementKernel kernel = new MovementKernel(width, height, 1, new Random(seed), new SplittableRandom(seed), 1);
+        SplittableRandom agentRandom = new SplittableRandom(new SplittableRandom(seed).nextLong());
+
+        int x = kernel.getX(0);
+        int y = kernel.getY(0);
+        for (int destination = 0; destination < 20; destination++) {
+            // Sampling a destination takes a time step without moving
+            int destinationX = agentRandom.nextInt(width);
+            int destinationY = agentRandom.nextInt(height);
+            kernel.step();
+            Assertions.assertEquals(x, kernel.getX(0));
+            Assertions.assertEquals(y, kernel.getY(0));
+
+            while (x != destinationX || y != destinationY) {
+                if (x != destinationX) {
+                    x += Integer.signum(destinationX - x);
+                } else {
+                    y += Integer.signum(destinationY - y);
+                }
+                kernel.step();
+                Assertions.assertEquals(x, kernel.getX(0));
+                Assertions.assertEquals(y, kernel.getY(0));
+            }
+        }
+        Assertions.assertEquals(0, kernel.getFailedMoves());
+    }
+
+    @DisplayName("The kernel produces the same states regardless of the number of threads")
+    @Test
+    void testThreadsAgree() {
+        long seed = new Random().nextLong();
+        MovementKernel sequential = new MovementKernel(
+                200, 200, 20000, new Random(seed), new SplittableRandom(seed), 1);
+        MovementKernel parallel = new MovementKernel(
+                200, 200, 20000, new Random(seed), new SplittableRandom(seed), 4);
+        try {
+            for (int step = 0; step < 50; step++) {
+                sequential.step();
+                parallel.step();
+                Assertions.assertEquals(sequential.getStateHash(), parallel.getStateHash());
+            }
+            Assertions.assertEquals(sequential.getSuccessfulMoves(), parallel.getSuccessfulMoves());
+            Assertions.assertEquals(sequential.getFailedMoves(), parallel.getFailedMoves());
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    @DisplayName("The occupancy of the grid and the state hash match the positions of the agents")
+    @RepeatedTest(5)
+    void testInvariants() {
+        long seed = new Random().nextLong();
+        int width = 20;
+        int height = 20;
+        int nAgents = 250;
+        MovementKernel kernel = new MovementKernel(
+                width, height, nAgents, new Random(seed), new SplittableRandom(seed), 1);
+
+        for (int step = 0; step < 100; step++) {
+            kernel.step();
+
+            long hash = 0;
+            int occupied = 0;
+            for (int i = 0; i < nAgents; i++) {
+                Assertions.assertEquals(i, kernel.getAgentAt(kernel.getX(i), kernel.getY(i)));
+                hash ^= StateHash.key(Integer.toString(i), kernel.getX(i), kernel.getY(i));
+            }
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    if (kernel.getAgentAt(x, y) >= 0) {
+                        occupied++;
+                    }
+                }
+            }
+            Assertions.assertEquals(nAgents, occupied);
+            Assertions.assertEquals(hash, kernel.getStateHash());
+        }
+        Assertions.assertTrue(kernel.getFailedMoves() > 0, "A crowded grid should block some moves");
+    }
+}
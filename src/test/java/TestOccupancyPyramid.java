@@ -0,0 +1,217 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.*;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Future;
+
+import environment.Direction;
+import environment.OccupancyPyramid;
+import environment.ToyGridWorld;
+import nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger.DefaultMessenger;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.step.DefaultSimulationEngine;
+import nl.uu.cs.iss.ga.sim2apl.core.step.EnvironmentInterface;
+import simulation.AgentPopulation;
+import simulation.BackoffScheduler;
+import simulation.ToyGridWorldInterface;
+import simulation.agent.BeliefStore;
+
+public class TestOccupancyPyramid {
+
+    @DisplayName("The count of every tile equals the number of occupied cells in it")
+    @RepeatedTest(10)
+    void testCounts() {
+        Random random = new Random();
+        int width = 1 + random.nextInt(70);
+        int height = 1 + random.nextInt(70);
+        OccupancyPyramid pyramid = new OccupancyPyramid(width, height);
+        boolean[][] occupied = new boolean[width][height];
+
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                Assertions.assertEquals(!occupied[x][y], pyramid.occupy(x, y));
+                occupied[x][y] = true;
+            } else if (operation == 1) {
+                Assertions.assertEquals(occupied[x][y], pyramid.vacate(x, y));
+                occupied[x][y] = false;
+            } else {
+                int toX = random.nextInt(width);
+                int toY = random.nextInt(height);
+                if (occupied[x][y] && !occupied[toX][toY]) {
+                    pyramid.move(x, y, toX, toY);
+                    occupied[x][y] = false;
+                    occupied[toX][toY] = true;
+                } else {
+                    Assertions.assertThrows(IllegalStateException.class, () -> pyramid.move(x, y, toX, toY));
+                }
+            }
+        }
+
+        int nFree = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                Assertions.assertEquals(occupied[x][y], pyramid.isOccupied(x, y));
+                nFree += occupied[x][y] ? 0 : 1;
+            }
+        }
+        Assertions.assertEquals(nFree, pyramid.getFreeCount());
+
+        for (int level = 1; level <= pyramid.getLevels(); level++) {
+            int tile = 1 << level;
+            for (int tileX = 0; tileX * tile < width; tileX++) {
+                for (int tileY = 0; tileY * tile < height; tileY++) {
+                    int count = 0;
+                    int capacity = 0;
+                    for (int x = tileX * tile; x < Math.min(width, (tileX + 1) * tile); x++) {
+                        for (int y = tileY * tile; y < Math.min(height, (tileY + 1) * tile); y++) {
+                            count += occupied[x][y] ? 1 : 0;
+                            capacity++;
+                        }
+                    }
+                    Assertions.assertEquals(count, pyramid.getOccupied(level, tileX, tileY));
+                    Assertions.assertEquals(capacity, pyramid.getCapacity(level, tileX, tileY));
+                }
+            }
+        }
+    }
+
+    @DisplayName("Sampling every rank finds every free cell exactly once")
+    @Test
+    void testSampleFree() {
+        Random random = new Random(42);
+        OccupancyPyramid pyramid = new OccupancyPyramid(37, 21);
+        for (int i = 0; i < 500; i++) {
+            pyramid.occupy(random.nextInt(37), random.nextInt(21));
+        }
+
+        Set<Integer> found = new HashSet<>();
+        for (int rank = 0; rank < pyramid.getFreeCount(); rank++) {
+            int cell = pyramid.sampleFree(rank);
+            Assertions.assertFalse(pyramid.isOccupied(cell % 37, cell / 37));
+            Assertions.assertTrue(found.add(cell));
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> pyramid.sampleFree(pyramid.getFreeCount()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> pyramid.sampleFree(-1));
+    }
+
+    @DisplayName("A full grid has no free cells, and a single cell grid has no levels")
+    @Test
+    void testEdgeCases() {
+        OccupancyPyramid single = new OccupancyPyramid(1, 1);
+        Assertions.assertEquals(0, single.getLevels());
+        Assertions.assertEquals(1, single.getFreeCount());
+        Assertions.assertEquals(0, single.sampleFree(0));
+        Assertions.assertTrue(single.occupy(0, 0));
+        Assertions.assertEquals(0, single.getFreeCount());
+
+        OccupancyPyramid row = new OccupancyPyramid(5, 1);
+        for (int x = 0; x < 5; x++) {
+            row.occupy(x, 0);
+        }
+        Assertions.assertEquals(0, row.getFreeCount());
+        row.vacate(2, 0);
+        Assertions.assertEquals(2, row.sampleFree(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new OccupancyPyramid(0, 5));
+    }
+
+    @DisplayName("In a running simulation, the pyramid matches the grid, and agents pick cells that were free")
+    @ParameterizedTest
+    @ValueSource(booleans = { true, false })
+    void testSimulationOccupancy(boolean deterministic) throws URISyntaxException {
+        int width = 20;
+        int height = 15;
+        int nAgents = 90;
+        Platform platform = Platform.newPlatform(2, new DefaultMessenger<Direction>());
+        ToyGridWorld<String> gridWorld = new ToyGridWorld<>(new Random(1), width, height);
+        ToyGridWorldInterface environmentInterface = new ToyGridWorldInterface(gridWorld, platform, false, 0);
+        environmentInterface.setDeterministic(deterministic);
+        environmentInterface.setBackoff(new BackoffScheduler(3, 32));
+        OccupancyPyramid occupancy = new OccupancyPyramid(width, height);
+        environmentInterface.setOccupancy(occupancy);
+        Assertions.assertSame(occupancy, environmentInterface.getOccupancy());
+
+        BeliefStore beliefStore = new BeliefStore(width, height, nAgents);
+        AgentPopulation population = new AgentPopulation(
+                platform, environmentInterface, beliefStore, false, new SplittableRandom(2));
+        population.setOccupancy(occupancy);
+        population.setChurn(1.5, new Random(3));
+        for (int i = 0; i < nAgents; i++) {
+            population.spawn();
+        }
+
+        // The cells that were free, and the random state of every agent, at the end of the last time step
+        boolean[] free = new boolean[width * height];
+        List<Long> randomStates = new ArrayList<>();
+        int[] sampled = { 0 };
+        Runnable snapshot = () -> {
+            int nFree = 0;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    boolean occupied = gridWorld.getAgentAt(new Point(x, y)) != null;
+                    Assertions.assertEquals(occupied, occupancy.isOccupied(x, y), "Cell " + x + "," + y);
+                    free[y * width + x] = !occupied;
+                    nFree += occupied ? 0 : 1;
+                }
+            }
+            Assertions.assertEquals(nFree, occupancy.getFreeCount());
+
+            randomStates.clear();
+            for (int slot = 0; slot < beliefStore.size(); slot++) {
+                randomStates.add(beliefStore.getRandomState(slot));
+            }
+        };
+
+        // Notified after the population, so agents have entered and left the simulation
+        EnvironmentInterface<Direction> checker = new EnvironmentInterface<Direction>() {
+            @Override
+            public void stepStarting(long timeStep) {
+            }
+
+            @Override
+            public void stepFinished(long timeStep, int duration, List<Future<DeliberationResult<Direction>>> list) {
+                // An agent only draws from its random stream when it samples a new destination, which it does while
+                // the environment is unchanged since the end of the last time step
+                for (int slot = 0; slot < randomStates.size(); slot++) {
+                    if (beliefStore.getRandomState(slot) != randomStates.get(slot)) {
+                        int x = beliefStore.getDestinationX(slot);
+                        int y = beliefStore.getDestinationY(slot);
+                        Assertions.assertTrue(free[y * width + x], "Agent in slot " + slot + " picked the taken " +
+                                "cell " + x + "," + y + " in time step " + timeStep);
+                        sampled[0]++;
+                    }
+                }
+                snapshot.run();
+            }
+
+            @Override
+            public void simulationFinished(long timeStep, int duration) {
+            }
+        };
+
+        snapshot.run();
+        try {
+            new DefaultSimulationEngine<>(platform, 150, environmentInterface, population, checker).start();
+        } finally {
+            platform.getStepExecutor().shutdown();
+        }
+
+        Assertions.assertTrue(sampled[0] > nAgents, "Sampled " + sampled[0] + " destinations");
+        Assertions.assertTrue(environmentInterface.getSuccessfulMoves() > 0);
+        Assertions.assertTrue(beliefStore.size() > nAgents);
+    }
+}
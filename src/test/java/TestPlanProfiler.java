@@ -0,0 +1,88 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import simulation.analytics.LogHistogram;
+import simulation.analytics.PlanProfiler;
+
+public class TestPlanProfiler {
+
+    @DisplayName("On average, one in every sample interval operations of each thread is sampled")
+    @Test
+    void testSampleInterval() throws InterruptedException {
+        PlanProfiler profiler = new PlanProfiler(10, new StringWriter());
+        Runnable operations = () -> {
+            for (int i = 0; i < 1000; i++) {
+                PlanProfiler.Recorder recorder = profiler.sample();
+                if (recorder != null) {
+                    recorder.record(String.class, PlanProfiler.Operation.EXECUTE, 1000);
+                }
+            }
+        };
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(operations);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        operations.run();
+
+        Assertions.assertNull(profiler.getHistogram(String.class, PlanProfiler.Operation.EXECUTE));
+        profiler.stepFinished();
+        LogHistogram histogram = profiler.getHistogram(String.class, PlanProfiler.Operation.EXECUTE);
+        long samples = histogram.getTotalCount();
+
+        // The expected number of samples is 500, with a standard deviation of about 21
+        Assertions.assertTrue(samples > 400 && samples < 600, "Got " + samples + " samples");
+
+        // Merged samples are not merged again
+        profiler.stepFinished();
+        Assertions.assertEquals(samples, histogram.getTotalCount());
+    }
+
+    @DisplayName("Operations that recur with a period dividing the sample interval are all sampled")
+    @Test
+    void testNoAliasing() {
+        PlanProfiler profiler = new PlanProfiler(10, new StringWriter());
+        Class<?>[] types = {String.class, Integer.class};
+        for (int i = 0; i < 100000; i++) {
+            PlanProfiler.Recorder recorder = profiler.sample();
+            if (recorder != null) {
+                recorder.record(types[i % types.length], PlanProfiler.Operation.EXECUTE, 1000);
+            }
+        }
+        profiler.stepFinished();
+
+        // With a fixed interval, all samples would be of the same type. Here, each type is expected to have 5000
+        // samples, with a standard deviation of about 67
+        for (Class<?> type : types) {
+            long samples = profiler.getHistogram(type, PlanProfiler.Operation.EXECUTE).getTotalCount();
+            Assertions.assertTrue(samples > 4500 && samples < 5500, "Got " + samples + " samples of " + type);
+        }
+    }
+
+    @DisplayName("The report lists the operations with the most estimated time first")
+    @Test
+    void testReportOrder() {
+        StringWriter writer = new StringWriter();
+        PlanProfiler profiler = new PlanProfiler(1, writer);
+        for (int i = 0; i < 10; i++) {
+            profiler.sample().record(String.class, PlanProfiler.Operation.INSTANTIATE, 1000);
+            profiler.sample().record(Integer.class, PlanProfiler.Operation.GOAL_CHECK, 5000);
+        }
+        profiler.sample().record(Long.class, PlanProfiler.Operation.EXECUTE, 2000);
+        profiler.simulationFinished();
+
+        String[] lines = writer.toString().split("\n");
+        Assertions.assertEquals(4, lines.length);
+        Assertions.assertTrue(lines[0].startsWith("type,operation,samples"));
+        Assertions.assertTrue(lines[1].startsWith("Integer,goal_check,10,0.050,5.000"));
+        Assertions.assertTrue(lines[2].startsWith("String,instantiate,10,0.010,1.000"));
+        Assertions.assertTrue(lines[3].startsWith("Long,execute,1,0.002,2.000"));
+    }
+}
@@ -0,0 +1,213 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Future;
+
+import environment.Direction;
+import environment.ToyGridWorld;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
+import nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger.DefaultMessenger;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+import nl.uu.cs.iss.ga.sim2apl.core.step.DefaultSimulationEngine;
+import nl.uu.cs.iss.ga.sim2apl.core.step.EnvironmentInterface;
+import simulation.AgentPopulation;
+import simulation.BackoffScheduler;
+import simulation.ToyGridWorldInterface;
+import simulation.agent.BeliefStore;
+import simulation.agent.BackoffTrigger;
+import simulation.agent.ExternalTriggerPlanScheme;
+import simulation.agent.GoalPlanScheme;
+import simulation.agent.KeepMovingGoal;
+import simulation.agent.MoveFailedTrigger;
+import simulation.agent.MoveTowardsGoal;
+import simulation.agent.UpdatePositionPlan;
+
+public class TestPlanReuse {
+
+    @DisplayName("Goal plans are reused once they have finished, and not while they are in use")
+    @Test
+    void testGoalPlanReuse() {
+        GoalPlanScheme scheme = new GoalPlanScheme();
+        MoveTowardsGoal goal = new MoveTowardsGoal(1, 2);
+
+        Plan<Direction> first = scheme.instantiate(goal, null);
+        Assertions.assertNotNull(first);
+        Plan<Direction> inUse = scheme.instantiate(goal, null);
+        Assertions.assertNotSame(first, inUse);
+
+        inUse.setFinished(true);
+        Plan<Direction> reused = scheme.instantiate(goal, null);
+        Assertions.assertSame(inUse, reused);
+        Assertions.assertFalse(reused.isFinished());
+
+        Plan<Direction> keepMoving = scheme.instantiate(new KeepMovingGoal(), null);
+        keepMoving.setFinished(true);
+        Assertions.assertSame(keepMoving, scheme.instantiate(new KeepMovingGoal(), null));
+    }
+
+    @DisplayName("Trigger plans are reused once they have finished, and refer to the latest trigger")
+    @Test
+    void testTriggerPlanReuse() {
+        ExternalTriggerPlanScheme scheme = new ExternalTriggerPlanScheme();
+        MoveFailedTrigger trigger = new MoveFailedTrigger(new Point(3, 4), Direction.UP);
+
+        Plan<Direction> plan = scheme.instantiate(trigger, null);
+        Assertions.assertTrue(plan instanceof UpdatePositionPlan);
+        plan.setFinished(true);
+
+        trigger.set(new Point(5, 6), Direction.LEFT);
+        Assertions.assertSame(plan, scheme.instantiate(trigger, null));
+        Assertions.assertEquals(new Point(5, 6), trigger.getCurrentPosition());
+        Assertions.assertEquals(Direction.LEFT, trigger.getFailedMove());
+
+        Plan<Direction> backoff = scheme.instantiate(BackoffTrigger.INSTANCE, null);
+        backoff.setFinished(true);
+        Assertions.assertSame(backoff, scheme.instantiate(BackoffTrigger.INSTANCE, null));
+    }
+
+    @DisplayName("An agent reuses its MoveTowardsGoal for every new destination, and keeps reaching them")
+    @Test
+    void testAgentReusesGoal() throws URISyntaxException {
+        int width = 6;
+        int height = 5;
+        Platform platform = Platform.newPlatform(1, new DefaultMessenger<Direction>());
+        ToyGridWorldInterface environmentInterface = new ToyGridWorldInterface(
+                new ToyGridWorld<>(new Random(1), width, height), platform, false, 0);
+        environmentInterface.setDeterministic(true);
+        BeliefStore beliefStore = new BeliefStore(width, height, 1);
+        AgentPopulation population = new AgentPopulation(
+                platform, environmentInterface, beliefStore, false, new SplittableRandom(2));
+        String name = population.spawn();
+        int slot = population.getSlot(name);
+        Agent<?> agent = (Agent<?>) platform.getAgents().values().iterator().next();
+
+        List<Object> goals = new ArrayList<>();
+        List<Point> destinations = new ArrayList<>();
+        EnvironmentInterface<Direction> checker = new EnvironmentInterface<Direction>() {
+            private final Point position = new Point();
+
+            @Override
+            public void stepStarting(long timeStep) {
+            }
+
+            @Override
+            public void stepFinished(long timeStep, int duration, List<Future<DeliberationResult<Direction>>> list) {
+                for (Object goal : agent.getGoals()) {
+                    if (goal instanceof MoveTowardsGoal && !goals.contains(goal)) {
+                        goals.add(goal);
+                    }
+                }
+
+                Point destination = new Point(beliefStore.getDestinationX(slot), beliefStore.getDestinationY(slot));
+                if (destinations.isEmpty() || !destination.equals(destinations.get(destinations.size() - 1))) {
+                    // A new destination is only chosen once the previous one was reached
+                    if (!destinations.isEmpty()) {
+                        Assertions.assertEquals(destinations.get(destinations.size() - 1), position);
+                    }
+                    destinations.add(destination);
+                }
+                position.setLocation(environmentInterface.getToyGridWorld().getPosition(name));
+            }
+
+            @Override
+            public void simulationFinished(long timeStep, int duration) {
+            }
+        };
+
+        try {
+            new DefaultSimulationEngine<>(platform, 200, environmentInterface, population, checker).start();
+        } finally {
+            platform.getStepExecutor().shutdown();
+        }
+
+        Assertions.assertEquals(1, goals.size());
+        Assertions.assertTrue(destinations.size() > 10, "Reached " + destinations.size() + " destinations");
+        Assertions.assertEquals(0, environmentInterface.getFailedMoves());
+    }
+
+    @DisplayName("An agent that wakes up again and again keeps reusing the same goals")
+    @Test
+    void testWakeUpReusesGoals() throws URISyntaxException {
+        // A crowded grid, so agents keep backing off and waking up
+        int width = 4;
+        int height = 4;
+        int nAgents = 12;
+        Platform platform = Platform.newPlatform(1, new DefaultMessenger<Direction>());
+        ToyGridWorldInterface environmentInterface = new ToyGridWorldInterface(
+                new ToyGridWorld<>(new Random(1), width, height), platform, false, 0);
+        environmentInterface.setDeterministic(true);
+        environmentInterface.setBackoff(new BackoffScheduler(1, 2));
+        BeliefStore beliefStore = new BeliefStore(width, height, nAgents);
+        AgentPopulation population = new AgentPopulation(
+                platform, environmentInterface, beliefStore, false, new SplittableRandom(2));
+        for (int i = 0; i < nAgents; i++) {
+            population.spawn();
+        }
+
+        // The distinct goal instances each agent pursued, by agent
+        Map<Agent<?>, Set<Object>> goals = new HashMap<>();
+        int[] wakeUps = new int[1];
+        boolean[] asleep = new boolean[nAgents];
+        EnvironmentInterface<Direction> checker = new EnvironmentInterface<Direction>() {
+            @Override
+            public void stepStarting(long timeStep) {
+            }
+
+            @Override
+            public void stepFinished(long timeStep, int duration, List<Future<DeliberationResult<Direction>>> list) {
+                for (Object value : platform.getAgents().values()) {
+                    Agent<?> agent = (Agent<?>) value;
+                    Set<Object> agentGoals = goals.computeIfAbsent(
+                            agent, key -> Collections.newSetFromMap(new IdentityHashMap<>()));
+                    agentGoals.addAll(agent.getGoals());
+                }
+                for (int slot = 0; slot < nAgents; slot++) {
+                    if (asleep[slot] && !beliefStore.isAsleep(slot)) {
+                        wakeUps[0]++;
+                    }
+                    asleep[slot] = beliefStore.isAsleep(slot);
+                }
+            }
+
+            @Override
+            public void simulationFinished(long timeStep, int duration) {
+            }
+        };
+
+        try {
+            new DefaultSimulationEngine<>(platform, 300, environmentInterface, population, checker).start();
+        } finally {
+            platform.getStepExecutor().shutdown();
+        }
+
+        Assertions.assertTrue(wakeUps[0] > 2 * nAgents, "Only " + wakeUps[0] + " wake-ups");
+        for (Set<Object> agentGoals : goals.values()) {
+            // The goals the agent started with, and the goals of its wake-up plan
+            int keepMoving = 0;
+            int moveTowards = 0;
+            for (Object goal : agentGoals) {
+                if (goal instanceof KeepMovingGoal) {
+                    keepMoving++;
+                } else if (goal instanceof MoveTowardsGoal) {
+                    moveTowards++;
+                }
+            }
+            Assertions.assertTrue(keepMoving <= 2, keepMoving + " KeepMovingGoals");
+            Assertions.assertTrue(moveTowards <= 2, moveTowards + " MoveTowardsGoals");
+        }
+    }
+}
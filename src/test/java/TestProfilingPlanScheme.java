@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import environment.Direction;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
+import simulation.agent.GoalPlanScheme;
+import simulation.agent.KeepMovingGoal;
+import simulation.agent.KeepMovingPlan;
+import simulation.agent.MoveTowardsGoal;
+import simulation.agent.MoveTowardsPlan;
+import simulation.agent.ProfilingPlanScheme;
+import simulation.analytics.LogHistogram;
+import simulation.analytics.PlanProfiler;
+
+public class TestProfilingPlanScheme {
+
+    @DisplayName("Instantiations and executions are recorded for the type of the wrapped plan")
+    @Test
+    void testRecordsWrappedPlan() throws PlanExecutionError {
+        PlanProfiler profiler = new PlanProfiler(1, new StringWriter());
+        ProfilingPlanScheme<Direction> scheme = new ProfilingPlanScheme<>(
+                (trigger, context) -> trigger instanceof KeepMovingGoal ? new UpPlan() : null, profiler);
+
+        Assertions.assertNull(scheme.instantiate(new MoveTowardsGoal(1, 2), null));
+        Plan<Direction> plan = scheme.instantiate(new KeepMovingGoal(), null);
+        Assertions.assertEquals(Direction.UP, plan.execute(null));
+        Assertions.assertTrue(plan.isFinished());
+        profiler.stepFinished();
+
+        LogHistogram instantiations = profiler.getHistogram(UpPlan.class, PlanProfiler.Operation.INSTANTIATE);
+        LogHistogram executions = profiler.getHistogram(UpPlan.class, PlanProfiler.Operation.EXECUTE);
+        Assertions.assertEquals(1, instantiations.getTotalCount());
+        Assertions.assertEquals(1, executions.getTotalCount());
+
+        // A scheme that does not apply to the trigger is not recorded
+        Assertions.assertNull(profiler.getHistogram(MoveTowardsPlan.class, PlanProfiler.Operation.INSTANTIATE));
+    }
+
+    @DisplayName("Wrappers delegate the state of the plan, and are reused once the plan has finished")
+    @Test
+    void testWrapperReuse() {
+        PlanProfiler profiler = new PlanProfiler(1, new StringWriter());
+        ProfilingPlanScheme<Direction> scheme = new ProfilingPlanScheme<>(new GoalPlanScheme(), profiler);
+        MoveTowardsGoal goal = new MoveTowardsGoal(1, 2);
+
+        Plan<Direction> first = scheme.instantiate(goal, null);
+        first.setPlanGoal(goal);
+        Assertions.assertSame(goal, first.getPlanGoal());
+        Plan<Direction> inUse = scheme.instantiate(goal, null);
+        Assertions.assertNotSame(first, inUse);
+
+        inUse.setFinished(true);
+        Plan<Direction> reused = scheme.instantiate(goal, null);
+        Assertions.assertSame(inUse, reused);
+        Assertions.assertFalse(reused.isFinished());
+
+        // A finished wrapper is reused for another type of plan, and then records that type
+        first.setFinished(true);
+        reused.setFinished(true);
+        Plan<Direction> keepMoving = scheme.instantiate(new KeepMovingGoal(), null);
+        Assertions.assertTrue(keepMoving == first || keepMoving == reused);
+        profiler.stepFinished();
+        Assertions.assertEquals(1,
+                profiler.getHistogram(KeepMovingPlan.class, PlanProfiler.Operation.INSTANTIATE).getTotalCount());
+        Assertions.assertEquals(3,
+                profiler.getHistogram(MoveTowardsPlan.class, PlanProfiler.Operation.INSTANTIATE).getTotalCount());
+    }
+
+    /**
+     * Moves up once
+     */
+    private static final class UpPlan extends Plan<Direction> {
+        @Override
+        public Direction execute(PlanToAgentInterface<Direction> planToAgentInterface) {
+            setFinished(true);
+            return Direction.UP;
+        }
+    }
+}
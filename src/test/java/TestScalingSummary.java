@@ -0,0 +1,79 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import simulation.EngineMode;
+import simulation.ScalingHarness;
+import simulation.ScalingSummary;
+
+public class TestScalingSummary {
+
+    @DisplayName("Speedup and parallel efficiency are relative to the smallest number of threads")
+    @Test
+    void testEfficiency() {
+        ScalingSummary summary = new ScalingSummary();
+        summary.add(EngineMode.DETERMINISTIC, 1000, 0.1, 4, 300);
+        summary.add(EngineMode.DETERMINISTIC, 1000, 0.1, 2, 180);
+        summary.add(EngineMode.DETERMINISTIC, 1000, 0.1, 2, 220);
+        summary.add(EngineMode.DETERMINISTIC, 1000, 0.1, 8, 400);
+
+        Assertions.assertEquals(200, summary.getMeanStepsPerSecond(EngineMode.DETERMINISTIC, 1000, 0.1, 2), 1e-9);
+        Assertions.assertEquals(1, summary.getSpeedup(EngineMode.DETERMINISTIC, 1000, 0.1, 2), 1e-9);
+        Assertions.assertEquals(1.5, summary.getSpeedup(EngineMode.DETERMINISTIC, 1000, 0.1, 4), 1e-9);
+        Assertions.assertEquals(0.75, summary.getParallelEfficiency(EngineMode.DETERMINISTIC, 1000, 0.1, 4), 1e-9);
+        Assertions.assertEquals(0.5, summary.getParallelEfficiency(EngineMode.DETERMINISTIC, 1000, 0.1, 8), 1e-9);
+        Assertions.assertTrue(Double.isNaN(summary.getSpeedup(EngineMode.DETERMINISTIC, 1000, 0.2, 4)));
+        Assertions.assertTrue(Double.isNaN(summary.getSpeedup(EngineMode.DETERMINISTIC, 1000, 0.1, 16)));
+    }
+
+    @DisplayName("The summary has a line per combination, ordered by number of threads")
+    @Test
+    void testWrite() throws IOException {
+        ScalingSummary summary = new ScalingSummary();
+        summary.add(EngineMode.DETERMINISTIC, 1000, 0.5, 2, 100);
+        summary.add(EngineMode.DETERMINISTIC, 1000, 0.5, 1, 60);
+        summary.add(EngineMode.DETERMINISTIC, 5000, 0.5, 1, 10);
+
+        StringWriter writer = new StringWriter();
+        summary.write(writer);
+        String[] lines = writer.toString().split("\n");
+        Assertions.assertEquals(ScalingSummary.HEADER, lines[0]);
+        Assertions.assertEquals(4, lines.length);
+        Assertions.assertTrue(lines[1].startsWith("deterministic,1000,0.5,1,1,60.000,0.000,1.000,1.000"));
+        Assertions.assertTrue(lines[2].startsWith("deterministic,1000,0.5,2,1,100.000,0.000,1.667,0.833"));
+        Assertions.assertTrue(lines[3].startsWith("deterministic,5000,0.5,1,"));
+    }
+
+    @DisplayName("The grid is just large enough for the density")
+    @Test
+    void testGridSide() {
+        Assertions.assertEquals(100, ScalingHarness.gridSide(1000, 0.1));
+        Assertions.assertEquals(1000, ScalingHarness.gridSide(1000000, 1.0));
+        Assertions.assertEquals(4, ScalingHarness.gridSide(10, 0.7));
+        Assertions.assertTrue(1000 / Math.pow(ScalingHarness.gridSide(1000, 0.3), 2) <= 0.3);
+    }
+
+    @DisplayName("Engine modes are summarized separately")
+    @Test
+    void testModesAreSeparate() throws IOException {
+        ScalingSummary summary = new ScalingSummary();
+        summary.add(EngineMode.DETERMINISTIC, 1000, 0.5, 1, 60);
+        summary.add(EngineMode.WORK_STEALING, 1000, 0.5, 1, 90);
+        summary.add(EngineMode.WORK_STEALING, 1000, 0.5, 2, 180);
+
+        Assertions.assertEquals(60, summary.getMeanStepsPerSecond(EngineMode.DETERMINISTIC, 1000, 0.5, 1), 1e-9);
+        Assertions.assertEquals(2, summary.getSpeedup(EngineMode.WORK_STEALING, 1000, 0.5, 2), 1e-9);
+        Assertions.assertTrue(Double.isNaN(summary.getSpeedup(EngineMode.DETERMINISTIC, 1000, 0.5, 2)));
+
+        StringWriter writer = new StringWriter();
+        summary.write(writer);
+        String[] lines = writer.toString().split("\n");
+        Assertions.assertEquals(4, lines.length);
+        Assertions.assertTrue(lines[1].startsWith("deterministic,1000,0.5,1,"));
+        Assertions.assertTrue(lines[2].startsWith("work_stealing,1000,0.5,1,"));
+        Assertions.assertTrue(lines[3].startsWith("work_stealing,1000,0.5,2,"));
+    }
+}
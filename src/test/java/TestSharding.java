@@ -0,0 +1,347 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import environment.Direction;
+import environment.ShardGridWorld;
+import environment.IToyGridWorld;
+import environment.ToyGridWorld;
+import net.sourceforge.argparse4j.inf.Namespace;
+import simulation.EngineMode;
+import simulation.Simulation;
+import simulation.SweepRunner;
+import simulation.agent.BeliefStore;
+import simulation.shard.Migrant;
+import simulation.shard.ShardCoordinator;
+import simulation.shard.ShardLayout;
+import simulation.shard.ShardProtocol;
+import simulation.shard.ShardedSimulation;
+import simulation.shard.StepReport;
+import util.Constants;
+
+public class TestSharding {
+
+    @DisplayName("Every row and every agent is owned by exactly one shard")
+    @Test
+    void testLayout() {
+        for (int height = 1; height <= 40; height++) {
+            for (int nShards = 1; nShards <= height; nShards++) {
+                ShardLayout layout = new ShardLayout(height, nShards);
+                Assertions.assertEquals(0, layout.getTop(0));
+                Assertions.assertEquals(height, layout.getBottom(nShards - 1));
+
+                int agents = 0;
+                for (int shard = 0; shard < nShards; shard++) {
+                    Assertions.assertTrue(layout.getBottom(shard) > layout.getTop(shard));
+                    for (int y = layout.getTop(shard); y < layout.getBottom(shard); y++) {
+                        Assertions.assertEquals(shard, layout.getOwner(y));
+                    }
+                    agents += layout.getAgents(shard, 1001);
+                }
+                Assertions.assertEquals(1001, agents);
+            }
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ShardLayout(3, 4));
+    }
+
+    @DisplayName("Agents only move within the rows of their shard, and moves into free halo cells are recorded")
+    @Test
+    void testCrossings() {
+        ShardGridWorld<String> grid = new ShardGridWorld<>(new Random(), 10, 10, 3, 6);
+        Assertions.assertFalse(grid.registerAgent("outside", new Point(0, 2)));
+        Assertions.assertTrue(grid.registerAgent("a", new Point(4, 3)));
+        Assertions.assertTrue(grid.registerAgent("b", new Point(7, 5)));
+        Assertions.assertTrue(grid.registerAgent("c", new Point(8, 3)));
+
+        // The cell above c was occupied at the end of the previous time step
+        long[] above = new long[ShardGridWorld.rowWords(10)];
+        above[0] |= 1L << 8;
+        grid.setHalo(above, null);
+
+        Assertions.assertTrue(grid.move("a", Direction.DOWN));
+        Assertions.assertEquals(new Point(4, 4), grid.getPosition("a"));
+        Assertions.assertFalse(grid.move("b", Direction.DOWN));
+        Assertions.assertFalse(grid.move("c", Direction.UP));
+        Assertions.assertEquals(new Point(7, 5), grid.getPosition("b"));
+
+        List<ShardGridWorld.Crossing<String>> crossings = grid.getCrossings();
+        Assertions.assertEquals(1, crossings.size());
+        Assertions.assertEquals("b", crossings.get(0).getAgent());
+        Assertions.assertEquals(7, crossings.get(0).getX());
+        Assertions.assertEquals(6, crossings.get(0).getY());
+        grid.clearCrossings();
+        Assertions.assertTrue(grid.getCrossings().isEmpty());
+
+        Assertions.assertNull(grid.getAgentAt(new Point(8, 2)));
+        Assertions.assertEquals(1L << 8, grid.getRowOccupancy(3)[0]);
+        Assertions.assertEquals(1L << 7, grid.getRowOccupancy(5)[0]);
+
+        for (int i = 0; i < 100; i++) {
+            Point free = grid.getRandomFreePoint(false);
+            Assertions.assertTrue(grid.isOwned(free));
+            Assertions.assertNull(grid.getAgentAt(free));
+        }
+    }
+
+    @DisplayName("The state hash of a shard is that of the same agents in a full grid")
+    @Test
+    void testStateHash() {
+        ShardGridWorld<String> shard = new ShardGridWorld<>(new Random(), 20, 20, 5, 10);
+        ToyGridWorld<String> full = new ToyGridWorld<>(new Random(), 20, 20);
+        for (int i = 0; i < 30; i++) {
+            Point position = shard.getRandomFreePoint(false);
+            shard.registerAgent(Integer.toString(i), position);
+            full.registerAgent(Integer.toString(i), new Point(position));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            String agent = Integer.toString(random.nextInt(30));
+            Direction direction = Direction.values()[random.nextInt(Direction.values().length)];
+            Point target = new Point(shard.getPosition(agent));
+            target.translate(direction == Direction.LEFT ? -1 : direction == Direction.RIGHT ? 1 : 0,
+                    direction == Direction.UP ? -1 : direction == Direction.DOWN ? 1 : 0);
+            if (shard.isOwned(target)) {
+                Assertions.assertEquals(full.move(agent, direction), shard.move(agent, direction));
+            }
+            Assertions.assertEquals(full.getStateHash(), shard.getStateHash());
+        }
+    }
+
+    @DisplayName("The coordinator passes the halos, routes crossing agents and their answers, and combines hashes")
+    @Test
+    void testCoordinator() throws Exception {
+        int width = 70;
+        ShardLayout layout = new ShardLayout(4, 2);
+        ShardCoordinator coordinator = new ShardCoordinator(layout, width, 1);
+        StringWriter checksums = new StringWriter();
+        coordinator.setChecksumWriter(checksums);
+
+        long[] firstRow0 = { 1, 0 };
+        long[] lastRow0 = { 2, 1L << 5 };
+        long[] firstRow1 = { 4, 0 };
+        long[] lastRow1 = { 8, 0 };
+        Migrant down = new Migrant("0", 5, 2, 5, 3, 11);
+        Migrant up = new Migrant("1", 66, 1, 0, 0, 12);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (ServerSocket server = new ServerSocket(0, 2, InetAddress.getLoopbackAddress())) {
+            Future<?> coordinating = executor.submit(() -> {
+                coordinator.serve(server);
+                return null;
+            });
+            Future<FakeShard> shard0 = executor.submit(() ->
+                    new FakeShard(server.getLocalPort(), 0, width, new StepReport(0, 0x0f, 3, firstRow0, lastRow0,
+                            Collections.singletonList(down)), true));
+            Future<FakeShard> shard1 = executor.submit(() ->
+                    new FakeShard(server.getLocalPort(), 1, width, new StepReport(0, 0xf0, 4, firstRow1, lastRow1,
+                            Collections.singletonList(up)), false));
+
+            FakeShard first = shard0.get(10, TimeUnit.SECONDS);
+            FakeShard second = shard1.get(10, TimeUnit.SECONDS);
+            coordinating.get(10, TimeUnit.SECONDS);
+
+            Assertions.assertNull(first.above);
+            Assertions.assertArrayEquals(firstRow1, first.below);
+            Assertions.assertArrayEquals(lastRow0, second.above);
+            Assertions.assertNull(second.below);
+
+            Assertions.assertEquals(1, first.immigrants.size());
+            Assertions.assertEquals("1", first.immigrants.get(0).getName());
+            Assertions.assertEquals(12, first.immigrants.get(0).getRandomState());
+            Assertions.assertEquals(1, second.immigrants.size());
+            Assertions.assertEquals("0", second.immigrants.get(0).getName());
+            Assertions.assertEquals(3, second.immigrants.get(0).getDestinationY());
+
+            // Shard 1 rejected the agent of shard 0, and shard 0 accepted the agent of shard 1
+            Assertions.assertArrayEquals(new boolean[] { false }, first.answers);
+            Assertions.assertArrayEquals(new boolean[] { true }, second.answers);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertEquals("0,ff\n", checksums.toString());
+        Assertions.assertEquals(0xff, coordinator.getStateHash());
+        Assertions.assertEquals(7, coordinator.getAgentCount());
+        Assertions.assertEquals(2, coordinator.getCrossingCount());
+        Assertions.assertEquals(1, coordinator.getRejectedCount());
+    }
+
+    @DisplayName("Two shards of a simulation keep all agents and their beliefs, and the coordinator combines hashes")
+    @Test
+    void testShardedSimulation() throws Exception {
+        int seed = 42;
+        int width = 30;
+        int height = 20;
+        int nAgents = 120;
+        int nSteps = 60;
+        ShardLayout layout = new ShardLayout(height, 2);
+        ShardCoordinator coordinator = new ShardCoordinator(layout, width, nSteps);
+        StringWriter checksums = new StringWriter();
+        coordinator.setChecksumWriter(checksums);
+
+        Simulation[] shards = new Simulation[2];
+        StringWriter[] shardChecksums = new StringWriter[2];
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (ServerSocket server = new ServerSocket(0, 2, InetAddress.getLoopbackAddress())) {
+            Future<?> coordinating = executor.submit(() -> {
+                coordinator.serve(server);
+                return null;
+            });
+            for (int shard = 0; shard < shards.length; shard++) {
+                Map<String, Object> arguments = new HashMap<>(SweepRunner.createScenario(
+                        EngineMode.DETERMINISTIC, seed, width, height, nAgents, nSteps, 2).getAttrs());
+                arguments.put(Constants.ARG_FAST_START, true);
+                arguments.put(Constants.ARG_SHARDS, 2);
+                arguments.put(Constants.ARG_SHARD_INDEX, shard);
+                arguments.put(Constants.ARG_COORDINATOR, "localhost:" + server.getLocalPort());
+                shards[shard] = new Simulation(new Namespace(arguments));
+                shardChecksums[shard] = new StringWriter();
+                shards[shard].getEnvironmentInterface().setChecksumWriter(shardChecksums[shard]);
+            }
+
+            Future<?> first = executor.submit(shards[0]::start);
+            Future<?> second = executor.submit(shards[1]::start);
+            first.get(60, TimeUnit.SECONDS);
+            second.get(60, TimeUnit.SECONDS);
+            coordinating.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+            for (Simulation shard : shards) {
+                if (shard != null) {
+                    shard.shutdown();
+                }
+            }
+        }
+
+        // The shards write the hash of their own rows, before the agents of the time step have crossed
+        String[] lines = checksums.toString().split("\n");
+        String[] lines0 = shardChecksums[0].toString().split("\n");
+        String[] lines1 = shardChecksums[1].toString().split("\n");
+        Assertions.assertEquals(nSteps, lines.length);
+        Assertions.assertEquals(nSteps, lines0.length);
+        Assertions.assertEquals(nSteps, lines1.length);
+        for (int step = 0; step < nSteps; step++) {
+            long hash0 = Long.parseUnsignedLong(lines0[step].split(",")[1], 16);
+            long hash1 = Long.parseUnsignedLong(lines1[step].split(",")[1], 16);
+            Assertions.assertEquals(step + "," + Long.toHexString(hash0 ^ hash1), lines[step]);
+        }
+        Assertions.assertEquals(nAgents, coordinator.getAgentCount());
+        Assertions.assertTrue(coordinator.getCrossingCount() > coordinator.getRejectedCount());
+
+        // Every agent is in exactly one cell of exactly one shard
+        Set<String> names = new HashSet<>();
+        int crossed = 0;
+        for (int shard = 0; shard < shards.length; shard++) {
+            IToyGridWorld<String> grid = shards[shard].getEnvironmentInterface().getToyGridWorld();
+            int agents = 0;
+            for (int y = layout.getTop(shard); y < layout.getBottom(shard); y++) {
+                for (int x = 0; x < width; x++) {
+                    String name = grid.getAgentAt(new Point(x, y));
+                    if (name == null) {
+                        continue;
+                    }
+                    Assertions.assertTrue(names.add(name), "Agent " + name + " is in more than one cell");
+                    Assertions.assertEquals(new Point(x, y), grid.getPosition(name));
+                    agents++;
+
+                    // Shard i names its agents i, i + 2, i + 4, ..., so the name tells where the agent was created
+                    int origin = Integer.parseInt(name) % 2;
+                    if (origin != shard) {
+                        crossed++;
+                    }
+                    assertBeliefsContinued(shards[shard], name, ShardedSimulation.shardSeed(seed, origin),
+                            Integer.parseInt(name) / 2, width, height, nSteps);
+                }
+            }
+            Assertions.assertEquals(shards[shard].getPopulation().size(), agents);
+        }
+        Assertions.assertEquals(nAgents, names.size());
+        Assertions.assertTrue(crossed > 0);
+    }
+
+    /**
+     * Check that the destination and the random stream of an agent are those it would have in an unsharded
+     * simulation, by replaying the destinations it drew from its random stream. An agent that lost its beliefs when
+     * it crossed into another shard would not match any of them
+     *
+     * @param shardSeed The seed of the shard that created the agent
+     * @param index     The number of agents the shard created before this one
+     */
+    private static void assertBeliefsContinued(Simulation shard, String name, long shardSeed, int index, int width,
+                                               int height, int nSteps) {
+        BeliefStore beliefStore = shard.getBeliefStore();
+        int slot = shard.getPopulation().getSlot(name);
+
+        SplittableRandom seeds = new SplittableRandom(shardSeed);
+        for (int i = 0; i < index; i++) {
+            seeds.nextLong();
+        }
+        BeliefStore replay = new BeliefStore(width, height, 1);
+        int replaySlot = replay.allocate(0, 0, seeds.nextLong());
+
+        // The agent draws at most one destination per time step
+        for (int draw = 0; draw <= nSteps; draw++) {
+            int x = replay.nextInt(replaySlot, width);
+            int y = replay.nextInt(replaySlot, height);
+            if (x == beliefStore.getDestinationX(slot) && y == beliefStore.getDestinationY(slot) &&
+                    replay.getRandomState(replaySlot) == beliefStore.getRandomState(slot)) {
+                return;
+            }
+        }
+        Assertions.fail("The destination and random stream of agent " + name + " do not continue its own stream");
+    }
+
+    /**
+     * A shard that runs a single time step of the protocol, and accepts either all or none of the crossing agents
+     */
+    private static final class FakeShard {
+        private final long[] above;
+        private final long[] below;
+        private final List<Migrant> immigrants;
+        private final boolean[] answers;
+
+        private FakeShard(int port, int shard, int width, StepReport report, boolean accept) throws IOException {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                ShardProtocol.writeHello(out, shard, 2, width, 4);
+                report.write(out);
+                out.flush();
+
+                this.above = ShardProtocol.readRow(in);
+                this.below = ShardProtocol.readRow(in);
+                this.immigrants = ShardProtocol.readMigrants(in);
+                boolean[] accepted = new boolean[this.immigrants.size()];
+                Arrays.fill(accepted, accept);
+                ShardProtocol.writeAnswers(out, accepted);
+                out.flush();
+
+                this.answers = ShardProtocol.readAnswers(in);
+            }
+        }
+    }
+}
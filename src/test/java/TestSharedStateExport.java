@@ -0,0 +1,152 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import simulation.EngineMode;
+import simulation.Simulation;
+import simulation.SweepRunner;
+import simulation.export.SharedStateExporter;
+import simulation.export.SharedStateFrame;
+import simulation.export.SharedStateReader;
+import util.Constants;
+
+public class TestSharedStateExport {
+
+    private final Random random = new Random();
+
+    @TempDir
+    Path directory;
+
+    @DisplayName("A reader sees the positions and occupancy published by the exporter")
+    @RepeatedTest(20)
+    void testRoundTrip() throws IOException {
+        int width = 1 + random.nextInt(50);
+        int height = 1 + random.nextInt(50);
+        Path file = directory.resolve("state.bin");
+
+        try (SharedStateExporter exporter = new SharedStateExporter(file, width, height, 4);
+             SharedStateReader reader = new SharedStateReader(file)) {
+            SharedStateFrame frame = new SharedStateFrame();
+            Assertions.assertFalse(reader.read(frame));
+
+            for (int step = 0; step < 5; step++) {
+                // More agents than the initial capacity, so the file has to grow
+                Point[] positions = new Point[random.nextInt(20)];
+                boolean[] occupied = new boolean[width * height];
+                for (int handle = 0; handle < positions.length; handle++) {
+                    int cell = random.nextInt(width * height);
+                    if (random.nextInt(4) > 0 && !occupied[cell]) {
+                        occupied[cell] = true;
+                        positions[handle] = new Point(cell % width, cell / width);
+                    }
+                }
+
+                exporter.publish(step, positions.length, handle -> positions[handle]);
+                Assertions.assertTrue(reader.read(frame));
+                Assertions.assertFalse(reader.read(frame));
+
+                Assertions.assertEquals(step, frame.getTimeStep());
+                Assertions.assertEquals(width, frame.getWidth());
+                Assertions.assertEquals(height, frame.getHeight());
+                Assertions.assertEquals(positions.length, frame.getAgentCount());
+                for (int handle = 0; handle < positions.length; handle++) {
+                    Assertions.assertEquals(positions[handle], frame.getPosition(Integer.toString(handle)));
+                    if (positions[handle] != null) {
+                        Assertions.assertEquals(Integer.toString(handle), frame.getAgentAt(positions[handle]));
+                    }
+                }
+                for (int cell = 0; cell < occupied.length; cell++) {
+                    Assertions.assertEquals(occupied[cell], frame.isOccupied(cell % width, cell / width));
+                }
+            }
+        }
+    }
+
+    @DisplayName("The hash of an exported frame equals the hash of the simulation, also with churn")
+    @Test
+    void testFrameHashMatchesSimulation() throws IOException {
+        Path file = directory.resolve("simulation.bin");
+        Path checksums = directory.resolve("checksums.txt");
+        Map<String, Object> arguments = new HashMap<>(
+                SweepRunner.createScenario(EngineMode.DETERMINISTIC, 42, 20, 20, 100, 30, 1).getAttrs());
+        arguments.put(Constants.ARG_CHURN, 5.0);
+        arguments.put(Constants.ARG_EXPORT_FILE, file.toString());
+        arguments.put(Constants.ARG_CHECKSUM_FILE, checksums.toString());
+
+        Simulation simulation = new Simulation(new Namespace(arguments));
+        try {
+            simulation.start();
+        } finally {
+            simulation.shutdown();
+        }
+
+        // The frame and the checksum are both written at the end of the last time step, before agents churn
+        List<String> lines = Files.readAllLines(checksums);
+        String last = lines.get(lines.size() - 1);
+        try (SharedStateReader reader = new SharedStateReader(file)) {
+            SharedStateFrame frame = new SharedStateFrame();
+            Assertions.assertTrue(reader.read(frame));
+            Assertions.assertEquals(last, frame.getTimeStep() + "," + Long.toHexString(frame.getStateHash()));
+        }
+    }
+
+    @DisplayName("A reader never sees a frame that is only partially published")
+    @Test
+    void testConsistentFrames() throws Exception {
+        int width = 64;
+        int nAgents = 32;
+        Path file = directory.resolve("state.bin");
+
+        try (SharedStateExporter exporter = new SharedStateExporter(file, width, nAgents, nAgents);
+             SharedStateReader reader = new SharedStateReader(file)) {
+            AtomicBoolean done = new AtomicBoolean(false);
+            Thread writer = new Thread(() -> {
+                try {
+                    // All agents move to the same column in every time step
+                    for (int step = 0; step < 100_000; step++) {
+                        int column = step % width;
+                        exporter.publish(step, nAgents, handle -> new Point(column, handle));
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    done.set(true);
+                }
+            });
+            writer.start();
+
+            SharedStateFrame frame = new SharedStateFrame();
+            int framesRead = 0;
+            while (!done.get()) {
+                if (reader.read(frame)) {
+                    framesRead++;
+                    int column = (int) (frame.getTimeStep() % width);
+                    for (int handle = 0; handle < nAgents; handle++) {
+                        Assertions.assertEquals(new Point(column, handle), frame.getPosition(Integer.toString(handle)));
+                        Assertions.assertTrue(frame.isOccupied(column, handle));
+                        Assertions.assertFalse(frame.isOccupied((column + 1) % width, handle));
+                    }
+                }
+            }
+            writer.join();
+
+            // The last frame may or may not have been read already
+            reader.read(frame);
+            Assertions.assertTrue(framesRead > 0);
+            Assertions.assertEquals(99_999, frame.getTimeStep());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+import simulation.agent.BeliefStore;
+import simulation.analytics.DecayingHeatmap;
+import simulation.analytics.SimulationAnalytics;
+
+public class TestSimulationAnalytics {
+
+    private final Random random = new Random();
+
+    @DisplayName("Occupancy fades out with the decay factor")
+    @Test
+    void testHeatmapDecay() {
+        DecayingHeatmap heatmap = new DecayingHeatmap(1000, 10, 0.5);
+        Assertions.assertEquals(16, heatmap.getTileSize());
+        Assertions.assertEquals(63, heatmap.getTilesX());
+        Assertions.assertEquals(1, heatmap.getTilesY());
+
+        heatmap.add(999, 9);
+        heatmap.add(995, 0);
+        Assertions.assertEquals(2, heatmap.get(62, 0), 1e-9);
+
+        // Advance far enough to force rescaling the tiles
+        for (int i = 0; i < 400; i++) {
+            heatmap.advance();
+        }
+        heatmap.add(0, 0);
+        Assertions.assertEquals(1, heatmap.get(0, 0), 1e-9);
+        Assertions.assertEquals(0, heatmap.get(62, 0), 1e-9);
+    }
+
+    @DisplayName("Heatmap that follows moves equals counting all agents every time step")
+    @RepeatedTest(20)
+    void testHeatmapFollowsAgents() {
+        int width = 200;
+        int height = 130;
+        int nAgents = 300;
+        BeliefStore beliefStore = new BeliefStore(width, height, nAgents);
+        SimulationAnalytics analytics = new SimulationAnalytics(width, height, beliefStore, new StringWriter(), 1000);
+        DecayingHeatmap expected = new DecayingHeatmap(width, height, 0.99);
+        int[] x = new int[nAgents];
+        int[] y = new int[nAgents];
+        for (int handle = 0; handle < nAgents; handle++) {
+            x[handle] = random.nextInt(width);
+            y[handle] = random.nextInt(height);
+            beliefStore.allocate(x[handle], y[handle], handle);
+            analytics.registerAgent(handle, x[handle], y[handle]);
+        }
+
+        for (int step = 0; step < 700; step++) {
+            analytics.stepStarting(step);
+            for (int handle = 0; handle < nAgents; handle++) {
+                int change = random.nextInt(20);
+                if (x[handle] < 0 || change == 0) {
+                    // Agents leave, and their handles are reused by new agents
+                    if (x[handle] >= 0) {
+                        analytics.unregisterAgent(handle);
+                        x[handle] = -1;
+                    } else if (random.nextBoolean()) {
+                        x[handle] = random.nextInt(width);
+                        y[handle] = random.nextInt(height);
+                        analytics.registerAgent(handle, x[handle], y[handle]);
+                    }
+                } else if (change < 10) {
+                    x[handle] = Math.min(width - 1, Math.max(0, x[handle] + random.nextInt(3) - 1));
+                    y[handle] = Math.min(height - 1, Math.max(0, y[handle] + random.nextInt(3) - 1));
+                    analytics.moveSucceeded(handle, x[handle], y[handle]);
+                }
+            }
+            analytics.stepFinished(step);
+
+            expected.advance();
+            for (int handle = 0; handle < nAgents; handle++) {
+                if (x[handle] >= 0) {
+                    expected.add(x[handle], y[handle]);
+                }
+            }
+        }
+
+        DecayingHeatmap heatmap = analytics.getHeatmap();
+        for (int tileY = 0; tileY < expected.getTilesY(); tileY++) {
+            for (int tileX = 0; tileX < expected.getTilesX(); tileX++) {
+                double value = expected.get(tileX, tileY);
+                Assertions.assertEquals(value, heatmap.get(tileX, tileY), 1e-9 * Math.max(1, value));
+            }
+        }
+    }
+
+    @DisplayName("Steps to a destination count from the step the destination is adopted until it is reached")
+    @Test
+    void testStepsToGoal() {
+        BeliefStore beliefStore = new BeliefStore(10, 10, 1);
+        SimulationAnalytics analytics = new SimulationAnalytics(10, 10, beliefStore, new StringWriter(), 1000);
+        int handle = beliefStore.allocate(0, 0, 0);
+        analytics.registerAgent(handle, 0, 0);
+
+        analytics.stepStarting(0);
+        beliefStore.setDestination(handle, 3, 0);
+        analytics.moveSucceeded(handle, 1, 0);
+        analytics.stepFinished(0);
+        analytics.stepStarting(1);
+        analytics.moveFailed(handle);
+        analytics.stepFinished(1);
+        analytics.stepStarting(2);
+        analytics.moveSucceeded(handle, 2, 0);
+        analytics.stepFinished(2);
+        Assertions.assertEquals(0, analytics.getStepsToGoal().getTotalCount());
+
+        analytics.stepStarting(3);
+        analytics.moveSucceeded(handle, 3, 0);
+        analytics.stepFinished(3);
+        Assertions.assertEquals(1, analytics.getStepsToGoal().getTotalCount());
+        Assertions.assertEquals(4, analytics.getStepsToGoal().getMax());
+    }
+}
@@ -0,0 +1,97 @@
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import simulation.EngineMode;
+import simulation.Simulation;
+import simulation.SweepRunner;
+import simulation.kernel.KernelSimulation;
+import util.Constants;
+import util.HashStreamDiff;
+
+/**
+ * Seeded runs in different modes that should produce the same hash streams
+ */
+public class TestSimulationEquivalence {
+
+    private static final int seed = 42;
+    private static final int width = 40;
+    private static final int height = 30;
+    private static final int nAgents = 400;
+    private static final int nSteps = 100;
+
+    @DisplayName("A pipelined run produces the same hash stream as a deterministic run")
+    @Test
+    void testPipelinedMatchesDeterministic() throws IOException {
+        String deterministic = runSimulation(Constants.ARG_DETERMINISTIC);
+        String pipelined = runSimulation(Constants.ARG_WORK_STEALING, Constants.ARG_PIPELINED);
+        assertIdentical(deterministic, pipelined);
+    }
+
+    @DisplayName("A run of the kernel produces the same hash stream as a deterministic run")
+    @Test
+    void testKernelMatchesDeterministic() throws IOException {
+        String deterministic = runSimulation(Constants.ARG_DETERMINISTIC);
+
+        KernelSimulation kernel = new KernelSimulation(createArguments(Constants.ARG_KERNEL));
+        StringWriter checksums = new StringWriter();
+        kernel.setChecksumWriter(checksums);
+        kernel.start();
+        assertIdentical(deterministic, checksums.toString());
+    }
+
+    @DisplayName("The kernel rejects the options that it does not support")
+    @Test
+    void testKernelRejectsOptions() {
+        for (String flag : new String[] { Constants.ARG_ASYNC, Constants.ARG_SWAP, Constants.ARG_CONGESTION_AWARE,
+                Constants.ARG_BACKOFF }) {
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> new KernelSimulation(createArguments(Constants.ARG_KERNEL, flag)));
+        }
+
+        Namespace sharded = createArguments(Constants.ARG_KERNEL);
+        sharded.getAttrs().put(Constants.ARG_SHARDS, 2);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new KernelSimulation(sharded));
+        Namespace churn = createArguments(Constants.ARG_KERNEL);
+        churn.getAttrs().put(Constants.ARG_CHURN, 0.5);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new KernelSimulation(churn));
+    }
+
+    /**
+     * @param flags Boolean arguments to enable, on top of the arguments of a seeded scenario without visualization
+     * @return      The hash stream of the run
+     */
+    private static String runSimulation(String... flags) {
+        Simulation simulation = new Simulation(createArguments(flags));
+        StringWriter checksums = new StringWriter();
+        simulation.getEnvironmentInterface().setChecksumWriter(checksums);
+        simulation.start();
+        return checksums.toString();
+    }
+
+    /**
+     * @param flags Boolean arguments to enable, on top of the arguments of a seeded scenario without visualization
+     * @return      The arguments of the run
+     */
+    private static Namespace createArguments(String... flags) {
+        Map<String, Object> arguments = new HashMap<>(
+                SweepRunner.createScenario(EngineMode.DEFAULT, seed, width, height, nAgents, nSteps, 4).getAttrs());
+        for (String flag : flags) {
+            arguments.put(flag, true);
+        }
+        return new Namespace(arguments);
+    }
+
+    private static void assertIdentical(String expected, String actual) throws IOException {
+        HashStreamDiff diff = HashStreamDiff.compare(new StringReader(expected), new StringReader(actual));
+        Assertions.assertTrue(diff.isIdentical(), diff.summary());
+        Assertions.assertEquals(nSteps, diff.getComparedSteps());
+    }
+}
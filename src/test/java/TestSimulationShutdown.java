@@ -0,0 +1,73 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sourceforge.argparse4j.inf.Namespace;
+import simulation.EngineMode;
+import simulation.Simulation;
+import simulation.SweepRunner;
+import util.Constants;
+
+public class TestSimulationShutdown {
+
+    private static final int nThreads = 4;
+    private static final long timeoutMillis = 10_000;
+
+    @DisplayName("Running simulations one after another does not accumulate threads")
+    @ParameterizedTest
+    @ValueSource(strings = { Constants.ARG_DETERMINISTIC, Constants.ARG_WORK_STEALING })
+    void testThreadCountStaysFlat(String mode) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        // The first run may start threads of the JVM itself, which stay alive
+        runSimulation(mode);
+        int baseline = awaitThreadCount(threads, Integer.MAX_VALUE);
+
+        for (int repetition = 0; repetition < 5; repetition++) {
+            runSimulation(mode);
+            int count = awaitThreadCount(threads, baseline);
+            Assertions.assertTrue(count <= baseline,
+                    "Repetition " + repetition + " left " + (count - baseline) + " threads running");
+        }
+    }
+
+    private static void runSimulation(String mode) {
+        Map<String, Object> arguments = new HashMap<>(
+                SweepRunner.createScenario(EngineMode.DEFAULT, 42, 20, 20, 100, 20, nThreads).getAttrs());
+        arguments.put(mode, true);
+
+        Simulation simulation = new Simulation(new Namespace(arguments));
+        try {
+            simulation.start();
+        } finally {
+            simulation.shutdown();
+        }
+    }
+
+    /**
+     * Threads of an executor that was shut down exit some time after their last task, so poll until they have
+     *
+     * @param expected  The thread count to wait for
+     * @return          The number of live threads once it is at most the expected count, or after the timeout
+     */
+    private static int awaitThreadCount(ThreadMXBean threads, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        int count = threads.getThreadCount();
+        int previous = -1;
+        while (count > expected || count != previous) {
+            if (System.currentTimeMillis() > deadline) {
+                break;
+            }
+            Thread.sleep(50);
+            previous = count;
+            count = threads.getThreadCount();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,116 @@
+import environment.ConcurrentToyGridWorld;
+import environment.Direction;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Random;
+
+import simulation.SimulationTelemetry;
+import simulation.ToyGridWorldInterface;
+import simulation.agent.DirectMoveContext;
+
+public class TestSimulationTelemetry {
+
+    @DisplayName("Telemetry is readable through the platform MBean server until it is unregistered")
+    @Test
+    void testRegisteredAttributes() throws Exception {
+        SimulationTelemetry telemetry = new SimulationTelemetry(() -> 42);
+        telemetry.register();
+        ObjectName name = telemetry.getObjectName();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            Assertions.assertTrue(server.isRegistered(name));
+            telemetry.recordStep(7, 20, 40, 30, 3);
+
+            Assertions.assertEquals(7L, server.getAttribute(name, "CurrentStep"));
+            Assertions.assertEquals(42, server.getAttribute(name, "AgentCount"));
+            Assertions.assertEquals(40, server.getAttribute(name, "DeliberatedAgents"));
+            Assertions.assertEquals(0.1, (double) server.getAttribute(name, "FailedMoveRate"), 1e-9);
+            Assertions.assertEquals(20.0, (double) server.getAttribute(name, "MeanStepDuration"), 1e-9);
+        } finally {
+            telemetry.unregister();
+        }
+        Assertions.assertFalse(server.isRegistered(name));
+    }
+
+    @DisplayName("Registering and unregistering telemetry leaves no MBean behind")
+    @Test
+    void testUnregisterLeavesNoMBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName(SimulationTelemetry.DOMAIN + ":*");
+        int before = server.queryNames(pattern, null).size();
+
+        SimulationTelemetry[] telemetries = new SimulationTelemetry[10];
+        for (int i = 0; i < telemetries.length; i++) {
+            telemetries[i] = new SimulationTelemetry(() -> 0);
+            telemetries[i].register();
+        }
+        Assertions.assertEquals(before + telemetries.length, server.queryNames(pattern, null).size());
+
+        for (SimulationTelemetry telemetry : telemetries) {
+            telemetry.unregister();
+            // Unregistering twice is harmless
+            telemetry.unregister();
+        }
+        new SimulationTelemetry(() -> 0).unregister();
+        Assertions.assertEquals(before, server.queryNames(pattern, null).size());
+    }
+
+    @DisplayName("Rolling values weigh the last time step by 10%, and steps without moves leave the failure rate")
+    @Test
+    void testRollingValues() {
+        SimulationTelemetry telemetry = new SimulationTelemetry(() -> 0);
+        telemetry.recordStep(0, 10, 5, 10, 10);
+        Assertions.assertEquals(10, telemetry.getRollingStepDuration(), 1e-9);
+        Assertions.assertEquals(1, telemetry.getFailedMoveRate(), 1e-9);
+        Assertions.assertEquals(0, telemetry.getStepsPerSecond(), 1e-9);
+
+        telemetry.recordStep(1, 20, 3, 10, 0);
+        Assertions.assertEquals(11, telemetry.getRollingStepDuration(), 1e-9);
+        Assertions.assertEquals(0.9, telemetry.getFailedMoveRate(), 1e-9);
+        Assertions.assertEquals(15, telemetry.getMeanStepDuration(), 1e-9);
+        Assertions.assertEquals(3, telemetry.getDeliberatedAgents());
+        Assertions.assertTrue(telemetry.getStepsPerSecond() > 0);
+
+        telemetry.recordStep(2, 11, 0, 0, 0);
+        Assertions.assertEquals(0.9, telemetry.getFailedMoveRate(), 1e-9);
+        Assertions.assertEquals(2, telemetry.getCurrentStep());
+    }
+
+    @DisplayName("Moves that agents commit themselves in asynchronous mode are counted in the time step")
+    @Test
+    void testDirectMovesCounted() {
+        ConcurrentToyGridWorld<String> gridWorld = new ConcurrentToyGridWorld<>(new Random(), 3, 1);
+        ToyGridWorldInterface environmentInterface = new ToyGridWorldInterface(gridWorld, null, false, 0);
+        SimulationTelemetry telemetry = new SimulationTelemetry(() -> 2);
+        environmentInterface.setTelemetry(telemetry);
+        Assertions.assertTrue(gridWorld.registerAgent("0", new Point(0, 0)));
+        Assertions.assertTrue(gridWorld.registerAgent("1", new Point(1, 0)));
+        DirectMoveContext first = environmentInterface.createDirectMoveContext("0");
+        DirectMoveContext second = environmentInterface.createDirectMoveContext("1");
+
+        environmentInterface.stepStarting(0);
+        Assertions.assertFalse(first.move(Direction.RIGHT));
+        Assertions.assertTrue(second.move(Direction.RIGHT));
+        Assertions.assertTrue(first.move(Direction.RIGHT));
+        Assertions.assertFalse(second.move(Direction.RIGHT));
+        environmentInterface.stepFinished(0, 1, Collections.emptyList());
+
+        Assertions.assertEquals(2, environmentInterface.getSuccessfulMoves());
+        Assertions.assertEquals(2, environmentInterface.getFailedMoves());
+        Assertions.assertEquals(0.5, telemetry.getFailedMoveRate(), 1e-9);
+
+        // The counts of a time step are not carried over to the next one
+        environmentInterface.stepStarting(1);
+        Assertions.assertTrue(first.move(Direction.LEFT));
+        environmentInterface.stepFinished(1, 1, Collections.emptyList());
+        Assertions.assertEquals(3, environmentInterface.getSuccessfulMoves());
+        Assertions.assertEquals(0.45, telemetry.getFailedMoveRate(), 1e-9);
+    }
+}
@@ -0,0 +1,117 @@
+import environment.Direction;
+import environment.IToyGridWorld;
+import environment.SparseToyGridWorld;
+import environment.ToyGridWorld;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+public class TestSparseToyGridWorld {
+
+    private final Random random = new Random();
+    private final int width = 50;
+    private final int height = 50;
+
+    private final String theAgent = "theAgent";
+    private final String otherAgent = "otherAgent";
+
+    @DisplayName("Agent starts at registered position")
+    @RepeatedTest(100)
+    void testRegisterAgentIsAtPosition() {
+        IToyGridWorld<String> gridWorld = createGridWorld(width, height);
+        Point position = gridWorld.getRandomFreePoint(false);
+        Assertions.assertTrue(gridWorld.registerAgent(theAgent, position));
+        Assertions.assertEquals(position, gridWorld.getPosition(theAgent));
+        Assertions.assertEquals(theAgent, gridWorld.getAgentAt(position));
+    }
+
+    @DisplayName("Agent cannot be placed on occupied square")
+    @RepeatedTest(100)
+    void testRejectRegisterAgentAtPosition() {
+        IToyGridWorld<String> gridWorld = createGridWorld(width, height);
+        Point position = gridWorld.getRandomFreePoint(false);
+        Assertions.assertTrue(gridWorld.registerAgent(theAgent, position));
+        Assertions.assertFalse(gridWorld.registerAgent(otherAgent, position));
+        Assertions.assertEquals(theAgent, gridWorld.getAgentAt(position));
+    }
+
+    @DisplayName("Sparse grid behaves exactly like the dense grid for the same sequence of moves")
+    @RepeatedTest(20)
+    void testMatchesDenseGrid() {
+        long seed = random.nextLong();
+        IToyGridWorld<String> sparse = new SparseToyGridWorld<>(new Random(seed), width, height);
+        IToyGridWorld<String> dense = new ToyGridWorld<>(new Random(seed), width, height);
+
+        int nAgents = 500;
+        for (int i = 0; i < nAgents; i++) {
+            Point position = dense.getRandomFreePoint(false);
+            Assertions.assertEquals(position, sparse.getRandomFreePoint(false));
+            Assertions.assertTrue(dense.registerAgent(Integer.toString(i), position));
+            Assertions.assertTrue(sparse.registerAgent(Integer.toString(i), new Point(position)));
+        }
+
+        for (int m = 0; m < 20000; m++) {
+            String agent = Integer.toString(random.nextInt(nAgents));
+            Direction direction = Direction.values()[random.nextInt(Direction.values().length)];
+            Assertions.assertEquals(dense.move(agent, direction), sparse.move(agent, direction));
+            Assertions.assertEquals(dense.getPosition(agent), sparse.getPosition(agent));
+            Assertions.assertEquals(dense.getStateHash(), sparse.getStateHash());
+        }
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                Point cell = new Point(x, y);
+                Assertions.assertEquals(dense.getAgentAt(cell), sparse.getAgentAt(cell));
+            }
+        }
+    }
+
+    @DisplayName("Empty chunks are released when the last agent leaves them")
+    @Test
+    void testChunksAreReleased() {
+        SparseToyGridWorld<String> gridWorld = createGridWorld(width, height);
+        Assertions.assertEquals(0, gridWorld.getAllocatedChunks());
+
+        Assertions.assertTrue(gridWorld.registerAgent(theAgent, new Point(0, 0)));
+        Assertions.assertEquals(1, gridWorld.getAllocatedChunks());
+
+        // Walk along the top row, crossing several chunk borders
+        for (int x = 1; x < width; x++) {
+            Assertions.assertTrue(gridWorld.move(theAgent, Direction.RIGHT));
+            Assertions.assertEquals(1, gridWorld.getAllocatedChunks());
+        }
+        Assertions.assertEquals(new Point(width - 1, 0), gridWorld.getPosition(theAgent));
+        Assertions.assertNull(gridWorld.getAgentAt(new Point(0, 0)));
+    }
+
+    @DisplayName("Huge, lightly populated grids only allocate memory for occupied regions")
+    @Test
+    void testHugeGrid() {
+        int size = 100_000;
+        int nAgents = 50_000;
+        SparseToyGridWorld<String> gridWorld = createGridWorld(size, size);
+        for (int i = 0; i < nAgents; i++) {
+            Assertions.assertTrue(gridWorld.registerAgent(Integer.toString(i), gridWorld.getRandomFreePoint(false)));
+        }
+        Assertions.assertTrue(gridWorld.getAllocatedChunks() <= nAgents);
+
+        for (int i = 0; i < nAgents; i++) {
+            String agent = Integer.toString(i);
+            Point before = gridWorld.getPosition(agent);
+            Direction direction = Direction.values()[random.nextInt(Direction.values().length)];
+            if (gridWorld.move(agent, direction)) {
+                Assertions.assertNull(gridWorld.getAgentAt(before));
+            }
+            Assertions.assertEquals(agent, gridWorld.getAgentAt(gridWorld.getPosition(agent)));
+        }
+        Assertions.assertTrue(gridWorld.getAllocatedChunks() <= nAgents);
+    }
+
+    private SparseToyGridWorld<String> createGridWorld(int width, int height) {
+        return new SparseToyGridWorld<>(new Random(), width, height);
+    }
+}
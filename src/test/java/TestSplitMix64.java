@@ -0,0 +1,31 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import util.SplitMix64;
+
+public class TestSplitMix64 {
+
+    private final Random random = new Random();
+
+    @DisplayName("Array-based random streams produce the same numbers as SplittableRandom")
+    @RepeatedTest(100)
+    void testMatchesSplittableRandom() {
+        long seed = random.nextLong();
+        SplittableRandom reference = new SplittableRandom(seed);
+        long[] states = new long[]{0, seed, 0};
+
+        for (int i = 0; i < 1000; i++) {
+            // Mix powers of two, small bounds, and bounds that require rejection sampling
+            int bound = i % 3 == 0 ? 64 : 1 + random.nextInt(i % 3 == 1 ? 100 : Integer.MAX_VALUE);
+            Assertions.assertEquals(reference.nextInt(bound), SplitMix64.nextInt(states, 1, bound));
+        }
+
+        // Other streams in the same array are not affected
+        Assertions.assertEquals(0, states[0]);
+        Assertions.assertEquals(0, states[2]);
+    }
+}
@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import simulation.StepPacer;
+
+public class TestStepPacer {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int period = 10;
+    private static final long start = 123456789;
+
+    // The clock only advances when a time step does work, or when the pacer sleeps
+    private long clock = start;
+    private final List<Long> sleeps = new ArrayList<>();
+    private final StepPacer pacer = new StepPacer(period, () -> clock, nanos -> {
+        sleeps.add(nanos);
+        clock += nanos;
+    });
+
+    @DisplayName("Time spent in a time step is subtracted from the delay, so the schedule does not drift")
+    @Test
+    void testNoDrift() {
+        for (int step = 0; step < 1000; step++) {
+            Assertions.assertTrue(runStep(3));
+            Assertions.assertEquals(start + (3 + step * period) * MILLIS, clock);
+        }
+        Assertions.assertEquals(999, sleeps.size());
+        Assertions.assertTrue(sleeps.stream().allMatch(nanos -> nanos == 7 * MILLIS));
+        Assertions.assertEquals(0, pacer.getLateSteps());
+    }
+
+    @DisplayName("A late time step skips rendering, and the next time step catches up with the schedule")
+    @Test
+    void testCatchUp() {
+        runSteps(5, 3);
+        long due = clock + period * MILLIS;
+
+        // Late by 5 ms
+        Assertions.assertFalse(runStep(15));
+        Assertions.assertEquals(due + 5 * MILLIS, clock);
+
+        // The next time step is on time again, and only sleeps for the rest of the original schedule
+        Assertions.assertTrue(runStep(4));
+        Assertions.assertEquals(due + period * MILLIS, clock);
+        Assertions.assertEquals(1 * MILLIS, (long) sleeps.get(sleeps.size() - 1));
+        Assertions.assertTrue(runStep(4));
+        Assertions.assertEquals(due + 2 * period * MILLIS, clock);
+
+        Assertions.assertEquals(1, pacer.getLateSteps());
+        Assertions.assertEquals(1, pacer.getSkippedFrames());
+        Assertions.assertEquals(0, pacer.getRescheduled());
+    }
+
+    @DisplayName("Falling behind by more than a period continues from the current time, without a burst")
+    @Test
+    void testReschedule() {
+        runSteps(5, 3);
+        Assertions.assertFalse(runStep(25));
+        long late = clock;
+        Assertions.assertEquals(1, pacer.getRescheduled());
+
+        // Back at the normal period, counted from the late time step
+        sleeps.clear();
+        for (int step = 1; step <= 10; step++) {
+            Assertions.assertTrue(runStep(3));
+            Assertions.assertEquals(late + step * period * MILLIS, clock);
+        }
+        Assertions.assertTrue(sleeps.stream().allMatch(nanos -> nanos == 7 * MILLIS));
+        Assertions.assertEquals(1, pacer.getLateSteps());
+    }
+
+    @DisplayName("Rendering is not skipped more than 10 time steps in a row")
+    @Test
+    void testMaxSkippedFrames() {
+        runSteps(1, 3);
+
+        // Each time step is 1 ms too slow, so the simulation falls further behind until it is rescheduled
+        for (int step = 1; step <= 10; step++) {
+            Assertions.assertFalse(runStep(period + 1));
+        }
+        Assertions.assertTrue(runStep(period + 1));
+        Assertions.assertEquals(1, pacer.getRescheduled());
+        Assertions.assertEquals(11, pacer.getLateSteps());
+        Assertions.assertEquals(10, pacer.getSkippedFrames());
+        Assertions.assertTrue(sleeps.isEmpty());
+    }
+
+    private void runSteps(int steps, int durationMillis) {
+        for (int step = 0; step < steps; step++) {
+            Assertions.assertTrue(runStep(durationMillis));
+        }
+    }
+
+    /**
+     * @return  True iff the pacer rendered the time step
+     */
+    private boolean runStep(int durationMillis) {
+        clock += durationMillis * MILLIS;
+        boolean render = pacer.stepFinished();
+        pacer.awaitNextStep();
+        return render;
+    }
+}
@@ -1,5 +1,6 @@
 import environment.Direction;
 import environment.IToyGridWorld;
+import environment.StateHash;
 import environment.ToyGridWorld;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
@@ -37,6 +38,49 @@ public class TestToyGridWorld {
         Assertions.assertEquals(gridWorld.getAgentAt(agentPosition), theAgent);
     }
 
+    @DisplayName("State hash is updated incrementally, and does not depend on the order of placement")
+    @RepeatedTest(20)
+    void testStateHash() {
+        IToyGridWorld<String> gridWorld = createGridWorld();
+        IToyGridWorld<String> reversed = createGridWorld();
+        Assertions.assertEquals(0, gridWorld.getStateHash());
+
+        int nAgents = 200;
+        for (int i = 0; i < nAgents; i++) {
+            Assertions.assertTrue(gridWorld.registerAgent(Integer.toString(i), gridWorld.getRandomFreePoint(false)));
+        }
+        for (int m = 0; m < 5000; m++) {
+            String agent = Integer.toString(random.nextInt(nAgents));
+            gridWorld.move(agent, Direction.values()[random.nextInt(Direction.values().length)]);
+        }
+        for (int i = 0; i < nAgents; i += 2) {
+            Assertions.assertTrue(gridWorld.removeAgent(Integer.toString(i)));
+        }
+
+        long hash = 0;
+        for (int i = nAgents - 1; i >= 0; i--) {
+            Point position = gridWorld.getPosition(Integer.toString(i));
+            if (position != null) {
+                hash ^= StateHash.key(Integer.toString(i), position.x, position.y);
+                Assertions.assertTrue(reversed.registerAgent(Integer.toString(i), new Point(position)));
+            }
+        }
+        Assertions.assertEquals(hash, gridWorld.getStateHash());
+        Assertions.assertEquals(hash, reversed.getStateHash());
+
+        // Moving an agent back and forth restores the hash
+        String agent = Integer.toString(1);
+        for (Direction direction : Direction.values()) {
+            if (gridWorld.move(agent, direction)) {
+                Assertions.assertNotEquals(hash, gridWorld.getStateHash());
+                Direction back = direction == Direction.UP ? Direction.DOWN : direction == Direction.DOWN ? Direction.UP
+                        : direction == Direction.LEFT ? Direction.RIGHT : Direction.LEFT;
+                Assertions.assertTrue(gridWorld.move(agent, back));
+                Assertions.assertEquals(hash, gridWorld.getStateHash());
+            }
+        }
+    }
+
     @DisplayName("Agent cannot be placed on occupied square")
     @RepeatedTest(100)
     void testRejectRegisterAgentAtPosition() {